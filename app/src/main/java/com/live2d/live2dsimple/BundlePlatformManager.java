@@ -0,0 +1,125 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+ */
+package com.live2d.live2dsimple;
+
+import android.content.Context;
+import android.util.Log;
+import jp.live2d.utils.android.AssetManifest;
+import jp.live2d.utils.android.FileManager;
+import jp.live2d.utils.android.ModelBundle;
+import jp.live2d.utils.android.SoundManager;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+
+/*
+ * モデルのアセットを、まとめたファイル（live2d/<モデル>.l2db）から読み込む。
+ *
+ * live2d/<モデル>/ 以下のファイルは、初めて読み込むときにそのモデルのバンドルを開いてマップし、
+ * 以降はその一部を返す。バンドルが無いモデルや、バンドルに含まれないファイルは個別に読み込む。
+ * 複数のモデルで使うファイルは共有のバンドル（live2d/shared.l2db）から読み込む。
+ * バンドルに含まれるファイルは、作成時に求めた内容のハッシュを返す。
+ */
+public final class BundlePlatformManager extends PlatformManager {
+    private static final String TAG = "BundlePlatformManager";
+    private static final String ROOT = "live2d/";
+    private final HashMap<String, ModelBundle> bundles = new HashMap<>(); // 無い場合もnullを入れる
+
+    @Override
+    protected final ByteBuffer openBuffer(@NotNull Context applicationContext, String path) {
+        ModelBundle bundle = getBundle(applicationContext, path);
+        if (bundle != null && bundle.contains(path)) {
+            String sharedPath = bundle.getSharedPath(path);
+            if (sharedPath != null) {
+                path = sharedPath;
+                bundle = openBundle(applicationContext, ModelBundle.SHARED_PATH);
+            }
+            try {
+                if (bundle != null)
+                    return bundle.get(path);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return super.openBuffer(applicationContext, path);
+    }
+
+    @Override
+    public final void loadSound(@NotNull Context applicationContext, String path) {
+        ModelBundle bundle = getBundle(applicationContext, path);
+        if (bundle != null && bundle.contains(path)) {
+            long hash = bundle.getHash(path);
+            String entryPath = path;
+            String sharedPath = bundle.getSharedPath(path);
+            if (sharedPath != null) {
+                entryPath = sharedPath;
+                bundle = openBundle(applicationContext, ModelBundle.SHARED_PATH);
+            }
+            if (bundle != null && bundle.isDirectAccessible(entryPath)) {
+                SoundManager.load(path, hash, bundle.getFileDescriptor(), bundle.getFileOffset(entryPath), bundle.getLength(entryPath));
+                return;
+            }
+        }
+        super.loadSound(applicationContext, path);
+    }
+
+    @Override
+    public final long getContentHash(@NotNull Context applicationContext, String path) {
+        ModelBundle bundle = getBundle(applicationContext, path);
+        if (bundle != null && bundle.contains(path))
+            return bundle.getHash(path);
+        return super.getContentHash(applicationContext, path);
+    }
+
+    /*
+     * パスが含まれるモデルのバンドルを取得する。初めての場合は開く。
+     * アセットの一覧がある場合は、それで含まれるバンドルを調べる。
+     * @param applicationContext
+     * @param path
+     * @return 無い場合はnull
+     */
+    private ModelBundle getBundle(Context applicationContext, String path) {
+        AssetManifest manifest = FileManager.getManifest();
+        if (manifest != null && manifest.contains(path)) {
+            String bundlePath = manifest.getBundlePath(path);
+            return bundlePath == null ? null : openBundle(applicationContext, bundlePath);
+        }
+        if (!path.startsWith(ROOT))
+            return null;
+        int end = path.indexOf('/', ROOT.length());
+        if (end < 0)
+            return null;
+        return openBundle(applicationContext, path.substring(0, end) + ModelBundle.EXTENSION); // live2d/<モデル>.l2db
+    }
+
+    /*
+     * バンドルを取得する。初めての場合は開く。
+     * @param applicationContext
+     * @param bundlePath
+     * @return 無い場合はnull
+     */
+    private synchronized ModelBundle openBundle(Context applicationContext, String bundlePath) {
+        if (bundles.containsKey(bundlePath))
+            return bundles.get(bundlePath);
+
+        ModelBundle bundle = null;
+        if (FileManager.isResourceExists(applicationContext, bundlePath)) {
+            long start = System.nanoTime();
+            try {
+                bundle = ModelBundle.open(applicationContext, bundlePath);
+                if (LAppDefine.DEBUG_LOG)
+                    Log.d(TAG, "Open bundle: " + bundlePath + " " + bundle.getEntryNum() + " files " + (System.nanoTime() - start) / 1000 + "us");
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to open bundle: " + bundlePath, e);
+            }
+        }
+        bundles.put(bundlePath, bundle);
+        return bundle;
+    }
+}
\ No newline at end of file
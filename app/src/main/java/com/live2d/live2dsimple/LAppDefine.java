@@ -12,6 +12,7 @@ package com.live2d.live2dsimple;
 public final class LAppDefine {
     // デバッグ。trueのときにログを表示する。
     public static final boolean DEBUG_LOG = true;
+    public static final boolean STARTUP_TRACE = true; // 起動から最初のモデルの表示までの各段階の時間をログに出す（StartupTrace）
     public static final boolean DEBUG_TOUCH_LOG = false;
     public static final boolean DEBUG_DRAW_HIT_AREA = false;
 
@@ -37,11 +38,59 @@ public final class LAppDefine {
     public static final String MODEL_HARU_B = "live2d/haru/haru_02.model.json";
     public static final String MODEL_SHIZUKU = "live2d/shizuku/shizuku.model.json";
     public static final String MODEL_WANKO = "live2d/wanko/wanko.model.json";
+    // モデルの読み込み。1フレームでテクスチャの転送に使う時間。少なくとも1枚は転送する
+    public static final int GL_UPLOAD_BUDGET_MSEC = 4;
+    // 縮小したテクスチャで先に表示し、元の大きさのものは展開が終わったものから差し替える
+    public static final boolean PROGRESSIVE_TEXTURE = true;
+    public static final int TEXTURE_PREVIEW_SIZE = 256;
+    // テクスチャの大きさを画面上のモデルの大きさと端末のメモリに合わせ、使わない上のレベルは転送しない。拡大縮小したら合わせ直す
+    public static final boolean TEXTURE_TIERING = true;
+    public static final int TEXTURE_TIER_MIN_SIZE = 256;
+    public static final int TEXTURE_TIER_DELAY_MSEC = 500;      // 画面上の大きさが変わってから合わせ直すまでの時間
+    public static final int TEXTURE_TIER_LOW_MEMORY_CLASS = 64; // メモリクラス(MB)がこれ以下の端末、またはisLowRamDevice()の端末は
+    public static final int TEXTURE_TIER_LOW_MEMORY_SIZE = 512; // この大きさまで
+    // ビルド時にETC2 RGBA8で圧縮したテクスチャ（.ktx）を使う。対応していない端末、圧縮していないテクスチャはPNGを使う
+    public static final boolean COMPRESSED_TEXTURE = true;
+    // ミップマップをCPUの2x2平均で作成する。falseで以前のBitmap.createScaledBitmapによる方法（比較用）
+    public static final boolean MIPMAP_BOX_FILTER = true;
+    // 展開したテクスチャとミップマップをキャッシュディレクトリに保存し、次回から展開を省く
+    public static final boolean TEXTURE_CACHE = true;
+    public static final long TEXTURE_CACHE_MAX_BYTES = 128 * 1024 * 1024; // 超えたら古いものから削除する
+    // 変換したモデルの設定をキャッシュディレクトリに保存し、次回からJSONの解析を省く
+    public static final boolean MODEL_SETTING_CACHE = true;
+    // モデルのアセットをまとめたファイル（live2d/<モデル>.l2db）から読み込む。無いモデルは個別に読み込む
+    public static final boolean MODEL_BUNDLE = true;
+    // ビルド時に作成したアセットの一覧（assets.l2dm）で、アセットを開かずに存在や大きさを調べる
+    public static final boolean ASSET_MANIFEST = true;
+    // アプリに無いモデルをサーバーから取得する。サーバーにはビルドで作成したassets.l2dmとバンドルを置く。nullのときは使わない
+    public static final String REMOTE_MODEL_URL = null;
+    public static final long REMOTE_CACHE_MAX_BYTES = 256 * 1024 * 1024; // 取得したものを保存する。超えたら古いものから削除する
+    public static final int REMOTE_FETCH_THREADS = 4;             // 並列に取得する数
+    public static final int REMOTE_CHUNK_BYTES = 256 * 1024;      // 1回の要求で取得する大きさ。途中で切れたらここから再開する
+    public static final int REMOTE_TIMEOUT_MSEC = 10000;
+    // 切り替えで表示しなくなったモデルを残しておき、戻ったときに読み込みを省く。超えたら古いものから解放する
+    public static final long WARM_CACHE_MAX_BYTES = 64 * 1024 * 1024;
+    // 表示中のモデルが落ち着いたら、次に切り替えるモデルを低い優先度で先読みする
+    public static final boolean PREFETCH_NEXT_MODEL = true;
+    public static final boolean PREFETCH_UPLOAD = true;          // 先読みしたテクスチャも転送しておく
+    public static final int PREFETCH_UPLOAD_BUDGET_MSEC = 2;     // 先読みの転送に1フレームで使う時間
+    public static final long PREFETCH_MAX_BYTES = 128 * 1024 * 1024; // 表示中、キャッシュ、先読みの合計の上限
+    public static final boolean PROFILE_ALLOCATIONS = false; // 読み込みの計測で確保したメモリも数える。VMが遅くなるのでデバッグ用
+    // 音声付きのモーションで、音声の読み込みが終わっていない場合に待つ時間。過ぎたら音声なしで開始する
+    public static final int SOUND_WAIT_MSEC = 300;
     // モーションの優先度定数
     public static final int PRIORITY_NONE = 0;
     public static final int PRIORITY_IDLE = 1;
     public static final int PRIORITY_NORMAL = 2;
     public static final int PRIORITY_FORCE = 3;
+    // パラメータの配信。同じキャラクターを複数の画面に表示する
+    public static final boolean PARAM_BROADCAST = false;       // trueのとき、表示中のモデルのパラメータを配信する
+    public static final String PARAM_MIRROR_HOST = null;       // 指定したとき、配信されたパラメータで表示する（計算はしない）
+    public static final int PARAM_BROADCAST_PORT = 50210;
+    public static final float PARAM_BROADCAST_EPSILON = 0.001f; // 範囲に対する割合。これより小さい変化は送らない
+    public static final int PARAM_KEYFRAME_INTERVAL_MSEC = 1000; // 途中参加用のキーフレームの間隔
+    public static final int PARAM_MIRROR_DELAY_MSEC = 100;     // 表示側の再生の遅延。0でジッタバッファを使わない
+    public static final int PARAM_MIRROR_MAX_EXTRAPOLATION_MSEC = 200; // フレームが途切れたときに外挿する最大時間
     // 外部定義ファイル(json)と合わせる
     static final String MOTION_GROUP_IDLE = "idle";        // アイドリング
     static final String MOTION_GROUP_TAP_BODY = "tap_body";    // 体をタップしたとき
@@ -10,14 +10,27 @@ import android.app.Activity;
 import android.content.Context;
 import android.util.Log;
 import jp.live2d.Live2D;
+import jp.live2d.framework.L2DLoadProfiler;
 import jp.live2d.framework.L2DViewMatrix;
 import jp.live2d.framework.Live2DFramework;
+import jp.live2d.utils.android.FileManager;
+import jp.live2d.utils.android.ParamBroadcaster;
+import jp.live2d.utils.android.ParamSubscriber;
+import jp.live2d.utils.android.SoundManager;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 
 import javax.microedition.khronos.opengles.GL10;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /*
  *  LAppLive2DManagerは、Live2D関連の司令塔としてモデル、ビュー、イベント等を管理するクラス（のサンプル実装）になります。
@@ -42,12 +55,92 @@ public final class LAppLive2DManager {
     // ボタンから実行できるサンプル機能
     private int modelCount = -1;
     private boolean reloadFlg; // モデル再読み込みのフラグ
+    private int surfaceWidth = 0;
+    // モデルの読み込み。終わるまでは今のモデルを表示する
+    private final ExecutorService loader;
+    private ArrayList<LAppModel> loadingModels = new ArrayList<>();
+    private Future<?> loadFuture = null;
+    private ExecutorService loadExecutor = null; // loadFutureを実行しているスレッド。先読みを使う場合はprefetcher
+    // 表示しなくなったモデル。同じモデルに戻ったときに読み込まずに使う
+    private final LAppModelCache warmModels = new LAppModelCache(LAppDefine.WARM_CACHE_MAX_BYTES);
+    // 次のモデルの先読み。表示中のモデルが落ち着いたら低い優先度で読み込む
+    private final ExecutorService prefetcher;
+    private volatile Thread prefetchThread = null;
+    private String[] prefetchPaths = null;
+    private HashMap<String, LAppModel> prefetchModels = new HashMap<>();
+    private Future<?> prefetchFuture = null;
+    private int prefetchedModelCount = -1; // 先読みを行ったmodelCount。同じ切り替えでは1回だけ
+    // サーバーにあるモデル。一覧を取得できたら切り替えの順番に加える
+    private Future<String[]> remoteModelsFuture = null;
+    // パラメータの配信
+    private ParamBroadcaster paramBroadcaster;
+    private ParamSubscriber paramSubscriber;
 
     LAppLive2DManager(@NotNull Context applicationContext) {
         this.applicationContext = applicationContext;
-        Live2D.init();
-        Live2DFramework.setPlatformManager(new PlatformManager());
+        PlatformManager platformManager = LAppDefine.MODEL_BUNDLE ? new BundlePlatformManager() : new PlatformManager();
+        if (LAppDefine.REMOTE_MODEL_URL != null) {
+            RemotePlatformManager remote = new RemotePlatformManager(platformManager, LAppDefine.REMOTE_MODEL_URL);
+            remoteModelsFuture = remote.getRemoteModelsAsync(applicationContext);
+            platformManager = remote;
+        }
+        Live2DFramework.setPlatformManager(platformManager);
+        L2DLoadProfiler.setAllocationCounting(LAppDefine.PROFILE_ALLOCATIONS);
         models = new ArrayList<>();
+        loader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(@NotNull Runnable r) {
+                Thread t = new Thread(r, "ModelLoader");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        prefetcher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(@NotNull Runnable r) {
+                Thread t = new Thread(r, "ModelPrefetcher");
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                prefetchThread = t;
+                return t;
+            }
+        });
+
+        // 起動を待たせないように、初期化は他のスレッドで並行して行う
+        // Live2Dとアセットの一覧は読み込みスレッドで最初に行うので、モデルの読み込みはその後になる
+        loader.execute(new Runnable() {
+            @Override
+            public void run() {
+                long t = StartupTrace.begin("Live2D.init");
+                Live2D.init();
+                if (LAppDefine.ASSET_MANIFEST)
+                    FileManager.loadManifest(LAppLive2DManager.this.applicationContext);
+                StartupTrace.end("Live2D.init", t);
+            }
+        });
+        // 音声は登録用のスレッドで最初に行うので、モデルの音声の登録はその後になる
+        platformManager.getSoundLoader().execute(new Runnable() {
+            @Override
+            public void run() {
+                long t = StartupTrace.begin("SoundManager.init");
+                SoundManager.init();
+                StartupTrace.end("SoundManager.init", t);
+            }
+        });
+        // 最初のモデルは画面の作成を待たずに読み込みを始める。テクスチャの大きさは画面の幅から決める
+        platformManager.setScreenScale(applicationContext.getResources().getDisplayMetrics().widthPixels
+                / (LAppDefine.VIEW_LOGICAL_RIGHT - LAppDefine.VIEW_LOGICAL_LEFT));
+        modelCount = 0;
+        startLoading(getModelPaths(modelCount));
+
+        if (LAppDefine.PARAM_MIRROR_HOST != null) {
+            paramSubscriber = new ParamSubscriber(LAppDefine.PARAM_MIRROR_HOST, LAppDefine.PARAM_BROADCAST_PORT,
+                    LAppDefine.PARAM_MIRROR_DELAY_MSEC, LAppDefine.PARAM_MIRROR_MAX_EXTRAPOLATION_MSEC);
+            paramSubscriber.start();
+        } else if (LAppDefine.PARAM_BROADCAST) {
+            paramBroadcaster = new ParamBroadcaster(LAppDefine.PARAM_BROADCAST_PORT, LAppDefine.PARAM_BROADCAST_EPSILON, LAppDefine.PARAM_KEYFRAME_INTERVAL_MSEC);
+            paramBroadcaster.start();
+        }
     }
 
     @Contract(pure = true)
@@ -55,9 +148,14 @@ public final class LAppLive2DManager {
         return applicationContext;
     }
 
+    /*
+     * 表示中のモデルを外す。
+     * テクスチャなどは解放せずにキャッシュに残し、上限を超えた分だけ古いものから解放する。
+     */
     private void releaseModel() {
         for (LAppModel model : models) {
-            model.release(); // テクスチャなどを解放
+            model.deactivate();
+            warmModels.put(model);
         }
         models.clear();
     }
@@ -74,55 +172,422 @@ public final class LAppLive2DManager {
      */
     public final void update(GL10 gl) {
         view.update();
+        PlatformManager pm = (PlatformManager) Live2DFramework.getPlatformManager();
+        pm.deleteReleasedTextures(gl); // 共有が終わったテクスチャ
+        // テクスチャの大きさを決めるための画面の画素数と拡大率
+        pm.setScreenScale(surfaceWidth / (LAppDefine.VIEW_LOGICAL_RIGHT - LAppDefine.VIEW_LOGICAL_LEFT) * getViewMatrix().getScaleX());
         if (reloadFlg) {
             // モデル切り替えボタンが押された時、モデルを再読み込みする
             reloadFlg = false;
 
-            int no = modelCount % 4;
-
-            try {
-                switch (no) {
-                    case 0: // ハル
-                        releaseModel();
-
-                        models.add(new LAppModel());
-                        models.get(0).load(applicationContext, gl, LAppDefine.MODEL_HARU);
-                        models.get(0).feedIn();
-                        break;
-                    case 1: // しずく
-                        releaseModel();
-
-                        models.add(new LAppModel());
-                        models.get(0).load(applicationContext, gl, LAppDefine.MODEL_SHIZUKU);
-                        models.get(0).feedIn();
-                        break;
-                    case 2: // わんこ
-                        releaseModel();
-
-                        models.add(new LAppModel());
-                        models.get(0).load(applicationContext, gl, LAppDefine.MODEL_WANKO);
-                        models.get(0).feedIn();
-                        break;
-                    case 3: // 複数モデル
-                        releaseModel();
-
-                        models.add(new LAppModel());
-                        models.get(0).load(applicationContext, gl, LAppDefine.MODEL_HARU_A);
-                        models.get(0).feedIn();
-
-                        models.add(new LAppModel());
-                        models.get(1).load(applicationContext, gl, LAppDefine.MODEL_HARU_B);
-                        models.get(1).feedIn();
-                        break;
-                    default:
-                        break;
+            startLoading(getModelPaths(modelCount));
+        }
+        if (loadFuture != null) {
+            updateLoading(gl);
+            return;
+        }
+        for (LAppModel model : models) {
+            model.updateTextureSize(applicationContext, gl); // 拡大縮小したとき
+        }
+        updateStreaming(gl);
+        if (LAppDefine.PREFETCH_NEXT_MODEL)
+            updatePrefetch(gl);
+    }
+
+    /*
+     * 表示中のモデルのテクスチャを、元の大きさのもの、合わせ直した大きさのものに差し替える。
+     * 1フレームで転送に使う時間はGL_UPLOAD_BUDGET_MSECまで。
+     * @param gl
+     */
+    private void updateStreaming(GL10 gl) {
+        long budgetNanos = TimeUnit.MILLISECONDS.toNanos(LAppDefine.GL_UPLOAD_BUDGET_MSEC);
+        long start = System.nanoTime();
+        for (LAppModel model : models) {
+            long remain = budgetNanos - (System.nanoTime() - start);
+            if (remain <= 0)
+                break;
+            model.streamTextures(gl, remain);
+        }
+    }
+
+    /*
+     * 切り替えの順番に対応するモデル
+     * @param count
+     * @return
+     */
+    private String[] getModelPaths(int count) {
+        String[] remoteModels = getRemoteModels();
+        int no = count % (4 + remoteModels.length);
+        if (no >= 4) // サーバーのモデル
+            return new String[]{remoteModels[no - 4]};
+
+        switch (no) {
+            case 0: // ハル
+                return new String[]{LAppDefine.MODEL_HARU};
+            case 1: // しずく
+                return new String[]{LAppDefine.MODEL_SHIZUKU};
+            case 2: // わんこ
+                return new String[]{LAppDefine.MODEL_WANKO};
+            case 3: // 複数モデル
+            default:
+                return new String[]{LAppDefine.MODEL_HARU_A, LAppDefine.MODEL_HARU_B};
+        }
+    }
+
+    /*
+     * サーバーにあるモデル。一覧の取得が終わっていない場合は空
+     * @return
+     */
+    private String[] getRemoteModels() {
+        if (remoteModelsFuture == null || !remoteModelsFuture.isDone())
+            return new String[0];
+        try {
+            return remoteModelsFuture.get();
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to get remote models.", e);
+            remoteModelsFuture = null;
+            return new String[0];
+        }
+    }
+
+    /*
+     * サーバーのモデルの場合、読み込みの前にファイルをまとめて取得する
+     * @param path
+     */
+    private void fetchRemoteModel(String path) {
+        if (Live2DFramework.getPlatformManager() instanceof RemotePlatformManager)
+            ((RemotePlatformManager) Live2DFramework.getPlatformManager()).fetchModel(applicationContext, path);
+    }
+
+    /*
+     * 読み込みスレッドでモデルの読み込みを開始する。
+     * 読み込み中のモデルがあれば破棄する。
+     * @param paths
+     */
+    private void startLoading(final String... paths) {
+        cancelLoading();
+
+        if (prefetchFuture != null && Arrays.equals(paths, prefetchPaths) && adoptPrefetch())
+            return; // 先読み中のものをそのまま使う
+        cancelPrefetch();
+
+        // キャッシュにあるモデルはそのまま使う
+        final ArrayList<LAppModel> newModels = new ArrayList<>();
+        boolean allCached = true;
+        for (String path : paths) {
+            LAppModel model = warmModels.take(path);
+            if (model == null) {
+                model = new LAppModel();
+                allCached = false;
+            }
+            newModels.add(model);
+        }
+        if (LAppDefine.DEBUG_LOG)
+            Log.d(TAG, "Warm cache: " + (allCached ? "hit" : "miss") + " " + Arrays.toString(paths));
+        if (allCached) {
+            // 読み込みが無いので、すぐに切り替える
+            loadingModels = newModels;
+            swapModels();
+            return;
+        }
+
+        loadingModels = newModels;
+        loadExecutor = loader;
+        loadFuture = loader.submit(new Runnable() {
+            @Override
+            public void run() {
+                long t = StartupTrace.begin("prepare");
+                for (int i = 0; i < paths.length; i++) {
+                    if (newModels.get(i).isInitialized())
+                        continue;
+                    fetchRemoteModel(paths[i]);
+                    newModels.get(i).prepare(applicationContext, paths[i]);
                 }
-            } catch (Exception e) {
-                // ファイルの指定ミスかメモリ不足が考えられる。復帰か中断が必要
-                Log.e(TAG, "Failed to load." + Arrays.toString(e.getStackTrace()));
-                // SampleApplication.exit();
+                StartupTrace.end("prepare", t);
             }
+        });
+    }
+
+    private void cancelLoading() {
+        if (loadFuture == null)
+            return;
+        boolean done = loadFuture.isDone();
+        if (!done)
+            loadFuture.cancel(false); // 展開中の画像はGCに任せる
+        ArrayList<LAppModel> loading = new ArrayList<>();
+        for (LAppModel model : loadingModels) {
+            if (model.isInitialized())
+                warmModels.put(model); // キャッシュから取り出したもの、転送まで終わったもの
+            else if (done)
+                model.release(); // 転送済みのテクスチャがあるので解放する
+            else
+                loading.add(model);
         }
+        releaseAfterLoading(loadExecutor, loading);
+        loadingModels = new ArrayList<>();
+        loadFuture = null;
+        loadExecutor = null;
+    }
+
+    /*
+     * 中断した読み込みが終わった後に、読み込んでいたモデルを解放する。
+     * 実行中のprepare()は止まらずに共有テクスチャの参照、音声、モーションを登録するので、終わるのを待つ。
+     * 読み込みを行っていたスレッドで後から実行するので、prepare()の後になる。
+     * 転送前のモデルはGLを使わずに解放できる。
+     * @param executor 読み込みを行っていたスレッド
+     * @param loading
+     */
+    private static void releaseAfterLoading(ExecutorService executor, final ArrayList<LAppModel> loading) {
+        if (loading.isEmpty())
+            return;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (LAppModel model : loading) {
+                    model.release();
+                }
+            }
+        });
+    }
+
+    /*
+     * 読み込みが終わったモデルのテクスチャを転送し、すべて終わったら表示するモデルを切り替える。
+     * 1フレームで転送に使う時間はGL_UPLOAD_BUDGET_MSECまで。
+     * @param gl
+     */
+    private void updateLoading(GL10 gl) {
+        if (!loadFuture.isDone())
+            return; // 読み込み中は今のモデルを表示し続ける
+
+        try {
+            loadFuture.get();
+        } catch (InterruptedException | ExecutionException e) {
+            // ファイルの指定ミスかメモリ不足が考えられる。復帰か中断が必要
+            Log.e(TAG, "Failed to load.", e.getCause());
+            cancelLoading();
+            return;
+        }
+
+        long budgetNanos = TimeUnit.MILLISECONDS.toNanos(LAppDefine.GL_UPLOAD_BUDGET_MSEC);
+        long start = System.nanoTime();
+        long t = StartupTrace.begin("upload");
+        boolean completed = true;
+        for (LAppModel model : loadingModels) {
+            if (!model.upload(gl, budgetNanos - (System.nanoTime() - start)))
+                completed = false;
+        }
+        StartupTrace.end("upload", t);
+        if (!completed)
+            return;
+        swapModels();
+    }
+
+    /*
+     * 読み込みが終わったモデルを表示する
+     */
+    private void swapModels() {
+        releaseModel();
+        models.addAll(loadingModels);
+        for (LAppModel model : models) {
+            model.activate();
+            model.feedIn();
+        }
+        loadingModels = new ArrayList<>();
+        loadFuture = null;
+        loadExecutor = null;
+        attachParamStream();
+        if (LAppDefine.DEBUG_LOG) {
+            Log.d(TAG, String.format("Warm cache: hit rate %.0f%% (%d/%d), resident %dKB (%d cached)",
+                    warmModels.getHitRate() * 100, warmModels.getHitCount(), warmModels.getHitCount() + warmModels.getMissCount(),
+                    getResidentBytes() / 1024, warmModels.size()));
+        }
+    }
+
+    //=========================================================
+    // 	次のモデルの先読み
+    //=========================================================
+    /*
+     * 表示中のモデルが落ち着いたら次のモデルを先読みし、終わったものを少しずつ転送してキャッシュに入れる。
+     * 次の切り替えはキャッシュから取り出すだけになる。
+     * @param gl
+     */
+    private void updatePrefetch(GL10 gl) {
+        if (prefetchFuture == null) {
+            if (prefetchedModelCount == modelCount || reloadFlg || !isIdle())
+                return;
+            prefetchedModelCount = modelCount;
+            startPrefetch(getModelPaths(modelCount + 1));
+            return;
+        }
+        if (!prefetchFuture.isDone())
+            return;
+
+        try {
+            prefetchFuture.get();
+        } catch (InterruptedException | ExecutionException e) {
+            Log.w(TAG, "Failed to prefetch.", e);
+            cancelPrefetch();
+            return;
+        }
+
+        // 上限を超える場合はキャッシュの古いものを解放して空ける。それでも足りなければやめる
+        long bytes = 0;
+        for (LAppModel model : prefetchModels.values()) {
+            bytes += model.getResidentBytes();
+        }
+        long over = getResidentBytes() + bytes - LAppDefine.PREFETCH_MAX_BYTES;
+        if (over > 0)
+            warmModels.trim(warmModels.getResidentBytes() - over);
+        if (getResidentBytes() + bytes > LAppDefine.PREFETCH_MAX_BYTES) {
+            if (LAppDefine.DEBUG_LOG)
+                Log.d(TAG, "Prefetch dropped: " + bytes / 1024 + "KB over the limit.");
+            cancelPrefetch();
+            return;
+        }
+        if (!LAppDefine.PREFETCH_UPLOAD)
+            return; // 展開したまま切り替えを待つ
+
+        long budgetNanos = TimeUnit.MILLISECONDS.toNanos(LAppDefine.PREFETCH_UPLOAD_BUDGET_MSEC);
+        long start = System.nanoTime();
+        boolean completed = true;
+        for (LAppModel model : prefetchModels.values()) {
+            if (!model.upload(gl, budgetNanos - (System.nanoTime() - start)))
+                completed = false;
+        }
+        if (!completed)
+            return;
+
+        for (LAppModel model : prefetchModels.values()) {
+            model.deactivate();
+            warmModels.put(model);
+        }
+        if (LAppDefine.DEBUG_LOG)
+            Log.d(TAG, "Prefetched: " + Arrays.toString(prefetchPaths) + " " + bytes / 1024 + "KB");
+        prefetchModels = new HashMap<>();
+        prefetchPaths = null;
+        prefetchFuture = null;
+    }
+
+    /*
+     * 表示中のモデルがすべてフェードインを終え、読み込み中のものが無いとき
+     * @return
+     */
+    private boolean isIdle() {
+        if (models.isEmpty() || loadFuture != null)
+            return false;
+        for (LAppModel model : models) {
+            if (model.getAlpha() < 1 || model.isStreamingTextures())
+                return false;
+        }
+        return true;
+    }
+
+    private void startPrefetch(String[] paths) {
+        final HashMap<String, LAppModel> newModels = new HashMap<>();
+        for (String path : paths) {
+            if (!warmModels.contains(path))
+                newModels.put(path, new LAppModel());
+        }
+        if (newModels.isEmpty())
+            return; // すべてキャッシュにある
+
+        if (LAppDefine.DEBUG_LOG)
+            Log.d(TAG, "Prefetch: " + newModels.keySet());
+        prefetchPaths = paths;
+        prefetchModels = newModels;
+        prefetchFuture = prefetcher.submit(new Runnable() {
+            @Override
+            public void run() {
+                Thread.currentThread().setPriority(Thread.MIN_PRIORITY); // adoptPrefetch()で上げていることがある
+                for (Map.Entry<String, LAppModel> e : newModels.entrySet()) {
+                    if (Thread.currentThread().isInterrupted())
+                        return;
+                    fetchRemoteModel(e.getKey());
+                    e.getValue().prepare(applicationContext, e.getKey(), true);
+                }
+            }
+        });
+    }
+
+    /*
+     * 先読み中、または先読みが終わったモデルを、表示するモデルとして読み込みを続ける
+     * @return 先読みの後にキャッシュから外れたモデルがあり、使えない場合はfalse
+     */
+    private boolean adoptPrefetch() {
+        for (String path : prefetchPaths) {
+            if (!prefetchModels.containsKey(path) && !warmModels.contains(path))
+                return false;
+        }
+        Thread t = prefetchThread;
+        if (t != null)
+            t.setPriority(Thread.NORM_PRIORITY); // 待っているので急ぐ
+        ArrayList<LAppModel> newModels = new ArrayList<>();
+        for (String path : prefetchPaths) {
+            LAppModel model = warmModels.take(path);
+            newModels.add(model != null ? model : prefetchModels.get(path));
+        }
+        if (LAppDefine.DEBUG_LOG)
+            Log.d(TAG, "Use prefetch: " + Arrays.toString(prefetchPaths) + (prefetchFuture.isDone() ? " (decoded)" : " (decoding)"));
+        loadingModels = newModels;
+        loadExecutor = prefetcher;
+        loadFuture = prefetchFuture;
+        prefetchModels = new HashMap<>();
+        prefetchPaths = null;
+        prefetchFuture = null;
+        return true;
+    }
+
+    /*
+     * 先読みを中断し、読み込んだものを破棄する
+     */
+    private void cancelPrefetch() {
+        if (prefetchFuture == null)
+            return;
+        boolean done = prefetchFuture.isDone();
+        if (!done) {
+            prefetchFuture.cancel(true); // 展開中のテクスチャは途中でやめる
+            releaseAfterLoading(prefetcher, new ArrayList<>(prefetchModels.values())); // 止まってから解放する
+        } else {
+            for (LAppModel model : prefetchModels.values()) {
+                model.release(); // 転送済みのテクスチャがある
+            }
+        }
+        prefetchModels = new HashMap<>();
+        prefetchPaths = null;
+        prefetchFuture = null;
+    }
+
+    /*
+     * 表示しなくなったモデルを、切り替えの際にキャッシュから使えた割合
+     * @return
+     */
+    public final float getWarmCacheHitRate() {
+        return warmModels.getHitRate();
+    }
+
+    /*
+     * 表示中とキャッシュにあるモデルの大きさの合計
+     * @return
+     */
+    public final long getResidentBytes() {
+        long bytes = warmModels.getResidentBytes();
+        for (LAppModel model : models) {
+            bytes += model.getResidentBytes();
+        }
+        return bytes;
+    }
+
+    /*
+     * 先頭のモデルをパラメータの配信元、または配信先にする
+     */
+    private void attachParamStream() {
+        if (models.isEmpty())
+            return;
+        LAppModel model = models.get(0);
+        if (paramBroadcaster != null)
+            model.setParamBroadcaster(paramBroadcaster);
+        if (paramSubscriber != null)
+            model.setParamSource(paramSubscriber);
     }
 
     /*
@@ -176,6 +641,26 @@ public final class LAppLive2DManager {
         view.onPause();
     }
 
+    /*
+     * Activityが破棄された時のイベント
+     * 配信と読み込みのスレッドを終了する。実行中の読み込みは中断し、待っている解放は行う
+     * 画面の回転でも作り直すので、次のActivityが同じポートで待ち受けられるように閉じる
+     */
+    public final void onDestroy() {
+        if (LAppDefine.DEBUG_LOG)
+            Log.d(TAG, "onDestroy");
+        if (paramBroadcaster != null)
+            paramBroadcaster.stop();
+        if (paramSubscriber != null)
+            paramSubscriber.stop();
+        if (loadFuture != null)
+            loadFuture.cancel(false);
+        if (prefetchFuture != null)
+            prefetchFuture.cancel(true);
+        loader.shutdown();
+        prefetcher.shutdown();
+    }
+
     /*
      * GLSurfaceViewの画面変更時のイベント
      * @param gl
@@ -183,11 +668,13 @@ public final class LAppLive2DManager {
      * @param height
      */
     public final void onSurfaceChanged(GL10 gl, int width, int height) {
+        StartupTrace.mark("onSurfaceChanged");
         if (LAppDefine.DEBUG_LOG)
             Log.d(TAG, "onSurfaceChanged " + width + " " + height);
         view.setupView(width, height);
+        surfaceWidth = width;
 
-        if (getModelNum() == 0)
+        if (getModelNum() == 0 && loadFuture == null)
             changeModel();
     }
 
@@ -221,7 +708,7 @@ public final class LAppLive2DManager {
                 // 顔をタップしたら表情切り替え
                 if (LAppDefine.DEBUG_LOG)
                     Log.d(TAG, "Tap face.");
-                model.setRandomExpression();
+                model.setRandomExpression(applicationContext);
             } else if (model.hitTest(LAppDefine.HIT_AREA_BODY, x, y)) {
                 if (LAppDefine.DEBUG_LOG)
                     Log.d(TAG, "Tap body.");
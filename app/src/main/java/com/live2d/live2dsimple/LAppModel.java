@@ -9,8 +9,12 @@ package com.live2d.live2dsimple;
 import android.content.Context;
 import android.util.Log;
 import jp.live2d.android.Live2DModelAndroid;
+import jp.live2d.framework.IParamSource;
 import jp.live2d.framework.L2DBaseModel;
+import jp.live2d.framework.L2DExpressionMixer;
+import jp.live2d.framework.L2DExpressionMotion;
 import jp.live2d.framework.L2DEyeBlink;
+import jp.live2d.framework.L2DLoadProfiler;
 import jp.live2d.framework.L2DStandardID;
 import jp.live2d.framework.Live2DFramework;
 import jp.live2d.motion.AMotion;
@@ -19,10 +23,16 @@ import jp.live2d.utils.android.*;
 import org.jetbrains.annotations.NotNull;
 
 import javax.microedition.khronos.opengles.GL10;
-import java.io.IOException;
-import java.io.InputStream;
 import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /*
  * LAppModel は低レベルのLive2Dモデル定義クラス Live2DModelAndroid をラップし
@@ -43,14 +53,49 @@ import java.util.HashMap;
  *
  */
 public final class LAppModel extends L2DBaseModel {
+    // テクスチャの段階
+    public static final int TEXTURE_TIER_NONE = 0;    // 転送していない
+    public static final int TEXTURE_TIER_PREVIEW = 1; // 縮小したものを含む
+    public static final int TEXTURE_TIER_FULL = 2;    // すべて元の画像から転送した（大きさの上限はある）
     //  ログ用タグ
     private String TAG = "LAppModel";
     //  デバッグ用の当たり判定表示のためのバッファ
     private FloatBuffer debugBufferVer = null;
     private FloatBuffer debugBufferColor = null;
     //  モデル関連
-    private ModelSetting modelSetting = null;    // モデルファイルやモーションの定義
+    private ModelSettingCompiled modelSetting = null; // モデルファイルやモーションの定義
+    private String modelSettingPath = null; // モデルの設定ファイル
     private String modelHomeDir;            // モデルデータのあるディレクトリ
+    private long textureBytes = 0;          // ミップマップを含むテクスチャの大きさ
+    private TextureData[] pendingTextures = null; // 転送待ちのテクスチャ。読み込みスレッドで展開する
+    private int uploadedTextureNum = 0;
+    private long[] textureHashes = null;     // テクスチャの内容のハッシュ。0は共有しない
+    private long[] textureKeys = null;       // 共有しているテクスチャのキー（PlatformManager.getTextureKey()）。0は共有していない
+    private int[] textureIds = null;         // モデルに設定したテクスチャ番号
+    private long[] textureSlotBytes = null;  // テクスチャごとの大きさ。他のモデルが転送したものは0
+    private int[] textureFullSizes = null;   // 元の画像の幅と高さの大きい方。0はまだ分からない
+    private boolean[] previewTextures = null; // 縮小したもので表示している
+    private Future<TextureData>[] fullTextureFutures = null; // 差し替え待ちの、元の画像から展開したテクスチャ
+    private int textureSize = 0;             // テクスチャの大きさの上限（PlatformManager.getTextureSize()）。0は制限しない
+    private int nextTextureSize = 0;         // 画面上の大きさが変わったときの上限。しばらく続いたら合わせ直す
+    private long nextTextureSizeMSec = 0;
+    private int textureTier = TEXTURE_TIER_NONE;
+    private final long[] textureTierNanos = new long[3]; // 読み込み開始から各段階になるまでの時間
+    private long loadStartNanos = 0;
+    private final ArrayList<String> loadedSoundPaths = new ArrayList<>(); // 登録した音声
+    private boolean soundsReleased = false;  // release()した後は登録しない。loadedSoundPathsで同期する
+    private Future<?> soundFuture = null;    // 音声の登録。登録用のスレッドで行う
+    // 音声の読み込みを待っているモーション。予約しておき、読み込みが終わったらupdate()で開始する
+    private volatile AMotion soundWaitMotion = null; // タッチのイベントから設定する。他は先に設定する
+    private String soundWaitPath = null;
+    private int soundWaitPriority = 0;
+    private long soundWaitDeadlineMSec = 0;
+    private final L2DExpressionMixer expressionMixer = new L2DExpressionMixer(); // 重ねて表示する表情
+    private volatile String pendingExpression = null; // 読み込みを待っている表情
+    private final HashMap<String, Float> pendingExpressionWeights = new HashMap<>(); // 読み込みを待っている重ねる表情
+    //  パラメータの配信
+    private ParamBroadcaster paramBroadcaster = null; // 更新後のパラメータの配信先
+    private IParamSource paramSource = null;          // 計算の代わりにパラメータを受け取る
 
     LAppModel() {
         super();
@@ -60,34 +105,100 @@ public final class LAppModel extends L2DBaseModel {
     }
 
     public final void release() {
+        PlatformManager pm = (PlatformManager) Live2DFramework.getPlatformManager();
+        if (pendingTextures != null) {
+            // 転送していないもの
+            for (int i = uploadedTextureNum; i < pendingTextures.length; i++) {
+                if (pendingTextures[i] != null)
+                    pendingTextures[i].release();
+            }
+            pendingTextures = null;
+        }
+        if (fullTextureFutures != null) {
+            // 差し替えていないもの
+            for (Future<TextureData> f : fullTextureFutures) {
+                if (f == null || f.cancel(false))
+                    continue;
+                try {
+                    TextureData data = f.get(); // 展開済み
+                    if (data != null)
+                        data.release();
+                } catch (InterruptedException | ExecutionException | CancellationException e) {
+                    // 展開していない
+                }
+            }
+            fullTextureFutures = null;
+        }
+        textureTier = TEXTURE_TIER_NONE;
+        releaseSounds(pm);
+        soundWaitMotion = null;
+        releaseSharedAssets();
         if (live2DModel == null)
             return;
+        if (textureKeys != null) {
+            for (int i = 0; i < textureKeys.length; i++) {
+                if (textureKeys[i] == 0)
+                    continue;
+                ((Live2DModelAndroid) live2DModel).setTexture(i, 0); // deleteTextures()で削除しない
+                pm.releaseTexture(textureKeys[i]);
+            }
+            textureKeys = null;
+        }
         live2DModel.deleteTextures();
     }
 
     /*
-     * モデルを初期化する
+     * モデルを初期化する。すべてGLスレッドで行う。
      * @param gl
      * @throws Exception
      */
     public final void load(@NotNull Context applicationContext, GL10 gl, @NotNull String modelSettingPath) {
+        prepare(applicationContext, modelSettingPath);
+        upload(gl, Long.MAX_VALUE);
+    }
+
+    /*
+     * GLを使わない読み込みを行う。読み込みスレッドから呼ぶ。
+     * ファイルの読み込み、解析、テクスチャの展開まで行い、テクスチャの転送はupload()で行う。
+     * @param applicationContext
+     * @param modelSettingPath
+     */
+    public final void prepare(@NotNull Context applicationContext, @NotNull String modelSettingPath) {
+        prepare(applicationContext, modelSettingPath, false);
+    }
+
+    /*
+     * GLを使わない読み込みを行う。
+     * @param applicationContext
+     * @param modelSettingPath
+     * @param background trueのとき、テクスチャも呼び出したスレッドで1枚ずつ展開する。
+     *                   先読みなど、呼び出したスレッドの優先度のまま描画の邪魔をせずに読み込む場合に使う。
+     *                   割り込まれたら中断する
+     */
+    public final void prepare(@NotNull Context applicationContext, @NotNull String modelSettingPath, boolean background) {
         updating = true;
         initialized = false;
 
+        this.modelSettingPath = modelSettingPath;
         modelHomeDir = modelSettingPath.substring(0, modelSettingPath.lastIndexOf("/") + 1); //live2d/model/xxx/
         PlatformManager pm = (PlatformManager) Live2DFramework.getPlatformManager();
-        pm.setGL(gl);
+        int loadCount = pm.getLoadCount();
+        long loadNanos = pm.getLoadNanos();
+        L2DLoadProfiler p = new L2DLoadProfiler(modelSettingPath);
+        profiler = p;
+        p.start();
+        loadStartNanos = System.nanoTime();
+        textureTier = TEXTURE_TIER_NONE;
+        Arrays.fill(textureTierNanos, 0);
 
         if (LAppDefine.DEBUG_LOG)
             Log.d(TAG, "json: " + modelSettingPath);
 
-        try {
-            InputStream in = FileManager.open(applicationContext, modelSettingPath);
-            modelSetting = new ModelSettingJson(in);
-            in.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        int mark = p.begin();
+        modelSetting = pm.loadModelSetting(applicationContext, modelSettingPath);
+        p.end(mark, L2DLoadProfiler.PHASE_SETTING, modelSettingPath);
+        if (modelSetting == null)
+            throw new RuntimeException("Failed to load model setting: " + modelSettingPath);
 
         if (modelSetting.getModelName() != null) {
             TAG += "LAppModel " + modelSetting.getModelName(); // ログ用
@@ -97,20 +208,6 @@ public final class LAppModel extends L2DBaseModel {
             Log.d(TAG, "Load model.");
 
         loadModelData(applicationContext, modelHomeDir + modelSetting.getModelFile());
-        String[] texPaths = modelSetting.getTextureFiles();
-        for (int i = 0; i < texPaths.length; i++) {
-            loadTexture(applicationContext, i, modelHomeDir + texPaths[i]);
-        }
-        // 表情
-        String[] expressionNames = modelSetting.getExpressionNames();
-        String[] expressionPaths = modelSetting.getExpressionFiles();
-        for (int i = 0; i < expressionPaths.length; i++) {
-            loadExpression(applicationContext, expressionNames[i], modelHomeDir + expressionPaths[i]);
-        }
-        // 物理演算
-        loadPhysics(applicationContext, modelHomeDir + modelSetting.getPhysicsFile());
-        // パーツ切り替え
-        loadPose(applicationContext, modelHomeDir + modelSetting.getPoseFile());
         // レイアウト
         HashMap<String, Float> layout = new HashMap<>();
         if (modelSetting.getLayout(layout)) {
@@ -135,12 +232,60 @@ public final class LAppModel extends L2DBaseModel {
             if (layout.get("right") != null)
                 modelMatrix.right(layout.get("right"));
         }
-
-        // Sound
-        String[] soundPaths = modelSetting.getSoundPaths();
-        for (String path : soundPaths) {
-            SoundManager.load(applicationContext, modelHomeDir + path);
+        // テクスチャは並列で展開し、その間に他のファイルを読み込む
+        // 大きさの上限はレイアウトした画面上の大きさから決める
+        // 同じ内容、同じ上限のテクスチャを他のモデルが転送済みの場合は、それを使うので展開しない
+        String[] texPaths = modelSetting.getTextureFiles();
+        textureSize = pm.getTextureSize(applicationContext, getLogicalSize());
+        nextTextureSize = textureSize;
+        textureHashes = new long[texPaths.length];
+        textureKeys = new long[texPaths.length];
+        textureIds = new int[texPaths.length];
+        textureSlotBytes = new long[texPaths.length];
+        textureFullSizes = new int[texPaths.length];
+        previewTextures = new boolean[texPaths.length];
+        for (int i = 0; i < texPaths.length; i++) {
+            textureHashes[i] = pm.getContentHash(applicationContext, modelHomeDir + texPaths[i]);
+            if (textureHashes[i] == 0)
+                continue;
+            long key = PlatformManager.getTextureKey(textureHashes[i], textureSize);
+            textureIds[i] = pm.acquireTexture(key);
+            if (textureIds[i] != 0)
+                textureKeys[i] = key;
         }
+        // 段階的に表示する場合は、縮小したものをすべて先に展開し、元の大きさのものは表示してから差し替える
+        boolean progressive = LAppDefine.PROGRESSIVE_TEXTURE && !background;
+        @SuppressWarnings("unchecked")
+        Future<TextureData>[] textureFutures = new Future[texPaths.length];
+        @SuppressWarnings("unchecked")
+        Future<TextureData>[] fullFutures = new Future[texPaths.length];
+        for (int i = 0; i < texPaths.length && !background; i++) {
+            if (textureKeys[i] != 0)
+                continue;
+            if (progressive)
+                textureFutures[i] = pm.decodeTexturePreviewAsync(applicationContext, modelHomeDir + texPaths[i], LAppDefine.TEXTURE_PREVIEW_SIZE, p);
+            else
+                textureFutures[i] = pm.decodeTextureAsync(applicationContext, modelHomeDir + texPaths[i], p);
+        }
+        for (int i = 0; i < texPaths.length && progressive; i++) {
+            if (textureKeys[i] == 0)
+                fullFutures[i] = pm.decodeTextureAsync(applicationContext, modelHomeDir + texPaths[i], p);
+        }
+        // 表情。ファイルは初めて使うときに読み込む
+        String[] expressionNames = modelSetting.getExpressionNames();
+        String[] expressionPaths = modelSetting.getExpressionFiles();
+        for (int i = 0; i < expressionPaths.length; i++) {
+            registerExpression(expressionNames[i], modelHomeDir + expressionPaths[i]);
+        }
+        // 物理演算とパーツ切り替え。無いモデルもある。表示した後に使い始める
+        String physicsFile = modelSetting.getPhysicsFile();
+        String poseFile = modelSetting.getPoseFile();
+        requestPhysicsAndPose(applicationContext,
+                physicsFile == null ? null : modelHomeDir + physicsFile,
+                poseFile == null ? null : modelHomeDir + poseFile);
+        // Sound
+        // 登録用のスレッドで登録し、終わるのを待たない。読み込み中の音声のモーションはstartMotion()で待つ
+        loadSoundsAsync(applicationContext, pm, modelHomeDir, modelSetting.getSoundPaths(), p);
 
         // 初期パラメータ
         for (int i = 0; i < modelSetting.getInitParamNum(); i++) {
@@ -158,17 +303,395 @@ public final class LAppModel extends L2DBaseModel {
         // 自動目パチ
         eyeBlink = new L2DEyeBlink();
 
+        // 展開を待つ。転送は番号順に行う
+        TextureData[] textures = new TextureData[texPaths.length];
+        try {
+            for (int i = 0; i < texPaths.length; i++) {
+                if (textureKeys[i] != 0)
+                    continue;
+                if (background) {
+                    if (Thread.interrupted())
+                        throw new InterruptedException();
+                    mark = p.begin();
+                    textures[i] = pm.decodeTexture(applicationContext, modelHomeDir + texPaths[i]);
+                    p.end(mark, L2DLoadProfiler.PHASE_TEXTURE_DECODE, modelHomeDir + texPaths[i]);
+                } else {
+                    textures[i] = textureFutures[i].get();
+                    if (textures[i] == null && fullFutures[i] != null) {
+                        // 縮小できなかったものは元の大きさを待つ
+                        textures[i] = fullFutures[i].get();
+                        fullFutures[i] = null;
+                    }
+                }
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            for (Future<TextureData> f : textureFutures) {
+                if (f != null)
+                    f.cancel(true); // 残りは展開しない
+            }
+            for (Future<TextureData> f : fullFutures) {
+                if (f != null)
+                    f.cancel(true);
+            }
+            for (TextureData data : textures) {
+                if (data != null)
+                    data.release();
+            }
+            for (int i = 0; i < texPaths.length; i++) {
+                if (textureKeys[i] != 0)
+                    pm.releaseTexture(textureKeys[i]);
+            }
+            textureKeys = null;
+            // 登録を始めた音声、共有しているモーション
+            releaseSounds(pm);
+            releaseSharedAssets();
+            throw new RuntimeException("Failed to decode texture.", e);
+        }
+        pendingTextures = textures;
+        uploadedTextureNum = 0;
+        fullTextureFutures = null;
+        textureBytes = 0; // 他のモデルが転送したテクスチャは含まない。縮小したものは差し替えたときに合わせる
+        for (int i = 0; i < texPaths.length; i++) {
+            if (textures[i] == null)
+                continue;
+            textureSlotBytes[i] = textures[i].getUploadByteSize(textureSize);
+            textureBytes += textureSlotBytes[i];
+            if (fullFutures[i] != null) {
+                previewTextures[i] = true;
+                fullTextureFutures = fullFutures;
+            }
+        }
+
+        if (LAppDefine.DEBUG_LOG) {
+            // ファイルを開いて読み込むまでの時間（バンドルの有無の比較用）
+            Log.d(TAG, "Open files: " + (pm.getLoadCount() - loadCount) + " files " + (pm.getLoadNanos() - loadNanos) / 1000 + "us"
+                    + (pm instanceof BundlePlatformManager ? " (bundle)" : ""));
+        }
+    }
+
+    /*
+     * 登録した音声を解放する。登録中のものは残りを登録せず、登録が終わったものはその場で解放される
+     * @param pm
+     */
+    private void releaseSounds(PlatformManager pm) {
+        if (soundFuture != null) {
+            soundFuture.cancel(false); // 登録中のものは残りを登録しない
+            soundFuture = null;
+        }
+        synchronized (loadedSoundPaths) {
+            soundsReleased = true;
+            for (String path : loadedSoundPaths) {
+                pm.releaseSound(path);
+            }
+            loadedSoundPaths.clear();
+        }
+    }
+
+    private void loadSoundsAsync(final Context applicationContext, final PlatformManager pm, final String homeDir,
+                                 final String[] soundPaths, final L2DLoadProfiler p) {
+        synchronized (loadedSoundPaths) {
+            soundsReleased = false;
+        }
+        if (soundPaths.length == 0)
+            return;
+        soundFuture = pm.getSoundLoader().submit(new Runnable() {
+            @Override
+            public void run() {
+                for (String path : soundPaths) {
+                    int mark = p.begin();
+                    pm.loadSound(applicationContext, homeDir + path);
+                    p.end(mark, L2DLoadProfiler.PHASE_SOUND, homeDir + path);
+                    synchronized (loadedSoundPaths) {
+                        if (soundsReleased) {
+                            pm.releaseSound(homeDir + path); // 登録中にrelease()された
+                            return;
+                        }
+                        loadedSoundPaths.add(homeDir + path);
+                    }
+                }
+            }
+        });
+    }
+
+    /*
+     * 音声の読み込みが終わっていない。登録前のものを含む
+     * @param path
+     * @return
+     */
+    private boolean isSoundLoading(String path) {
+        int state = SoundManager.getState(path);
+        if (state == SoundManager.SOUND_LOADING)
+            return true;
+        Future<?> f = soundFuture;
+        return state == SoundManager.SOUND_NONE && f != null && !f.isDone();
+    }
+
+    /*
+     * prepare()で展開したテクスチャを転送する。GLスレッドから呼ぶ。
+     * 1枚転送するごとに時間を確認し、budgetNanosを過ぎたら次のフレームに回す。少なくとも1枚は転送する。
+     * @param gl
+     * @param budgetNanos
+     * @return すべて転送して初期化が完了したらtrue
+     */
+    public final boolean upload(GL10 gl, long budgetNanos) {
+        if (initialized)
+            return true;
+        PlatformManager pm = (PlatformManager) Live2DFramework.getPlatformManager();
+        pm.setGL(gl);
+        // 描画する前に解放しても、deleteTextures()で転送したテクスチャを削除できるように
+        ((Live2DModelAndroid) live2DModel).setGL(gl);
+
+        long start = System.nanoTime();
+        while (uploadedTextureNum < pendingTextures.length) {
+            int no = uploadedTextureNum;
+            TextureData data = pendingTextures[no];
+            pendingTextures[no] = null;
+            uploadedTextureNum++;
+            if (textureKeys[no] != 0) {
+                ((Live2DModelAndroid) live2DModel).setTexture(no, textureIds[no]);
+            } else if (data != null) {
+                uploadTexture(gl, pm, no, data, previewTextures[no]);
+            }
+            if (System.nanoTime() - start >= budgetNanos)
+                break;
+        }
+        if (uploadedTextureNum < pendingTextures.length)
+            return false;
+
+        pendingTextures = null;
         updating = false;// 更新状態の完了
         initialized = true;// 初期化完了
+
+        profiler.finish();
+        Log.i(TAG, "Loaded " + profiler.getSummary());
+        if (LAppDefine.DEBUG_LOG)
+            Log.d(TAG, profiler.getReport());
+        setTextureTier(fullTextureFutures != null ? TEXTURE_TIER_PREVIEW : TEXTURE_TIER_FULL);
+        return true;
+    }
+
+    /*
+     * テクスチャを大きさの上限までにして転送し、モデルに設定する。
+     * 元の画像から展開したもので、内容のハッシュが分かるものは共有する。
+     * 前に設定していたものは呼び出し側で解放する。
+     * @param gl
+     * @param pm
+     * @param no
+     * @param data 解放される
+     * @param preview 縮小したもの。共有しない
+     */
+    private void uploadTexture(GL10 gl, PlatformManager pm, int no, TextureData data, boolean preview) {
+        int mark = profiler.begin();
+        long bytes = data.getUploadByteSize(textureSize);
+        if (!preview)
+            textureFullSizes[no] = Math.max(data.getWidth(), data.getHeight());
+        if (textureHashes[no] != 0 && !preview) {
+            textureKeys[no] = PlatformManager.getTextureKey(textureHashes[no], textureSize);
+            textureIds[no] = pm.uploadSharedTexture(gl, textureKeys[no], data, textureSize);
+            ((Live2DModelAndroid) live2DModel).setTexture(no, textureIds[no]);
+        } else {
+            textureKeys[no] = 0;
+            textureIds[no] = pm.uploadTexture(gl, live2DModel, no, data, textureSize);
+        }
+        previewTextures[no] = preview;
+        textureBytes += bytes - textureSlotBytes[no];
+        textureSlotBytes[no] = bytes;
+        profiler.end(mark, L2DLoadProfiler.PHASE_TEXTURE_UPLOAD, modelHomeDir + modelSetting.getTextureFile(no));
+    }
+
+    /*
+     * 差し替えた後の前のテクスチャを解放する
+     * @param gl
+     * @param pm
+     * @param glTexNo
+     * @param key 共有しているもののキー。0は自分で転送したもの
+     */
+    private static void releaseTexture(GL10 gl, PlatformManager pm, int glTexNo, long key) {
+        if (key != 0)
+            pm.releaseTexture(key);
+        else if (glTexNo != 0)
+            gl.glDeleteTextures(1, new int[]{glTexNo}, 0);
+    }
+
+    /*
+     * 縮小して表示しているテクスチャ、大きさを合わせ直すテクスチャを、展開が終わったものから差し替える。GLスレッドから毎フレーム呼ぶ。
+     * 1枚差し替えるごとに時間を確認し、budgetNanosを過ぎたら次のフレームに回す。少なくとも1枚は差し替える。
+     * 展開に失敗したものは、前のものを使い続ける。
+     * @param gl
+     * @param budgetNanos
+     * @return 差し替えが終わったらtrue
+     */
+    public final boolean streamTextures(GL10 gl, long budgetNanos) {
+        if (fullTextureFutures == null)
+            return true;
+        if (!initialized)
+            return false;
+        PlatformManager pm = (PlatformManager) Live2DFramework.getPlatformManager();
+
+        long start = System.nanoTime();
+        boolean completed = true;
+        for (int no = 0; no < fullTextureFutures.length; no++) {
+            Future<TextureData> f = fullTextureFutures[no];
+            if (f == null)
+                continue;
+            if (!f.isDone() || System.nanoTime() - start >= budgetNanos) {
+                completed = false;
+                continue;
+            }
+            fullTextureFutures[no] = null;
+            TextureData data;
+            try {
+                data = f.get();
+            } catch (InterruptedException | ExecutionException e) {
+                Log.w(TAG, "Failed to decode texture.", e);
+                continue;
+            }
+            if (data == null)
+                continue;
+            int oldId = textureIds[no];
+            long oldKey = textureKeys[no];
+            uploadTexture(gl, pm, no, data, false); // 前のものと入れ替わる
+            releaseTexture(gl, pm, oldId, oldKey);
+        }
+        if (!completed)
+            return false;
+
+        fullTextureFutures = null;
+        int tier = TEXTURE_TIER_FULL;
+        for (boolean preview : previewTextures) {
+            if (preview)
+                tier = TEXTURE_TIER_PREVIEW; // 差し替えられなかったもの
+        }
+        if (tier != textureTier)
+            setTextureTier(tier);
+        return true;
+    }
+
+    /*
+     * 画面上の大きさが変わったら、テクスチャの大きさの上限を合わせ直す。拡大縮小に合わせてGLスレッドから毎フレーム呼ぶ。
+     * 変わった上限がTEXTURE_TIER_DELAY_MSEC続いたら、元の画像から展開し直してstreamTextures()で差し替える。
+     * 転送するレベルが変わらないもの、他のモデルが同じ上限で転送済みのものは展開しない。
+     * @param applicationContext
+     * @param gl
+     */
+    public final void updateTextureSize(@NotNull Context applicationContext, GL10 gl) {
+        if (!LAppDefine.TEXTURE_TIERING || !initialized || fullTextureFutures != null)
+            return;
+        PlatformManager pm = (PlatformManager) Live2DFramework.getPlatformManager();
+        int size = pm.getTextureSize(applicationContext, getLogicalSize());
+        long now = UtSystem.getUserTimeMSec();
+        if (size != nextTextureSize) {
+            nextTextureSize = size;
+            nextTextureSizeMSec = now;
+            return;
+        }
+        if (size == textureSize || now - nextTextureSizeMSec < LAppDefine.TEXTURE_TIER_DELAY_MSEC)
+            return;
+
+        if (LAppDefine.DEBUG_LOG)
+            Log.d(TAG, "Texture size: " + textureSize + " -> " + size);
+        int oldSize = textureSize;
+        textureSize = size;
+        @SuppressWarnings("unchecked")
+        Future<TextureData>[] futures = new Future[textureIds.length];
+        boolean decoding = false;
+        for (int no = 0; no < textureIds.length; no++) {
+            int fullSize = textureFullSizes[no];
+            if (fullSize != 0 && fitTextureSize(fullSize, oldSize) == fitTextureSize(fullSize, size))
+                continue; // 転送するレベルは変わらない
+            if (textureHashes[no] != 0) {
+                long key = PlatformManager.getTextureKey(textureHashes[no], size);
+                int shared = pm.acquireTexture(key);
+                if (shared != 0) {
+                    int oldId = textureIds[no];
+                    long oldKey = textureKeys[no];
+                    textureIds[no] = shared;
+                    textureKeys[no] = key;
+                    ((Live2DModelAndroid) live2DModel).setTexture(no, shared);
+                    textureBytes -= textureSlotBytes[no];
+                    textureSlotBytes[no] = 0;
+                    releaseTexture(gl, pm, oldId, oldKey);
+                    continue;
+                }
+            }
+            futures[no] = pm.decodeTextureAsync(applicationContext, modelHomeDir + modelSetting.getTextureFile(no), profiler);
+            decoding = true;
+        }
+        if (decoding)
+            fullTextureFutures = futures;
+    }
+
+    /*
+     * 幅と高さの大きい方がfullSizeのテクスチャを、上限までにしたときの大きさ
+     * @param fullSize
+     * @param maxSize 0は制限しない
+     * @return
+     */
+    private static int fitTextureSize(int fullSize, int maxSize) {
+        while (maxSize > 0 && fullSize > maxSize && fullSize > 1) {
+            fullSize /= 2;
+        }
+        return fullSize;
+    }
+
+    /*
+     * 論理座標上のモデルの大きさ（幅と高さの大きい方）
+     * @return
+     */
+    private float getLogicalSize() {
+        float w = Math.abs(modelMatrix.getScaleX()) * live2DModel.getCanvasWidth();
+        float h = Math.abs(modelMatrix.getScaleY()) * live2DModel.getCanvasHeight();
+        return Math.max(w, h);
+    }
+
+    /*
+     * テクスチャの大きさの上限
+     * @return 0は制限しない
+     */
+    public final int getTextureSize() {
+        return textureSize;
+    }
+
+    private void setTextureTier(int tier) {
+        textureTier = tier;
+        textureTierNanos[tier] = System.nanoTime() - loadStartNanos;
+        if (tier == TEXTURE_TIER_FULL && textureTierNanos[TEXTURE_TIER_PREVIEW] != 0)
+            Log.i(TAG, String.format(Locale.US, "Texture tier: preview %.1fms full %.1fms",
+                    textureTierNanos[TEXTURE_TIER_PREVIEW] / 1e6, textureTierNanos[TEXTURE_TIER_FULL] / 1e6));
+    }
+
+    /*
+     * テクスチャの段階
+     * @return TEXTURE_TIER_NONEなど
+     */
+    public final int getTextureTier() {
+        return textureTier;
+    }
+
+    /*
+     * 読み込みを開始してから、テクスチャがその段階になるまでの時間
+     * @param tier TEXTURE_TIER_PREVIEWなど
+     * @return まだなっていない場合は0
+     */
+    public final long getTextureTierNanos(int tier) {
+        return tier <= textureTier ? textureTierNanos[tier] : 0;
+    }
+
+    /*
+     * 元の大きさのテクスチャへの差し替えが残っているか
+     * @return
+     */
+    public final boolean isStreamingTextures() {
+        return fullTextureFutures != null;
     }
 
     public final void preloadMotionGroup(@NotNull Context applicationContext, String name) {
-        int len = modelSetting.getMotionNum(name);
+        int group = modelSetting.getMotionGroupId(name);
+        int len = modelSetting.getMotionNum(group);
         for (int i = 0; i < len; i++) {
-            String fileName = modelSetting.getMotionFile(name, i);
-            AMotion motion = loadMotion(applicationContext, fileName, modelHomeDir + fileName);
-            motion.setFadeIn(modelSetting.getMotionFadeIn(name, i));
-            motion.setFadeOut(modelSetting.getMotionFadeOut(name, i));
+            String fileName = modelSetting.getMotionFile(group, i);
+            loadMotion(applicationContext, fileName, modelHomeDir + fileName,
+                    modelSetting.getMotionFadeIn(group, i), modelSetting.getMotionFadeOut(group, i));
         }
     }
 
@@ -178,11 +701,22 @@ public final class LAppModel extends L2DBaseModel {
                 Log.d(TAG, "Failed to update.");
             return;
         }
+        attachLoadedAssets(); // 読み込みが終わった物理演算とポーズ
+
+        if (paramSource != null) {
+            // 配信されたパラメータをそのまま表示する
+            if (paramSource.applyTo(live2DModel) && pose != null)
+                pose.updateParam(live2DModel);
+            live2DModel.update();
+            return;
+        }
 
         long timeMSec = UtSystem.getUserTimeMSec() - startTimeMSec;
         double timeSec = timeMSec / 1000.0;
         double t = timeSec * 2 * Math.PI;
 
+        updateSoundWaitMotion(); // 音声の読み込みを待っていたモーション
+
         // 待機モーション判定
         if (mainMotionManager.isFinished()) {
             // モーションの再生がない場合、待機モーションの中からランダムで再生する
@@ -196,6 +730,7 @@ public final class LAppModel extends L2DBaseModel {
         }
         live2DModel.saveParam();// 状態を保存
 
+        updatePendingExpressions(); // 読み込みが終わった表情を開始
         if (expressionManager != null)
             expressionManager.updateParam(live2DModel); // 表情でパラメータ更新（相対変化）
 
@@ -235,6 +770,25 @@ public final class LAppModel extends L2DBaseModel {
             pose.updateParam(live2DModel);
 
         live2DModel.update();
+
+        if (paramBroadcaster != null)
+            paramBroadcaster.publish(live2DModel, timeMSec);
+    }
+
+    /*
+     * 更新後のパラメータを配信する
+     * @param broadcaster nullで配信をやめる
+     */
+    public final void setParamBroadcaster(ParamBroadcaster broadcaster) {
+        paramBroadcaster = broadcaster;
+    }
+
+    /*
+     * モーションや物理演算を計算せず、受け取ったパラメータで表示する
+     * @param source nullで通常の計算に戻す
+     */
+    public final void setParamSource(IParamSource source) {
+        paramSource = source;
     }
 
     /*
@@ -296,9 +850,12 @@ public final class LAppModel extends L2DBaseModel {
     }
 
     public final void startRandomMotion(@NotNull Context applicationContext, String name, int priority) {
-        int max = modelSetting.getMotionNum(name);
+        int group = modelSetting.getMotionGroupId(name);
+        int max = modelSetting.getMotionNum(group);
+        if (max == 0)
+            return;
         int no = (int) (Math.random() * max);
-        startMotion(applicationContext, name, no, priority);
+        startMotion(applicationContext, group, no, priority);
     }
 
     /*
@@ -308,8 +865,8 @@ public final class LAppModel extends L2DBaseModel {
      * 音声付きならそれも再生。
      * フェードイン、フェードアウトの情報があればここで設定。なければ初期値。
      */
-    private void startMotion(@NotNull Context applicationContext, String name, int no, int priority) {
-        String motionName = modelSetting.getMotionFile(name, no);
+    private void startMotion(@NotNull Context applicationContext, int group, int no, int priority) {
+        String motionName = modelSetting.getMotionFile(group, no);
 
         if (motionName == null || motionName.equals("")) {
             if (LAppDefine.DEBUG_LOG)
@@ -332,8 +889,10 @@ public final class LAppModel extends L2DBaseModel {
             return;
         }
 
+        // フェードイン、フェードアウトの設定ごとに共有する
         String motionPath = modelHomeDir + motionName;
-        motion = loadMotion(applicationContext, null, motionPath);
+        motion = loadMotion(applicationContext, null, motionPath,
+                modelSetting.getMotionFadeIn(group, no), modelSetting.getMotionFadeOut(group, no));
 
         if (motion == null) {
             Log.w(TAG, "Failed to load motion.");
@@ -341,48 +900,144 @@ public final class LAppModel extends L2DBaseModel {
             return;
         }
 
-        // フェードイン、フェードアウトの設定
-        motion.setFadeIn(modelSetting.getMotionFadeIn(name, no));
-        motion.setFadeOut(modelSetting.getMotionFadeOut(name, no));
-
         if (LAppDefine.DEBUG_LOG)
             Log.d(TAG, "Start motion: " + motionName);
 
         // 音声が無いモーションは即時再生を開始します。
-        if (modelSetting.getMotionSound(name, no) == null) {
+        soundWaitMotion = null; // 待っていたモーションより後のものを優先
+        String soundName = modelSetting.getMotionSound(group, no);
+        if (soundName == null) {
             mainMotionManager.startMotionPrio(motion, priority);
         } else { // 音声があるモーションは音声のロードを待って次のフレーム以降に再生を開始します。
-            String soundName = modelSetting.getMotionSound(name, no);
             String soundPath = modelHomeDir + soundName;
 
             if (LAppDefine.DEBUG_LOG)
                 Log.d(TAG, "sound : " + soundName);
 
+            if (isSoundLoading(soundPath)) {
+                // 予約したまま、SOUND_WAIT_MSECまで待つ
+                soundWaitPath = soundPath;
+                soundWaitPriority = priority;
+                soundWaitDeadlineMSec = UtSystem.getUserTimeMSec() + LAppDefine.SOUND_WAIT_MSEC;
+                soundWaitMotion = motion;
+                return;
+            }
             SoundManager.play(soundPath);
             mainMotionManager.startMotionPrio(motion, priority);
         }
     }
 
     /*
-     * 表情を設定する
-     * @param motion
+     * 音声の読み込みを待っていたモーションを、読み込みが終わったら音声と一緒に開始する。
+     * SOUND_WAIT_MSECを過ぎたら音声なしで開始する。
      */
-    public final void setExpression(String name) {
-        if (!expressions.containsKey(name))
+    private void updateSoundWaitMotion() {
+        AMotion motion = soundWaitMotion;
+        if (motion == null)
+            return;
+        boolean loading = isSoundLoading(soundWaitPath);
+        if (loading && UtSystem.getUserTimeMSec() < soundWaitDeadlineMSec)
+            return;
+        soundWaitMotion = null;
+        if (loading)
+            Log.w(TAG, "Sound is not ready. Start motion without sound: " + soundWaitPath);
+        else
+            SoundManager.play(soundWaitPath);
+        mainMotionManager.startMotionPrio(motion, soundWaitPriority);
+    }
+
+    /*
+     * 表情を設定する。
+     * 読み込んでいない表情はバックグラウンドで読み込み、終わった後のupdate()で開始する。
+     * @param applicationContext
+     * @param name
+     */
+    public final void setExpression(@NotNull Context applicationContext, String name) {
+        if (!expressionFiles.containsKey(name))
             return; // 無効な指定ならなにもしない
         if (LAppDefine.DEBUG_LOG)
             Log.d(TAG, "Expression: " + name);
-        AMotion motion = expressions.get(name);
+        AMotion motion = requestExpression(applicationContext, name);
+        if (motion == null) {
+            pendingExpression = name; // 読み込み中
+            return;
+        }
+        pendingExpression = null;
+        startExpression(motion);
+    }
+
+    private void startExpression(AMotion motion) {
+        expressionMixer.clear(); // 重ねていた表情は使わない
         expressionManager.startMotion(motion, false);
     }
 
+    /*
+     * 表情を重みをつけて重ねる。
+     * 複数の表情を同時に表示できる。（例：笑顔0.6 + 照れ0.3）
+     * setExpression()を呼ぶと重ねていた表情はすべて外れる。
+     * @param applicationContext
+     * @param name
+     * @param weight 0で外す
+     */
+    public final void setExpressionWeight(@NotNull Context applicationContext, String name, float weight) {
+        if (!expressionFiles.containsKey(name))
+            return; // 無効な指定ならなにもしない
+        if (LAppDefine.DEBUG_LOG)
+            Log.d(TAG, "Expression: " + name + " weight: " + weight);
+        AMotion motion = requestExpression(applicationContext, name);
+        synchronized (pendingExpressionWeights) {
+            if (motion == null) {
+                pendingExpressionWeights.put(name, weight); // 読み込み中
+                return;
+            }
+            pendingExpressionWeights.remove(name);
+        }
+        applyExpressionWeight(motion, weight);
+    }
+
+    private void applyExpressionWeight(AMotion motion, float weight) {
+        if (!(motion instanceof L2DExpressionMotion))
+            return;
+        expressionMixer.setWeight((L2DExpressionMotion) motion, weight);
+        expressionMixer.start(expressionManager); // 再生中ならそのまま重みが変わる
+    }
+
+    /*
+     * 読み込みを待っていた表情を開始する。GLスレッドから呼ぶ。
+     */
+    private void updatePendingExpressions() {
+        String name = pendingExpression;
+        if (name != null) {
+            AMotion motion = expressions.get(name);
+            if (motion != null) {
+                pendingExpression = null;
+                startExpression(motion);
+            }
+        }
+
+        synchronized (pendingExpressionWeights) {
+            if (pendingExpressionWeights.isEmpty())
+                return;
+            Iterator<Map.Entry<String, Float>> it = pendingExpressionWeights.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Float> e = it.next();
+                AMotion motion = expressions.get(e.getKey());
+                if (motion != null) {
+                    applyExpressionWeight(motion, e.getValue());
+                    it.remove();
+                }
+            }
+        }
+    }
+
     /*
      * 表情をランダムに切り替える
+     * @param applicationContext
      */
-    public final void setRandomExpression() {
-        int no = (int) (Math.random() * expressions.size());
-        String[] keys = expressions.keySet().toArray(new String[expressions.size()]);
-        setExpression(keys[no]);
+    public final void setRandomExpression(@NotNull Context applicationContext) {
+        int no = (int) (Math.random() * expressionFiles.size());
+        String[] keys = expressionFiles.keySet().toArray(new String[expressionFiles.size()]);
+        setExpression(applicationContext, keys[no]);
     }
 
     public final void draw(GL10 gl) {
@@ -451,17 +1106,57 @@ public final class LAppModel extends L2DBaseModel {
             return false; // 透明時は当たり判定なし。
         if (modelSetting == null)
             return false;
-        int len = modelSetting.getHitAreasNum();
-        for (int i = 0; i < len; i++) {
-            if (id.equals(modelSetting.getHitAreaName(i))) {
-                return hitTestSimple(modelSetting.getHitAreaID(i), testX, testY);
-            }
-        }
-        return false; // 存在しない場合はfalse
+        String drawID = modelSetting.getHitAreaIDByName(id);
+        if (drawID == null)
+            return false; // 存在しない場合はfalse
+        return hitTestSimple(drawID, testX, testY);
     }
 
     public final void feedIn() {
         alpha = 0;
         accAlpha = 0.1f;
     }
+
+    public final String getModelSettingPath() {
+        return modelSettingPath;
+    }
+
+    /*
+     * 保持しているメモリの大きさの目安。
+     * テクスチャ（ミップマップを含む）の大きさで、mocやモーションはこれより十分小さいので含めない。
+     * @return
+     */
+    public final long getResidentBytes() {
+        return textureBytes;
+    }
+
+    /*
+     * 表示をやめる。テクスチャなどは解放せずに残し、activate()で続きから表示できる。
+     * 再生中のモーション、表情は止め、物理演算の時間を止める。
+     */
+    public final void deactivate() {
+        mainMotionManager.stopAllMotions();
+        expressionManager.stopAllMotions();
+        expressionMixer.clear();
+        pendingExpression = null;
+        synchronized (pendingExpressionWeights) {
+            pendingExpressionWeights.clear();
+        }
+        paramBroadcaster = null;
+        paramSource = null;
+        if (physics != null)
+            physics.pause();
+    }
+
+    /*
+     * deactivate()したモデルを再び表示する。読み込み直しは行わない。
+     */
+    public final void activate() {
+        if (physics != null)
+            physics.resume();
+        if (pose != null)
+            pose.reset();
+        setDrag(0, 0);
+        setAcceleration(0, 0, 0);
+    }
 }
\ No newline at end of file
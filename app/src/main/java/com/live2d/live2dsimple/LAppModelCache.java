@@ -0,0 +1,119 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+ */
+package com.live2d.live2dsimple;
+
+import android.util.Log;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * 表示しなくなったモデルを解放せずに残しておくキャッシュ。
+ *
+ * モデルの設定ファイルのパスごとに保持し、同じモデルに戻ったときは読み込み直さずにそのまま使う。
+ * 合計の大きさがmaxBytesを超えたら、最も長く使っていないものから解放する。
+ * テクスチャを解放するので、GLスレッドから使う。
+ */
+final class LAppModelCache {
+    private static final String TAG = "LAppModelCache";
+    private final long maxBytes;
+    private final LinkedHashMap<String, LAppModel> models = new LinkedHashMap<>(8, 0.75f, true); // 使った順
+    private long residentBytes = 0;
+    private int hitCount = 0;
+    private int missCount = 0;
+
+    LAppModelCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /*
+     * モデルを取り出す。取り出したモデルはキャッシュから外れる
+     * @param modelSettingPath
+     * @return 無い場合はnull
+     */
+    final LAppModel take(String modelSettingPath) {
+        LAppModel model = models.remove(modelSettingPath);
+        if (model == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        residentBytes -= model.getResidentBytes();
+        return model;
+    }
+
+    /*
+     * モデルを追加する。止めてから渡すこと（LAppModel.deactivate()）
+     * 大きさの上限を超えた分は古いものから解放する。
+     * テクスチャを差し替えている途中のものは残さない。
+     * @param model
+     */
+    final void put(LAppModel model) {
+        String path = model.getModelSettingPath();
+        if (path == null || !model.isInitialized() || model.isStreamingTextures() || model.getResidentBytes() > maxBytes) {
+            model.release();
+            return;
+        }
+        LAppModel old = models.put(path, model);
+        if (old != null) {
+            residentBytes -= old.getResidentBytes();
+            old.release();
+        }
+        residentBytes += model.getResidentBytes();
+        trim(maxBytes);
+    }
+
+    /*
+     * 合計がbytes以下になるまで古いものから解放する
+     * @param bytes
+     */
+    final void trim(long bytes) {
+        Iterator<Map.Entry<String, LAppModel>> it = models.entrySet().iterator();
+        while (residentBytes > bytes && it.hasNext()) {
+            LAppModel model = it.next().getValue();
+            it.remove();
+            residentBytes -= model.getResidentBytes();
+            model.release();
+            if (LAppDefine.DEBUG_LOG)
+                Log.d(TAG, "Evict: " + model.getModelSettingPath());
+        }
+    }
+
+    final boolean contains(String modelSettingPath) {
+        return models.containsKey(modelSettingPath);
+    }
+
+    final int size() {
+        return models.size();
+    }
+
+    /*
+     * キャッシュにあるモデルの大きさの合計
+     * @return
+     */
+    final long getResidentBytes() {
+        return residentBytes;
+    }
+
+    final int getHitCount() {
+        return hitCount;
+    }
+
+    final int getMissCount() {
+        return missCount;
+    }
+
+    /*
+     * take()でモデルが見つかった割合
+     * @return 0から1。まだ使っていない場合は0
+     */
+    final float getHitRate() {
+        int total = hitCount + missCount;
+        return total == 0 ? 0 : (float) hitCount / total;
+    }
+}
\ No newline at end of file
@@ -8,17 +8,21 @@ package com.live2d.live2dsimple;
 
 import android.content.Context;
 import android.opengl.GLSurfaceView;
+import android.util.Log;
+import jp.live2d.framework.L2DLoadProfiler;
 import jp.live2d.framework.L2DViewMatrix;
-import jp.live2d.utils.android.FileManager;
+import jp.live2d.framework.Live2DFramework;
+import jp.live2d.utils.android.LoadUtil;
 import jp.live2d.utils.android.OffscreenImage;
 import jp.live2d.utils.android.SimpleImage;
+import jp.live2d.utils.android.TextureData;
 import org.jetbrains.annotations.NotNull;
 
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
-import java.io.IOException;
-import java.io.InputStream;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /*
  * LAppRendererはモデル描画と、そのためのOpenGL命令を集約したクラスです。
@@ -27,11 +31,15 @@ import java.util.Objects;
 public final class LAppRenderer implements GLSurfaceView.Renderer {
     private LAppLive2DManager delegate;
     private SimpleImage bg; // 背景の描画
+    private Future<TextureData> bgFuture; // 起動時に展開を始めた背景。GLスレッドでは転送だけ行う
     private float accelerationX = 0;
     private float accelerationY = 0;
 
     LAppRenderer(LAppLive2DManager live2DMgr) {
         this.delegate = live2DMgr;
+        PlatformManager pm = (PlatformManager) Live2DFramework.getPlatformManager();
+        bgFuture = pm.decodeTextureAsync(live2DMgr.getApplicationContext(), LAppDefine.BACK_IMAGE_NAME,
+                new L2DLoadProfiler(LAppDefine.BACK_IMAGE_NAME));
     }
 
     /*
@@ -39,8 +47,13 @@ public final class LAppRenderer implements GLSurfaceView.Renderer {
      */
     @Override
     public final void onSurfaceCreated(GL10 context, EGLConfig arg1) {
+        long t = StartupTrace.begin("onSurfaceCreated");
+        // 圧縮したテクスチャを使えるか
+        LoadUtil.checkCompressedTextureSupport(context);
+
         // 背景の作成
         setupBackground(delegate.getApplicationContext(), context);
+        StartupTrace.end("onSurfaceCreated", t);
     }
 
     /*
@@ -124,6 +137,7 @@ public final class LAppRenderer implements GLSurfaceView.Renderer {
                 if (Objects.requireNonNull(model).isInitialized() && !Objects.requireNonNull(model).isUpdating()) {
                     model.update(delegate.getApplicationContext());
                     model.draw(gl);
+                    StartupTrace.finish(); // 最初のモデルの表示
                 }
             }
         }
@@ -137,23 +151,34 @@ public final class LAppRenderer implements GLSurfaceView.Renderer {
 
     /*
      * 背景の設定
+     * 初めては起動時に展開を始めたものを転送する。コンテキストを作り直した場合は、ここで展開し直す
      * @param context
      */
     private void setupBackground(@NotNull Context context, GL10 gl) {
-        try {
-            InputStream in = FileManager.open(context, LAppDefine.BACK_IMAGE_NAME);
-            bg = new SimpleImage(gl, in);
-            // 描画範囲。画面の最大表示範囲に合わせる
-            bg.setDrawRect(
-                    LAppDefine.VIEW_LOGICAL_MAX_LEFT,
-                    LAppDefine.VIEW_LOGICAL_MAX_RIGHT,
-                    LAppDefine.VIEW_LOGICAL_MAX_BOTTOM,
-                    LAppDefine.VIEW_LOGICAL_MAX_TOP);
-
-            // 画像を使用する範囲(uv)
-            bg.setUVRect(0.0f, 1.0f, 0.0f, 1.0f);
-        } catch (IOException e) {
-            e.printStackTrace();
+        TextureData data = null;
+        if (bgFuture != null) {
+            try {
+                data = bgFuture.get();
+            } catch (InterruptedException | ExecutionException e) {
+                e.printStackTrace();
+            }
+            bgFuture = null;
+        }
+        if (data == null)
+            data = ((PlatformManager) Live2DFramework.getPlatformManager()).decodeTexture(context, LAppDefine.BACK_IMAGE_NAME);
+        if (data == null) {
+            Log.w("LAppRenderer", "Failed to load background: " + LAppDefine.BACK_IMAGE_NAME);
+            return;
         }
+        bg = new SimpleImage(gl, data);
+        // 描画範囲。画面の最大表示範囲に合わせる
+        bg.setDrawRect(
+                LAppDefine.VIEW_LOGICAL_MAX_LEFT,
+                LAppDefine.VIEW_LOGICAL_MAX_RIGHT,
+                LAppDefine.VIEW_LOGICAL_MAX_BOTTOM,
+                LAppDefine.VIEW_LOGICAL_MAX_TOP);
+
+        // 画像を使用する範囲(uv)
+        bg.setUVRect(0.0f, 1.0f, 0.0f, 1.0f);
     }
 }
\ No newline at end of file
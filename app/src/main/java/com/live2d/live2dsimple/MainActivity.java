@@ -16,12 +16,19 @@ public final class MainActivity extends Activity {
 
     @Override
     protected final void onCreate(Bundle savedInstanceState) {
+        StartupTrace.start();
+        long t = StartupTrace.begin("onCreate");
         super.onCreate(savedInstanceState);
         requestWindowFeature(Window.FEATURE_NO_TITLE);
-        // オブジェクトを初期化
+        // オブジェクトを初期化。Live2Dと音声の初期化、最初のモデルの読み込みはここから並行して始まる
+        long t2 = StartupTrace.begin("LAppLive2DManager");
         live2DMgr = new LAppLive2DManager(this.getApplicationContext());
+        StartupTrace.end("LAppLive2DManager", t2);
         // GUIを初期化
+        t2 = StartupTrace.begin("setupGUI");
         setupGUI();
+        StartupTrace.end("setupGUI", t2);
+        StartupTrace.end("onCreate", t);
     }
 
     @Override
@@ -42,12 +49,6 @@ public final class MainActivity extends Activity {
         live2DMgr.onResume();
     }
 
-    @Override
-    protected void onStart() {
-        super.onStart();
-        SoundManager.init();
-    }
-
     /*
      * GUIの初期化
      * activity_main.xmlからViewを作成し、そこにLive2Dを配置する
@@ -70,6 +71,7 @@ public final class MainActivity extends Activity {
     }
 
     private void exit() {
+        live2DMgr.onDestroy();
         SoundManager.release();
     }
 
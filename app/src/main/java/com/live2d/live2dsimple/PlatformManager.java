@@ -6,68 +6,535 @@
  */
 package com.live2d.live2dsimple;
 
+import android.app.ActivityManager;
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.util.Log;
 import jp.live2d.ALive2DModel;
 import jp.live2d.android.Live2DModelAndroid;
 import jp.live2d.framework.IPlatformManager;
+import jp.live2d.framework.L2DAssetStore;
+import jp.live2d.framework.L2DBufferInputStream;
+import jp.live2d.framework.L2DLoadProfiler;
+import jp.live2d.utils.android.AssetManifest;
 import jp.live2d.utils.android.FileManager;
 import jp.live2d.utils.android.LoadUtil;
+import jp.live2d.utils.android.ModelSettingCompiled;
+import jp.live2d.utils.android.ModelSettingJson;
+import jp.live2d.utils.android.SoundManager;
+import jp.live2d.utils.android.TextureCache;
+import jp.live2d.utils.android.TextureData;
 import org.jetbrains.annotations.NotNull;
 
 import javax.microedition.khronos.opengles.GL10;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
-public final class PlatformManager implements IPlatformManager {
+/*
+ * アセットを個別のファイルとして読み込む。
+ * BundlePlatformManagerはopenBuffer()とloadSound()を置き換えて、まとめたファイルから読み込む。
+ * 内容のハッシュが分かるファイルのテクスチャは、モデル間で共有する。
+ */
+public class PlatformManager implements IPlatformManager {
     private static final String TAG = "Live2D App";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String MODEL_SETTING_CACHE_DIR = "settings";
+    private static final String COMPRESSED_TEXTURE_EXTENSION = ".ktx"; // live2d-bundle.gradleのcompressLive2DTextures
     private GL10 gl;
+    private ExecutorService decodeExecutor = null; // テクスチャの展開用。スレッド数はコア数まで
+    private ExecutorService soundLoader = null;    // 音声の登録用
+    private TextureCache textureCache = null;
+    // 内容が同じテクスチャはモデル間で共有する。参照が無くなったものはGLスレッドで削除する
+    private final ArrayList<Integer> releasedTextures = new ArrayList<>();
+    private final L2DAssetStore<Integer> sharedTextures = new L2DAssetStore<>(new L2DAssetStore.Releaser<Integer>() {
+        @Override
+        public void release(Integer glTexNo) {
+            synchronized (releasedTextures) {
+                releasedTextures.add(glTexNo);
+            }
+        }
+    });
+    // テクスチャの大きさの段階
+    private volatile float screenScale = 0; // 論理座標の1あたりの画面の画素数。拡大率を含む
+    private int memoryMaxSize = -1;         // 端末のメモリによる上限。0は制限しない
+    // ファイルを開いて読み込むまでの時間の計測
+    private final AtomicInteger loadCount = new AtomicInteger();
+    private final AtomicLong loadNanos = new AtomicLong();
 
     @Override
     public final byte[] loadBytes(@NotNull Context applicationContext, String path) {
-        byte[] ret = null;
+        ByteBuffer buf = loadBuffer(applicationContext, path);
+        return buf == null ? null : L2DBufferInputStream.toBytes(buf);
+    }
+
+    @Override
+    public final ByteBuffer loadBuffer(@NotNull Context applicationContext, String path) {
+        long start = System.nanoTime();
+        ByteBuffer buf = openBuffer(applicationContext, path);
+        loadNanos.addAndGet(System.nanoTime() - start);
+        loadCount.incrementAndGet();
+        if (buf != null)
+            L2DLoadProfiler.countBytes(buf.remaining());
+        return buf;
+    }
+
+    /*
+     * ファイルを開いて読み込む
+     * @param applicationContext
+     * @param path
+     * @return 失敗したときはnull
+     */
+    protected ByteBuffer openBuffer(@NotNull Context applicationContext, String path) {
         try {
-            InputStream in = FileManager.open(applicationContext, path);
-            ret = new byte[in.available()];
-            in.read(ret, 0, ret.length);
-            in.close();
+            return FileManager.map(applicationContext, path);
         } catch (IOException e) {
             e.printStackTrace();
         }
-        return ret;
+        return null;
+    }
+
+    /*
+     * 音声を登録する
+     * @param applicationContext
+     * @param path
+     */
+    public void loadSound(@NotNull Context applicationContext, String path) {
+        SoundManager.load(applicationContext, path);
+    }
+
+    /*
+     * 登録した音声を外す。共有しているものは参照が無くなったら解放する
+     * @param path
+     */
+    public void releaseSound(String path) {
+        SoundManager.unload(path);
+    }
+
+    /*
+     * 内容のハッシュはアセットの一覧から取得する。一覧が無い場合は分からないので共有しない。
+     */
+    @Override
+    public long getContentHash(@NotNull Context applicationContext, String path) {
+        AssetManifest manifest = FileManager.getManifest();
+        return manifest == null ? 0 : manifest.getHash(path);
+    }
+
+    /*
+     * これまでにloadBuffer()で読み込んだファイル数
+     * @return
+     */
+    public final int getLoadCount() {
+        return loadCount.get();
+    }
+
+    /*
+     * これまでにloadBuffer()にかかった時間の合計
+     * @return
+     */
+    public final long getLoadNanos() {
+        return loadNanos.get();
     }
 
     @Override
     public final String loadString(@NotNull Context applicationContext, String path) {
-        String ret = null;
-        try {
-            InputStream in = FileManager.open(applicationContext, path);
-            ret = in.toString();
-            in.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return ret;
+        byte[] buf = loadBytes(applicationContext, path);
+        return buf == null ? null : new String(buf, UTF_8);
     }
 
     @NotNull
     @Override
     public final ALive2DModel loadLive2DModel(@NotNull Context applicationContext, String path) {
-        return Live2DModelAndroid.loadModel(loadBytes(applicationContext, path));
+        // マップしたまま読むので、mocファイルをヒープにコピーしない
+        return Live2DModelAndroid.loadModel(new L2DBufferInputStream(loadBuffer(applicationContext, path)));
     }
 
     @Override
     public final void loadTexture(@NotNull Context applicationContext, ALive2DModel model, int no, String path) {
+        ByteBuffer buf = loadBuffer(applicationContext, path);
+        if (buf == null)
+            return;
+        boolean mipmap = true;
+        // OpenGLの対応するテクスチャを作成。
+        // テクスチャを自分で設定する場合は、glGenTexturesで作成した番号に読み込んだ画像データを設定して、Live2Dにテクスチャ番号を渡す。
+        // 画面上の大きさは分からないので、端末のメモリによる上限だけ使う
+        Bitmap bitmap = LoadUtil.decodeTexture(new L2DBufferInputStream(buf));
+        if (bitmap == null)
+            return;
+        int glTexNo = LoadUtil.loadTexture(gl, TextureData.fromBitmap(bitmap), getTextureMemoryMaxSize(applicationContext));
+        ((Live2DModelAndroid) model).setTexture(no, glTexNo); // 対応付け
+    }
+
+    /*
+     * 画面の大きさと拡大率を設定する。GLスレッドから毎フレーム呼ぶ
+     * @param pixelsPerUnit 論理座標の1あたりの画面の画素数
+     */
+    public final void setScreenScale(float pixelsPerUnit) {
+        screenScale = pixelsPerUnit;
+    }
+
+    /*
+     * 端末のメモリによるテクスチャの大きさの上限。
+     * isLowRamDevice()の端末、メモリクラスがTEXTURE_TIER_LOW_MEMORY_CLASS以下の端末はTEXTURE_TIER_LOW_MEMORY_SIZEまで
+     * @param applicationContext
+     * @return 0は制限しない
+     */
+    public final synchronized int getTextureMemoryMaxSize(@NotNull Context applicationContext) {
+        if (!LAppDefine.TEXTURE_TIERING)
+            return 0;
+        if (memoryMaxSize < 0) {
+            ActivityManager am = (ActivityManager) applicationContext.getSystemService(Context.ACTIVITY_SERVICE);
+            boolean low = am.isLowRamDevice() || am.getMemoryClass() <= LAppDefine.TEXTURE_TIER_LOW_MEMORY_CLASS;
+            memoryMaxSize = low ? LAppDefine.TEXTURE_TIER_LOW_MEMORY_SIZE : 0;
+            if (LAppDefine.DEBUG_LOG)
+                Log.d(TAG, "Memory class: " + am.getMemoryClass() + "MB" + (am.isLowRamDevice() ? " (low RAM)" : "")
+                        + " texture max size: " + (memoryMaxSize == 0 ? "-" : memoryMaxSize));
+        }
+        return memoryMaxSize;
+    }
+
+    /*
+     * 画面上の大きさに合わせたテクスチャの大きさの上限。
+     * 画面上の画素数以上の2のべき乗で、TEXTURE_TIER_MIN_SIZEから端末のメモリによる上限まで。
+     * これより大きいレベルは画面上で縮小されるだけなので転送しない。
+     * @param applicationContext
+     * @param size 論理座標上のモデルの大きさ（幅と高さの大きい方）
+     * @return 0は制限しない
+     */
+    public final int getTextureSize(@NotNull Context applicationContext, float size) {
+        int max = getTextureMemoryMaxSize(applicationContext);
+        float scale = screenScale;
+        if (!LAppDefine.TEXTURE_TIERING || scale <= 0)
+            return max; // 画面の大きさがまだ分からない
+        float pixels = size * scale;
+        int limit = max == 0 ? 16384 : max; // 0の場合もGLの上限より大きいところで止める
+        int ret = LAppDefine.TEXTURE_TIER_MIN_SIZE;
+        while (ret < pixels && ret < limit) {
+            ret *= 2;
+        }
+        return ret;
+    }
+
+    /*
+     * 共有するテクスチャのキー。同じ内容でも大きさの上限が違うものは別に転送する
+     * @param hash 内容のハッシュ
+     * @param size getTextureSize()
+     * @return
+     */
+    public static long getTextureKey(long hash, int size) {
+        return hash ^ (size * 0x9E3779B97F4A7C15L);
+    }
+
+    /*
+     * モデルの設定ファイルを読み込む。
+     * キャッシュを使う場合は、変換したものをバイナリで保存し、次回からはJSONを解析しない。
+     * キャッシュはJSONファイルのchecksum()が変わったら作り直す。
+     * @param applicationContext
+     * @param path
+     * @return 失敗したときはnull
+     */
+    public final ModelSettingCompiled loadModelSetting(@NotNull Context applicationContext, String path) {
+        ByteBuffer buf = loadBuffer(applicationContext, path);
+        if (buf == null)
+            return null;
+        if (!LAppDefine.MODEL_SETTING_CACHE)
+            return ModelSettingCompiled.compile(new ModelSettingJson(buf));
+
+        int crc = TextureCache.checksum(buf);
+        File file = FileManager.getCacheFile(applicationContext, MODEL_SETTING_CACHE_DIR + "/"
+                + Integer.toHexString(path.hashCode()) + "_" + Integer.toHexString(crc) + ".bin");
+        if (file.exists()) {
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                try {
+                    ModelSettingCompiled setting = ModelSettingCompiled.read(in);
+                    if (LAppDefine.DEBUG_LOG)
+                        Log.d(TAG, "Model setting cache hit: " + path);
+                    return setting;
+                } finally {
+                    in.close();
+                }
+            } catch (IOException | RuntimeException e) {
+                // 壊れたものは削除して作り直す。消さないとキャッシュを消すまで読み込めない
+                Log.w(TAG, "Broken model setting cache: " + file, e);
+                file.delete();
+            }
+        }
+
+        ModelSettingCompiled setting = ModelSettingCompiled.compile(new ModelSettingJson(buf));
+        File tmp = new File(file.getPath() + ".tmp");
         try {
-            InputStream in = FileManager.open(applicationContext, path);
-            boolean mipmap = true;
-            // OpenGLの対応するテクスチャを作成。
-            // テクスチャを自分で設定する場合は、glGenTexturesで作成した番号に読み込んだ画像データを設定して、Live2Dにテクスチャ番号を渡す。
-            int glTexNo = LoadUtil.loadTexture(gl, in, true);
-            ((Live2DModelAndroid) model).setTexture(no, glTexNo); // 対応付け
-            in.close();
+            file.getParentFile().mkdirs();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            try {
+                setting.write(out);
+            } finally {
+                out.close();
+            }
+            if (!tmp.renameTo(file))
+                tmp.delete();
         } catch (IOException e) {
             e.printStackTrace();
+            tmp.delete();
+        }
+        return setting;
+    }
+
+    /*
+     * テクスチャの画像を展開する。GLを使わないので、読み込みスレッドから呼べる。
+     * ビルド時に圧縮したもの（.ktx）があれば、展開せずにそれを使う。
+     * キャッシュを使う場合は、ミップマップまで作成して保存する。
+     * 次回からはキャッシュをマップして返すので、展開とミップマップの作成を行わない。
+     * @param applicationContext
+     * @param path
+     * @return 失敗したときはnull
+     */
+    public final TextureData decodeTexture(@NotNull Context applicationContext, String path) {
+        TextureData compressed = loadCompressedTexture(applicationContext, path);
+        if (compressed != null)
+            return compressed;
+
+        ByteBuffer buf = loadBuffer(applicationContext, path);
+        if (buf == null)
+            return null;
+
+        TextureCache cache = getTextureCache(applicationContext);
+        if (cache == null) {
+            Bitmap bitmap = LoadUtil.decodeTexture(new L2DBufferInputStream(buf));
+            return bitmap == null ? null : TextureData.fromBitmap(bitmap);
+        }
+
+        int crc = TextureCache.checksum(buf);
+        TextureData data = cache.load(path, crc);
+        if (data != null) {
+            if (LAppDefine.DEBUG_LOG)
+                Log.d(TAG, "Texture cache hit: " + path);
+            return data;
+        }
+        Bitmap bitmap = LoadUtil.decodeTexture(new L2DBufferInputStream(buf));
+        if (bitmap == null)
+            return null;
+        data = TextureData.buildMipmap(bitmap);
+        cache.store(path, crc, data);
+        return data;
+    }
+
+    /*
+     * 縮小したテクスチャを展開する。先に表示するためのもの。
+     * キャッシュにある場合は、そのミップマップの途中のレベルからを使う。
+     * 無い場合は縮小して展開する。キャッシュには保存しない。
+     * @param applicationContext
+     * @param path
+     * @param size 幅と高さがこれ以上の範囲で縮小する
+     * @return 失敗したときはnull
+     */
+    public final TextureData decodeTexturePreview(@NotNull Context applicationContext, String path, int size) {
+        TextureData compressed = loadCompressedTexture(applicationContext, path);
+        if (compressed != null)
+            return compressed.getPreview(size);
+
+        ByteBuffer buf = loadBuffer(applicationContext, path);
+        if (buf == null)
+            return null;
+
+        TextureCache cache = getTextureCache(applicationContext);
+        if (cache != null) {
+            TextureData data = cache.load(path, TextureCache.checksum(buf));
+            if (data != null)
+                return data.getPreview(size);
+        }
+        Bitmap bitmap = LoadUtil.decodeTexture(new L2DBufferInputStream(buf), size);
+        return bitmap == null ? null : TextureData.buildMipmap(bitmap);
+    }
+
+    /*
+     * ビルド時に圧縮したテクスチャを読み込む。コピーしない
+     * @param applicationContext
+     * @param path 元の画像のパス
+     * @return 使わない場合、無い場合、端末が対応していない場合はnull
+     */
+    private TextureData loadCompressedTexture(Context applicationContext, String path) {
+        if (!LAppDefine.COMPRESSED_TEXTURE || !LoadUtil.isEtc2Supported())
+            return null;
+        int dot = path.lastIndexOf('.');
+        String compressedPath = (dot < 0 ? path : path.substring(0, dot)) + COMPRESSED_TEXTURE_EXTENSION;
+        if (!FileManager.isResourceExists(applicationContext, compressedPath))
+            return null;
+        ByteBuffer buf = loadBuffer(applicationContext, compressedPath);
+        if (buf == null)
+            return null;
+        try {
+            return TextureData.fromKtx(buf);
+        } catch (IOException e) {
+            Log.w(TAG, "Broken compressed texture: " + compressedPath, e);
+            return null;
+        }
+    }
+
+    private synchronized TextureCache getTextureCache(Context applicationContext) {
+        if (textureCache == null && LAppDefine.TEXTURE_CACHE)
+            textureCache = new TextureCache(applicationContext, LAppDefine.TEXTURE_CACHE_MAX_BYTES);
+        return textureCache;
+    }
+
+    /*
+     * テクスチャの画像を展開用のスレッドで展開する。
+     * 同時に展開するのはコア数まで。
+     * @param applicationContext
+     * @param path
+     * @param profiler 展開の時間を記録する
+     * @return
+     */
+    public final Future<TextureData> decodeTextureAsync(@NotNull Context applicationContext, String path, L2DLoadProfiler profiler) {
+        return decodeTextureAsync(applicationContext, path, 0, profiler);
+    }
+
+    /*
+     * 縮小したテクスチャ（decodeTexturePreview()）を展開用のスレッドで展開する。
+     * 先に呼んだものから展開するので、元の大きさのものより先に呼ぶ。
+     * @param applicationContext
+     * @param path
+     * @param size
+     * @param profiler
+     * @return
+     */
+    public final Future<TextureData> decodeTexturePreviewAsync(@NotNull Context applicationContext, String path, int size, L2DLoadProfiler profiler) {
+        return decodeTextureAsync(applicationContext, path, size, profiler);
+    }
+
+    private Future<TextureData> decodeTextureAsync(final Context applicationContext, final String path, final int previewSize, final L2DLoadProfiler profiler) {
+        return getDecodeExecutor().submit(new Callable<TextureData>() {
+            @Override
+            public TextureData call() {
+                int mark = profiler.begin();
+                try {
+                    if (previewSize > 0)
+                        return decodeTexturePreview(applicationContext, path, previewSize);
+                    return decodeTexture(applicationContext, path);
+                } finally {
+                    profiler.end(mark, L2DLoadProfiler.PHASE_TEXTURE_DECODE, path);
+                }
+            }
+        });
+    }
+
+    private synchronized ExecutorService getDecodeExecutor() {
+        if (decodeExecutor == null) {
+            int threadNum = Runtime.getRuntime().availableProcessors();
+            decodeExecutor = Executors.newFixedThreadPool(threadNum, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(@NotNull Runnable r) {
+                    Thread t = new Thread(r, "TextureDecoder-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return decodeExecutor;
+    }
+
+    /*
+     * 音声の登録用のスレッド。モデルの読み込みを待たせないように、loadSound()はここで行う
+     * @return
+     */
+    public final synchronized ExecutorService getSoundLoader() {
+        if (soundLoader == null) {
+            soundLoader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(@NotNull Runnable r) {
+                    Thread t = new Thread(r, "SoundLoader");
+                    t.setDaemon(true);
+                    t.setPriority(Thread.NORM_PRIORITY - 1); // 描画より優先しない
+                    return t;
+                }
+            });
+        }
+        return soundLoader;
+    }
+
+    /*
+     * 展開済みの画像をテクスチャにしてモデルに設定する。GLスレッドから呼ぶ。
+     * @param gl
+     * @param model
+     * @param no
+     * @param data 解放される
+     * @param maxSize 大きさの上限（getTextureSize()）。0は制限しない
+     * @return テクスチャ番号
+     */
+    public final int uploadTexture(GL10 gl, ALive2DModel model, int no, TextureData data, int maxSize) {
+        int glTexNo = LoadUtil.loadTexture(gl, data, maxSize);
+        ((Live2DModelAndroid) model).setTexture(no, glTexNo); // 対応付け
+        return glTexNo;
+    }
+
+    /*
+     * 展開済みの画像をテクスチャにして共有する。GLスレッドから呼ぶ。
+     * 他のモデルが先に同じ内容のテクスチャを転送していた場合は、そちらを使う。
+     * @param gl
+     * @param key getTextureKey()
+     * @param data 解放される
+     * @param maxSize 大きさの上限。キーと同じもの
+     * @return テクスチャ番号。使わなくなったらreleaseTexture()を呼ぶ
+     */
+    public final int uploadSharedTexture(GL10 gl, long key, TextureData data, int maxSize) {
+        int glTexNo = LoadUtil.loadTexture(gl, data, maxSize);
+        int shared = sharedTextures.put(key, glTexNo);
+        if (shared != glTexNo)
+            gl.glDeleteTextures(1, new int[]{glTexNo}, 0);
+        return shared;
+    }
+
+    /*
+     * 共有しているテクスチャを取得し、参照を増やす。どのスレッドからでも呼べる
+     * @param key getTextureKey()
+     * @return テクスチャ番号。無い場合は0
+     */
+    public final int acquireTexture(long key) {
+        Integer glTexNo = sharedTextures.acquire(key);
+        return glTexNo == null ? 0 : glTexNo;
+    }
+
+    /*
+     * 共有しているテクスチャの参照を減らす。
+     * 参照が無くなったものは、次のdeleteReleasedTextures()で削除する。
+     * @param key getTextureKey()
+     */
+    public final void releaseTexture(long key) {
+        sharedTextures.release(key);
+    }
+
+    /*
+     * 参照が無くなった共有のテクスチャを削除する。GLスレッドから毎フレーム呼ぶ
+     * @param gl
+     */
+    public final void deleteReleasedTextures(GL10 gl) {
+        synchronized (releasedTextures) {
+            int num = releasedTextures.size();
+            if (num == 0)
+                return;
+            int[] textures = new int[num];
+            for (int i = 0; i < num; i++) {
+                textures[i] = releasedTextures.get(i);
+            }
+            releasedTextures.clear();
+            gl.glDeleteTextures(num, textures, 0);
         }
     }
 
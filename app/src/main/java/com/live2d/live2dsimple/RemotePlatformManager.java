@@ -0,0 +1,366 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+ */
+package com.live2d.live2dsimple;
+
+import android.content.Context;
+import android.util.Log;
+import jp.live2d.utils.android.AssetManifest;
+import jp.live2d.utils.android.ContentCache;
+import jp.live2d.utils.android.FileManager;
+import jp.live2d.utils.android.ModelBundle;
+import jp.live2d.utils.android.RemoteFetcher;
+import jp.live2d.utils.android.SoundManager;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * アプリに含まれないモデルを、サーバーから取得して読み込む。
+ *
+ * サーバーにはビルドで作成したアセットの一覧（assets.l2dm）とバンドル（live2d/<モデル>.l2db、live2d/shared.l2db）を置く。
+ * アセットの一覧にあってアプリに無いモデルの設定ファイルが、追加のモデルになる（getRemoteModels()）。
+ *
+ * バンドルは先頭のヘッダとテーブル（目次）だけを取得し、中のファイルは必要な範囲だけをRangeで取得する。
+ * 取得したものは内容のハッシュを確かめてContentCacheに保存し、次回からはサーバーに接続せずに読み込む。
+ * 目次も保存しておき、サーバーに接続できない場合はそれを使う。
+ * ハッシュが合わない場合はバンドルが更新されたとみなし、目次を取得し直す。
+ *
+ * アプリに含まれるファイルは、元のPlatformManager（localPlatformManager）で読み込む。
+ * 同じファイルを複数のスレッドが同時に要求した場合は、1回だけ取得する。
+ */
+public final class RemotePlatformManager extends PlatformManager {
+    private static final String TAG = "RemotePlatformManager";
+    private static final String ROOT = "live2d/";
+    private static final String CACHE_DIR = "remote";
+    private static final String MODEL_SETTING_EXTENSION = ".model.json";
+
+    private final PlatformManager localPlatformManager;
+    private final RemoteFetcher fetcher;
+    private final ExecutorService fetchExecutor; // モデルのファイルを並列に取得する
+    private ContentCache cache = null;
+    private final HashMap<String, ModelBundle> indexes = new HashMap<>(); // 無い場合もnullを入れる
+    private AssetManifest remoteManifest = null;
+    private boolean remoteManifestLoaded = false;
+    private final ConcurrentHashMap<Long, Future<Long>> fetching = new ConcurrentHashMap<>();
+
+    /*
+     * @param localPlatformManager アプリに含まれるファイルを読み込むもの
+     * @param baseUrl assets.l2dmを置いたURL
+     */
+    RemotePlatformManager(PlatformManager localPlatformManager, String baseUrl) {
+        this.localPlatformManager = localPlatformManager;
+        this.fetcher = new RemoteFetcher(baseUrl, LAppDefine.REMOTE_TIMEOUT_MSEC, LAppDefine.REMOTE_CHUNK_BYTES);
+        this.fetchExecutor = Executors.newFixedThreadPool(LAppDefine.REMOTE_FETCH_THREADS, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(@NotNull Runnable r) {
+                Thread t = new Thread(r, "RemoteFetcher-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    @Override
+    protected final ByteBuffer openBuffer(@NotNull Context applicationContext, String path) {
+        if (!FileManager.isResourceExists(applicationContext, path)) {
+            long hash = fetch(applicationContext, path);
+            if (hash != 0) {
+                ByteBuffer buf = getCache(applicationContext).map(hash);
+                if (buf != null)
+                    return buf;
+            }
+        }
+        return localPlatformManager.openBuffer(applicationContext, path);
+    }
+
+    @Override
+    public final void loadSound(@NotNull Context applicationContext, String path) {
+        if (!FileManager.isResourceExists(applicationContext, path)) {
+            long hash = fetch(applicationContext, path);
+            File file = hash == 0 ? null : getCache(applicationContext).get(hash);
+            if (file != null) {
+                try {
+                    FileInputStream in = new FileInputStream(file);
+                    try {
+                        SoundManager.load(path, hash, in.getFD(), 0, file.length()); // SoundPoolは記述子を複製する
+                    } finally {
+                        in.close();
+                    }
+                    return;
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        localPlatformManager.loadSound(applicationContext, path);
+    }
+
+    @Override
+    public final void releaseSound(String path) {
+        localPlatformManager.releaseSound(path);
+    }
+
+    @Override
+    public final long getContentHash(@NotNull Context applicationContext, String path) {
+        if (FileManager.isResourceExists(applicationContext, path))
+            return localPlatformManager.getContentHash(applicationContext, path);
+        ModelBundle index = getIndex(applicationContext, path);
+        return index == null ? 0 : index.getHash(path);
+    }
+
+    /*
+     * サーバーにあってアプリに無いモデル
+     * @param applicationContext
+     * @return モデルの設定ファイルのパス。サーバーに接続できず、保存した一覧も無い場合は空
+     */
+    public final String[] getRemoteModels(@NotNull Context applicationContext) {
+        AssetManifest manifest = getRemoteManifest(applicationContext);
+        ArrayList<String> models = new ArrayList<>();
+        for (int i = 0; manifest != null && i < manifest.getEntryNum(); i++) {
+            String path = manifest.getPath(i);
+            if (path.endsWith(MODEL_SETTING_EXTENSION) && !FileManager.isResourceExists(applicationContext, path))
+                models.add(path);
+        }
+        return models.toArray(new String[models.size()]);
+    }
+
+    /*
+     * getRemoteModels()を取得用のスレッドで行う
+     * @param applicationContext
+     * @return
+     */
+    public final Future<String[]> getRemoteModelsAsync(@NotNull final Context applicationContext) {
+        return fetchExecutor.submit(new Callable<String[]>() {
+            @Override
+            public String[] call() {
+                return getRemoteModels(applicationContext);
+            }
+        });
+    }
+
+    /*
+     * モデルのバンドルのファイルをすべて、REMOTE_FETCH_THREADS個ずつ並列に取得する。
+     * 読み込みの前に呼ぶと、以降の読み込みはキャッシュからになる。アプリに含まれるモデルでは何もしない。
+     * @param applicationContext
+     * @param modelSettingPath
+     */
+    public final void fetchModel(@NotNull final Context applicationContext, String modelSettingPath) {
+        if (FileManager.isResourceExists(applicationContext, modelSettingPath))
+            return;
+        ModelBundle index = getIndex(applicationContext, modelSettingPath);
+        if (index == null)
+            return;
+
+        long start = System.nanoTime();
+        ArrayList<Future<Long>> futures = new ArrayList<>();
+        for (final String path : index.getPaths()) {
+            futures.add(fetchExecutor.submit(new Callable<Long>() {
+                @Override
+                public Long call() {
+                    return fetch(applicationContext, path);
+                }
+            }));
+        }
+        int failed = 0;
+        for (Future<Long> f : futures) {
+            try {
+                if (f.get() == 0)
+                    failed++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt(); // 読み込みの中断
+                return;
+            } catch (ExecutionException e) {
+                failed++;
+            }
+        }
+        if (LAppDefine.DEBUG_LOG || failed > 0)
+            Log.d(TAG, "Fetch model: " + modelSettingPath + " " + futures.size() + " files (" + failed + " failed) "
+                    + (System.nanoTime() - start) / 1000000 + "ms");
+    }
+
+    /*
+     * サーバーのファイルをキャッシュに入れる。既にある場合は何もしない
+     * @param applicationContext
+     * @param path
+     * @return 内容のハッシュ。サーバーに無い場合、取得できない場合は0
+     */
+    private long fetch(Context applicationContext, String path) {
+        String bundlePath = getBundlePath(applicationContext, path);
+        ModelBundle index = bundlePath == null ? null : openIndex(applicationContext, bundlePath);
+        if (index == null || !index.contains(path))
+            return 0;
+        final long hash = index.getHash(path);
+        final ContentCache cache = getCache(applicationContext);
+        if (cache.contains(hash))
+            return hash;
+
+        String entryPath = path;
+        String sharedPath = index.getSharedPath(path);
+        if (sharedPath != null) {
+            entryPath = sharedPath;
+            bundlePath = ModelBundle.SHARED_PATH;
+            index = openIndex(applicationContext, bundlePath);
+            if (index == null)
+                return 0;
+        }
+
+        // 同じものを取得中の場合はそれを待つ
+        final String remotePath = bundlePath;
+        final String remoteEntryPath = entryPath;
+        final ModelBundle remoteIndex = index;
+        FutureTask<Long> task = new FutureTask<>(new Callable<Long>() {
+            @Override
+            public Long call() throws IOException {
+                int offset = remoteIndex.getOffset(remoteEntryPath);
+                int size = remoteIndex.getStoredSize(remoteEntryPath);
+                if (offset < 0)
+                    throw new IOException("Not in bundle: " + remoteEntryPath);
+                if (remoteIndex.isDeflated(remoteEntryPath)) {
+                    // 小さいテキストなので、まとめて取得して展開する
+                    ByteBuffer data = remoteIndex.decode(remoteEntryPath, ByteBuffer.wrap(fetcher.fetchRange(remotePath, offset, size)));
+                    byte[] bytes = new byte[data.remaining()];
+                    data.get(bytes);
+                    cache.put(hash, bytes);
+                } else {
+                    fetcher.fetchRangeToFile(remotePath, offset, size, cache.getPartFile(hash));
+                    cache.commit(hash);
+                }
+                return hash;
+            }
+        });
+        Future<Long> f = fetching.putIfAbsent(hash, task);
+        if (f == null) {
+            f = task;
+            task.run();
+            fetching.remove(hash);
+        }
+
+        try {
+            long ret = f.get();
+            if (LAppDefine.DEBUG_LOG)
+                Log.d(TAG, "Fetch: " + path);
+            return ret;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Log.w(TAG, "Failed to fetch: " + path, e.getCause());
+            if (e.getCause() != null && e.getCause().getMessage() != null && e.getCause().getMessage().startsWith("Hash mismatch"))
+                discardIndex(bundlePath); // バンドルが更新された
+        }
+        return 0;
+    }
+
+    /*
+     * パスが含まれるサーバーのバンドル。
+     * サーバーのアセットの一覧がある場合はそれで調べ、無い場合はlive2d/<モデル>.l2dbとする
+     * @param applicationContext
+     * @param path
+     * @return 無い場合はnull
+     */
+    private String getBundlePath(Context applicationContext, String path) {
+        AssetManifest manifest = getRemoteManifest(applicationContext);
+        if (manifest != null && manifest.contains(path))
+            return manifest.getBundlePath(path);
+        if (!path.startsWith(ROOT))
+            return null;
+        int end = path.indexOf('/', ROOT.length());
+        if (end < 0)
+            return null;
+        return path.substring(0, end) + ModelBundle.EXTENSION;
+    }
+
+    private ModelBundle getIndex(Context applicationContext, String path) {
+        String bundlePath = getBundlePath(applicationContext, path);
+        return bundlePath == null ? null : openIndex(applicationContext, bundlePath);
+    }
+
+    /*
+     * サーバーのバンドルの目次を取得する。初めての場合はサーバーから取得し、できなければ保存したものを使う
+     * @param applicationContext
+     * @param bundlePath
+     * @return 無い場合はnull
+     */
+    private synchronized ModelBundle openIndex(Context applicationContext, String bundlePath) {
+        if (indexes.containsKey(bundlePath))
+            return indexes.get(bundlePath);
+
+        ContentCache cache = getCache(applicationContext);
+        ModelBundle index = null;
+        try {
+            byte[] head = fetcher.fetchRange(bundlePath, 0, ModelBundle.getHeaderSize());
+            int size = ModelBundle.getIndexSize(ByteBuffer.wrap(head));
+            byte[] data = fetcher.fetchRange(bundlePath, 0, size);
+            index = ModelBundle.openIndex(ByteBuffer.wrap(data));
+            cache.putNamed(bundlePath, data);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to fetch bundle index: " + bundlePath + " (" + e + ")");
+            ByteBuffer saved = cache.getNamed(bundlePath);
+            try {
+                if (saved != null)
+                    index = ModelBundle.openIndex(saved);
+            } catch (IOException e2) {
+                Log.w(TAG, "Broken bundle index: " + bundlePath, e2);
+            }
+        }
+        indexes.put(bundlePath, index);
+        return index;
+    }
+
+    private synchronized void discardIndex(String bundlePath) {
+        indexes.remove(bundlePath);
+    }
+
+    /*
+     * サーバーのアセットの一覧。初めての場合はサーバーから取得し、できなければ保存したものを使う
+     * @param applicationContext
+     * @return 無い場合はnull
+     */
+    private synchronized AssetManifest getRemoteManifest(Context applicationContext) {
+        if (remoteManifestLoaded)
+            return remoteManifest;
+        remoteManifestLoaded = true;
+
+        ContentCache cache = getCache(applicationContext);
+        try {
+            byte[] data = fetcher.fetch(AssetManifest.PATH);
+            remoteManifest = AssetManifest.read(ByteBuffer.wrap(data));
+            cache.putNamed(AssetManifest.PATH, data);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to fetch asset manifest (" + e + ")");
+            ByteBuffer saved = cache.getNamed(AssetManifest.PATH);
+            try {
+                if (saved != null)
+                    remoteManifest = AssetManifest.read(saved);
+            } catch (IOException e2) {
+                Log.w(TAG, "Broken asset manifest.", e2);
+            }
+        }
+        return remoteManifest;
+    }
+
+    private synchronized ContentCache getCache(Context applicationContext) {
+        if (cache == null)
+            cache = new ContentCache(new File(applicationContext.getCacheDir(), CACHE_DIR), LAppDefine.REMOTE_CACHE_MAX_BYTES);
+        return cache;
+    }
+}
\ No newline at end of file
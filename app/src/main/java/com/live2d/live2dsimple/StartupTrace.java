@@ -0,0 +1,97 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+ */
+package com.live2d.live2dsimple;
+
+import android.os.Trace;
+import android.util.Log;
+
+import java.util.Locale;
+
+/*
+ * 起動から最初のモデルを表示するまでの計測。
+ *
+ *  long t = StartupTrace.begin("setupGUI");
+ *  ...
+ *  StartupTrace.end("setupGUI", t);
+ *
+ * MainActivity.onCreate()のstart()からの時刻、かかった時間、スレッドを記録し、
+ * 最初のモデルを描画したfinish()でまとめてログに出す。以降の記録は無視する。
+ * 区間はandroid.os.Traceにも出すので、systraceでスレッドごとに並べて見られる。
+ * 複数のスレッドから記録できる。begin()とend()は同じスレッドで呼ぶ。
+ */
+final class StartupTrace {
+    private static final String TAG = "StartupTrace";
+    private static long originNanos = 0;
+    private static final StringBuilder report = new StringBuilder();
+    private static volatile boolean finished = true;
+
+    /*
+     * 計測を開始する。MainActivity.onCreate()の最初で呼ぶ
+     */
+    static synchronized void start() {
+        originNanos = System.nanoTime();
+        report.setLength(0);
+        finished = !LAppDefine.STARTUP_TRACE;
+    }
+
+    /*
+     * 区間の開始
+     * @param name
+     * @return end()に渡す。計測していない場合は0
+     */
+    static long begin(String name) {
+        if (finished)
+            return 0;
+        Trace.beginSection(name);
+        return System.nanoTime();
+    }
+
+    /*
+     * 区間の終了
+     * @param name
+     * @param startNanos begin()の戻り値
+     */
+    static void end(String name, long startNanos) {
+        if (startNanos == 0)
+            return;
+        Trace.endSection();
+        record(name, startNanos, System.nanoTime());
+    }
+
+    /*
+     * 時刻だけを記録する
+     * @param name
+     */
+    static void mark(String name) {
+        if (finished)
+            return;
+        long now = System.nanoTime();
+        record(name, now, now);
+    }
+
+    /*
+     * 最初のモデルを描画した。記録をログに出す
+     */
+    static void finish() {
+        if (finished)
+            return;
+        synchronized (StartupTrace.class) {
+            if (finished)
+                return;
+            mark("first frame");
+            finished = true;
+            Log.d(TAG, "Startup trace (start, duration, phase, thread)\n" + report);
+        }
+    }
+
+    private static synchronized void record(String name, long startNanos, long endNanos) {
+        if (finished)
+            return;
+        report.append(String.format(Locale.US, "%8.1fms %8.1fms  %-24s %s\n",
+                (startNanos - originNanos) / 1e6, (endNanos - startNanos) / 1e6, name, Thread.currentThread().getName()));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,21 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+*/
+package jp.live2d.framework;
+
+import jp.live2d.ALive2DModel;
+
+/*
+ * モーションや物理演算の代わりに、外部からパラメータを受け取ってモデルに設定するもの。
+ */
+public interface IParamSource {
+    /*
+     * パラメータをモデルに設定する。
+     * @param model
+     * @return 設定できる値がまだ無い場合はfalse
+     */
+    boolean applyTo(ALive2DModel model);
+}
\ No newline at end of file
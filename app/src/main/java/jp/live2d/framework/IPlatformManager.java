@@ -9,11 +9,26 @@ package jp.live2d.framework;
 import android.content.Context;
 import jp.live2d.ALive2DModel;
 
+import java.nio.ByteBuffer;
+
 public interface IPlatformManager {
     byte[] loadBytes(Context applicationContext, String path);
 
+    /*
+     * ファイルを読み込む。可能であればメモリにマップして、ヒープにコピーしない。
+     * 返すバッファは読み込み専用として扱う。
+     */
+    ByteBuffer loadBuffer(Context applicationContext, String path);
+
     String loadString(Context applicationContext, String path);
 
+    /*
+     * ファイルの内容のハッシュ。同じ内容のファイルは同じ値になる。
+     * 読み込んだものをL2DAssetStoreで共有するのに使う。
+     * 分からない場合は0を返す。その場合は共有しない。
+     */
+    long getContentHash(Context applicationContext, String path);
+
     ALive2DModel loadLive2DModel(Context applicationContext, String path);
 
     void loadTexture(Context applicationContext, ALive2DModel model, int no, String path);
@@ -0,0 +1,112 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+*/
+package jp.live2d.framework;
+
+import java.util.HashMap;
+
+/*
+ * 内容のハッシュごとに、読み込んだもの（モーション、テクスチャ番号、音声IDなど）を共有する。
+ *
+ * 同じ内容のファイルを複数のモデルが使う場合、2つ目以降は読み込みも展開も行わない。
+ * 参照数を数え、0になったらReleaserで解放する。
+ * ハッシュはビルド時にファイルの内容から作る（IPlatformManager.getContentHash()）。
+ *
+ * 複数のスレッドから呼べる。Releaserはrelease()を呼んだスレッドで呼ばれる。
+ */
+public final class L2DAssetStore<T> {
+    public interface Releaser<T> {
+        void release(T value);
+    }
+
+    private static final class Entry<T> {
+        final T value;
+        int refCount = 1;
+
+        Entry(T value) {
+            this.value = value;
+        }
+    }
+
+    private final HashMap<Long, Entry<T>> entries = new HashMap<>();
+    private final Releaser<T> releaser;
+    private int hitCount = 0;
+
+    /*
+     * @param releaser 参照が無くなったときの解放処理。nullの場合は外すだけ
+     */
+    public L2DAssetStore(Releaser<T> releaser) {
+        this.releaser = releaser;
+    }
+
+    /*
+     * 共有しているものを取得し、参照を増やす
+     * @param hash
+     * @return 無い場合はnull
+     */
+    public final synchronized T acquire(long hash) {
+        Entry<T> e = entries.get(hash);
+        if (e == null)
+            return null;
+        e.refCount++;
+        hitCount++;
+        return e.value;
+    }
+
+    /*
+     * 参照を増やさずに取得する。既に参照を持っている場合に使う
+     * @param hash
+     * @return 無い場合はnull
+     */
+    public final synchronized T get(long hash) {
+        Entry<T> e = entries.get(hash);
+        return e == null ? null : e.value;
+    }
+
+    /*
+     * 読み込んだものを追加する。参照は1になる。
+     * 他のスレッドが先に追加していた場合は、そちらの参照を増やして返す。渡したものは呼び出し側で解放する。
+     * @param hash
+     * @param value
+     * @return 共有するもの
+     */
+    public final synchronized T put(long hash, T value) {
+        T shared = acquire(hash);
+        if (shared != null)
+            return shared;
+        entries.put(hash, new Entry<>(value));
+        return value;
+    }
+
+    /*
+     * 参照を減らす。0になったら解放する
+     * @param hash
+     */
+    public final synchronized void release(long hash) {
+        Entry<T> e = entries.get(hash);
+        if (e == null || --e.refCount > 0)
+            return;
+        entries.remove(hash);
+        if (releaser != null)
+            releaser.release(e.value);
+    }
+
+    public final synchronized boolean contains(long hash) {
+        return entries.containsKey(hash);
+    }
+
+    public final synchronized int size() {
+        return entries.size();
+    }
+
+    /*
+     * acquire()で共有できた回数
+     * @return
+     */
+    public final synchronized int getHitCount() {
+        return hitCount;
+    }
+}
\ No newline at end of file
@@ -13,23 +13,40 @@ import jp.live2d.motion.AMotion;
 import jp.live2d.motion.Live2DMotion;
 import jp.live2d.motion.MotionQueueManager;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 public class L2DBaseModel {
+    private static ExecutorService assetLoader = null; // 表情、物理演算、ポーズの読み込み用スレッド
+    private static final L2DAssetStore<AMotion> sharedMotions = new L2DAssetStore<>(null); // 内容が同じモーションはモデル間で共有する
+
     // モデル関連
     protected ALive2DModel live2DModel = null;    // Live2Dモデルクラス
     protected L2DModelMatrix modelMatrix = null;  // Live2Dモデラー上の座標系からワールド座標系へ変換するための行列
 
     // モーション・状態管理
-    protected Map<String, AMotion> expressions;   // 表情モーションデータ
+    protected Map<String, AMotion> expressions;   // 表情モーションデータ。読み込み済みのもの
+    protected Map<String, String> expressionFiles; // 表情ファイルのパス。読み込みは初めて使うとき
+    private final Set<String> loadingExpressions = Collections.synchronizedSet(new HashSet<String>());
     protected Map<String, AMotion> motions;       // モーションデータ
+    private final Set<Long> sharedMotionHashes = new HashSet<>(); // sharedMotionsで参照しているもの
     protected L2DMotionManager mainMotionManager; // メインモーション
     protected L2DMotionManager expressionManager; // 表情
     protected L2DEyeBlink eyeBlink;               // 自動目パチ
     protected L2DPhysics physics;                 // 物理演算
     protected L2DPose pose;                       // ポーズ。腕の切り替えなど。
+    private volatile L2DPhysics loadedPhysics = null; // 読み込み用スレッドで読み込み、まだ使っていないもの
+    private volatile L2DPose loadedPose = null;
     protected boolean debugMode = false;
+    protected L2DLoadProfiler profiler;           // 読み込みの計測
     protected boolean initialized = false;        // 初期化状態
     protected boolean updating = false;           // 読み込み中ならtrue
     protected float alpha = 1;                    // 透明度
@@ -53,7 +70,9 @@ public class L2DBaseModel {
         expressionManager = new L2DMotionManager();
 
         motions = new HashMap<>();
-        expressions = new HashMap<>();
+        expressions = new ConcurrentHashMap<>(); // 読み込み用スレッドから追加する
+        expressionFiles = new LinkedHashMap<>();
+        profiler = new L2DLoadProfiler(getClass().getSimpleName());
     }
 
     public final L2DModelMatrix getModelMatrix() {
@@ -127,6 +146,14 @@ public class L2DBaseModel {
         dragY = y;
     }
 
+    /*
+     * 読み込みの計測結果
+     * @return
+     */
+    public final L2DLoadProfiler getLoadProfiler() {
+        return profiler;
+    }
+
     public final MotionQueueManager getMainMotionManager() {
         return mainMotionManager;
     }
@@ -143,7 +170,13 @@ public class L2DBaseModel {
         if (debugMode)
             pm.log("Load model: " + path);
 
-        live2DModel = pm.loadLive2DModel(applicationContext, path);
+        L2DLoadProfiler p = profiler;
+        int mark = p.begin();
+        try {
+            live2DModel = pm.loadLive2DModel(applicationContext, path);
+        } finally {
+            p.end(mark, L2DLoadProfiler.PHASE_MODEL, path);
+        }
         live2DModel.saveParam();
 
         if (Live2D.getError() != Live2D.L2D_NO_ERROR) {
@@ -163,18 +196,55 @@ public class L2DBaseModel {
         if (debugMode)
             pm.log("Load Texture: " + path);
 
-        pm.loadTexture(applicationContext, live2DModel, no, path);
+        L2DLoadProfiler p = profiler;
+        int mark = p.begin();
+        try {
+            pm.loadTexture(applicationContext, live2DModel, no, path);
+        } finally {
+            p.end(mark, L2DLoadProfiler.PHASE_TEXTURE_UPLOAD, path);
+        }
     }
 
     protected final AMotion loadMotion(Context applicationContext, String name, String path) {
+        return loadMotion(applicationContext, name, path, -1, -1);
+    }
+
+    /*
+     * モーションを読み込む。
+     * 内容とフェードの設定が同じモーションはモデル間で共有するので、取得したモーションのフェードは変更しないこと。
+     * @param applicationContext
+     * @param name
+     * @param path
+     * @param fadeInMSec 0未満の場合はファイルの設定のまま
+     * @param fadeOutMSec 0未満の場合はファイルの設定のまま
+     * @return
+     */
+    protected final AMotion loadMotion(Context applicationContext, String name, String path, int fadeInMSec, int fadeOutMSec) {
         IPlatformManager pm = Live2DFramework.getPlatformManager();
         if (debugMode)
             pm.log("Load Motion: " + path);
 
-        Live2DMotion motion;
+        AMotion motion;
 
-        byte[] buf = pm.loadBytes(applicationContext, path);
-        motion = Live2DMotion.loadMotion(buf);
+        L2DLoadProfiler p = profiler;
+        int mark = p.begin();
+        try {
+            long hash = getSharedMotionKey(pm.getContentHash(applicationContext, path), fadeInMSec, fadeOutMSec);
+            motion = hash != 0 ? acquireSharedMotion(hash) : null;
+            if (motion == null) {
+                byte[] buf = L2DBufferInputStream.toBytes(pm.loadBuffer(applicationContext, path));
+                motion = Live2DMotion.loadMotion(buf);
+                // 共有する前に設定する
+                if (fadeInMSec >= 0)
+                    motion.setFadeIn(fadeInMSec);
+                if (fadeOutMSec >= 0)
+                    motion.setFadeOut(fadeOutMSec);
+                if (hash != 0)
+                    motion = putSharedMotion(hash, motion);
+            }
+        } finally {
+            p.end(mark, L2DLoadProfiler.PHASE_MOTION, path);
+        }
 
         if (name != null) {
             motions.put(name, motion);
@@ -183,37 +253,198 @@ public class L2DBaseModel {
         return motion;
     }
 
+    /*
+     * 共有するモーションのキー。フェードの設定が違うものは別のモーションにする
+     * @param contentHash 0の場合は共有しない
+     * @param fadeInMSec
+     * @param fadeOutMSec
+     * @return
+     */
+    private static long getSharedMotionKey(long contentHash, int fadeInMSec, int fadeOutMSec) {
+        if (contentHash == 0 || (fadeInMSec < 0 && fadeOutMSec < 0))
+            return contentHash;
+        long key = contentHash ^ ((((long) fadeInMSec << 32) | (fadeOutMSec & 0xFFFFFFFFL)) * 0x9E3779B97F4A7C15L);
+        return key != 0 ? key : 1;
+    }
+
+    /*
+     * 共有しているモーションを取得する。参照はモデルごとに1つだけ持つ
+     * @param hash
+     * @return 無い場合はnull
+     */
+    private AMotion acquireSharedMotion(long hash) {
+        synchronized (sharedMotionHashes) {
+            if (sharedMotionHashes.contains(hash))
+                return sharedMotions.get(hash);
+            AMotion motion = sharedMotions.acquire(hash);
+            if (motion != null)
+                sharedMotionHashes.add(hash);
+            return motion;
+        }
+    }
+
+    private AMotion putSharedMotion(long hash, AMotion motion) {
+        synchronized (sharedMotionHashes) {
+            if (!sharedMotionHashes.add(hash)) {
+                AMotion shared = sharedMotions.get(hash);
+                return shared != null ? shared : motion;
+            }
+            return sharedMotions.put(hash, motion);
+        }
+    }
+
+    /*
+     * モデル間で共有しているものの参照を外す。モデルを破棄するときに呼ぶ
+     */
+    protected void releaseSharedAssets() {
+        synchronized (sharedMotionHashes) {
+            for (long hash : sharedMotionHashes) {
+                sharedMotions.release(hash);
+            }
+            sharedMotionHashes.clear();
+        }
+    }
+
     protected final void loadExpression(Context applicationContext, String name, String path) {
         IPlatformManager pm = Live2DFramework.getPlatformManager();
         if (debugMode)
             pm.log("Load Expression: " + path);
 
+        L2DLoadProfiler p = profiler;
+        int mark = p.begin();
         try {
-            expressions.put(name, L2DExpressionMotion.loadJson(pm.loadBytes(applicationContext, path)));
+            expressions.put(name, L2DExpressionMotion.loadJson(pm.loadBuffer(applicationContext, path)));
         } catch (Exception e) {
             e.printStackTrace();
+        } finally {
+            p.end(mark, L2DLoadProfiler.PHASE_EXPRESSION, path);
+        }
+    }
+
+    /*
+     * 表情を登録する。ファイルはまだ読み込まない。
+     * @param name
+     * @param path
+     */
+    protected final void registerExpression(String name, String path) {
+        expressionFiles.put(name, path);
+    }
+
+    /*
+     * 表情を取得する。
+     * 読み込んでいなければバックグラウンドで読み込みを開始してnullを返す。
+     * 読み込み後はexpressionsに保持するので、以降はすぐに返る。
+     * @param applicationContext
+     * @param name
+     * @return
+     */
+    protected final AMotion requestExpression(final Context applicationContext, final String name) {
+        AMotion motion = expressions.get(name);
+        if (motion != null)
+            return motion;
+        final String path = expressionFiles.get(name);
+        if (path == null || !loadingExpressions.add(name))
+            return null; // 未登録か読み込み中
+
+        getAssetLoader().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    loadExpression(applicationContext, name, path);
+                } finally {
+                    loadingExpressions.remove(name);
+                }
+            }
+        });
+        return null;
+    }
+
+    private static synchronized ExecutorService getAssetLoader() {
+        if (assetLoader == null) {
+            assetLoader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "AssetLoader");
+                    t.setDaemon(true);
+                    t.setPriority(Thread.NORM_PRIORITY - 1); // 描画より優先しない
+                    return t;
+                }
+            });
+        }
+        return assetLoader;
+    }
+
+    /*
+     * 物理演算とポーズを読み込み用スレッドで読み込む。
+     * モデルの読み込みを待たせないように、表示した後のattachLoadedAssets()で使い始める。
+     * @param applicationContext
+     * @param physicsPath 無い場合はnull
+     * @param posePath 無い場合はnull
+     */
+    protected final void requestPhysicsAndPose(final Context applicationContext, final String physicsPath, final String posePath) {
+        physics = null;
+        pose = null;
+        loadedPhysics = null;
+        loadedPose = null;
+        if (physicsPath == null && posePath == null)
+            return; // どちらも無いモデル
+
+        getAssetLoader().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (physicsPath != null)
+                    loadedPhysics = loadPhysics(applicationContext, physicsPath);
+                if (posePath != null)
+                    loadedPose = loadPose(applicationContext, posePath);
+            }
+        });
+    }
+
+    /*
+     * 読み込みが終わった物理演算とポーズを使い始める。GLスレッドで更新の前に呼ぶ
+     */
+    protected final void attachLoadedAssets() {
+        L2DPhysics loaded = loadedPhysics;
+        if (loaded != null) {
+            loadedPhysics = null;
+            physics = loaded;
+        }
+        L2DPose loadedP = loadedPose;
+        if (loadedP != null) {
+            loadedPose = null;
+            pose = loadedP;
         }
     }
 
-    protected final void loadPose(Context applicationContext, String path) {
+    protected final L2DPose loadPose(Context applicationContext, String path) {
         IPlatformManager pm = Live2DFramework.getPlatformManager();
         if (debugMode)
             pm.log("Load Pose: " + path);
+        L2DLoadProfiler p = profiler;
+        int mark = p.begin();
         try {
-            pose = L2DPose.load(pm.loadBytes(applicationContext, path));
+            return L2DPose.load(pm.loadBuffer(applicationContext, path));
         } catch (Exception e) {
             e.printStackTrace();
+            return null;
+        } finally {
+            p.end(mark, L2DLoadProfiler.PHASE_POSE, path);
         }
     }
 
-    protected final void loadPhysics(Context applicationContext, String path) {
+    protected final L2DPhysics loadPhysics(Context applicationContext, String path) {
         IPlatformManager pm = Live2DFramework.getPlatformManager();
         if (debugMode)
             pm.log("Load Physics: " + path);
+        L2DLoadProfiler p = profiler;
+        int mark = p.begin();
         try {
-            physics = L2DPhysics.load(pm.loadBytes(applicationContext, path));
+            return L2DPhysics.load(pm.loadBuffer(applicationContext, path));
         } catch (Exception e) {
             e.printStackTrace();
+            return null;
+        } finally {
+            p.end(mark, L2DLoadProfiler.PHASE_PHYSICS, path);
         }
     }
 
@@ -0,0 +1,82 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+*/
+package jp.live2d.framework;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/*
+ * ByteBufferをInputStreamとして読む。
+ * IPlatformManager.loadBuffer()でマップしたファイルを、コピーせずにストリームを受け取るAPIへ渡すために使う。
+ * 元のバッファの位置は変更しない。
+ */
+public final class L2DBufferInputStream extends InputStream {
+    private final ByteBuffer buf;
+
+    public L2DBufferInputStream(ByteBuffer buf) {
+        this.buf = buf.duplicate();
+    }
+
+    @Override
+    public final int read() {
+        return buf.hasRemaining() ? buf.get() & 0xFF : -1;
+    }
+
+    @Override
+    public final int read(byte[] b, int off, int len) {
+        if (len == 0)
+            return 0;
+        if (!buf.hasRemaining())
+            return -1;
+        int n = Math.min(len, buf.remaining());
+        buf.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public final long skip(long n) {
+        if (n <= 0)
+            return 0;
+        int k = (int) Math.min(n, buf.remaining());
+        buf.position(buf.position() + k);
+        return k;
+    }
+
+    @Override
+    public final int available() {
+        return buf.remaining();
+    }
+
+    @Override
+    public final boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public final synchronized void mark(int readLimit) {
+        buf.mark();
+    }
+
+    @Override
+    public final synchronized void reset() {
+        buf.reset();
+    }
+
+    /*
+     * バッファの内容をbyte配列で取得する。
+     * ヒープ上のバッファで配列全体を使っている場合はコピーしない。
+     * @param buf
+     * @return
+     */
+    public static byte[] toBytes(ByteBuffer buf) {
+        if (buf.hasArray() && buf.arrayOffset() == 0 && buf.position() == 0 && buf.remaining() == buf.array().length)
+            return buf.array();
+        byte[] ret = new byte[buf.remaining()];
+        buf.duplicate().get(ret);
+        return ret;
+    }
+}
\ No newline at end of file
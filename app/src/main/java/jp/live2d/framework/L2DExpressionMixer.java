@@ -0,0 +1,211 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+*/
+package jp.live2d.framework;
+
+import jp.live2d.ALive2DModel;
+import jp.live2d.motion.AMotion;
+import jp.live2d.motion.MotionQueueManager;
+import jp.live2d.motion.MotionQueueManager.MotionQueueEnt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/*
+ * 複数の表情を重みをつけて同時に適用する。（例：笑顔0.6 + 照れ0.3）
+ *
+ * 各表情の加算・乗算・設定を、パラメータインデックス順に並べた1つの差分にまとめて保持する。
+ * 重みが変わるまでは作り直さないので、いくつ表情を重ねても1つ分の計算で済む。
+ *
+ * パラメータごとに 設定 → 乗算 → 加算 の順で適用する。
+ * 同じパラメータへの複数の設定は、順番に適用した場合と同じ結果になる1つの設定にまとめる。
+ *
+ * 1つのモーションとしてMotionQueueManagerで再生する（start()）。
+ * 再生中は重みを変えても開始し直さず、同じエントリがまとめ直した差分を適用する。
+ * 表情が無くなった、またはclear()した後は、次の更新でエントリを終わらせる。
+ * 再生中のエントリは、start()のたびに作るモーション（Entry）で見分ける。
+ */
+public final class L2DExpressionMixer {
+    private final ArrayList<L2DExpressionMotion> layers = new ArrayList<>();
+    private float[] layerWeights = new float[4];
+    private boolean dirty = true;
+    private ALive2DModel cachedModel = null; // まとめた差分のインデックスを求めたモデル
+    private Entry entry = null; // 再生中のもの。再生していない場合はnull
+    private int queueNo = -1;   // entryのstartMotion()の番号
+
+    // まとめた差分（インデックス順）
+    private int num = 0;
+    private int[] indices = new int[0];
+    private float[] addValues = new float[0];
+    private float[] multValues = new float[0];
+    private float[] setValues = new float[0];
+    private float[] setWeights = new float[0];
+
+    /*
+     * 表情の重みを設定する。
+     * @param expression
+     * @param weight 0以下で取り除く
+     */
+    public final synchronized void setWeight(L2DExpressionMotion expression, float weight) {
+        int n = layers.indexOf(expression);
+        if (weight <= 0) {
+            if (n < 0)
+                return;
+            layers.remove(n);
+            System.arraycopy(layerWeights, n + 1, layerWeights, n, layers.size() - n);
+        } else if (n < 0) {
+            if (layers.size() == layerWeights.length)
+                layerWeights = Arrays.copyOf(layerWeights, layerWeights.length * 2);
+            layerWeights[layers.size()] = weight;
+            layers.add(expression);
+        } else {
+            if (layerWeights[n] == weight)
+                return;
+            layerWeights[n] = weight;
+        }
+        dirty = true;
+    }
+
+    public final synchronized float getWeight(L2DExpressionMotion expression) {
+        int n = layers.indexOf(expression);
+        return n < 0 ? 0 : layerWeights[n];
+    }
+
+    /*
+     * すべての表情を取り除く
+     */
+    public final synchronized void clear() {
+        layers.clear();
+        entry = null; // 再生中のエントリは次の更新で終わる
+        queueNo = -1;
+        dirty = true;
+    }
+
+    public final synchronized boolean isEmpty() {
+        return layers.isEmpty();
+    }
+
+    /*
+     * 再生を開始する。再生中の場合は何もしない（重みの変更は再生中のエントリに反映される）
+     * @param manager
+     */
+    public final synchronized void start(MotionQueueManager manager) {
+        if (layers.isEmpty())
+            return;
+        if (entry != null && !manager.isFinished(queueNo))
+            return;
+        entry = new Entry();
+        queueNo = manager.startMotion(entry, false);
+    }
+
+    /*
+     * MotionQueueManagerで再生する1回分。
+     * 重みと差分はL2DExpressionMixerが持ち、再生中のものだけが適用する
+     */
+    private final class Entry extends AMotion {
+        @Override
+        public void updateParamExe(ALive2DModel model, long timeMSec, float weight, MotionQueueEnt motionQueueEnt) {
+            update(this, model, weight, motionQueueEnt);
+        }
+    }
+
+    /*
+     * 各表情をまとめた差分を作り直す
+     * @param model
+     */
+    private void rebuild(ALive2DModel model) {
+        // 対象になるパラメータのインデックスを集めて並べる
+        int total = 0;
+        for (L2DExpressionMotion layer : layers) {
+            total += layer.getParamNum();
+        }
+        int[] all = new int[total];
+        int k = 0;
+        for (L2DExpressionMotion layer : layers) {
+            for (int i = 0; i < layer.getParamNum(); i++) {
+                all[k++] = model.getParamIndex(layer.getParam(i).id);
+            }
+        }
+        Arrays.sort(all);
+        num = 0;
+        for (int i = 0; i < total; i++) {
+            if (num == 0 || all[num - 1] != all[i])
+                all[num++] = all[i];
+        }
+
+        indices = all;
+        addValues = new float[num];
+        multValues = new float[num];
+        setValues = new float[num];
+        setWeights = new float[num];
+        float[] keep = new float[num]; // 設定の後に残る元の値の割合
+        Arrays.fill(multValues, 1);
+        Arrays.fill(keep, 1);
+
+        k = 0;
+        for (L2DExpressionMotion layer : layers) {
+            float w = layerWeights[k++];
+            for (int i = 0; i < layer.getParamNum(); i++) {
+                L2DExpressionMotion.L2DExpressionParam param = layer.getParam(i);
+                int slot = Arrays.binarySearch(indices, 0, num, model.getParamIndex(param.id));
+                switch (param.type) {
+                    case L2DExpressionMotion.TYPE_ADD:
+                        addValues[slot] += param.value * w;
+                        break;
+                    case L2DExpressionMotion.TYPE_MULT:
+                        multValues[slot] *= 1 + (param.value - 1) * w;
+                        break;
+                    case L2DExpressionMotion.TYPE_SET:
+                        setValues[slot] = setValues[slot] * (1 - w) + param.value * w;
+                        keep[slot] *= 1 - w;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        // 重ねた設定を 値 と 重み の1つの設定に直す
+        for (int i = 0; i < num; i++) {
+            setWeights[i] = 1 - keep[i];
+            setValues[i] = setWeights[i] > 0 ? setValues[i] / setWeights[i] : 0;
+        }
+
+        cachedModel = model;
+        dirty = false;
+    }
+
+    /*
+     * モデルのパラメータを更新する。Entryから呼ぶ
+     * @param e 更新するEntry
+     * @param model
+     * @param weight
+     * @param motionQueueEnt
+     */
+    private synchronized void update(Entry e, ALive2DModel model, float weight, MotionQueueEnt motionQueueEnt) {
+        if (e != entry || layers.isEmpty()) {
+            // clear()した後、または他の表情に切り替えられたエントリ。何もせずにすぐ終わらせる
+            motionQueueEnt.startFadeout(0);
+            if (e == entry) {
+                entry = null;
+                queueNo = -1;
+            }
+            return;
+        }
+        if (dirty || model != cachedModel)
+            rebuild(model);
+
+        for (int i = 0; i < num; i++) {
+            int index = indices[i];
+            if (setWeights[i] > 0)
+                model.setParamFloat(index, setValues[i], setWeights[i] * weight); // 絶対変化
+            if (multValues[i] != 1)
+                model.multParamFloat(index, multValues[i], weight); // 相対変化 乗算
+            if (addValues[i] != 0)
+                model.addToParamFloat(index, addValues[i], weight); // 相対変化 加算
+        }
+    }
+}
\ No newline at end of file
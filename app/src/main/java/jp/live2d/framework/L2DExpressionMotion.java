@@ -14,6 +14,7 @@ import jp.live2d.util.Json.Value;
 import jp.live2d.util.UtFile;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Set;
@@ -27,9 +28,9 @@ import java.util.Set;
  */
 public final class L2DExpressionMotion extends AMotion {
     private static final String EXPRESSION_DEFAULT = "DEFAULT"; // 表情のデフォルト値要素のキー
-    private static final int TYPE_SET = 0;
-    private static final int TYPE_ADD = 1;
-    private static final int TYPE_MULT = 2;
+    static final int TYPE_SET = 0;
+    static final int TYPE_ADD = 1;
+    static final int TYPE_MULT = 2;
     private ArrayList<L2DExpressionParam> paramList;
 
     private L2DExpressionMotion() {
@@ -56,68 +57,104 @@ public final class L2DExpressionMotion extends AMotion {
      * @throws Exception
      */
     public static L2DExpressionMotion loadJson(byte[] buf) {
-        L2DExpressionMotion ret = new L2DExpressionMotion();
-        Value json = Json.parseFromBytes(buf);
-
-        ret.setFadeIn(json.get("fade_in").toInt(1000));        // フェードイン
-        ret.setFadeOut(json.get("fade_out").toInt(1000));    // フェードアウト
-
-        if (json.get("params") == null)
-            return ret;
-
-        // パラメータ一覧
-        Value params = json.get("params");
-        int paramNum = params.getVector(null).size();
-
-        ret.paramList = new ArrayList<>(paramNum);
-
-        for (int i = 0; i < paramNum; i++) {
-            Value param = params.get(i);
-            String paramID = param.get("id").toString();    // パラメータID
-            float value = param.get("val").toFloat();    // 値
-
-            // 計算方法の設定
-            int calcTypeInt;
-            String calc = param.get("calc") != null ? param.get("calc").toString() : "add";
-            switch (calc) {
-                case "add":
-                    calcTypeInt = TYPE_ADD;
-                    break;
-                case "mult":
-                    calcTypeInt = TYPE_MULT;
-                    break;
-                case "set":
-                    calcTypeInt = TYPE_SET;
-                    break;
-                default:
-                    // その他 仕様にない値を設定したときは加算モードにすることで復旧
-                    calcTypeInt = TYPE_ADD;
-                    break;
-            }
+        return loadJson(ByteBuffer.wrap(buf));
+    }
 
-            // 計算方法 加算
-            if (calcTypeInt == TYPE_ADD) {
-                float defaultValue = param.get("def") == null ? 0 : param.get("def").toFloat();
-                value = value - defaultValue;
-            }
-            // 計算方法 乗算
-            else if (calcTypeInt == TYPE_MULT) {
-                float defaultValue = param.get("def") == null ? 1 : param.get("def").toFloat(0);
-                if (defaultValue == 0)
-                    defaultValue = 1; // 0(不正値)を指定した場合は1(標準)にする
-                value = value / defaultValue;
+    /*
+     * JSONファイルから読み込み。木を作らずに前から順に読む。
+     * @param buf
+     * @return
+     */
+    public static L2DExpressionMotion loadJson(ByteBuffer buf) {
+        L2DExpressionMotion ret = new L2DExpressionMotion();
+        L2DJsonReader reader = new L2DJsonReader(buf);
+
+        int fadeIn = 1000;
+        int fadeOut = 1000;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if ("fade_in".equals(key)) {
+                fadeIn = reader.nextInt();
+            } else if ("fade_out".equals(key)) {
+                fadeOut = reader.nextInt();
+            } else if ("params".equals(key) && reader.peek() == L2DJsonReader.BEGIN_ARRAY) {
+                // パラメータ一覧
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    ret.paramList.add(readParam(reader));
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
             }
+        }
+        reader.endObject();
 
-            // 設定オブジェクトを作成してリストに追加する
-            L2DExpressionParam item = new L2DExpressionParam();
+        ret.setFadeIn(fadeIn);        // フェードイン
+        ret.setFadeOut(fadeOut);    // フェードアウト
+        return ret;
+    }
 
-            item.id = paramID;
-            item.type = calcTypeInt;
-            item.value = value;
+    private static L2DExpressionParam readParam(L2DJsonReader reader) {
+        String paramID = null; // パラメータID
+        float value = 0;       // 値
+        String calc = "add";
+        boolean hasDefault = false;
+        float defaultValue = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if ("id".equals(key)) {
+                paramID = reader.nextString();
+            } else if ("val".equals(key)) {
+                value = reader.nextFloat();
+            } else if ("calc".equals(key)) {
+                calc = reader.nextString();
+            } else if ("def".equals(key)) {
+                hasDefault = true;
+                defaultValue = reader.nextFloat();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        // 計算方法の設定
+        int calcTypeInt;
+        switch (calc == null ? "add" : calc) {
+            case "add":
+                calcTypeInt = TYPE_ADD;
+                break;
+            case "mult":
+                calcTypeInt = TYPE_MULT;
+                break;
+            case "set":
+                calcTypeInt = TYPE_SET;
+                break;
+            default:
+                // その他 仕様にない値を設定したときは加算モードにすることで復旧
+                calcTypeInt = TYPE_ADD;
+                break;
+        }
 
-            ret.paramList.add(item);
+        // 計算方法 加算
+        if (calcTypeInt == TYPE_ADD) {
+            value = value - (hasDefault ? defaultValue : 0);
         }
-        return ret;
+        // 計算方法 乗算
+        else if (calcTypeInt == TYPE_MULT) {
+            if (!hasDefault || defaultValue == 0)
+                defaultValue = 1; // 0(不正値)を指定した場合は1(標準)にする
+            value = value / defaultValue;
+        }
+
+        // 設定オブジェクトを作成する
+        L2DExpressionParam item = new L2DExpressionParam();
+        item.id = paramID;
+        item.type = calcTypeInt;
+        item.value = value;
+        return item;
     }
 
     /*
@@ -197,6 +234,14 @@ public final class L2DExpressionMotion extends AMotion {
         }
     }
 
+    final int getParamNum() {
+        return paramList.size();
+    }
+
+    final L2DExpressionParam getParam(int n) {
+        return paramList.get(n);
+    }
+
     /*
      * パラメータの設定に使用する
      */
@@ -0,0 +1,269 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+*/
+package jp.live2d.framework;
+
+/*
+ * 入力値（ドラッグ、傾き、外部のトラッキングなど）を滑らかにするフィルタ。
+ *
+ * 複数のチャンネルに同じ処理を順番にかける。処理は追加した順に
+ *  不感帯 → 範囲制限 → 変化速度の制限 → One Euroフィルタ → 臨界減衰ばね
+ * などを自由に組み合わせられる。
+ * 状態はすべてfloat配列に持ち、update()はメモリ確保を行わない。
+ * 経過時間（秒）を渡すので、フレームレートが変わっても同じ動きになる。
+ *
+ * 複数のモデルの入力をまとめる場合はチャンネルを並べて1回のupdate()で処理する。
+ */
+public final class L2DInputFilter {
+    private static final int STAGE_DEAD_ZONE = 0;
+    private static final int STAGE_CLAMP = 1;
+    private static final int STAGE_RATE_LIMIT = 2;
+    private static final int STAGE_ONE_EURO = 3;
+    private static final int STAGE_SPRING = 4;
+
+    private static final int PARAM_NUM = 3; // 処理ごとの設定値の数
+    private static final int STATE_NUM = 2; // 処理、チャンネルごとの状態の数
+    private static final float MAX_DELTA_TIME_SEC = 0.1f; // 止まっていた後などに飛ばないよう経過時間を制限する
+
+    private final int channelNum;
+    private final float[] input;
+    private final float[] output;
+    private int stageNum = 0;
+    private int[] stageTypes = new int[0];
+    private float[] stageParams = new float[0];
+    private float[] states = new float[0];      // [stage][channel][STATE_NUM]
+    private boolean[] initialized = new boolean[0]; // [stage][channel]
+
+    public L2DInputFilter(int channelNum) {
+        this.channelNum = channelNum;
+        this.input = new float[channelNum];
+        this.output = new float[channelNum];
+    }
+
+    public final int getChannelNum() {
+        return channelNum;
+    }
+
+    /*
+     * 中心付近の小さな値を0にする。境界で値が飛ばないよう、幅の分だけ詰める。
+     * @param width
+     * @return
+     */
+    public final L2DInputFilter addDeadZone(float width) {
+        return addStage(STAGE_DEAD_ZONE, width, 0, 0);
+    }
+
+    public final L2DInputFilter addClamp(float min, float max) {
+        return addStage(STAGE_CLAMP, min, max, 0);
+    }
+
+    /*
+     * 1秒あたりの変化量を制限する。
+     * @param maxPerSec
+     * @return
+     */
+    public final L2DInputFilter addRateLimit(float maxPerSec) {
+        return addStage(STAGE_RATE_LIMIT, maxPerSec, 0, 0);
+    }
+
+    /*
+     * One Euroフィルタ。ゆっくりした動きは強く平滑化し、速い動きは遅れを減らす。
+     * @param minCutoff 止まっているときのカットオフ周波数(Hz)。小さいほど手ぶれが減る
+     * @param beta 速度に対するカットオフの増え方。大きいほど速い動きに追従する
+     * @param derivativeCutoff 速度の平滑化のカットオフ周波数(Hz)
+     * @return
+     */
+    public final L2DInputFilter addOneEuro(float minCutoff, float beta, float derivativeCutoff) {
+        return addStage(STAGE_ONE_EURO, minCutoff, beta, derivativeCutoff);
+    }
+
+    /*
+     * 臨界減衰ばね。目標値に行き過ぎずに近づく。
+     * @param smoothTimeSec 目標に追いつくまでのおおよその時間
+     * @return
+     */
+    public final L2DInputFilter addSpring(float smoothTimeSec) {
+        return addStage(STAGE_SPRING, smoothTimeSec, 0, 0);
+    }
+
+    private L2DInputFilter addStage(int type, float p0, float p1, float p2) {
+        int n = stageNum + 1;
+        int[] types = new int[n];
+        float[] params = new float[n * PARAM_NUM];
+        float[] st = new float[n * channelNum * STATE_NUM];
+        boolean[] init = new boolean[n * channelNum];
+        System.arraycopy(stageTypes, 0, types, 0, stageNum);
+        System.arraycopy(stageParams, 0, params, 0, stageNum * PARAM_NUM);
+        System.arraycopy(states, 0, st, 0, states.length);
+        System.arraycopy(initialized, 0, init, 0, initialized.length);
+
+        types[stageNum] = type;
+        params[stageNum * PARAM_NUM] = p0;
+        params[stageNum * PARAM_NUM + 1] = p1;
+        params[stageNum * PARAM_NUM + 2] = p2;
+
+        stageTypes = types;
+        stageParams = params;
+        states = st;
+        initialized = init;
+        stageNum = n;
+        return this;
+    }
+
+    /*
+     * 入力値を設定する
+     * @param ch
+     * @param value
+     */
+    public final void set(int ch, float value) {
+        input[ch] = value;
+    }
+
+    /*
+     * フィルタ後の値
+     * @param ch
+     * @return
+     */
+    public final float get(int ch) {
+        return output[ch];
+    }
+
+    /*
+     * チャンネルの状態を指定した値で初期化する
+     * @param ch
+     * @param value
+     */
+    public final void reset(int ch, float value) {
+        input[ch] = value;
+        output[ch] = value;
+        for (int s = 0; s < stageNum; s++) {
+            initialized[s * channelNum + ch] = false;
+        }
+    }
+
+    /*
+     * すべてのチャンネルを更新する
+     * @param deltaTimeSec 前回からの経過時間
+     */
+    public final void update(float deltaTimeSec) {
+        if (deltaTimeSec > MAX_DELTA_TIME_SEC)
+            deltaTimeSec = MAX_DELTA_TIME_SEC;
+
+        System.arraycopy(input, 0, output, 0, channelNum);
+        if (deltaTimeSec <= 0)
+            deltaTimeSec = 0;
+
+        for (int s = 0; s < stageNum; s++) {
+            float p0 = stageParams[s * PARAM_NUM];
+            float p1 = stageParams[s * PARAM_NUM + 1];
+            float p2 = stageParams[s * PARAM_NUM + 2];
+            int base = s * channelNum;
+
+            switch (stageTypes[s]) {
+                case STAGE_DEAD_ZONE:
+                    for (int ch = 0; ch < channelNum; ch++) {
+                        float v = output[ch];
+                        if (v > p0)
+                            output[ch] = v - p0;
+                        else if (v < -p0)
+                            output[ch] = v + p0;
+                        else
+                            output[ch] = 0;
+                    }
+                    break;
+                case STAGE_CLAMP:
+                    for (int ch = 0; ch < channelNum; ch++) {
+                        float v = output[ch];
+                        output[ch] = v < p0 ? p0 : (v > p1 ? p1 : v);
+                    }
+                    break;
+                case STAGE_RATE_LIMIT:
+                    rateLimit(base, p0 * deltaTimeSec);
+                    break;
+                case STAGE_ONE_EURO:
+                    oneEuro(base, p0, p1, p2, deltaTimeSec);
+                    break;
+                case STAGE_SPRING:
+                    spring(base, p0, deltaTimeSec);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void rateLimit(int base, float maxDelta) {
+        for (int ch = 0; ch < channelNum; ch++) {
+            int si = (base + ch) * STATE_NUM;
+            if (!initialized[base + ch]) {
+                initialized[base + ch] = true;
+                states[si] = output[ch];
+                continue;
+            }
+            float d = output[ch] - states[si];
+            if (d > maxDelta)
+                d = maxDelta;
+            if (d < -maxDelta)
+                d = -maxDelta;
+            states[si] += d;
+            output[ch] = states[si];
+        }
+    }
+
+    private void oneEuro(int base, float minCutoff, float beta, float derivativeCutoff, float dt) {
+        float derivativeAlpha = alpha(derivativeCutoff, dt);
+        for (int ch = 0; ch < channelNum; ch++) {
+            int si = (base + ch) * STATE_NUM;
+            float x = output[ch];
+            if (!initialized[base + ch] || dt <= 0) {
+                if (!initialized[base + ch]) {
+                    initialized[base + ch] = true;
+                    states[si] = x;
+                    states[si + 1] = 0;
+                }
+                output[ch] = states[si];
+                continue;
+            }
+            float prev = states[si];
+            // 速度を平滑化して、それに応じてカットオフを変える
+            float dx = (x - prev) / dt;
+            float edx = states[si + 1] + derivativeAlpha * (dx - states[si + 1]);
+            float cutoff = minCutoff + beta * (edx < 0 ? -edx : edx);
+            float v = prev + alpha(cutoff, dt) * (x - prev);
+
+            states[si] = v;
+            states[si + 1] = edx;
+            output[ch] = v;
+        }
+    }
+
+    private void spring(int base, float smoothTimeSec, float dt) {
+        // Game Programming Gems 4 "Critically Damped Ease-In/Ease-Out Smoothing"
+        float omega = 2.0f / smoothTimeSec;
+        float x = omega * dt;
+        float exp = 1.0f / (1.0f + x + 0.48f * x * x + 0.235f * x * x * x);
+        for (int ch = 0; ch < channelNum; ch++) {
+            int si = (base + ch) * STATE_NUM;
+            float target = output[ch];
+            if (!initialized[base + ch]) {
+                initialized[base + ch] = true;
+                states[si] = target;
+                states[si + 1] = 0;
+                continue;
+            }
+            float change = states[si] - target;
+            float temp = (states[si + 1] + omega * change) * dt;
+            states[si + 1] = (states[si + 1] - omega * temp) * exp;
+            states[si] = target + (change + temp) * exp;
+            output[ch] = states[si];
+        }
+    }
+
+    private static float alpha(float cutoff, float dt) {
+        float tau = 1.0f / (2.0f * (float) Math.PI * cutoff);
+        return 1.0f / (1.0f + tau / dt);
+    }
+}
\ No newline at end of file
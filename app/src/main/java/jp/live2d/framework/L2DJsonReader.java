@@ -0,0 +1,518 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+*/
+package jp.live2d.framework;
+
+import java.nio.ByteBuffer;
+
+/*
+ * プル型のJSONリーダー。
+ *
+ * Json.parseFromBytesのように全体の木を作らず、前から順に値を取り出す。
+ * 数値は文字列を経由せずに直接変換する。
+ * オブジェクトのキーは同じ文字列を使い回すので、同じキーが何度出てきても新しく確保しない。
+ * 先頭のBOMは読み飛ばす。
+ *
+ *  reader.beginObject();
+ *  while (reader.hasNext()) {
+ *      String key = reader.nextName();
+ *      if ("id".equals(key)) id = reader.nextString();
+ *      else reader.skipValue();
+ *  }
+ *  reader.endObject();
+ *
+ * 形式が不正な場合はIllegalStateExceptionを投げる。
+ */
+public final class L2DJsonReader {
+    public static final int BEGIN_OBJECT = 0;
+    public static final int END_OBJECT = 1;
+    public static final int BEGIN_ARRAY = 2;
+    public static final int END_ARRAY = 3;
+    public static final int NAME = 4;
+    public static final int STRING = 5;
+    public static final int NUMBER = 6;
+    public static final int BOOLEAN = 7;
+    public static final int NULL = 8;
+    public static final int END_DOCUMENT = 9;
+
+    private static final int NAME_CACHE_SIZE = 64; // 2のべき乗
+    private static final int MAX_DEPTH = 64;
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    // 入れ子の状態
+    private static final int SCOPE_EMPTY_OBJECT = 0;
+    private static final int SCOPE_OBJECT_NAME = 1;  // キーを読んだ後
+    private static final int SCOPE_OBJECT_VALUE = 2; // 値を読んだ後
+    private static final int SCOPE_EMPTY_ARRAY = 3;
+    private static final int SCOPE_ARRAY = 4;
+
+    private final ByteBuffer buf;
+    private final int limit;
+    private int pos;
+    private final int[] scopes = new int[MAX_DEPTH];
+    private int depth = 0;
+    private int peeked = -1;
+    private char[] chars = new char[64]; // 文字列の展開用
+    private final String[] nameCache = new String[NAME_CACHE_SIZE];
+
+    public L2DJsonReader(byte[] buf) {
+        this(ByteBuffer.wrap(buf));
+    }
+
+    /*
+     * @param buf positionからlimitまでを読む。bufのpositionは変えない
+     */
+    public L2DJsonReader(ByteBuffer buf) {
+        this.buf = buf;
+        this.pos = buf.position();
+        this.limit = buf.limit();
+        // BOM（二重に付いているものもある）
+        while (pos + 2 < limit && (buf.get(pos) & 0xFF) == 0xEF && (buf.get(pos + 1) & 0xFF) == 0xBB && (buf.get(pos + 2) & 0xFF) == 0xBF) {
+            pos += 3;
+        }
+    }
+
+    /*
+     * 次の要素の種類
+     * @return BEGIN_OBJECTなどの定数
+     */
+    public final int peek() {
+        if (peeked < 0)
+            peeked = doPeek();
+        return peeked;
+    }
+
+    public final void beginObject() {
+        expect(BEGIN_OBJECT);
+        push(SCOPE_EMPTY_OBJECT);
+    }
+
+    public final void endObject() {
+        expect(END_OBJECT);
+        depth--;
+    }
+
+    public final void beginArray() {
+        expect(BEGIN_ARRAY);
+        push(SCOPE_EMPTY_ARRAY);
+    }
+
+    public final void endArray() {
+        expect(END_ARRAY);
+        depth--;
+    }
+
+    /*
+     * 現在のオブジェクト、配列に次の要素があるか
+     * @return
+     */
+    public final boolean hasNext() {
+        int p = peek();
+        return p != END_OBJECT && p != END_ARRAY && p != END_DOCUMENT;
+    }
+
+    /*
+     * オブジェクトのキー。同じキーには同じStringを返す
+     * @return
+     */
+    public final String nextName() {
+        expect(NAME);
+        int start = pos;
+        int hash = 0;
+        boolean plain = true;
+        for (int i = start; ; i++) {
+            if (i >= limit)
+                throw syntaxError("Unterminated string");
+            int c = buf.get(i);
+            if (c == '"') {
+                if (plain)
+                    return cachedName(start, i, hash);
+                break;
+            }
+            if (c == '\\' || c < 0) {
+                plain = false;
+                break;
+            }
+            hash = hash * 31 + c;
+        }
+        return readString();
+    }
+
+    public final String nextString() {
+        int p = peek();
+        if (p == STRING) {
+            expect(STRING);
+            return readString();
+        }
+        if (p == NUMBER || p == BOOLEAN) {
+            // 数値などは書かれたとおりの文字列にする
+            peeked = -1;
+            int start = pos;
+            skipLiteral();
+            return ascii(start, pos);
+        }
+        if (p == NULL) {
+            nextNull();
+            return null;
+        }
+        throw syntaxError("Expected a string");
+    }
+
+    public final float nextFloat() {
+        return (float) nextDouble();
+    }
+
+    public final int nextInt() {
+        return (int) nextDouble();
+    }
+
+    public final double nextDouble() {
+        int p = peek();
+        if (p == STRING) {
+            // 文字列で書かれた数値
+            peeked = -1;
+            pos++;
+            double v = readNumber();
+            if (pos >= limit || buf.get(pos) != '"')
+                throw syntaxError("Expected a number");
+            pos++;
+            return v;
+        }
+        expect(NUMBER);
+        return readNumber();
+    }
+
+    public final boolean nextBoolean() {
+        expect(BOOLEAN);
+        boolean v = buf.get(pos) == 't';
+        skipLiteral();
+        return v;
+    }
+
+    public final void nextNull() {
+        expect(NULL);
+        skipLiteral();
+    }
+
+    /*
+     * 次の値を読み飛ばす。オブジェクト、配列は中身ごと飛ばす
+     */
+    public final void skipValue() {
+        int count = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT:
+                    beginObject();
+                    count++;
+                    break;
+                case BEGIN_ARRAY:
+                    beginArray();
+                    count++;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    count--;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    count--;
+                    break;
+                case NAME:
+                case STRING:
+                    peeked = -1;
+                    skipString();
+                    break;
+                case NUMBER:
+                case BOOLEAN:
+                case NULL:
+                    peeked = -1;
+                    skipLiteral();
+                    break;
+                default:
+                    throw syntaxError("Unexpected end of document");
+            }
+        } while (count != 0);
+    }
+
+    //=========================================================
+    // 	字句解析
+    //=========================================================
+    private void expect(int type) {
+        if (peek() != type)
+            throw syntaxError("Expected " + type + " but was " + peeked);
+        peeked = -1;
+        if (type == NAME || type == STRING)
+            pos++; // 開きの"
+    }
+
+    private void push(int scope) {
+        if (depth == MAX_DEPTH)
+            throw syntaxError("Nesting too deep");
+        scopes[depth++] = scope;
+    }
+
+    private int doPeek() {
+        if (depth > 0) {
+            int scope = scopes[depth - 1];
+            if (scope == SCOPE_EMPTY_OBJECT || scope == SCOPE_OBJECT_VALUE) {
+                int c = nextNonWhitespace();
+                if (c == '}') {
+                    pos++;
+                    return END_OBJECT;
+                }
+                if (scope == SCOPE_OBJECT_VALUE) {
+                    if (c != ',')
+                        throw syntaxError("Expected ',' or '}'");
+                    pos++;
+                    c = nextNonWhitespace();
+                }
+                if (c != '"')
+                    throw syntaxError("Expected a name");
+                scopes[depth - 1] = SCOPE_OBJECT_NAME;
+                return NAME;
+            }
+            if (scope == SCOPE_OBJECT_NAME) {
+                if (nextNonWhitespace() != ':')
+                    throw syntaxError("Expected ':'");
+                pos++;
+                scopes[depth - 1] = SCOPE_OBJECT_VALUE;
+            } else {
+                int c = nextNonWhitespace();
+                if (c == ']') {
+                    pos++;
+                    return END_ARRAY;
+                }
+                if (scope == SCOPE_ARRAY) {
+                    if (c != ',')
+                        throw syntaxError("Expected ',' or ']'");
+                    pos++;
+                }
+                scopes[depth - 1] = SCOPE_ARRAY;
+            }
+        }
+
+        int c = nextNonWhitespace();
+        switch (c) {
+            case -1:
+                return END_DOCUMENT;
+            case '{':
+                pos++;
+                return BEGIN_OBJECT;
+            case '[':
+                pos++;
+                return BEGIN_ARRAY;
+            case '"':
+                return STRING;
+            case 't':
+            case 'f':
+                return BOOLEAN;
+            case 'n':
+                return NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9'))
+                    return NUMBER;
+                throw syntaxError("Unexpected character");
+        }
+    }
+
+    private int nextNonWhitespace() {
+        while (pos < limit) {
+            int c = buf.get(pos);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t')
+                return c;
+            pos++;
+        }
+        return -1;
+    }
+
+    private void skipLiteral() {
+        while (pos < limit) {
+            int c = buf.get(pos);
+            if (c == ',' || c == '}' || c == ']' || c == ' ' || c == '\n' || c == '\r' || c == '\t')
+                break;
+            pos++;
+        }
+    }
+
+    private void skipString() {
+        pos++;
+        while (pos < limit) {
+            int c = buf.get(pos++);
+            if (c == '"')
+                return;
+            if (c == '\\')
+                pos++;
+        }
+        throw syntaxError("Unterminated string");
+    }
+
+    /*
+     * 開きの"の次から閉じの"までを読む
+     */
+    private String readString() {
+        int n = 0;
+        while (true) {
+            if (pos >= limit)
+                throw syntaxError("Unterminated string");
+            int c = buf.get(pos++) & 0xFF;
+            if (c == '"')
+                break;
+            if (n + 2 > chars.length) {
+                char[] a = new char[chars.length * 2];
+                System.arraycopy(chars, 0, a, 0, n);
+                chars = a;
+            }
+            if (c == '\\') {
+                c = buf.get(pos++);
+                switch (c) {
+                    case 'n':
+                        chars[n++] = '\n';
+                        break;
+                    case 't':
+                        chars[n++] = '\t';
+                        break;
+                    case 'r':
+                        chars[n++] = '\r';
+                        break;
+                    case 'b':
+                        chars[n++] = '\b';
+                        break;
+                    case 'f':
+                        chars[n++] = '\f';
+                        break;
+                    case 'u':
+                        if (pos + 4 > limit)
+                            throw syntaxError("Unterminated escape");
+                        chars[n++] = (char) ((hex(pos) << 12) | (hex(pos + 1) << 8) | (hex(pos + 2) << 4) | hex(pos + 3));
+                        pos += 4;
+                        break;
+                    default:
+                        chars[n++] = (char) c; // " \ /
+                        break;
+                }
+            } else if (c < 0x80) {
+                chars[n++] = (char) c;
+            } else if (c < 0xE0) {
+                chars[n++] = (char) (((c & 0x1F) << 6) | (buf.get(pos++) & 0x3F));
+            } else if (c < 0xF0) {
+                chars[n++] = (char) (((c & 0x0F) << 12) | ((buf.get(pos) & 0x3F) << 6) | (buf.get(pos + 1) & 0x3F));
+                pos += 2;
+            } else {
+                // サロゲートペア
+                int cp = ((c & 0x07) << 18) | ((buf.get(pos) & 0x3F) << 12) | ((buf.get(pos + 1) & 0x3F) << 6) | (buf.get(pos + 2) & 0x3F);
+                pos += 3;
+                chars[n++] = Character.highSurrogate(cp);
+                chars[n++] = Character.lowSurrogate(cp);
+            }
+        }
+        return new String(chars, 0, n);
+    }
+
+    private int hex(int i) {
+        int c = buf.get(i);
+        if (c >= '0' && c <= '9')
+            return c - '0';
+        if (c >= 'a' && c <= 'f')
+            return c - 'a' + 10;
+        if (c >= 'A' && c <= 'F')
+            return c - 'A' + 10;
+        throw syntaxError("Invalid escape");
+    }
+
+    /*
+     * エスケープの無いASCIIのキーをキャッシュから返す
+     */
+    private String cachedName(int start, int end, int hash) {
+        pos = end + 1;
+        int slot = (hash ^ (hash >>> 16)) & (NAME_CACHE_SIZE - 1);
+        String s = nameCache[slot];
+        if (s != null && s.length() == end - start) {
+            int i = 0;
+            while (i < s.length() && s.charAt(i) == buf.get(start + i)) {
+                i++;
+            }
+            if (i == s.length())
+                return s;
+        }
+        s = ascii(start, end);
+        nameCache[slot] = s;
+        return s;
+    }
+
+    private String ascii(int start, int end) {
+        if (end - start > chars.length)
+            chars = new char[end - start];
+        for (int i = start; i < end; i++) {
+            chars[i - start] = (char) buf.get(i);
+        }
+        return new String(chars, 0, end - start);
+    }
+
+    /*
+     * 数値を読む。仮数を整数で集めてから10のべき乗を掛ける
+     */
+    private double readNumber() {
+        boolean negative = false;
+        if (pos < limit && buf.get(pos) == '-') {
+            negative = true;
+            pos++;
+        }
+        long mantissa = 0;
+        int exp10 = 0;
+        int digits = 0;
+        int c = pos < limit ? buf.get(pos) : -1;
+        if (c < '0' || c > '9')
+            throw syntaxError("Invalid number");
+        while (c >= '0' && c <= '9') {
+            if (digits < 18) {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0)
+                    digits++;
+            } else {
+                exp10++; // 有効桁を超えた分
+            }
+            c = ++pos < limit ? buf.get(pos) : -1;
+        }
+        if (c == '.') {
+            c = ++pos < limit ? buf.get(pos) : -1;
+            while (c >= '0' && c <= '9') {
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa != 0)
+                        digits++;
+                    exp10--;
+                }
+                c = ++pos < limit ? buf.get(pos) : -1;
+            }
+        }
+        if (c == 'e' || c == 'E') {
+            c = ++pos < limit ? buf.get(pos) : -1;
+            boolean expNegative = c == '-';
+            if (c == '-' || c == '+')
+                c = ++pos < limit ? buf.get(pos) : -1;
+            int e = 0;
+            while (c >= '0' && c <= '9') {
+                if (e < 10000)
+                    e = e * 10 + (c - '0');
+                c = ++pos < limit ? buf.get(pos) : -1;
+            }
+            exp10 += expNegative ? -e : e;
+        }
+
+        double v = mantissa;
+        if (exp10 < 0)
+            v = exp10 >= -22 ? v / POW10[-exp10] : v / Math.pow(10, -exp10);
+        else if (exp10 > 0)
+            v = exp10 <= 22 ? v * POW10[exp10] : v * Math.pow(10, exp10);
+        return negative ? -v : v;
+    }
+
+    private IllegalStateException syntaxError(String message) {
+        return new IllegalStateException(message + " at offset " + (pos - buf.position()));
+    }
+}
\ No newline at end of file
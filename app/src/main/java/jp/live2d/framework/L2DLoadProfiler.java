@@ -0,0 +1,230 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+*/
+package jp.live2d.framework;
+
+import android.os.Debug;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/*
+ * モデルの読み込みの計測。
+ *
+ * 段階（設定、moc、テクスチャ、表情など）とファイルごとに
+ *  経過時間、CPU時間、読み込んだバイト数、確保したメモリ
+ * を記録し、getReport()で一覧、getSummary()で1行にまとめる。
+ *
+ *  int mark = profiler.begin();
+ *  ...読み込み...
+ *  profiler.end(mark, L2DLoadProfiler.PHASE_MOTION, path);
+ *
+ * 記録は配列に追記するだけなので、リリースビルドでも有効のままにできる。
+ * finish()の後の記録は無視する。読み込み後のモーションの再生などで、記録が増え続けないように。
+ * 読み込んだバイト数はスレッドごとに数える。IPlatformManagerなどの読み込み側でcountBytes()を呼ぶ。
+ * 確保したメモリはsetAllocationCounting(true)のときだけ数える（VMの割り当てが遅くなるためデバッグ用）。
+ * 複数のスレッドから記録できる。
+ */
+public final class L2DLoadProfiler {
+    public static final int PHASE_SETTING = 0;
+    public static final int PHASE_MODEL = 1;
+    public static final int PHASE_TEXTURE_DECODE = 2;
+    public static final int PHASE_TEXTURE_UPLOAD = 3;
+    public static final int PHASE_EXPRESSION = 4;
+    public static final int PHASE_PHYSICS = 5;
+    public static final int PHASE_POSE = 6;
+    public static final int PHASE_MOTION = 7;
+    public static final int PHASE_SOUND = 8;
+    private static final String[] PHASE_NAMES = {
+            "setting", "model", "decode", "upload", "expression", "physics", "pose", "motion", "sound"};
+
+    private static final ThreadLocal<long[]> threadBytes = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+    private static volatile boolean allocationCounting = false;
+
+    private final String name;
+    private long startNanos = 0;
+    private long finishNanos = 0;
+    // 記録。begin()で開始時の値、end()で差分を入れる
+    private int num = 0;
+    private int[] phases = new int[32];
+    private String[] paths = new String[32];
+    private long[] wallNanos = new long[32];
+    private long[] cpuNanos = new long[32];
+    private long[] bytes = new long[32];
+    private long[] allocBytes = new long[32];
+
+    public L2DLoadProfiler(String name) {
+        this.name = name;
+    }
+
+    /*
+     * 確保したメモリを数えるか。すべてのスレッドに影響する
+     * @param enabled
+     */
+    public static void setAllocationCounting(boolean enabled) {
+        if (enabled == allocationCounting)
+            return;
+        allocationCounting = enabled;
+        if (enabled)
+            Debug.startAllocCounting();
+        else
+            Debug.stopAllocCounting();
+    }
+
+    /*
+     * 現在のスレッドで読み込んだバイト数を加える
+     * @param n
+     */
+    public static void countBytes(long n) {
+        threadBytes.get()[0] += n;
+    }
+
+    /*
+     * 読み込み全体の開始
+     */
+    public final synchronized void start() {
+        startNanos = System.nanoTime();
+        finishNanos = 0;
+    }
+
+    /*
+     * 読み込み全体の終了
+     */
+    public final synchronized void finish() {
+        finishNanos = System.nanoTime();
+    }
+
+    /*
+     * 計測を開始する
+     * @return end()に渡す番号。finish()の後は-1
+     */
+    public final synchronized int begin() {
+        if (finishNanos != 0)
+            return -1;
+        if (num == phases.length) {
+            int n = num * 2;
+            phases = Arrays.copyOf(phases, n);
+            paths = Arrays.copyOf(paths, n);
+            wallNanos = Arrays.copyOf(wallNanos, n);
+            cpuNanos = Arrays.copyOf(cpuNanos, n);
+            bytes = Arrays.copyOf(bytes, n);
+            allocBytes = Arrays.copyOf(allocBytes, n);
+        }
+        int mark = num++;
+        phases[mark] = -1; // 計測中
+        cpuNanos[mark] = Debug.threadCpuTimeNanos();
+        bytes[mark] = threadBytes.get()[0];
+        allocBytes[mark] = allocationCounting ? Debug.getThreadAllocSize() : 0;
+        wallNanos[mark] = System.nanoTime();
+        return mark;
+    }
+
+    /*
+     * 計測を終了する。begin()と同じスレッドから呼ぶ
+     * @param mark
+     * @param phase PHASE_MODELなど
+     * @param path
+     */
+    public final synchronized void end(int mark, int phase, String path) {
+        if (mark < 0)
+            return;
+        wallNanos[mark] = System.nanoTime() - wallNanos[mark];
+        cpuNanos[mark] = Debug.threadCpuTimeNanos() - cpuNanos[mark];
+        bytes[mark] = threadBytes.get()[0] - bytes[mark];
+        allocBytes[mark] = allocationCounting ? Debug.getThreadAllocSize() - allocBytes[mark] : 0;
+        phases[mark] = phase;
+        paths[mark] = path;
+    }
+
+    /*
+     * 読み込み全体の経過時間
+     * @return 終わっていない場合は現在まで
+     */
+    public final synchronized long getTotalNanos() {
+        if (startNanos == 0)
+            return 0;
+        return (finishNanos != 0 ? finishNanos : System.nanoTime()) - startNanos;
+    }
+
+    /*
+     * 段階ごとの合計。[0]経過時間 [1]CPU時間 [2]バイト数 [3]確保したメモリ [4]ファイル数
+     * @return
+     */
+    private long[][] sumPhases() {
+        long[][] sums = new long[PHASE_NAMES.length][5];
+        for (int i = 0; i < num; i++) {
+            if (phases[i] < 0)
+                continue;
+            long[] s = sums[phases[i]];
+            s[0] += wallNanos[i];
+            s[1] += cpuNanos[i];
+            s[2] += bytes[i];
+            s[3] += allocBytes[i];
+            s[4]++;
+        }
+        return sums;
+    }
+
+    /*
+     * 1行のまとめ。
+     * 例 "haru: 412.3ms read 9.8MB | model 40.1ms decode 300.2ms ..."
+     * テクスチャの展開は並列なので、段階の合計は全体の時間を超えることがある。
+     * @return
+     */
+    public final synchronized String getSummary() {
+        long[][] sums = sumPhases();
+        long totalBytes = 0;
+        long totalAlloc = 0;
+        for (long[] s : sums) {
+            totalBytes += s[2];
+            totalAlloc += s[3];
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(name).append(String.format(Locale.US, ": %.1fms read %.1fMB", getTotalNanos() / 1e6, totalBytes / 1048576.0));
+        if (allocationCounting)
+            sb.append(String.format(Locale.US, " alloc %.1fMB", totalAlloc / 1048576.0));
+        sb.append(" |");
+        for (int p = 0; p < sums.length; p++) {
+            if (sums[p][4] > 0)
+                sb.append(String.format(Locale.US, " %s %.1fms", PHASE_NAMES[p], sums[p][0] / 1e6));
+        }
+        return sb.toString();
+    }
+
+    /*
+     * 段階ごとの合計とファイルごとの一覧。
+     * 列は 経過時間(ms) CPU時間(ms) 読み込み(KB) 確保(KB)。確保は数えていない場合は"-"
+     * @return
+     */
+    public final synchronized String getReport() {
+        long[][] sums = sumPhases();
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "Load report: %s total %.1fms\n", name, getTotalNanos() / 1e6));
+        sb.append(String.format(Locale.US, "%-12s %5s %9s %9s %9s %9s\n", "phase", "files", "wall_ms", "cpu_ms", "read_kb", "alloc_kb"));
+        for (int p = 0; p < sums.length; p++) {
+            if (sums[p][4] > 0)
+                appendRow(sb, String.format(Locale.US, "%-12s %5d", PHASE_NAMES[p], sums[p][4]), sums[p][0], sums[p][1], sums[p][2], sums[p][3]).append('\n');
+        }
+        sb.append(String.format(Locale.US, "%-12s %5s %9s %9s %9s %9s %s\n", "phase", "", "wall_ms", "cpu_ms", "read_kb", "alloc_kb", "file"));
+        for (int i = 0; i < num; i++) {
+            if (phases[i] < 0)
+                continue;
+            appendRow(sb, String.format(Locale.US, "%-12s %5s", PHASE_NAMES[phases[i]], ""), wallNanos[i], cpuNanos[i], bytes[i], allocBytes[i])
+                    .append(' ').append(paths[i]).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static StringBuilder appendRow(StringBuilder sb, String head, long wall, long cpu, long read, long alloc) {
+        return sb.append(String.format(Locale.US, "%s %9.2f %9.2f %9.1f %9s", head, wall / 1e6, cpu / 1e6, read / 1024.0,
+                allocationCounting ? String.format(Locale.US, "%.1f", alloc / 1024.0) : "-"));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,188 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+*/
+package jp.live2d.framework;
+
+import jp.live2d.ALive2DModel;
+
+/*
+ * L2DParamEncoderで書き出したフレームを復元する。
+ * 最初のキーフレームを受け取るまでは差分フレームを読み捨てる。
+ * キーフレームのテーブルのハッシュが一致しない場合は、別のモデルのフレームなので使わない（isMismatched()）。
+ */
+public final class L2DParamDecoder {
+    private final L2DParamTable table;
+    private final int[] values; // 量子化された現在値
+    private boolean synced = false;
+    private boolean mismatched = false;
+    private int lastSeq;
+    private long lastTimeMSec;
+    private int pos; // 読み込み位置
+    private int end; // 読み込みの終わり
+
+    public L2DParamDecoder(L2DParamTable table) {
+        this.table = table;
+        this.values = new int[table.size()];
+    }
+
+    public final L2DParamTable getTable() {
+        return table;
+    }
+
+    /*
+     * キーフレームを受け取って値が揃っていればtrue
+     * @return
+     */
+    public final boolean isSynced() {
+        return synced;
+    }
+
+    /*
+     * 最後に受け取ったキーフレームが別のモデルのものだった
+     * @return
+     */
+    public final boolean isMismatched() {
+        return mismatched;
+    }
+
+    public final int getLastSeq() {
+        return lastSeq;
+    }
+
+    /*
+     * 最後に読み込んだフレームの送信側時刻
+     * @return
+     */
+    public final long getLastTimeMSec() {
+        return lastTimeMSec;
+    }
+
+    /*
+     * フレームを1つ読み込む。
+     * 壊れたフレームはfalseを返す。途中まで値を更新しているので、次のキーフレームまで使わない
+     * @param buf
+     * @param offset
+     * @param length
+     * @return 値が更新されたらtrue
+     */
+    public final boolean decode(byte[] buf, int offset, int length) {
+        if (offset < 0 || length <= 0 || offset + length > buf.length)
+            return false;
+        pos = offset;
+        end = offset + length;
+        int type = buf[pos++];
+
+        if (type != L2DParamEncoder.TYPE_KEY) {
+            if (type != L2DParamEncoder.TYPE_DELTA || !synced)
+                return false; // キーフレーム待ち
+        }
+
+        long seq = readVarInt(buf);
+        long timeMSec = readVarInt(buf);
+        if (seq < 0 || timeMSec < 0)
+            return false;
+        if (type == L2DParamEncoder.TYPE_KEY) {
+            if (pos + 4 > end)
+                return false;
+            int tableHash = readInt(buf);
+            mismatched = tableHash != table.getHash();
+            if (mismatched) {
+                synced = false; // 以降の差分も使わない
+                return false;
+            }
+        }
+        long count = readVarInt(buf);
+        if (count < 0 || count > values.length)
+            return broken();
+
+        long n = -1;
+        for (int i = 0; i < count; i++) {
+            long delta = readVarInt(buf);
+            long v = readVarInt(buf);
+            if (delta < 0 || v < 0)
+                return broken();
+            n += delta + 1;
+            if (n >= values.length)
+                return broken(); // モデルが一致していない
+            int q = (int) v;
+            if (type == L2DParamEncoder.TYPE_KEY) {
+                values[(int) n] = q;
+            } else {
+                values[(int) n] += (q >>> 1) ^ -(q & 1); // zigzag
+            }
+        }
+
+        if (type == L2DParamEncoder.TYPE_KEY)
+            synced = true;
+        lastSeq = (int) seq;
+        lastTimeMSec = timeMSec;
+        return true;
+    }
+
+    /*
+     * 復元した値
+     * @param n テーブル上の番号
+     * @return
+     */
+    public final float getValue(int n) {
+        return table.dequantize(n, values[n]);
+    }
+
+    /*
+     * 復元した値をすべて配列にコピーする。
+     * @param dst table.size()以上の長さ
+     */
+    public final void getValues(float[] dst) {
+        for (int n = 0; n < values.length; n++) {
+            dst[n] = table.dequantize(n, values[n]);
+        }
+    }
+
+    /*
+     * 復元した値をモデルに設定する。
+     * @param model
+     */
+    public final void applyTo(ALive2DModel model) {
+        if (!synced)
+            return;
+        for (int n = 0; n < values.length; n++) {
+            model.setParamFloat(table.getIndex(n), table.dequantize(n, values[n]));
+        }
+    }
+
+    private int readInt(byte[] buf) {
+        int v = ((buf[pos] & 0xFF) << 24) | ((buf[pos + 1] & 0xFF) << 16) | ((buf[pos + 2] & 0xFF) << 8) | (buf[pos + 3] & 0xFF);
+        pos += 4;
+        return v;
+    }
+
+    /*
+     * 壊れたフレーム。次のキーフレームまで待つ
+     * @return false
+     */
+    private boolean broken() {
+        synced = false;
+        return false;
+    }
+
+    /*
+     * @param buf
+     * @return 32bitの符号なしの値。フレームの終わりを超える、32bitを超える場合は-1
+     */
+    private long readVarInt(byte[] buf) {
+        long v = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (pos >= end || shift > 28)
+                return -1;
+            b = buf[pos++];
+            v |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return v > 0xFFFFFFFFL ? -1 : v;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,139 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+*/
+package jp.live2d.framework;
+
+import jp.live2d.ALive2DModel;
+
+/*
+ * パラメータの差分エンコーダ。
+ *
+ * 前回送信した値からepsilon以上変化したパラメータだけを、量子化・可変長整数で書き出す。
+ * 一定間隔、または要求があったときはすべてのパラメータを含むキーフレームを書き出す。
+ *
+ * フレームの形式（数値はtableHash以外varint）
+ *  type(1byte) seq timeMSec [tableHash(4byte)] count { indexDelta value } * count
+ *  tableHashはキーフレームだけに入れる（L2DParamTable.getHash()）。受信側は一致しないキーフレームを使わない。
+ *  キーフレームのvalueは量子化した値そのもの、差分フレームは前回値との差（zigzag）。
+ */
+public final class L2DParamEncoder {
+    public static final int TYPE_KEY = 0;
+    public static final int TYPE_DELTA = 1;
+
+    private final L2DParamTable table;
+    private final int[] sentValues; // 受信側が保持しているはずの量子化値
+    private final int epsilon;      // 量子化後の段階数
+    private final int keyframeIntervalMSec;
+    private long lastKeyframeMSec = -1;
+    private int seq = 0;
+    private boolean keyframeRequested = true;
+
+    /*
+     * @param table
+     * @param epsilon 範囲に対する割合。これより小さい変化は送らない
+     * @param keyframeIntervalMSec キーフレームを送る間隔
+     */
+    public L2DParamEncoder(L2DParamTable table, float epsilon, int keyframeIntervalMSec) {
+        this.table = table;
+        this.sentValues = new int[table.size()];
+        this.epsilon = L2DParamTable.quantizeEpsilon(epsilon);
+        this.keyframeIntervalMSec = keyframeIntervalMSec;
+    }
+
+    public final L2DParamTable getTable() {
+        return table;
+    }
+
+    /*
+     * 次のフレームをキーフレームにする。途中から参加した受信側のために使う。
+     */
+    public final void requestKeyframe() {
+        keyframeRequested = true;
+    }
+
+    /*
+     * 1フレームに必要な最大バイト数
+     * @return
+     */
+    public final int getMaxFrameSize() {
+        return 1 + 5 * 3 + 4 + table.size() * (3 + 3);
+    }
+
+    /*
+     * モデルの現在のパラメータをエンコードする。
+     * @param model
+     * @param timeMSec
+     * @param buf getMaxFrameSize()以上の空きがあること
+     * @param offset
+     * @return 書き込んだバイト数
+     */
+    public final int encode(ALive2DModel model, long timeMSec, byte[] buf, int offset) {
+        boolean key = keyframeRequested || lastKeyframeMSec < 0 || timeMSec - lastKeyframeMSec >= keyframeIntervalMSec;
+        if (key) {
+            keyframeRequested = false;
+            lastKeyframeMSec = timeMSec;
+        }
+
+        int pos = offset;
+        buf[pos++] = (byte) (key ? TYPE_KEY : TYPE_DELTA);
+        pos = writeVarInt(buf, pos, seq++);
+        pos = writeVarInt(buf, pos, (int) timeMSec);
+        if (key)
+            pos = writeInt(buf, pos, table.getHash());
+
+        // 件数は最後に分かるので、最大幅の3byteで予約しておく
+        int countPos = pos;
+        pos += 3;
+
+        int count = 0;
+        int lastN = -1;
+        for (int n = 0; n < sentValues.length; n++) {
+            int q = table.quantize(n, model.getParamFloat(table.getIndex(n)));
+            int d = q - sentValues[n];
+            if (!key && d <= epsilon && d >= -epsilon)
+                continue; // 変化が小さいので送らない
+
+            pos = writeVarInt(buf, pos, n - lastN - 1);
+            pos = writeVarInt(buf, pos, key ? q : zigzag(d));
+            sentValues[n] = q;
+            lastN = n;
+            count++;
+        }
+
+        writeFixedVarInt3(buf, countPos, count);
+        return pos - offset;
+    }
+
+    private static int zigzag(int v) {
+        return (v << 1) ^ (v >> 31);
+    }
+
+    static int writeInt(byte[] buf, int pos, int v) {
+        buf[pos++] = (byte) (v >>> 24);
+        buf[pos++] = (byte) (v >>> 16);
+        buf[pos++] = (byte) (v >>> 8);
+        buf[pos++] = (byte) v;
+        return pos;
+    }
+
+    static int writeVarInt(byte[] buf, int pos, int v) {
+        while ((v & ~0x7F) != 0) {
+            buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buf[pos++] = (byte) v;
+        return pos;
+    }
+
+    /*
+     * 3byte固定長のvarint。読み込み側は通常のvarintとして読める。
+     */
+    private static void writeFixedVarInt3(byte[] buf, int pos, int v) {
+        buf[pos] = (byte) ((v & 0x7F) | 0x80);
+        buf[pos + 1] = (byte) (((v >>> 7) & 0x7F) | 0x80);
+        buf[pos + 2] = (byte) ((v >>> 14) & 0x7F);
+    }
+}
\ No newline at end of file
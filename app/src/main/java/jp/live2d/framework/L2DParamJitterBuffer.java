@@ -0,0 +1,197 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+*/
+package jp.live2d.framework;
+
+import jp.live2d.ALive2DModel;
+import jp.live2d.util.UtSystem;
+
+/*
+ * 外部から届くパラメータのジッタバッファ。
+ *
+ * 受信した時刻付きのスナップショットをリングバッファに溜め、一定の遅延をつけて再生する。
+ * 描画時刻を挟む2つのスナップショットを補間し、データが途切れたときは
+ * 直前の変化量で maxExtrapolationMSec まで外挿してから止める。
+ * 順番が入れ替わって遅れて届いたものは捨てる。溜めているものより古い場合は送信側がやり直したとみなす。
+ *
+ * 領域はすべてコンストラクタで確保するので、push()とapplyTo()はメモリ確保を行わない。
+ * push()は受信スレッド、applyTo()はGLスレッドから呼ぶ。
+ */
+public final class L2DParamJitterBuffer implements IParamSource {
+    private static final float LATENCY_FOLLOW_RATE = 0.01f; // 遅延の見積もりを観測値に近づける割合（時計のずれ対策）
+
+    private final L2DParamTable table;
+    private final float[][] snapshots; // リングバッファ
+    private final long[] snapshotTimes; // 送信側の時刻
+    private final float[] output;     // applyTo()用の作業領域
+    private final int delayMSec;
+    private final int maxExtrapolationMSec;
+    private int head = 0;  // 次に書き込む位置
+    private int count = 0; // 有効なスナップショット数
+    private boolean hasLatency = false;
+    private double latencyMSec; // 受信時刻 - 送信時刻 の見積もり（最小値寄り）。時刻は起動からの時間なので、floatでは桁が足りない
+
+    /*
+     * @param table
+     * @param capacity 溜めておくスナップショット数
+     * @param delayMSec 再生の遅延。届く間隔のばらつきより大きくする
+     * @param maxExtrapolationMSec データが途切れたときに外挿する最大時間
+     */
+    public L2DParamJitterBuffer(L2DParamTable table, int capacity, int delayMSec, int maxExtrapolationMSec) {
+        this.table = table;
+        this.snapshots = new float[capacity][table.size()];
+        this.snapshotTimes = new long[capacity];
+        this.output = new float[table.size()];
+        this.delayMSec = delayMSec;
+        this.maxExtrapolationMSec = maxExtrapolationMSec;
+    }
+
+    public final L2DParamTable getTable() {
+        return table;
+    }
+
+    /*
+     * 受信時刻 - 送信時刻 の見積もり
+     * @return
+     */
+    public final synchronized double getLatencyMSec() {
+        return latencyMSec;
+    }
+
+    /*
+     * 復元済みのフレームを追加する。
+     * @param decoder
+     * @param localTimeMSec 受信した時刻
+     */
+    public final synchronized void push(L2DParamDecoder decoder, long localTimeMSec) {
+        if (!decoder.isSynced())
+            return;
+        float[] slot = beginPush(decoder.getLastTimeMSec(), localTimeMSec);
+        if (slot != null)
+            decoder.getValues(slot);
+    }
+
+    /*
+     * 値を直接追加する。記録したトラックの再生など。
+     * @param senderTimeMSec
+     * @param values table.size()の長さ
+     * @param localTimeMSec
+     */
+    public final synchronized void push(long senderTimeMSec, float[] values, long localTimeMSec) {
+        float[] slot = beginPush(senderTimeMSec, localTimeMSec);
+        if (slot != null)
+            System.arraycopy(values, 0, slot, 0, slot.length);
+    }
+
+    private float[] beginPush(long senderTimeMSec, long localTimeMSec) {
+        if (count > 0) {
+            long newest = snapshotTimes[(head - 1 + snapshots.length) % snapshots.length];
+            long oldest = snapshotTimes[(head - count + snapshots.length) % snapshots.length];
+            if (senderTimeMSec == newest)
+                return null; // 同じ時刻は捨てる
+            if (senderTimeMSec < newest) {
+                if (senderTimeMSec >= oldest)
+                    return null; // 遅れて届いた。前後の補間で足りるので捨てる
+                // 送信側がやり直した。溜めていたものは使えない
+                count = 0;
+                hasLatency = false;
+            }
+        }
+
+        // 遅延の見積もり。早く届いたものに合わせ、時計のずれにはゆっくり追従する
+        double latency = localTimeMSec - senderTimeMSec;
+        if (!hasLatency || latency < latencyMSec) {
+            latencyMSec = latency;
+            hasLatency = true;
+        } else {
+            latencyMSec += (latency - latencyMSec) * LATENCY_FOLLOW_RATE;
+        }
+
+        float[] slot = snapshots[head];
+        snapshotTimes[head] = senderTimeMSec;
+        head = (head + 1) % snapshots.length;
+        if (count < snapshots.length)
+            count++;
+        return slot;
+    }
+
+    /*
+     * 指定時刻に表示する値を求める。
+     * @param localTimeMSec 描画する時刻
+     * @param out table.size()以上の長さ
+     * @return 値が無い場合はfalse
+     */
+    public final synchronized boolean sample(long localTimeMSec, float[] out) {
+        if (count == 0)
+            return false;
+
+        double renderTime = localTimeMSec - latencyMSec - delayMSec; // 送信側の時刻に直す
+        int newest = (head - 1 + snapshots.length) % snapshots.length;
+        int oldest = (head - count + snapshots.length) % snapshots.length;
+
+        // 最も古いものより前なら最も古い値
+        if (renderTime <= snapshotTimes[oldest]) {
+            System.arraycopy(snapshots[oldest], 0, out, 0, output.length);
+            return true;
+        }
+
+        // 最も新しいものより後なら外挿
+        if (renderTime >= snapshotTimes[newest]) {
+            if (count < 2) {
+                System.arraycopy(snapshots[newest], 0, out, 0, output.length);
+                return true;
+            }
+            int prev = (newest - 1 + snapshots.length) % snapshots.length;
+            double over = renderTime - snapshotTimes[newest];
+            if (over > maxExtrapolationMSec)
+                over = maxExtrapolationMSec;
+            float t = (float) (1 + over / (snapshotTimes[newest] - snapshotTimes[prev]));
+            lerp(snapshots[prev], snapshots[newest], t, out);
+            return true;
+        }
+
+        // 挟む2つを新しい方から探す
+        int b = newest;
+        for (int i = 1; i < count; i++) {
+            int a = (newest - i + snapshots.length) % snapshots.length;
+            if (snapshotTimes[a] <= renderTime) {
+                float t = (float) ((renderTime - snapshotTimes[a]) / (snapshotTimes[b] - snapshotTimes[a]));
+                lerp(snapshots[a], snapshots[b], t, out);
+                return true;
+            }
+            b = a;
+        }
+        System.arraycopy(snapshots[oldest], 0, out, 0, output.length);
+        return true;
+    }
+
+    /*
+     * 現在時刻の値をモデルに設定する。GLスレッドから呼ぶ。
+     * @param model
+     * @return
+     */
+    @Override
+    public final boolean applyTo(ALive2DModel model) {
+        if (!sample(UtSystem.getTimeMSec(), output))
+            return false;
+        for (int n = 0; n < output.length; n++) {
+            model.setParamFloat(table.getIndex(n), output[n]);
+        }
+        return true;
+    }
+
+    private void lerp(float[] a, float[] b, float t, float[] out) {
+        for (int n = 0; n < output.length; n++) {
+            float v = a[n] + (b[n] - a[n]) * t;
+            // 外挿で範囲を超えないようにする
+            if (v < table.getMinValue(n))
+                v = table.getMinValue(n);
+            if (v > table.getMaxValue(n))
+                v = table.getMaxValue(n);
+            out[n] = v;
+        }
+    }
+}
\ No newline at end of file
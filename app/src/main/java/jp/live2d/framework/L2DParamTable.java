@@ -0,0 +1,149 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+*/
+package jp.live2d.framework;
+
+import jp.live2d.ALive2DModel;
+import jp.live2d.param.ParamDefFloat;
+
+import java.util.ArrayList;
+
+/*
+ * モデルのパラメータ一覧。
+ * パラメータ定義の順番で並べ、インデックスと値の範囲を保持する。
+ * 同じmocを読み込んだモデル同士なら送信側と受信側で同じ並びになる。
+ * 並びと範囲のハッシュ（getHash()）をキーフレームに入れ、受信側で同じモデルか確かめる。
+ */
+public final class L2DParamTable {
+    private static final int QUANTIZE_MAX = 0xFFFF; // 量子化の段階数（16bit）
+
+    private final String[] ids;
+    private final int[] indices;
+    private final float[] minValues;
+    private final float[] maxValues;
+    private int hash;
+
+    private L2DParamTable(int num) {
+        ids = new String[num];
+        indices = new int[num];
+        minValues = new float[num];
+        maxValues = new float[num];
+    }
+
+    /*
+     * モデルのパラメータ定義から作成する。
+     * @param model
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static L2DParamTable create(ALive2DModel model) {
+        ArrayList<ParamDefFloat> defs = model.getModelImpl().getParamDefSet().getParamDefFloatList();
+        L2DParamTable ret = new L2DParamTable(defs.size());
+
+        for (int i = 0; i < defs.size(); i++) {
+            ParamDefFloat def = defs.get(i);
+            ret.ids[i] = def.getParamID().toString();
+            ret.indices[i] = model.getParamIndex(ret.ids[i]);
+            ret.minValues[i] = def.getMinValue();
+            ret.maxValues[i] = def.getMaxValue();
+        }
+        ret.hash = ret.computeHash();
+        return ret;
+    }
+
+    /*
+     * モデルを使わずに作成する。インデックスはテーブル上の番号と同じになる。
+     * @param ids
+     * @param minValues
+     * @param maxValues
+     * @return
+     */
+    static L2DParamTable create(String[] ids, float[] minValues, float[] maxValues) {
+        L2DParamTable ret = new L2DParamTable(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            ret.ids[i] = ids[i];
+            ret.indices[i] = i;
+            ret.minValues[i] = minValues[i];
+            ret.maxValues[i] = maxValues[i];
+        }
+        ret.hash = ret.computeHash();
+        return ret;
+    }
+
+    /*
+     * パラメータの並びと範囲から求めたハッシュ（FNV-1a）。同じmocなら同じ値になる
+     * @return
+     */
+    public final int getHash() {
+        return hash;
+    }
+
+    private int computeHash() {
+        int h = 0x811C9DC5;
+        for (int n = 0; n < ids.length; n++) {
+            h = (h ^ ids[n].hashCode()) * 0x01000193;
+            h = (h ^ Float.floatToIntBits(minValues[n])) * 0x01000193;
+            h = (h ^ Float.floatToIntBits(maxValues[n])) * 0x01000193;
+        }
+        return h;
+    }
+
+    public final int size() {
+        return indices.length;
+    }
+
+    public final String getID(int n) {
+        return ids[n];
+    }
+
+    /*
+     * モデル上のパラメータインデックス
+     * @param n
+     * @return
+     */
+    public final int getIndex(int n) {
+        return indices[n];
+    }
+
+    public final float getMinValue(int n) {
+        return minValues[n];
+    }
+
+    public final float getMaxValue(int n) {
+        return maxValues[n];
+    }
+
+    /*
+     * 値を範囲内の0..65535に量子化する。範囲外の値は端に丸める。
+     * @param n
+     * @param value
+     * @return
+     */
+    public final int quantize(int n, float value) {
+        float range = maxValues[n] - minValues[n];
+        if (range <= 0)
+            return 0;
+        float t = (value - minValues[n]) / range;
+        if (t < 0)
+            t = 0;
+        if (t > 1)
+            t = 1;
+        return (int) (t * QUANTIZE_MAX + 0.5f);
+    }
+
+    public final float dequantize(int n, int q) {
+        return minValues[n] + (maxValues[n] - minValues[n]) * q / QUANTIZE_MAX;
+    }
+
+    /*
+     * 範囲に対する割合を量子化後の段階数に直す。
+     * @param epsilon 0..1
+     * @return
+     */
+    public static int quantizeEpsilon(float epsilon) {
+        return (int) (epsilon * QUANTIZE_MAX);
+    }
+}
\ No newline at end of file
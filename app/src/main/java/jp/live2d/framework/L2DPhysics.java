@@ -8,13 +8,12 @@ package jp.live2d.framework;
 
 import jp.live2d.ALive2DModel;
 import jp.live2d.physics.PhysicsHair;
-import jp.live2d.util.Json;
-import jp.live2d.util.Json.Value;
 import jp.live2d.util.UtDebug;
 import jp.live2d.util.UtFile;
 import jp.live2d.util.UtSystem;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
 /*
@@ -24,6 +23,7 @@ import java.util.ArrayList;
 public final class L2DPhysics {
     private ArrayList<PhysicsHair> physicsList;
     private long startTimeMSec;
+    private long pausedTimeMSec = 0; // 止めた時刻。動いているときは0
 
     private L2DPhysics() {
         physicsList = new ArrayList<PhysicsHair>();
@@ -50,81 +50,155 @@ public final class L2DPhysics {
      * @throws Exception
      */
     public static L2DPhysics load(byte[] buf) {
-        L2DPhysics ret = new L2DPhysics();
-        Value json = Json.parseFromBytes(buf);
-
-        // 物理演算一覧
-        Value params = json.get("physics_hair");
-        int paramNum = params.getVector(null).size();
+        return load(ByteBuffer.wrap(buf));
+    }
 
-        for (int i = 0; i < paramNum; i++) {
-            Value param = params.get(i);
-            PhysicsHair physics = new PhysicsHair();
-            // 計算の設定
-            Value setup = param.get("setup");
-            // 長さ
-            float length = setup.get("length").toFloat();
-            // 空気抵抗
-            float resist = setup.get("regist").toFloat();
-            // 質量
-            float mass = setup.get("mass").toFloat();
-            physics.setup(length, resist, mass);
+    /*
+     * JSONファイルから読み込み。木を作らずに前から順に読む。
+     * @param buf
+     * @return
+     */
+    public static L2DPhysics load(ByteBuffer buf) {
+        L2DPhysics ret = new L2DPhysics();
+        L2DJsonReader reader = new L2DJsonReader(buf);
 
-            // 元パラメータの設定
-            Value srcList = param.get("src");
-            int srcNum = srcList.getVector(null).size();
-            for (int j = 0; j < srcNum; j++) {
-                Value src = srcList.get(j);
-                String id = src.get("id").toString(); // param ID
-                PhysicsHair.Src type = PhysicsHair.Src.SRC_TO_X;
-                String typeStr = src.get("ptype").toString();
-                switch (typeStr) {
-                    case "x":
-                        type = PhysicsHair.Src.SRC_TO_X;
-                        break;
-                    case "y":
-                        type = PhysicsHair.Src.SRC_TO_Y;
-                        break;
-                    case "angle":
-                        type = PhysicsHair.Src.SRC_TO_G_ANGLE;
-                        break;
-                    default:
-                        UtDebug.error("live2d", "Invalid parameter: PhysicsHair.Src");
-                        break;
-                }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!"physics_hair".equals(reader.nextName())) {
+                reader.skipValue();
+                continue;
+            }
+            // 物理演算一覧
+            reader.beginArray();
+            while (reader.hasNext()) {
+                ret.physicsList.add(readPhysicsHair(reader));
+            }
+            reader.endArray();
+        }
+        reader.endObject();
+        return ret;
+    }
 
-                float scale = src.get("scale").toFloat();
-                float weight = src.get("weight").toFloat();
-                physics.addSrcParam(type, id, scale, weight);
+    private static PhysicsHair readPhysicsHair(L2DJsonReader reader) {
+        PhysicsHair physics = new PhysicsHair();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            switch (key) {
+                case "setup":
+                    // 計算の設定
+                    float length = 0; // 長さ
+                    float resist = 0; // 空気抵抗
+                    float mass = 0;   // 質量
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String name = reader.nextName();
+                        if ("length".equals(name))
+                            length = reader.nextFloat();
+                        else if ("regist".equals(name))
+                            resist = reader.nextFloat();
+                        else if ("mass".equals(name))
+                            mass = reader.nextFloat();
+                        else
+                            reader.skipValue();
+                    }
+                    reader.endObject();
+                    physics.setup(length, resist, mass);
+                    break;
+                case "src":
+                    // 元パラメータの設定
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        readParam(reader, physics, true);
+                    }
+                    reader.endArray();
+                    break;
+                case "targets":
+                    // 対象パラメータの設定
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        readParam(reader, physics, false);
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
             }
+        }
+        reader.endObject();
+        return physics;
+    }
 
-            // 対象パラメータの設定
-            Value targetList = param.get("targets");
-            int targetNum = targetList.getVector(null).size();
-            for (int j = 0; j < targetNum; j++) {
-                Value target = targetList.get(j);
-                String id = target.get("id").toString();//param ID
-                PhysicsHair.Target type = PhysicsHair.Target.TARGET_FROM_ANGLE;
-                String typeStr = target.get("ptype").toString();
-                switch (typeStr) {
-                    case "angle":
-                        type = PhysicsHair.Target.TARGET_FROM_ANGLE;
-                        break;
-                    case "angle_v":
-                        type = PhysicsHair.Target.TARGET_FROM_ANGLE_V;
-                        break;
-                    default:
-                        UtDebug.error("live2d", "Invalid parameter: PhysicsHair.Target");
-                        break;
-                }
+    private static void readParam(L2DJsonReader reader, PhysicsHair physics, boolean src) {
+        String id = null; // param ID
+        String typeStr = null;
+        float scale = 0;
+        float weight = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if ("id".equals(key))
+                id = reader.nextString();
+            else if ("ptype".equals(key))
+                typeStr = reader.nextString();
+            else if ("scale".equals(key))
+                scale = reader.nextFloat();
+            else if ("weight".equals(key))
+                weight = reader.nextFloat();
+            else
+                reader.skipValue();
+        }
+        reader.endObject();
 
-                float scale = target.get("scale").toFloat();
-                float weight = target.get("weight").toFloat();
-                physics.addTargetParam(type, id, scale, weight);
+        if (src) {
+            PhysicsHair.Src type = PhysicsHair.Src.SRC_TO_X;
+            switch (typeStr == null ? "" : typeStr) {
+                case "x":
+                    type = PhysicsHair.Src.SRC_TO_X;
+                    break;
+                case "y":
+                    type = PhysicsHair.Src.SRC_TO_Y;
+                    break;
+                case "angle":
+                    type = PhysicsHair.Src.SRC_TO_G_ANGLE;
+                    break;
+                default:
+                    UtDebug.error("live2d", "Invalid parameter: PhysicsHair.Src");
+                    break;
+            }
+            physics.addSrcParam(type, id, scale, weight);
+        } else {
+            PhysicsHair.Target type = PhysicsHair.Target.TARGET_FROM_ANGLE;
+            switch (typeStr == null ? "" : typeStr) {
+                case "angle":
+                    type = PhysicsHair.Target.TARGET_FROM_ANGLE;
+                    break;
+                case "angle_v":
+                    type = PhysicsHair.Target.TARGET_FROM_ANGLE_V;
+                    break;
+                default:
+                    UtDebug.error("live2d", "Invalid parameter: PhysicsHair.Target");
+                    break;
             }
-            ret.physicsList.add(physics);
+            physics.addTargetParam(type, id, scale, weight);
         }
-        return ret;
+    }
+
+    /*
+     * 時間を止める。止めている間の経過時間は計算に含めない。
+     * 表示しないモデルを残しておき、後で続きから動かす場合に使う。
+     */
+    public final void pause() {
+        if (pausedTimeMSec == 0)
+            pausedTimeMSec = UtSystem.getUserTimeMSec();
+    }
+
+    public final void resume() {
+        if (pausedTimeMSec == 0)
+            return;
+        startTimeMSec += UtSystem.getUserTimeMSec() - pausedTimeMSec; // 止めていた時間を飛ばす
+        pausedTimeMSec = 0;
     }
 
     /*
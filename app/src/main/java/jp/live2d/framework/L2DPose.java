@@ -8,12 +8,11 @@ package jp.live2d.framework;
 
 import jp.live2d.ALive2DModel;
 import jp.live2d.id.PartsDataID;
-import jp.live2d.util.Json;
-import jp.live2d.util.Json.Value;
 import jp.live2d.util.UtFile;
 import jp.live2d.util.UtSystem;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
 /*
@@ -49,40 +48,83 @@ public final class L2DPose {
      * @throws Exception
      */
     public static L2DPose load(byte[] buf) {
-        L2DPose ret = new L2DPose();
-        Value json = Json.parseFromBytes(buf);
-
-        // パーツ切り替え一覧
-        Value poseListInfo = json.get("parts_visible");
-        int poseNum = poseListInfo.getVector(null).size();
+        return load(ByteBuffer.wrap(buf));
+    }
 
-        for (int i_pose = 0; i_pose < poseNum; i_pose++) {
-            Value poseInfo = poseListInfo.get(i_pose);
+    /*
+     * JSONファイルから読み込む。木を作らずに前から順に読む。
+     * @param buf
+     * @return
+     */
+    public static L2DPose load(ByteBuffer buf) {
+        L2DPose ret = new L2DPose();
+        L2DJsonReader reader = new L2DJsonReader(buf);
 
-            // IDリストの設定
-            Value idListInfo = poseInfo.get("group");
-            int idNum = idListInfo.getVector(null).size();
-            L2DPartsParam[] partsGroup = new L2DPartsParam[idNum];
-            for (int i_group = 0; i_group < idNum; i_group++) {
-                Value partsInfo = idListInfo.get(i_group);
-                L2DPartsParam parts = new L2DPartsParam(partsInfo.get("id").toString());
-                partsGroup[i_group] = parts;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!"parts_visible".equals(reader.nextName())) {
+                reader.skipValue();
+                continue;
+            }
+            // パーツ切り替え一覧
+            reader.beginArray();
+            while (reader.hasNext()) {
+                L2DPartsParam[] partsGroup = null;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (!"group".equals(reader.nextName())) {
+                        reader.skipValue();
+                        continue;
+                    }
+                    // IDリストの設定
+                    ArrayList<L2DPartsParam> group = new ArrayList<L2DPartsParam>();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        group.add(readPartsParam(reader));
+                    }
+                    reader.endArray();
+                    partsGroup = group.toArray(new L2DPartsParam[group.size()]);
+                }
+                reader.endObject();
+                ret.partsGroups.add(partsGroup != null ? partsGroup : new L2DPartsParam[0]);
+            }
+            reader.endArray();
+        }
+        reader.endObject();
+        return ret;
+    }
 
+    private static L2DPartsParam readPartsParam(L2DJsonReader reader) {
+        String id = null;
+        ArrayList<L2DPartsParam> link = null; // リンクが無いときもある
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if ("id".equals(key)) {
+                id = reader.nextString();
+            } else if ("link".equals(key) && reader.peek() == L2DJsonReader.BEGIN_ARRAY) {
                 // リンクするパーツの設定
-                if (partsInfo.get("link") == null)
-                    continue; // リンクが無いときもある
-                Value linkListInfo = partsInfo.get("link");
-                int linkNum = linkListInfo.getVector(null).size();
-                parts.link = new ArrayList<L2DPartsParam>();
-
-                for (int i_link = 0; i_link < linkNum; i_link++) {
-                    L2DPartsParam linkParts = new L2DPartsParam(linkListInfo.get(i_link).toString());
-                    parts.link.add(linkParts);
+                link = new ArrayList<L2DPartsParam>();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    link.add(new L2DPartsParam(reader.nextString()));
                 }
+                reader.endArray();
+            } else {
+                reader.skipValue();
             }
-            ret.partsGroups.add(partsGroup);
         }
-        return ret;
+        reader.endObject();
+        L2DPartsParam parts = new L2DPartsParam(id);
+        parts.link = link;
+        return parts;
+    }
+
+    /*
+     * 経過時間をリセットする。次の更新ではフェードを進めない
+     */
+    public final void reset() {
+        lastTime = 0;
     }
 
     /*
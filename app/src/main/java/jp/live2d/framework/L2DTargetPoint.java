@@ -9,7 +9,13 @@ package jp.live2d.framework;
 import jp.live2d.util.UtSystem;
 
 public final class L2DTargetPoint {
-    private static final int FRAME_RATE = 30; // ドラッグの距離計算にのみ使う擬似フレームレート
+    private static final float TIME_TO_MAX_SPEED = 0.15f; // 最高速度になるまでの時間
+    private static final float FACE_PARAM_MAX_V = 40.0f / 7.5f; // 7.5秒間に40分移動（5.3/sc)
+
+    // 目標値の変化を最高速度で制限してから、臨界減衰ばねで滑らかに近づける
+    private final L2DInputFilter filter = new L2DInputFilter(2)
+            .addRateLimit(FACE_PARAM_MAX_V)
+            .addSpring(TIME_TO_MAX_SPEED);
 
     private float faceTargetX = 0; // 顔の向きの目標値（この値に近づいていく）
     private float faceTargetY = 0;
@@ -17,10 +23,7 @@ public final class L2DTargetPoint {
     private float faceX = 0; // 顔の向き -1..1
     private float faceY = 0;
 
-    private float faceVX = 0; // 顔の向きの変化速度
-    private float faceVY = 0;
-
-    private long lastTimeSec = 0;
+    private long lastTimeMSec = 0;
 
     public final void set(float x, float y) {
         faceTargetX = x;
@@ -47,68 +50,23 @@ public final class L2DTargetPoint {
      * 更新
      * 首を中央から左右に振るときの平均的な早さは  秒程度。加速・減速を考慮して、その２倍を最高速度とする
      * 顔のふり具合を、中央（０）から、左右は（±１）とする
+     * 経過時間で計算するので、フレームレートによらず同じ動きになる。
      */
     public final void update() {
-        // 計算用の設定
-        final float TIME_TO_MAX_SPEED = 0.15f; // 最高速度になるまでの時間
-        final float FACE_PARAM_MAX_V = 40.0f / 7.5f; // 7.5秒間に40分移動（5.3/sc)
-
-        final float MAX_V = FACE_PARAM_MAX_V / FRAME_RATE; // 1frameあたりに変化できる速度の上限
-
-        if (lastTimeSec == 0) {
-            lastTimeSec = UtSystem.getUserTimeMSec();
+        long curTimeMSec = UtSystem.getUserTimeMSec();
+        if (lastTimeMSec == 0) {
+            lastTimeMSec = curTimeMSec;
             return;
         }
 
-        long curTimeSec = UtSystem.getUserTimeMSec();
-
-        float deltaTimeWeight = (float) (curTimeSec - lastTimeSec) * FRAME_RATE / 1000.0f;
-        lastTimeSec = curTimeSec;
-
-        final float FRAME_TO_MAX_SPEED = TIME_TO_MAX_SPEED * FRAME_RATE; //sec*frame/sec
-        final float MAX_A = deltaTimeWeight * MAX_V / FRAME_TO_MAX_SPEED; // 1frameあたりの加速度
-
-        float dx = (faceTargetX - faceX);
-        float dy = (faceTargetY - faceY);
-
-        if (dx == 0 && dy == 0)
-            return;
-        float d = (float) Math.sqrt(dx * dx + dy * dy);
+        float deltaTimeSec = (curTimeMSec - lastTimeMSec) / 1000.0f;
+        lastTimeMSec = curTimeMSec;
 
-        float vx = MAX_V * dx / d;
-        float vy = MAX_V * dy / d;
-
-        float ax = vx - faceVX;
-        float ay = vy - faceVY;
-
-        float a = (float) Math.sqrt(ax * ax + ay * ay);
-
-        if (a < -MAX_A || a > MAX_A) {
-            ax *= MAX_A / a;
-            ay *= MAX_A / a;
-            a = MAX_A;
-        }
-
-        faceVX += ax;
-        faceVY += ay;
-        {
-            //            2  6           2               3
-            //      sqrt(a  t  + 16 a h t  - 8 a h) - a t
-            // v = --------------------------------------
-            //                    2
-            //                 4 t  - 2
-            //(t=1)
-
-            float max_v = 0.5f * ((float) Math.sqrt(MAX_A * MAX_A + 16 * MAX_A * d - 8 * MAX_A * d) - MAX_A);
-            float cur_v = (float) Math.sqrt(faceVX * faceVX + faceVY * faceVY);
-
-            if (cur_v > max_v) {
-                faceVX *= max_v / cur_v;
-                faceVY *= max_v / cur_v;
-            }
-        }
+        filter.set(0, faceTargetX);
+        filter.set(1, faceTargetY);
+        filter.update(deltaTimeSec);
 
-        faceX += faceVX;
-        faceY += faceVY;
+        faceX = filter.get(0);
+        faceY = filter.get(1);
     }
 }
\ No newline at end of file
@@ -14,15 +14,14 @@ import android.hardware.SensorManager;
 import android.os.Build;
 import android.view.Display;
 import android.view.Surface;
+import jp.live2d.framework.L2DInputFilter;
 import jp.live2d.util.UtSystem;
 
 /*
  * 加速度センサの情報の管理。
  */
 public final class AccelerationHelper {
-    private float acceleration_x = 0;
-    private float acceleration_y = 0;
-    private float acceleration_z = 0;
+    private static final float MAX_ACCEL_V = 0.04f * 60; // 1秒あたりの変化量の上限（60fpsで1フレーム0.04）
     private float dst_acceleration_x = 0;
     private float dst_acceleration_y = 0;
     private float dst_acceleration_z = 0;
@@ -38,8 +37,11 @@ public final class AccelerationHelper {
     private final SensorManager sensorManager;
     private float[] accelerometerValues = new float[3];
     private float[] geomagneticMatrix = new float[3];
-    private final float[] acceleration = new float[3];
     private boolean sensorReady;
+    // センサの値の変化速度を制限してから、One Euroフィルタで手ぶれを除く
+    private final L2DInputFilter filter = new L2DInputFilter(3)
+            .addRateLimit(MAX_ACCEL_V)
+            .addOneEuro(1.5f, 2.0f, 1.0f);
 
     public AccelerationHelper(Activity activity) {
         sensorListener = new MySensorListener();
@@ -131,45 +133,17 @@ public final class AccelerationHelper {
 
     /*
      * 更新
+     * 経過時間で計算するので、フレームレートによらず同じ動きになる。
      */
     public void update() {
-        final float MAX_ACCEL_D = 0.04f; // setCurAccelerationの間隔が長い場合は、最大値を小さくする必要がある
-        float dx = dst_acceleration_x - acceleration_x;
-        float dy = dst_acceleration_y - acceleration_y;
-        float dz = dst_acceleration_z - acceleration_z;
-
-        if (dx > MAX_ACCEL_D)
-            dx = MAX_ACCEL_D;
-        if (dx < -MAX_ACCEL_D)
-            dx = -MAX_ACCEL_D;
-
-        if (dy > MAX_ACCEL_D)
-            dy = MAX_ACCEL_D;
-        if (dy < -MAX_ACCEL_D)
-            dy = -MAX_ACCEL_D;
-
-        if (dz > MAX_ACCEL_D)
-            dz = MAX_ACCEL_D;
-        if (dz < -MAX_ACCEL_D)
-            dz = -MAX_ACCEL_D;
-
-        acceleration_x += dx;
-        acceleration_y += dy;
-        acceleration_z += dz;
-
         long time = UtSystem.getUserTimeMSec();
-        long diff = time - lastTimeMSec;
-
+        long diff = lastTimeMSec < 0 ? 0 : time - lastTimeMSec;
         lastTimeMSec = time;
 
-        float scale = 0.2f * diff * 60 / (1000.0f); // 経過時間に応じて、重み付けをかえる
-        final float MAX_SCALE_VALUE = 0.5f;
-        if (scale > MAX_SCALE_VALUE)
-            scale = MAX_SCALE_VALUE;
-
-        acceleration[0] = (acceleration_x * scale) + (acceleration[0] * (1.0f - scale));
-        acceleration[1] = (acceleration_y * scale) + (acceleration[1] * (1.0f - scale));
-        acceleration[2] = (acceleration_z * scale) + (acceleration[2] * (1.0f - scale));
+        filter.set(0, dst_acceleration_x);
+        filter.set(1, dst_acceleration_y);
+        filter.set(2, dst_acceleration_z);
+        filter.update(diff / 1000.0f);
     }
 
     /*
@@ -189,7 +163,7 @@ public final class AccelerationHelper {
      * @return
      */
     public final float getAccelerationX() {
-        return acceleration[0];
+        return filter.get(0);
     }
 
     /*
@@ -200,7 +174,7 @@ public final class AccelerationHelper {
      * @return
      */
     public final float getAccelerationY() {
-        return acceleration[1];
+        return filter.get(1);
     }
 
     /*
@@ -210,7 +184,7 @@ public final class AccelerationHelper {
      * @return
      */
     public float getAccelerationZ() {
-        return acceleration[2];
+        return filter.get(2);
     }
 
     /*
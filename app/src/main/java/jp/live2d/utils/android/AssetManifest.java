@@ -0,0 +1,209 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+*/
+package jp.live2d.utils.android;
+
+import android.content.Context;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/*
+ * アセットの一覧（assets.l2dm）。
+ *
+ * ビルド時にapp/build.gradleのlive2dAssetManifestタスクで作成し、起動時に1回読み込む。
+ * アセットを開かずに、存在、大きさ、APKで圧縮されているか、内容のハッシュ、含まれるバンドルが分かる。
+ * パスはオープンアドレス法のハッシュ表で引く。
+ *
+ * 形式（ビッグエンディアン）
+ *  ヘッダ      MAGIC(4) VERSION(4) エントリ数(4) バンドル数(4)
+ *  バンドル    パスの長さ(2) パス(UTF-8)
+ *  エントリ    パスの長さ(2) パス(UTF-8、assetsからの相対パス)
+ *              フラグ(4) 大きさ(4) 内容のハッシュ(8) バンドルの番号(2、無い場合は-1) バンドル内の位置(4)
+ * ハッシュはModelBundleと同じくSHA-1の先頭8バイト。
+ */
+public final class AssetManifest {
+    public static final String PATH = "assets.l2dm";
+    private static final int MAGIC = 0x4C32444D; // "L2DM"
+    private static final int VERSION = 1;
+    private static final int FLAG_COMPRESSED = 1; // APKで圧縮されている。マップできない
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final String[] bundlePaths;
+    private final String[] paths;
+    private final int[] flags;
+    private final int[] sizes;
+    private final long[] hashes;
+    private final short[] bundles;
+    private final int[] bundleOffsets;
+    private final int[] table; // エントリの番号+1。0は空き
+    private final int mask;
+
+    private AssetManifest(ByteBuffer buf) throws IOException {
+        if (buf.remaining() < 16 || buf.getInt() != MAGIC || buf.getInt() != VERSION)
+            throw new IOException("Not an asset manifest.");
+        int num = buf.getInt();
+        int bundleNum = buf.getInt();
+        bundlePaths = new String[bundleNum];
+        for (int i = 0; i < bundleNum; i++) {
+            bundlePaths[i] = readString(buf);
+        }
+        paths = new String[num];
+        flags = new int[num];
+        sizes = new int[num];
+        hashes = new long[num];
+        bundles = new short[num];
+        bundleOffsets = new int[num];
+        int capacity = 16;
+        while (capacity < num * 2) {
+            capacity <<= 1;
+        }
+        table = new int[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < num; i++) {
+            paths[i] = readString(buf);
+            flags[i] = buf.getInt();
+            sizes[i] = buf.getInt();
+            hashes[i] = buf.getLong();
+            bundles[i] = buf.getShort();
+            bundleOffsets[i] = buf.getInt();
+            if (sizes[i] < 0 || bundles[i] >= bundleNum)
+                throw new IOException("Broken asset manifest.");
+
+            int slot = slot(paths[i]);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i + 1;
+        }
+    }
+
+    /*
+     * アセットの一覧を読み込む
+     * @param applicationContext
+     * @return
+     * @throws IOException 無い場合、形式が違う場合
+     */
+    public static AssetManifest load(Context applicationContext) throws IOException {
+        InputStream in = FileManager.open(applicationContext, PATH);
+        try {
+            return read(ByteBuffer.wrap(FileManager.readAll(in)));
+        } finally {
+            in.close();
+        }
+    }
+
+    /*
+     * 読み込んだアセットの一覧を解析する。サーバーから取得したものなど
+     * @param buf
+     * @return
+     * @throws IOException 形式が違う場合
+     */
+    public static AssetManifest read(ByteBuffer buf) throws IOException {
+        try {
+            return new AssetManifest(buf.duplicate());
+        } catch (RuntimeException e) {
+            throw new IOException("Broken asset manifest.", e); // 途中で終わっているなど
+        }
+    }
+
+    private static String readString(ByteBuffer buf) {
+        byte[] b = new byte[buf.getShort() & 0xFFFF];
+        buf.get(b);
+        return new String(b, UTF_8);
+    }
+
+    private int slot(String path) {
+        int h = path.hashCode() * 0x9E3779B9; // 下位ビットにも散らす
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /*
+     * エントリの番号
+     * @param path
+     * @return 無い場合は-1
+     */
+    private int find(String path) {
+        int slot = slot(path);
+        while (true) {
+            int n = table[slot];
+            if (n == 0)
+                return -1;
+            if (paths[n - 1].equals(path))
+                return n - 1;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public final boolean contains(String path) {
+        return find(path) >= 0;
+    }
+
+    public final int getEntryNum() {
+        return paths.length;
+    }
+
+    /*
+     * エントリのパス。パスの順に並んでいる
+     * @param n 0からgetEntryNum()-1
+     * @return
+     */
+    public final String getPath(int n) {
+        return paths[n];
+    }
+
+    /*
+     * 大きさ（展開後）
+     * @param path
+     * @return 無い場合は-1
+     */
+    public final int getSize(String path) {
+        int n = find(path);
+        return n < 0 ? -1 : sizes[n];
+    }
+
+    /*
+     * APKで圧縮されているか。圧縮されているものはマップできないので、ストリームで読む
+     * @param path
+     * @return
+     */
+    public final boolean isCompressed(String path) {
+        int n = find(path);
+        return n >= 0 && (flags[n] & FLAG_COMPRESSED) != 0;
+    }
+
+    /*
+     * 内容のハッシュ
+     * @param path
+     * @return 無い場合は0
+     */
+    public final long getHash(String path) {
+        int n = find(path);
+        return n < 0 ? 0 : hashes[n];
+    }
+
+    /*
+     * パスが含まれるバンドル
+     * @param path
+     * @return 含まれない場合はnull
+     */
+    public final String getBundlePath(String path) {
+        int n = find(path);
+        return n < 0 || bundles[n] < 0 ? null : bundlePaths[bundles[n]];
+    }
+
+    /*
+     * バンドル内の位置。共有のバンドルに格納されているものは-1
+     * @param path
+     * @return 含まれない場合は-1
+     */
+    public final int getBundleOffset(String path) {
+        int n = find(path);
+        return n < 0 || bundles[n] < 0 ? -1 : bundleOffsets[n];
+    }
+}
\ No newline at end of file
@@ -0,0 +1,280 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+*/
+package jp.live2d.utils.android;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/*
+ * 内容のハッシュをファイル名にしたディスクキャッシュ。サーバーから取得したファイルを保存する。
+ *
+ * ハッシュはModelBundle、AssetManifestと同じくSHA-1の先頭8バイト。
+ * 保存するときに内容のハッシュを確かめるので、キャッシュにあるものは正しい内容のもの。
+ * 取得中のものは<ハッシュ>.partに追記し、途中で切れた場合は次回そこから再開する。
+ * バンドルの目次など、ハッシュが決まっていないものは名前を付けて保存する。
+ * 合計がmaxBytesを超えたら、最後に使った時刻が古いものから削除する。
+ *
+ * Contextを使わないので、端末が無くても動かせる。複数のスレッドから呼べる。
+ */
+public final class ContentCache {
+    private static final String TAG = "ContentCache";
+    private static final String PART_EXTENSION = ".part";
+    private static final String NAMED_PREFIX = "n_";
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final File dir;
+    private final long maxBytes;
+
+    /*
+     * @param dir 保存するディレクトリ。getCacheDir()の下など
+     * @param maxBytes 合計の上限
+     */
+    public ContentCache(File dir, long maxBytes) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        dir.mkdirs();
+    }
+
+    /*
+     * 内容のハッシュ。SHA-1の先頭8バイト。位置は変更しない
+     * @param buf
+     * @return
+     */
+    public static long contentHash(ByteBuffer buf) {
+        MessageDigest md = sha1();
+        md.update(buf.duplicate());
+        return toHash(md.digest());
+    }
+
+    public final boolean contains(long hash) {
+        return getFile(hash).exists();
+    }
+
+    /*
+     * キャッシュのファイルをメモリにマップする
+     * @param hash
+     * @return 無い場合はnull
+     */
+    public final ByteBuffer map(long hash) {
+        File file = getFile(hash);
+        if (!file.exists())
+            return null;
+        try {
+            ByteBuffer buf = map(file);
+            file.setLastModified(System.currentTimeMillis()); // 最後に使った時刻
+            return buf;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to map: " + file, e);
+            return null;
+        }
+    }
+
+    /*
+     * キャッシュのファイル。SoundPoolなどファイルとして渡す場合に使う
+     * @param hash
+     * @return 無い場合はnull
+     */
+    public final File get(long hash) {
+        File file = getFile(hash);
+        if (!file.exists())
+            return null;
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    /*
+     * 取得中のファイル。追記して、終わったらcommit()を呼ぶ
+     * @param hash
+     * @return
+     */
+    public final File getPartFile(long hash) {
+        return new File(dir, toName(hash) + PART_EXTENSION);
+    }
+
+    /*
+     * 取得が終わったファイルのハッシュを確かめて、キャッシュに入れる
+     * @param hash
+     * @return キャッシュのファイル
+     * @throws IOException ハッシュが違う場合。取得中のファイルは削除する
+     */
+    public final File commit(long hash) throws IOException {
+        File part = getPartFile(hash);
+        long actual = hashFile(part);
+        if (actual != hash) {
+            part.delete();
+            throw new IOException("Hash mismatch: " + toName(hash) + " != " + toName(actual));
+        }
+        File file = getFile(hash);
+        if (!part.renameTo(file)) {
+            part.delete();
+            if (!file.exists())
+                throw new IOException("Failed to store: " + file);
+        }
+        evict();
+        return file;
+    }
+
+    /*
+     * 取得したものを、ハッシュを確かめてキャッシュに入れる
+     * @param hash
+     * @param data
+     * @return キャッシュのファイル
+     * @throws IOException ハッシュが違う場合
+     */
+    public final File put(long hash, byte[] data) throws IOException {
+        File part = getPartFile(hash);
+        write(part, data);
+        return commit(hash);
+    }
+
+    /*
+     * 名前を付けて保存する。一時ファイルに書いてから名前を変えるので、途中で終了しても壊れたファイルは残らない
+     * @param name
+     * @param data
+     */
+    public final void putNamed(String name, byte[] data) {
+        File file = getNamedFile(name);
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            write(tmp, data);
+            if (!tmp.renameTo(file))
+                tmp.delete();
+        } catch (IOException e) {
+            e.printStackTrace();
+            tmp.delete();
+        }
+        evict();
+    }
+
+    /*
+     * 名前を付けて保存したものを読み込む
+     * @param name
+     * @return 無い場合はnull
+     */
+    public final ByteBuffer getNamed(String name) {
+        File file = getNamedFile(name);
+        if (!file.exists())
+            return null;
+        try {
+            ByteBuffer buf = map(file);
+            file.setLastModified(System.currentTimeMillis());
+            return buf;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to map: " + file, e);
+            return null;
+        }
+    }
+
+    /*
+     * 合計が上限を超えていたら、最後に使った時刻が古いものから削除する
+     */
+    private synchronized void evict() {
+        File[] files = dir.listFiles();
+        if (files == null)
+            return;
+        long total = 0;
+        for (File f : files) {
+            total += f.length();
+        }
+        if (total <= maxBytes)
+            return;
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long d = a.lastModified() - b.lastModified();
+                return d < 0 ? -1 : (d > 0 ? 1 : 0);
+            }
+        });
+        for (File f : files) {
+            if (total <= maxBytes)
+                break;
+            if (f.getName().endsWith(PART_EXTENSION))
+                continue; // 取得中
+            long size = f.length();
+            if (f.delete())
+                total -= size;
+        }
+    }
+
+    private File getFile(long hash) {
+        return new File(dir, toName(hash));
+    }
+
+    private File getNamedFile(String name) {
+        return new File(dir, NAMED_PREFIX + name.replace('/', '_'));
+    }
+
+    private static String toName(long hash) {
+        String hex = Long.toHexString(hash);
+        StringBuilder sb = new StringBuilder();
+        for (int i = hex.length(); i < 16; i++) {
+            sb.append('0');
+        }
+        return sb.append(hex).toString();
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel ch = in.getChannel();
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()); // マップは閉じた後も有効
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void write(File file, byte[] data) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static long hashFile(File file) throws IOException {
+        MessageDigest md = sha1();
+        byte[] buf = new byte[READ_BUFFER_SIZE];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                md.update(buf, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        return toHash(md.digest());
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // 必ずある
+        }
+    }
+
+    private static long toHash(byte[] digest) {
+        long h = 0;
+        for (int i = 0; i < 8; i++) {
+            h = (h << 8) | (digest[i] & 0xFF);
+        }
+        return h;
+    }
+}
\ No newline at end of file
@@ -8,11 +8,46 @@ package jp.live2d.utils.android;
 
 import android.content.Context;
 import android.content.res.AssetFileDescriptor;
+import android.util.Log;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
 
 public final class FileManager {
+    private static final String TAG = "FileManager";
+    private static final int MAP_MIN_SIZE = 16 * 1024; // これより小さいファイルはマップせずに読む
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+    private static volatile AssetManifest manifest = null; // アセットの一覧。無い場合は開いて確かめる
+
+    /*
+     * アセットの一覧を読み込む。起動時に1回呼ぶ。
+     * 無い場合はこれまでどおりアセットを開いて確かめる。
+     * @param applicationContext
+     */
+    public static void loadManifest(Context applicationContext) {
+        try {
+            manifest = AssetManifest.load(applicationContext);
+        } catch (FileNotFoundException e) {
+            manifest = null;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to load asset manifest.", e);
+            manifest = null;
+        }
+    }
+
+    /*
+     * @return 読み込んでいない場合はnull
+     */
+    public static AssetManifest getManifest() {
+        return manifest;
+    }
+
     public static boolean isResourceExists(Context applicationContext, String path) {
+        AssetManifest m = manifest;
+        if (m != null)
+            return m.contains(path);
         try {
             InputStream ignored = applicationContext.getAssets().open(path);
             ignored.close();
@@ -36,6 +71,27 @@ public final class FileManager {
         return new FileInputStream(file);
     }
 
+    public static File getCacheFile(Context applicationContext, String path) {
+        return new File(applicationContext.getCacheDir(), path);
+    }
+
+    /*
+     * キャッシュのファイルをメモリにマップする。
+     * @param applicationContext
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static ByteBuffer mapCache(Context applicationContext, String path) throws IOException {
+        FileInputStream in = openCache(applicationContext, path);
+        try {
+            FileChannel ch = in.getChannel();
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()); // マップは閉じた後も有効
+        } finally {
+            in.close();
+        }
+    }
+
     /*
      * @param path
      * @param isCache trueならキャッシュを開く、falseならリソースを開く
@@ -57,4 +113,92 @@ public final class FileManager {
     public static AssetFileDescriptor openFd(Context applicationContext, String path) throws IOException {
         return applicationContext.getAssets().openFd(path);
     }
+
+    /*
+     * アセットをメモリにマップする。
+     * 圧縮して格納されているアセットはマップできないので、最後まで読み込んだバッファを返す。
+     * 小さいファイルはマップせずに、ちょうどの大きさの配列に読み込む。
+     * アセットの一覧にあるものは、圧縮されているか、大きさがいくつかを開く前に判断する。
+     * @param applicationContext
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static ByteBuffer map(Context applicationContext, String path) throws IOException {
+        AssetManifest m = manifest;
+        if (m != null) {
+            int size = m.getSize(path);
+            if (size < 0)
+                throw new FileNotFoundException(path);
+            if (m.isCompressed(path) || size < MAP_MIN_SIZE) {
+                InputStream in = open(applicationContext, path);
+                try {
+                    byte[] buf = new byte[size];
+                    readFully(in, buf);
+                    return ByteBuffer.wrap(buf);
+                } finally {
+                    in.close();
+                }
+            }
+        }
+
+        AssetFileDescriptor fd;
+        try {
+            fd = openFd(applicationContext, path);
+        } catch (FileNotFoundException e) {
+            // 圧縮されている
+            InputStream in = open(applicationContext, path);
+            try {
+                return ByteBuffer.wrap(readAll(in));
+            } finally {
+                in.close();
+            }
+        }
+
+        FileInputStream in = fd.createInputStream();
+        try {
+            long length = fd.getLength();
+            if (length < MAP_MIN_SIZE) {
+                byte[] buf = new byte[(int) length];
+                readFully(in, buf);
+                return ByteBuffer.wrap(buf);
+            }
+            // マップは閉じた後も有効
+            return in.getChannel().map(FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), length);
+        } finally {
+            in.close();
+            fd.close();
+        }
+    }
+
+    /*
+     * ストリームを最後まで読み込む。
+     * available()は残りのサイズより小さい値を返すことがあるので、読めなくなるまで繰り返す。
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public static byte[] readAll(InputStream in) throws IOException {
+        byte[] buf = new byte[Math.max(in.available(), READ_BUFFER_SIZE)];
+        int len = 0;
+        while (true) {
+            if (len == buf.length)
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            int n = in.read(buf, len, buf.length - len);
+            if (n < 0)
+                break;
+            len += n;
+        }
+        return len == buf.length ? buf : Arrays.copyOf(buf, len);
+    }
+
+    private static void readFully(InputStream in, byte[] buf) throws IOException {
+        int len = 0;
+        while (len < buf.length) {
+            int n = in.read(buf, len, buf.length - len);
+            if (n < 0)
+                throw new EOFException();
+            len += n;
+        }
+    }
 }
\ No newline at end of file
@@ -22,12 +22,62 @@ import javax.microedition.khronos.opengles.GL10;
 import javax.microedition.khronos.opengles.GL11;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 public final class LoadUtil {
     private static final int GEN_TEX_LOOP = 999;
+    private static final MipmapBuilder mipmapBuilder = new MipmapBuilder(); // GLスレッドで使い回す
+    private static volatile boolean etc2Supported = false;
 
     public static int loadTexture(GL10 gl, InputStream in, boolean mipmap) {
-        Bitmap bitmap = BitmapFactory.decodeStream(in);
+        return loadTexture(gl, decodeTexture(in), mipmap);
+    }
+
+    /*
+     * 画像を展開する。GLを使わないので、GLスレッド以外から呼べる。
+     * @param in
+     * @return
+     */
+    public static Bitmap decodeTexture(InputStream in) {
+        return BitmapFactory.decodeStream(in);
+    }
+
+    /*
+     * 画像を縮小して展開する。幅と高さがsize以上の範囲で、2のべき乗分の1にする。
+     * 全体を読むのは変わらないが、作成する画像とメモリは小さくなる。
+     * @param in mark()に対応しているもの
+     * @param size
+     * @return
+     */
+    public static Bitmap decodeTexture(InputStream in, int size) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        in.mark(Integer.MAX_VALUE);
+        BitmapFactory.decodeStream(in, null, options);
+        try {
+            in.reset();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= size && options.outHeight / (sampleSize * 2) >= size) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        return BitmapFactory.decodeStream(in, null, options);
+    }
+
+    /*
+     * 展開済みの画像をテクスチャにする。GLスレッドから呼ぶ。
+     * bitmapは解放される。
+     * @param gl
+     * @param bitmap
+     * @param mipmap
+     * @return
+     */
+    public static int loadTexture(GL10 gl, Bitmap bitmap, boolean mipmap) {
         int texture;
 
         if (mipmap) {
@@ -42,12 +92,94 @@ public final class LoadUtil {
             gl.glTexEnvf(GL10.GL_TEXTURE_ENV, GL10.GL_TEXTURE_ENV_MODE, GL10.GL_MODULATE);
             GLUtils.texImage2D(GL10.GL_TEXTURE_2D, 0, bitmap, 0);
             bitmap.recycle();
-            Runtime.getRuntime().gc();
         }
 
         return texture;
     }
 
+    /*
+     * 展開済みのテクスチャを転送する。GLスレッドから呼ぶ。
+     * ミップマップが作成済みであればそのまま転送し、そうでなければ画像から作成する。
+     * @param gl
+     * @param data 転送後に解放される
+     * @return
+     */
+    public static int loadTexture(GL10 gl, TextureData data) {
+        return loadTexture(gl, data, 0);
+    }
+
+    /*
+     * ETC2 RGBA8の圧縮テクスチャに対応しているか調べる。GLスレッドでコンテキストを作成したときに呼ぶ。
+     * 結果はisEtc2Supported()で、どのスレッドからでも取得できる。
+     * @param gl
+     * @return
+     */
+    public static boolean checkCompressedTextureSupport(GL10 gl) {
+        int[] num = {0};
+        gl.glGetIntegerv(GL10.GL_NUM_COMPRESSED_TEXTURE_FORMATS, num, 0);
+        int[] formats = new int[Math.max(num[0], 1)];
+        gl.glGetIntegerv(GL10.GL_COMPRESSED_TEXTURE_FORMATS, formats, 0);
+        boolean supported = false;
+        for (int i = 0; i < num[0]; i++) {
+            if (formats[i] == TextureData.FORMAT_ETC2_RGBA8)
+                supported = true;
+        }
+        etc2Supported = supported;
+        if (LAppDefine.DEBUG_LOG)
+            Log.d("", "ETC2 RGBA8: " + (supported ? "supported" : "not supported"));
+        return supported;
+    }
+
+    /*
+     * ETC2 RGBA8の圧縮テクスチャを転送できるか。checkCompressedTextureSupport()の結果
+     * @return
+     */
+    public static boolean isEtc2Supported() {
+        return etc2Supported;
+    }
+
+    /*
+     * 展開済みのテクスチャを、幅と高さがmaxSize以下のレベルから転送する。GLスレッドから呼ぶ。
+     * それより上のレベルは転送しない（TextureData.getBaseLevel()）。
+     * ミップマップが無いものは画像を縮小してから作成する。
+     * 圧縮したものはglCompressedTexImage2D()でそのまま転送する。
+     * @param gl
+     * @param data 転送後に解放される
+     * @param maxSize 0は制限しない
+     * @return
+     */
+    public static int loadTexture(GL10 gl, TextureData data, int maxSize) {
+        int baseLevel = data.getBaseLevel(maxSize);
+        int width = data.getWidth();
+        int height = data.getHeight();
+        for (int i = 0; i < baseLevel; i++) {
+            width = Math.max(width / 2, 1);
+            height = Math.max(height / 2, 1);
+        }
+        if (!data.hasMipmap()) {
+            Bitmap bitmap = data.getBitmap();
+            if (baseLevel > 0) {
+                Bitmap scaled = Bitmap.createScaledBitmap(bitmap, width, height, true);
+                bitmap.recycle();
+                bitmap = scaled;
+            }
+            return loadTexture(gl, bitmap, true);
+        }
+
+        int textureID = genMipmapTexture(gl, !data.isCompressed()); // 圧縮したものはGPUで作成できない
+        for (int level = baseLevel; level < data.getLevelNum(); level++) {
+            ByteBuffer pixels = data.getLevel(level);
+            if (data.isCompressed())
+                gl.glCompressedTexImage2D(GL10.GL_TEXTURE_2D, level - baseLevel, data.getFormat(), width, height, 0, pixels.remaining(), pixels);
+            else
+                gl.glTexImage2D(GL10.GL_TEXTURE_2D, level - baseLevel, GL10.GL_RGBA, width, height, 0, GL10.GL_RGBA, GL10.GL_UNSIGNED_BYTE, pixels);
+            width = Math.max(width / 2, 1);
+            height = Math.max(height / 2, 1);
+        }
+        data.release();
+        return textureID;
+    }
+
     /*
      * glGenTexturesの代わり
      *
@@ -81,11 +213,65 @@ public final class LoadUtil {
     }
 
     private static int buildMipmap(GL10 gl, Bitmap bitmap) {
-        return buildMipmap(gl, bitmap, true);
+        long start = System.nanoTime();
+        int texture;
+        if (LAppDefine.MIPMAP_BOX_FILTER)
+            texture = buildMipmapBoxFilter(gl, bitmap);
+        else
+            texture = buildMipmap(gl, bitmap, true);
+        if (LAppDefine.DEBUG_LOG)
+            Log.d("", "Build mipmap: " + bitmap.getWidth() + "x" + bitmap.getHeight() + " " + (System.nanoTime() - start) / 1000000 + "ms" + (LAppDefine.MIPMAP_BOX_FILTER ? "" : " (scaled bitmap)"));
+        return texture;
+    }
+
+    /*
+     * Mipmap texture
+     * すべてのレベルをCPUで作成する。Bitmapを作らず、GCも呼ばない。
+     */
+    private static int buildMipmapBoxFilter(GL10 gl, Bitmap srcBitmap) {
+        Bitmap bitmap = srcBitmap;
+        if (bitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+            bitmap = srcBitmap.copy(Bitmap.Config.ARGB_8888, false);
+            srcBitmap.recycle();
+        }
+        int textureID = genMipmapTexture(gl, true);
+
+        mipmapBuilder.upload(gl, bitmap);
+        bitmap.recycle();
+
+        return textureID;
+    }
+
+    /*
+     * ミップマップを使うテクスチャを作成してバインドする。各レベルの転送は呼び出し側で行う。
+     * @param generateMipmap GL_GENERATE_MIPMAPを設定するか。圧縮したテクスチャでは使わない
+     */
+    private static int genMipmapTexture(GL10 gl, boolean generateMipmap) {
+        int textureID = genTexture(gl);
+
+        gl.glBindTexture(GL10.GL_TEXTURE_2D, textureID);
+
+        if (generateMipmap) {
+            try {
+                // この一文がないと、Lynxで崩れる
+                ((GL11) gl).glTexParameteri(GL10.GL_TEXTURE_2D, GL11.GL_GENERATE_MIPMAP, GL10.GL_TRUE);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+
+        gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MIN_FILTER, GL10.GL_LINEAR_MIPMAP_LINEAR);
+        gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MAG_FILTER, GL10.GL_LINEAR);
+        gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_S, GL10.GL_CLAMP_TO_EDGE);
+        gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_T, GL10.GL_CLAMP_TO_EDGE);
+        gl.glTexEnvf(GL10.GL_TEXTURE_ENV, GL10.GL_TEXTURE_ENV_MODE, GL10.GL_MODULATE);
+
+        return textureID;
     }
 
     /*
      * Mipmap texture
+     * 以前の方法。比較用に残している。（LAppDefine.MIPMAP_BOX_FILTER = false）
      */
     private static int buildMipmap(GL10 gl, Bitmap srcBitmap, boolean recycle) {
         Bitmap bitmap = srcBitmap;
@@ -0,0 +1,152 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+*/
+package jp.live2d.utils.android;
+
+import android.graphics.Bitmap;
+
+import javax.microedition.khronos.opengles.GL10;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/*
+ * ミップマップをCPUで作成して転送する。
+ *
+ * 乗算済みのRGBA（AndroidのBitmapの形式）を2x2の平均で縮小する。
+ * 縮小は同じ配列の中で行い、作業領域は前回の分を使い回して足りないときだけ確保する。
+ * Bitmapの作成や解放をしないので、レベルごとのGCが起きない。
+ *
+ * upload()は作業領域を共有するので、GLスレッドからだけ呼ぶ。
+ * build()はスレッドごとの作業領域を使うので、どのスレッドからでも呼べる。
+ */
+final class MipmapBuilder {
+    private static final ThreadLocal<MipmapBuilder> workers = new ThreadLocal<MipmapBuilder>() {
+        @Override
+        protected MipmapBuilder initialValue() {
+            return new MipmapBuilder();
+        }
+    };
+
+    private ByteBuffer buffer = null; // 転送用
+    private IntBuffer bufferInt = null;
+    private int[] pixels = new int[0];  // 縮小用
+
+    /*
+     * すべてのレベルを1つのバッファに作成する。GLを使わない。
+     * レベル0から順に隙間なく並べる。（TextureDataの形式）
+     * @param bitmap ARGB_8888
+     * @return
+     */
+    static ByteBuffer build(Bitmap bitmap) {
+        return workers.get().buildLevels(bitmap);
+    }
+
+    private ByteBuffer buildLevels(Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        ensurePixels(width * height);
+
+        ByteBuffer out = ByteBuffer.allocateDirect(TextureData.getMipmapByteSize(width, height));
+        out.order(ByteOrder.nativeOrder());
+        out.limit(width * height * 4);
+        bitmap.copyPixelsToBuffer(out);
+        out.clear();
+        IntBuffer outInt = out.asIntBuffer();
+        outInt.get(pixels, 0, width * height);
+
+        while (width > 1 || height > 1) {
+            int w = Math.max(width / 2, 1);
+            int h = Math.max(height / 2, 1);
+            downsample(pixels, width, height, w, h);
+            outInt.put(pixels, 0, w * h); // 前のレベルの直後に書き込む
+            width = w;
+            height = h;
+        }
+        return out;
+    }
+
+    /*
+     * バインド済みのテクスチャに、すべてのレベルを転送する。
+     * @param gl
+     * @param bitmap ARGB_8888
+     */
+    final void upload(GL10 gl, Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        ensureCapacity(width * height);
+
+        buffer.clear();
+        bitmap.copyPixelsToBuffer(buffer);
+        bufferInt.clear();
+        bufferInt.get(pixels, 0, width * height);
+
+        int level = 0;
+        while (true) {
+            buffer.position(0);
+            gl.glTexImage2D(GL10.GL_TEXTURE_2D, level, GL10.GL_RGBA, width, height, 0, GL10.GL_RGBA, GL10.GL_UNSIGNED_BYTE, buffer);
+            if (width == 1 && height == 1)
+                break;
+
+            int w = Math.max(width / 2, 1);
+            int h = Math.max(height / 2, 1);
+            downsample(pixels, width, height, w, h);
+            bufferInt.clear();
+            bufferInt.put(pixels, 0, w * h);
+
+            width = w;
+            height = h;
+            level++;
+        }
+    }
+
+    /*
+     * 作業領域を解放する
+     */
+    final void release() {
+        buffer = null;
+        bufferInt = null;
+        pixels = new int[0];
+    }
+
+    private void ensureCapacity(int pixelNum) {
+        if (buffer != null && buffer.capacity() >= pixelNum * 4)
+            return;
+        buffer = ByteBuffer.allocateDirect(pixelNum * 4);
+        buffer.order(ByteOrder.nativeOrder());
+        bufferInt = buffer.asIntBuffer();
+        ensurePixels(pixelNum);
+    }
+
+    private void ensurePixels(int pixelNum) {
+        if (pixels.length < pixelNum)
+            pixels = new int[pixelNum];
+    }
+
+    /*
+     * 2x2の平均で縮小する。奇数の幅、高さでは端の画素を繰り返す。
+     * 書き込む位置は常に読み込む位置より前にあるので、同じ配列で縮小できる。
+     * 4つのチャンネルを2つずつまとめて計算する。バイトの並び順には依存しない。
+     */
+    static void downsample(int[] pixels, int width, int height, int w, int h) {
+        for (int y = 0; y < h; y++) {
+            int row0 = 2 * y * width;
+            int row1 = Math.min(2 * y + 1, height - 1) * width;
+            for (int x = 0; x < w; x++) {
+                int x0 = 2 * x;
+                int x1 = Math.min(2 * x + 1, width - 1);
+                int p0 = pixels[row0 + x0];
+                int p1 = pixels[row0 + x1];
+                int p2 = pixels[row1 + x0];
+                int p3 = pixels[row1 + x1];
+
+                int lo = (p0 & 0x00FF00FF) + (p1 & 0x00FF00FF) + (p2 & 0x00FF00FF) + (p3 & 0x00FF00FF) + 0x00020002;
+                int hi = ((p0 >>> 8) & 0x00FF00FF) + ((p1 >>> 8) & 0x00FF00FF) + ((p2 >>> 8) & 0x00FF00FF) + ((p3 >>> 8) & 0x00FF00FF) + 0x00020002;
+                pixels[y * w + x] = ((lo >>> 2) & 0x00FF00FF) | (((hi >>> 2) & 0x00FF00FF) << 8);
+            }
+        }
+    }
+}
\ No newline at end of file
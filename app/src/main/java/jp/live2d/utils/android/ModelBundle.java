@@ -0,0 +1,332 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+*/
+package jp.live2d.utils.android;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/*
+ * モデルのアセットを1つにまとめたファイル（.l2db）。
+ *
+ * ファイルを1回開いてメモリにマップし、中のファイルはその一部として返す。
+ * モデルのディレクトリにある多数のファイルを、AssetManagerで個別に開かずに済む。
+ * app/build.gradleのbundleLive2DModelsタスクで、assets/live2d/<モデル>/ から作成する。
+ *
+ * 形式（ビッグエンディアン）
+ *  ヘッダ    MAGIC(4) VERSION(4) エントリ数(4) テーブルの大きさ(4)
+ *  テーブル  エントリごとに
+ *            パスの長さ(2) パス(UTF-8、assetsからの相対パス)
+ *            フラグ(4) 位置(4) 格納サイズ(4) 元のサイズ(4) CRC32(4) 内容のハッシュ(8)
+ *  データ    各エントリの先頭はALIGNの倍数の位置。FLAG_DEFLATEのものはzlib形式で圧縮
+ *
+ * 内容が同じファイルは1つだけ格納し、同じ位置を指す。
+ * 複数のモデルで使うファイルは共有のバンドル（SHARED_PATH）に1つだけ格納し、FLAG_SHAREDを付ける。
+ * 共有のバンドルでのパスはgetSharedEntryPath()。
+ * ハッシュはSHA-1の先頭8バイト。
+ *
+ * ヘッダとテーブルだけ（目次）を開くこともできる。サーバーのバンドルから必要な範囲だけ取得するのに使う。
+ */
+public final class ModelBundle {
+    public static final String EXTENSION = ".l2db";
+    private static final int MAGIC = 0x4C324442; // "L2DB"
+    public static final String SHARED_PATH = "live2d/shared" + EXTENSION; // 複数のモデルで使うファイル
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 16;
+    private static final int FLAG_DEFLATE = 1;
+    private static final int FLAG_SHARED = 2;
+    private static final String SHARED_ENTRY_DIR = "shared/";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer data;
+    private final AssetFileDescriptor fd; // マップできた場合のみ。音声の読み込みに使う
+    private final boolean indexOnly;      // ヘッダとテーブルだけ
+    private final HashMap<String, Entry> entries = new HashMap<>();
+
+    private static final class Entry {
+        int flags;
+        int offset;
+        int storedSize;
+        int size;
+        long hash;
+    }
+
+    private ModelBundle(ByteBuffer data, AssetFileDescriptor fd, boolean indexOnly) throws IOException {
+        this.data = data;
+        this.fd = fd;
+        this.indexOnly = indexOnly;
+        parse();
+    }
+
+    private ModelBundle(ByteBuffer data, AssetFileDescriptor fd) throws IOException {
+        this(data, fd, false);
+    }
+
+    /*
+     * ヘッダとテーブルの大きさ。バンドルの先頭から、この大きさを取得すればopenIndex()で開ける
+     * @param header 先頭のHEADER_SIZEバイト以上
+     * @return
+     * @throws IOException 形式が違う場合
+     */
+    public static int getIndexSize(ByteBuffer header) throws IOException {
+        if (header.remaining() < HEADER_SIZE || header.getInt(header.position()) != MAGIC || header.getInt(header.position() + 4) != VERSION)
+            throw new IOException("Not a model bundle.");
+        int tableSize = header.getInt(header.position() + 12);
+        if (tableSize < 0)
+            throw new IOException("Broken model bundle.");
+        return HEADER_SIZE + tableSize;
+    }
+
+    public static int getHeaderSize() {
+        return HEADER_SIZE;
+    }
+
+    /*
+     * ヘッダとテーブルだけを開く。中のファイルはget()では読めないので、
+     * getOffset()、getStoredSize()の範囲を別に取得してdecode()に渡す
+     * @param index getIndexSize()の大きさ
+     * @return
+     * @throws IOException 形式が違う場合
+     */
+    public static ModelBundle openIndex(ByteBuffer index) throws IOException {
+        return new ModelBundle(index.slice(), null, true);
+    }
+
+    /*
+     * アセットのバンドルを開く
+     * @param applicationContext
+     * @param path
+     * @return
+     * @throws IOException 存在しない、または形式が違う場合
+     */
+    public static ModelBundle open(Context applicationContext, String path) throws IOException {
+        AssetManifest manifest = FileManager.getManifest();
+        if (manifest != null && manifest.isCompressed(path))
+            return new ModelBundle(FileManager.map(applicationContext, path), null); // マップできないので読み込む
+
+        AssetFileDescriptor fd;
+        try {
+            fd = FileManager.openFd(applicationContext, path);
+        } catch (FileNotFoundException e) {
+            // 圧縮して格納されている。マップできないので読み込む
+            InputStream in = FileManager.open(applicationContext, path);
+            try {
+                return new ModelBundle(ByteBuffer.wrap(FileManager.readAll(in)), null);
+            } finally {
+                in.close();
+            }
+        }
+
+        // fdは音声の読み込みに使うので、close()まで閉じない。ストリームを閉じるとfdも閉じるので、ストリームは閉じない
+        try {
+            FileChannel ch = new FileInputStream(fd.getFileDescriptor()).getChannel();
+            ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getLength());
+            return new ModelBundle(buf, fd);
+        } catch (IOException e) {
+            fd.close();
+            throw e;
+        }
+    }
+
+    private void parse() throws IOException {
+        if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC || data.getInt(4) != VERSION)
+            throw new IOException("Not a model bundle.");
+        int num = data.getInt(8);
+        ByteBuffer table = data.duplicate();
+        table.position(HEADER_SIZE);
+        for (int i = 0; i < num; i++) {
+            byte[] path = new byte[table.getShort() & 0xFFFF];
+            table.get(path);
+            Entry e = new Entry();
+            e.flags = table.getInt();
+            e.offset = table.getInt();
+            e.storedSize = table.getInt();
+            e.size = table.getInt();
+            table.getInt(); // CRC32。作成時の確認用
+            e.hash = table.getLong();
+            if (e.offset < 0 || e.storedSize < 0 || (!indexOnly && (long) e.offset + e.storedSize > data.capacity()))
+                throw new IOException("Broken model bundle.");
+            entries.put(new String(path, UTF_8), e);
+        }
+    }
+
+    public final boolean contains(String path) {
+        return entries.containsKey(path);
+    }
+
+    /*
+     * 格納しているパスの一覧
+     * @return
+     */
+    public final String[] getPaths() {
+        return entries.keySet().toArray(new String[entries.size()]);
+    }
+
+    /*
+     * 格納している位置。バンドルの先頭から
+     * @param path
+     * @return 無い場合、共有のバンドルに格納されている場合は-1
+     */
+    public final int getOffset(String path) {
+        Entry e = entries.get(path);
+        return e == null || (e.flags & FLAG_SHARED) != 0 ? -1 : e.offset;
+    }
+
+    /*
+     * 格納している大きさ。圧縮しているものは圧縮後
+     * @param path
+     * @return 無い場合は-1
+     */
+    public final int getStoredSize(String path) {
+        Entry e = entries.get(path);
+        return e == null ? -1 : e.storedSize;
+    }
+
+    /*
+     * 圧縮して格納しているか
+     * @param path
+     * @return
+     */
+    public final boolean isDeflated(String path) {
+        Entry e = entries.get(path);
+        return e != null && (e.flags & FLAG_DEFLATE) != 0;
+    }
+
+    public final int getEntryNum() {
+        return entries.size();
+    }
+
+    /*
+     * 内容のハッシュ
+     * @param path
+     * @return 無い場合は0
+     */
+    public final long getHash(String path) {
+        Entry e = entries.get(path);
+        return e == null ? 0 : e.hash;
+    }
+
+    /*
+     * 共有のバンドルに格納されている場合、そこでのパス
+     * @param path
+     * @return 共有していない場合はnull
+     */
+    public final String getSharedPath(String path) {
+        Entry e = entries.get(path);
+        if (e == null || (e.flags & FLAG_SHARED) == 0)
+            return null;
+        return getSharedEntryPath(e.hash);
+    }
+
+    public static String getSharedEntryPath(long hash) {
+        String hex = Long.toHexString(hash);
+        StringBuilder sb = new StringBuilder(SHARED_ENTRY_DIR);
+        for (int i = hex.length(); i < 16; i++) {
+            sb.append('0');
+        }
+        return sb.append(hex).toString();
+    }
+
+    /*
+     * 中のファイルを取得する。
+     * 圧縮されていないものはマップした領域の一部をそのまま返す。
+     * 共有のバンドルに格納されているものは、getSharedPath()で共有のバンドルから読む。
+     * @param path assetsからの相対パス
+     * @return 無い場合、共有のバンドルに格納されている場合はnull
+     * @throws IOException
+     */
+    public final ByteBuffer get(String path) throws IOException {
+        Entry e = entries.get(path);
+        if (e == null || (e.flags & FLAG_SHARED) != 0 || indexOnly)
+            return null;
+        ByteBuffer slice = data.duplicate();
+        slice.limit(e.offset + e.storedSize);
+        slice.position(e.offset);
+        return decode(path, slice.slice());
+    }
+
+    /*
+     * 格納しているデータを元に戻す。圧縮しているものは展開する
+     * @param path
+     * @param stored getOffset()からgetStoredSize()の範囲
+     * @return
+     * @throws IOException
+     */
+    public final ByteBuffer decode(String path, ByteBuffer stored) throws IOException {
+        Entry e = entries.get(path);
+        if (e == null || stored.remaining() != e.storedSize)
+            throw new IOException("Broken entry: " + path);
+        if ((e.flags & FLAG_DEFLATE) == 0)
+            return stored;
+
+        // 展開する
+        byte[] in = new byte[e.storedSize];
+        stored.duplicate().get(in);
+        byte[] out = new byte[e.size];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(in);
+            int len = inflater.inflate(out);
+            if (len != e.size)
+                throw new IOException("Broken entry: " + path);
+        } catch (DataFormatException ex) {
+            throw new IOException("Broken entry: " + path, ex);
+        } finally {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(out);
+    }
+
+    /*
+     * ファイル記述子で直接読めるかどうか。（SoundPoolなど）
+     * マップできていて、圧縮していないものだけ
+     * @param path
+     * @return
+     */
+    public final boolean isDirectAccessible(String path) {
+        Entry e = entries.get(path);
+        return e != null && fd != null && (e.flags & (FLAG_DEFLATE | FLAG_SHARED)) == 0;
+    }
+
+    public final FileDescriptor getFileDescriptor() {
+        return fd.getFileDescriptor();
+    }
+
+    /*
+     * getFileDescriptor()での位置
+     * @param path
+     * @return
+     */
+    public final long getFileOffset(String path) {
+        return fd.getStartOffset() + entries.get(path).offset;
+    }
+
+    public final long getLength(String path) {
+        return entries.get(path).size;
+    }
+
+    public final void close() {
+        if (fd == null)
+            return;
+        try {
+            fd.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
\ No newline at end of file
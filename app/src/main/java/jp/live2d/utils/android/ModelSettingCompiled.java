@@ -0,0 +1,551 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+ */
+package jp.live2d.utils.android;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * 変更できないModelSetting。
+ *
+ * 読み込み時に一度だけ、別のModelSetting（ModelSettingJsonなど）から平らな配列に変換する。
+ * 取得のたびにJSONをたどらない。
+ * モーショングループは番号にして、グループごとの ファイル、音声、フェードイン、フェードアウト を
+ * グループの順に並べた配列で持つ。当たり判定は 名前 → 番号 の表で引く。
+ * 繰り返し使う場合は getMotionGroupId() の番号で取得すると、名前を引く処理も省ける。
+ *
+ * write() / read() でバイナリに保存できる。
+ */
+public final class ModelSettingCompiled implements ModelSetting {
+    private static final int MAGIC = 0x4C324D53; // "L2MS"
+    private static final int VERSION = 1;        // 形式を変えたら上げる
+    private static final int DEFAULT_FADE = 1000;
+    private static final int MAX_ARRAY_LENGTH = 0x10000; // 読み込む配列の長さの上限。壊れたファイルで大きな配列を確保しない
+
+    private final String modelName;
+    private final String modelFile;
+    private final String physicsFile;
+    private final String poseFile;
+    private final String[] textureFiles;
+    private final String[] hitAreaIds;
+    private final String[] hitAreaNames;
+    private final String[] expressionNames;
+    private final String[] expressionFiles;
+    // モーション。グループgの要素は motionStart[g] から motionStart[g + 1] の手前まで
+    private final String[] motionGroupNames;
+    private final int[] motionStart;
+    private final String[] motionFiles;
+    private final String[] motionSounds;
+    private final int[] motionFadeIns;
+    private final int[] motionFadeOuts;
+    private final String[] layoutKeys; // レイアウトが無い場合はnull
+    private final float[] layoutValues;
+    private final String[] initParamIds;
+    private final float[] initParamValues;
+    private final String[] initPartsVisibleIds;
+    private final float[] initPartsVisibleValues;
+    private final String[] soundPaths;
+    // 検索用
+    private final HashMap<String, Integer> motionGroupIds = new HashMap<>();
+    private final HashMap<String, Integer> hitAreaIndices = new HashMap<>();
+
+    private ModelSettingCompiled(String modelName, String modelFile, String physicsFile, String poseFile,
+                                 String[] textureFiles, String[] hitAreaIds, String[] hitAreaNames,
+                                 String[] expressionNames, String[] expressionFiles,
+                                 String[] motionGroupNames, int[] motionStart, String[] motionFiles, String[] motionSounds,
+                                 int[] motionFadeIns, int[] motionFadeOuts, String[] layoutKeys, float[] layoutValues,
+                                 String[] initParamIds, float[] initParamValues,
+                                 String[] initPartsVisibleIds, float[] initPartsVisibleValues, String[] soundPaths) {
+        this.modelName = modelName;
+        this.modelFile = modelFile;
+        this.physicsFile = physicsFile;
+        this.poseFile = poseFile;
+        this.textureFiles = textureFiles;
+        this.hitAreaIds = hitAreaIds;
+        this.hitAreaNames = hitAreaNames;
+        this.expressionNames = expressionNames;
+        this.expressionFiles = expressionFiles;
+        this.motionGroupNames = motionGroupNames;
+        this.motionStart = motionStart;
+        this.motionFiles = motionFiles;
+        this.motionSounds = motionSounds;
+        this.motionFadeIns = motionFadeIns;
+        this.motionFadeOuts = motionFadeOuts;
+        this.layoutKeys = layoutKeys;
+        this.layoutValues = layoutValues;
+        this.initParamIds = initParamIds;
+        this.initParamValues = initParamValues;
+        this.initPartsVisibleIds = initPartsVisibleIds;
+        this.initPartsVisibleValues = initPartsVisibleValues;
+        this.soundPaths = soundPaths;
+
+        for (int i = 0; i < motionGroupNames.length; i++) {
+            motionGroupIds.put(motionGroupNames[i], i);
+        }
+        for (int i = 0; i < hitAreaNames.length; i++) {
+            if (!hitAreaIndices.containsKey(hitAreaNames[i]))
+                hitAreaIndices.put(hitAreaNames[i], i); // 同じ名前は先のものを使う
+        }
+    }
+
+    /*
+     * 別のModelSettingから変換する
+     * @param src
+     * @return
+     */
+    public static ModelSettingCompiled compile(ModelSetting src) {
+        int hitAreaNum = src.getHitAreasNum();
+        String[] hitAreaIds = new String[hitAreaNum];
+        String[] hitAreaNames = new String[hitAreaNum];
+        for (int i = 0; i < hitAreaNum; i++) {
+            hitAreaIds[i] = src.getHitAreaID(i);
+            hitAreaNames[i] = src.getHitAreaName(i);
+        }
+
+        String[] groups = src.getMotionGroupNames();
+        if (groups == null)
+            groups = new String[0];
+        int[] start = new int[groups.length + 1];
+        for (int g = 0; g < groups.length; g++) {
+            start[g + 1] = start[g] + src.getMotionNum(groups[g]);
+        }
+        int motionNum = start[groups.length];
+        String[] files = new String[motionNum];
+        String[] sounds = new String[motionNum];
+        int[] fadeIns = new int[motionNum];
+        int[] fadeOuts = new int[motionNum];
+        for (int g = 0; g < groups.length; g++) {
+            for (int n = 0; n < start[g + 1] - start[g]; n++) {
+                int i = start[g] + n;
+                files[i] = src.getMotionFile(groups[g], n);
+                sounds[i] = src.getMotionSound(groups[g], n);
+                fadeIns[i] = src.getMotionFadeIn(groups[g], n);
+                fadeOuts[i] = src.getMotionFadeOut(groups[g], n);
+            }
+        }
+
+        String[] layoutKeys = null;
+        float[] layoutValues = null;
+        HashMap<String, Float> layout = new HashMap<>();
+        if (src.getLayout(layout)) {
+            layoutKeys = layout.keySet().toArray(new String[layout.size()]);
+            Arrays.sort(layoutKeys);
+            layoutValues = new float[layoutKeys.length];
+            for (int i = 0; i < layoutKeys.length; i++) {
+                layoutValues[i] = layout.get(layoutKeys[i]);
+            }
+        }
+
+        int initParamNum = src.getInitParamNum();
+        String[] initParamIds = new String[initParamNum];
+        float[] initParamValues = new float[initParamNum];
+        for (int i = 0; i < initParamNum; i++) {
+            initParamIds[i] = src.getInitParamID(i);
+            initParamValues[i] = src.getInitParamValue(i);
+        }
+
+        int initPartsNum = src.getInitPartsVisibleNum();
+        String[] initPartsIds = new String[initPartsNum];
+        float[] initPartsValues = new float[initPartsNum];
+        for (int i = 0; i < initPartsNum; i++) {
+            initPartsIds[i] = src.getInitPartsVisibleID(i);
+            initPartsValues[i] = src.getInitPartsVisibleValue(i);
+        }
+
+        String[] soundPaths = src.getSoundPaths();
+        if (soundPaths == null)
+            soundPaths = new String[0];
+
+        return new ModelSettingCompiled(src.getModelName(), src.getModelFile(), src.getPhysicsFile(), src.getPoseFile(),
+                src.getTextureFiles(), hitAreaIds, hitAreaNames, src.getExpressionNames(), src.getExpressionFiles(),
+                groups, start, files, sounds, fadeIns, fadeOuts, layoutKeys, layoutValues,
+                initParamIds, initParamValues, initPartsIds, initPartsValues, soundPaths);
+    }
+
+    //=========================================================
+    // 	保存と読み込み
+    //=========================================================
+    /*
+     * バイナリで保存する
+     * @param out
+     * @throws IOException
+     */
+    public final void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeString(out, modelName);
+        writeString(out, modelFile);
+        writeString(out, physicsFile);
+        writeString(out, poseFile);
+        writeStrings(out, textureFiles);
+        writeStrings(out, hitAreaIds);
+        writeStrings(out, hitAreaNames);
+        writeStrings(out, expressionNames);
+        writeStrings(out, expressionFiles);
+        writeStrings(out, motionGroupNames);
+        writeInts(out, motionStart);
+        writeStrings(out, motionFiles);
+        writeStrings(out, motionSounds);
+        writeInts(out, motionFadeIns);
+        writeInts(out, motionFadeOuts);
+        writeStrings(out, layoutKeys);
+        writeFloats(out, layoutValues);
+        writeStrings(out, initParamIds);
+        writeFloats(out, initParamValues);
+        writeStrings(out, initPartsVisibleIds);
+        writeFloats(out, initPartsVisibleValues);
+        writeStrings(out, soundPaths);
+    }
+
+    /*
+     * write()で保存したものを読み込む
+     * @param in
+     * @return
+     * @throws IOException 形式が違う、または壊れている場合
+     */
+    public static ModelSettingCompiled read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            throw new IOException("Unsupported model setting cache.");
+        String modelName = readString(in);
+        String modelFile = readString(in);
+        String physicsFile = readString(in);
+        String poseFile = readString(in);
+        String[] textureFiles = readStrings(in);
+        String[] hitAreaIds = readStrings(in);
+        String[] hitAreaNames = readStrings(in);
+        String[] expressionNames = readStrings(in);
+        String[] expressionFiles = readStrings(in);
+        String[] groups = readStrings(in);
+        int[] start = readInts(in);
+        String[] files = readStrings(in);
+        String[] sounds = readStrings(in);
+        int[] fadeIns = readInts(in);
+        int[] fadeOuts = readInts(in);
+        String[] layoutKeys = readStrings(in);
+        float[] layoutValues = readFloats(in);
+        String[] initParamIds = readStrings(in);
+        float[] initParamValues = readFloats(in);
+        String[] initPartsIds = readStrings(in);
+        float[] initPartsValues = readFloats(in);
+        String[] soundPaths = readStrings(in);
+
+        // レイアウト以外は必ずある
+        if (textureFiles == null || hitAreaIds == null || hitAreaNames == null || expressionNames == null
+                || expressionFiles == null || groups == null || files == null || sounds == null || initParamIds == null
+                || initParamValues == null || initPartsIds == null || initPartsValues == null || soundPaths == null)
+            throw new IOException("Broken model setting cache.");
+        // 配列の長さがそろっているか
+        int motionNum = files.length;
+        if (start.length != groups.length + 1 || start[0] != 0 || start[groups.length] != motionNum || sounds.length != motionNum
+                || fadeIns.length != motionNum || fadeOuts.length != motionNum
+                || hitAreaIds.length != hitAreaNames.length || expressionNames.length != expressionFiles.length
+                || (layoutKeys == null) != (layoutValues == null) || (layoutKeys != null && layoutKeys.length != layoutValues.length)
+                || initParamIds.length != initParamValues.length || initPartsIds.length != initPartsValues.length)
+            throw new IOException("Broken model setting cache.");
+        for (int g = 0; g < groups.length; g++) {
+            if (start[g + 1] < start[g])
+                throw new IOException("Broken model setting cache.");
+        }
+
+        return new ModelSettingCompiled(modelName, modelFile, physicsFile, poseFile, textureFiles, hitAreaIds, hitAreaNames,
+                expressionNames, expressionFiles, groups, start, files, sounds, fadeIns, fadeOuts, layoutKeys, layoutValues,
+                initParamIds, initParamValues, initPartsIds, initPartsValues, soundPaths);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null)
+            out.writeUTF(s);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] a) throws IOException {
+        out.writeInt(a == null ? -1 : a.length);
+        if (a == null)
+            return;
+        for (String s : a) {
+            writeString(out, s);
+        }
+    }
+
+    /*
+     * 配列の長さを読む
+     * @param in
+     * @return nullの場合は-1
+     * @throws IOException 長さが壊れている場合
+     */
+    private static int readLength(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < -1 || len > MAX_ARRAY_LENGTH)
+            throw new IOException("Broken model setting cache.");
+        return len;
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException {
+        int len = readLength(in);
+        if (len < 0)
+            return null;
+        String[] a = new String[len];
+        for (int i = 0; i < len; i++) {
+            a[i] = readString(in);
+        }
+        return a;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] a) throws IOException {
+        out.writeInt(a.length);
+        for (int v : a) {
+            out.writeInt(v);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int len = readLength(in);
+        if (len < 0)
+            throw new IOException("Broken model setting cache.");
+        int[] a = new int[len];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = in.readInt();
+        }
+        return a;
+    }
+
+    private static void writeFloats(DataOutputStream out, float[] a) throws IOException {
+        out.writeInt(a == null ? -1 : a.length);
+        if (a == null)
+            return;
+        for (float v : a) {
+            out.writeFloat(v);
+        }
+    }
+
+    private static float[] readFloats(DataInputStream in) throws IOException {
+        int len = readLength(in);
+        if (len < 0)
+            return null;
+        float[] a = new float[len];
+        for (int i = 0; i < len; i++) {
+            a[i] = in.readFloat();
+        }
+        return a;
+    }
+
+    //=========================================================
+    // 	番号による取得
+    //=========================================================
+    /*
+     * モーショングループの番号
+     * @param name
+     * @return 無い場合は-1
+     */
+    public final int getMotionGroupId(String name) {
+        Integer id = motionGroupIds.get(name);
+        return id == null ? -1 : id;
+    }
+
+    public final int getMotionNum(int groupId) {
+        if (groupId < 0)
+            return 0;
+        return motionStart[groupId + 1] - motionStart[groupId];
+    }
+
+    public final String getMotionFile(int groupId, int n) {
+        if (groupId < 0)
+            return null;
+        return motionFiles[motionStart[groupId] + n];
+    }
+
+    public final String getMotionSound(int groupId, int n) {
+        if (groupId < 0)
+            return null;
+        return motionSounds[motionStart[groupId] + n];
+    }
+
+    public final int getMotionFadeIn(int groupId, int n) {
+        if (groupId < 0)
+            return DEFAULT_FADE;
+        return motionFadeIns[motionStart[groupId] + n];
+    }
+
+    public final int getMotionFadeOut(int groupId, int n) {
+        if (groupId < 0)
+            return DEFAULT_FADE;
+        return motionFadeOuts[motionStart[groupId] + n];
+    }
+
+    /*
+     * 当たり判定の名前からIDを取得する
+     * @param name
+     * @return 無い場合はnull
+     */
+    public final String getHitAreaIDByName(String name) {
+        Integer n = hitAreaIndices.get(name);
+        return n == null ? null : hitAreaIds[n];
+    }
+
+    //=========================================================
+    // 	ModelSetting
+    //=========================================================
+    @Override
+    public final String getModelName() {
+        return modelName;
+    }
+
+    @Override
+    public final String getModelFile() {
+        return modelFile;
+    }
+
+    @Override
+    public final int getTextureNum() {
+        return textureFiles.length;
+    }
+
+    @Override
+    public final String getTextureFile(int n) {
+        return textureFiles[n];
+    }
+
+    @Override
+    public final String[] getTextureFiles() {
+        return textureFiles.clone();
+    }
+
+    @Override
+    public final int getHitAreasNum() {
+        return hitAreaIds.length;
+    }
+
+    @Override
+    public final String getHitAreaID(int n) {
+        return hitAreaIds[n];
+    }
+
+    @Override
+    public final String getHitAreaName(int n) {
+        return hitAreaNames[n];
+    }
+
+    @Override
+    public final String getPhysicsFile() {
+        return physicsFile;
+    }
+
+    @Override
+    public final String getPoseFile() {
+        return poseFile;
+    }
+
+    @Override
+    public final int getExpressionNum() {
+        return expressionFiles.length;
+    }
+
+    @Override
+    public final String getExpressionFile(int n) {
+        return expressionFiles[n];
+    }
+
+    @Override
+    public final String[] getExpressionFiles() {
+        return expressionFiles.clone();
+    }
+
+    @Override
+    public final String getExpressionName(int n) {
+        return expressionNames[n];
+    }
+
+    @Override
+    public final String[] getExpressionNames() {
+        return expressionNames.clone();
+    }
+
+    @Override
+    public final String[] getMotionGroupNames() {
+        if (motionGroupNames.length == 0)
+            return null;
+        return motionGroupNames.clone();
+    }
+
+    @Override
+    public final int getMotionNum(String name) {
+        return getMotionNum(getMotionGroupId(name));
+    }
+
+    @Override
+    public final String getMotionFile(String name, int n) {
+        return getMotionFile(getMotionGroupId(name), n);
+    }
+
+    @Override
+    public final String getMotionSound(String name, int n) {
+        return getMotionSound(getMotionGroupId(name), n);
+    }
+
+    @Override
+    public final int getMotionFadeIn(String name, int n) {
+        return getMotionFadeIn(getMotionGroupId(name), n);
+    }
+
+    @Override
+    public final int getMotionFadeOut(String name, int n) {
+        return getMotionFadeOut(getMotionGroupId(name), n);
+    }
+
+    @Override
+    public final boolean getLayout(Map<String, Float> layout) {
+        if (layoutKeys == null)
+            return false;
+        for (int i = 0; i < layoutKeys.length; i++) {
+            layout.put(layoutKeys[i], layoutValues[i]);
+        }
+        return true;
+    }
+
+    @Override
+    public final int getInitParamNum() {
+        return initParamIds.length;
+    }
+
+    @Override
+    public final float getInitParamValue(int n) {
+        return initParamValues[n];
+    }
+
+    @Override
+    public final String getInitParamID(int n) {
+        return initParamIds[n];
+    }
+
+    @Override
+    public final int getInitPartsVisibleNum() {
+        return initPartsVisibleIds.length;
+    }
+
+    @Override
+    public final float getInitPartsVisibleValue(int n) {
+        return initPartsVisibleValues[n];
+    }
+
+    @Override
+    public final String getInitPartsVisibleID(int n) {
+        return initPartsVisibleIds[n];
+    }
+
+    @Override
+    public final String[] getSoundPaths() {
+        return soundPaths.clone();
+    }
+}
\ No newline at end of file
@@ -6,15 +6,20 @@
  */
 package jp.live2d.utils.android;
 
-import jp.live2d.util.Json;
-import jp.live2d.util.Json.Value;
+import jp.live2d.framework.L2DJsonReader;
 import jp.live2d.util.UtFile;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+/*
+ * モデルの設定ファイル（*.model.json）。
+ * コンストラクタでL2DJsonReaderにより前から順に読み、必要な値だけを保持する。
+ */
 public final class ModelSettingJson implements ModelSetting {
     private static final String NAME = "name";
     private static final String ID = "id";
@@ -33,210 +38,328 @@ public final class ModelSettingJson implements ModelSetting {
     private static final String INIT_PARTS_VISIBLE = "init_parts_visible";
     private static final String INIT_PARAM = "init_param";
     private static final String LAYOUT = "layout";
-    private Value json;
-
-    public ModelSettingJson(InputStream in) {
-        byte[] buf = UtFile.load(in);
-        json = Json.parseFromBytes(buf);
+    private static final int DEFAULT_FADE = 1000;
+
+    private String modelName = null;
+    private String modelFile = null;
+    private String physicsFile = null;
+    private String poseFile = null;
+    private final ArrayList<String> textureFiles = new ArrayList<>();
+    private final ArrayList<String[]> hitAreas = new ArrayList<>();    // {id, name}
+    private final ArrayList<String[]> expressions = new ArrayList<>(); // {name, file}
+    private LinkedHashMap<String, ArrayList<Motion>> motionGroups = null; // motionsが無い場合はnull
+    private LinkedHashMap<String, Float> layout = null;
+    private final ArrayList<String> initParamIds = new ArrayList<>();
+    private final ArrayList<Float> initParamValues = new ArrayList<>();
+    private final ArrayList<String> initPartsVisibleIds = new ArrayList<>();
+    private final ArrayList<Float> initPartsVisibleValues = new ArrayList<>();
+
+    private static final class Motion {
+        String file = null;
+        String sound = null;
+        int fadeIn = DEFAULT_FADE;
+        int fadeOut = DEFAULT_FADE;
     }
 
-    private boolean existMotion(String name) {
-        return (json.get(MOTION_GROUPS).get(name) != null); // json.motion_group[name]
+    public ModelSettingJson(InputStream in) {
+        this(UtFile.load(in));
     }
 
-    private boolean existMotionSound(String name, int n) {
-        return json.get(MOTION_GROUPS).get(name).get(n).get(SOUND) != null;
+    public ModelSettingJson(byte[] buf) {
+        this(ByteBuffer.wrap(buf));
     }
 
-    private boolean existMotionFadeIn(String name, int n) {
-        return json.get(MOTION_GROUPS).get(name).get(n).get(FADE_IN) != null;
+    public ModelSettingJson(ByteBuffer buf) {
+        L2DJsonReader reader = new L2DJsonReader(buf);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if (reader.peek() == L2DJsonReader.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (key) {
+                case NAME:
+                    modelName = reader.nextString();
+                    break;
+                case MODEL:
+                    modelFile = reader.nextString();
+                    break;
+                case PHYSICS:
+                    physicsFile = reader.nextString();
+                    break;
+                case POSE:
+                    poseFile = reader.nextString();
+                    break;
+                case TEXTURES:
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        textureFiles.add(reader.nextString());
+                    }
+                    reader.endArray();
+                    break;
+                case HIT_AREAS:
+                    readPairs(reader, hitAreas, ID, NAME);
+                    break;
+                case EXPRESSIONS:
+                    readPairs(reader, expressions, NAME, FILE);
+                    break;
+                case MOTION_GROUPS:
+                    readMotionGroups(reader);
+                    break;
+                case LAYOUT:
+                    layout = new LinkedHashMap<>();
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String name = reader.nextName();
+                        layout.put(name, reader.nextFloat());
+                    }
+                    reader.endObject();
+                    break;
+                case INIT_PARAM:
+                    readValues(reader, initParamIds, initParamValues);
+                    break;
+                case INIT_PARTS_VISIBLE:
+                    readValues(reader, initPartsVisibleIds, initPartsVisibleValues);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+    }
+
+    /*
+     * [{key0: .., key1: ..}, ...] を {値0, 値1} のリストにする
+     */
+    private static void readPairs(L2DJsonReader reader, ArrayList<String[]> list, String key0, String key1) {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String[] pair = new String[2];
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String key = reader.nextName();
+                if (key0.equals(key))
+                    pair[0] = reader.nextString();
+                else if (key1.equals(key))
+                    pair[1] = reader.nextString();
+                else
+                    reader.skipValue();
+            }
+            reader.endObject();
+            list.add(pair);
+        }
+        reader.endArray();
+    }
+
+    /*
+     * [{id: .., val: ..}, ...]
+     */
+    private static void readValues(L2DJsonReader reader, ArrayList<String> ids, ArrayList<Float> values) {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String id = null;
+            float value = 0;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String key = reader.nextName();
+                if (ID.equals(key))
+                    id = reader.nextString();
+                else if (VALUE.equals(key))
+                    value = reader.nextFloat();
+                else
+                    reader.skipValue();
+            }
+            reader.endObject();
+            ids.add(id);
+            values.add(value);
+        }
+        reader.endArray();
+    }
+
+    private void readMotionGroups(L2DJsonReader reader) {
+        motionGroups = new LinkedHashMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            ArrayList<Motion> group = new ArrayList<>();
+            reader.beginArray();
+            while (reader.hasNext()) {
+                Motion motion = new Motion();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String key = reader.nextName();
+                    if (reader.peek() == L2DJsonReader.NULL)
+                        reader.nextNull();
+                    else if (FILE.equals(key))
+                        motion.file = reader.nextString();
+                    else if (SOUND.equals(key))
+                        motion.sound = reader.nextString();
+                    else if (FADE_IN.equals(key))
+                        motion.fadeIn = reader.nextInt();
+                    else if (FADE_OUT.equals(key))
+                        motion.fadeOut = reader.nextInt();
+                    else
+                        reader.skipValue();
+                }
+                reader.endObject();
+                group.add(motion);
+            }
+            reader.endArray();
+            motionGroups.put(name, group);
+        }
+        reader.endObject();
     }
 
-    private boolean existMotionFadeOut(String name, int n) {
-        return json.get(MOTION_GROUPS).get(name).get(n).get(FADE_OUT) != null;
+    private Motion getMotion(String name, int n) {
+        if (motionGroups == null || motionGroups.get(name) == null)
+            return null;
+        return motionGroups.get(name).get(n); // json.motion_group[name][n]
     }
 
     @Override
     public String getModelName() {
-        if (json.get(NAME) == null)
-            return null;
-        return json.get(NAME).toString();
+        return modelName;
     }
 
     @Override
     public String getModelFile() {
-        if (json.get(MODEL) == null)
-            return null;
-        return json.get(MODEL).toString();
+        return modelFile;
     }
 
     @Override
     public int getTextureNum() {
-        if (json.get(TEXTURES) == null)
-            return 0;
-        return json.get(TEXTURES).getVector(null).size(); // json.textures.length
+        return textureFiles.size();
     }
 
     @Override
     public String getTextureFile(int n) {
-        return json.get(TEXTURES).get(n).toString(); // json.textures[n]
+        return textureFiles.get(n);
     }
 
     @Override
     public int getHitAreasNum() {
-        if (json.get(HIT_AREAS) == null)
-            return 0;
-        return json.get(HIT_AREAS).getVector(null).size(); // json.hit_area.length
+        return hitAreas.size();
     }
 
     @Override
     public String getHitAreaID(int n) {
-        return json.get(HIT_AREAS).get(n).get(ID).toString(); // json.hit_area[n].id
+        return hitAreas.get(n)[0];
     }
 
     @Override
     public String getHitAreaName(int n) {
-        return json.get(HIT_AREAS).get(n).get(NAME).toString(); // json.hit_area[n].name
+        return hitAreas.get(n)[1];
     }
 
     @Override
     public String getPhysicsFile() {
-        if (json.get(PHYSICS) == null)
-            return null;
-        return json.get(PHYSICS).toString();
+        return physicsFile;
     }
 
     @Override
     public String getPoseFile() {
-        if (json.get(POSE) == null)
-            return null;
-        return json.get(POSE).toString();
+        return poseFile;
     }
 
     @Override
     public int getMotionNum(String name) {
-        if (!existMotion(name))
+        if (motionGroups == null || motionGroups.get(name) == null)
             return 0;
-        return json.get(MOTION_GROUPS).get(name).getVector(null).size(); // json.motion_group[name].length
+        return motionGroups.get(name).size();
     }
 
     @Override
     public String getMotionFile(String name, int n) {
-        if (!existMotion(name))
-            return null;
-        return json.get(MOTION_GROUPS).get(name).get(n).get(FILE).toString(); // json.motion_group[name][n].file
+        Motion motion = getMotion(name, n);
+        return motion == null ? null : motion.file;
     }
 
     @Override
     public String getMotionSound(String name, int n) {
-        if (!existMotionSound(name, n))
-            return null;
-        return json.get(MOTION_GROUPS).get(name).get(n).get(SOUND).toString(); // json.motion_group[name][n].sound
+        Motion motion = getMotion(name, n);
+        return motion == null ? null : motion.sound;
     }
 
     @Override
     public int getMotionFadeIn(String name, int n) {
-        return (!existMotionFadeIn(name, n)) ? 1000 : json.get(MOTION_GROUPS).get(name).get(n).get(FADE_IN).toInt(); // json.motion_group[name][n].fade_in
+        Motion motion = getMotion(name, n);
+        return motion == null ? DEFAULT_FADE : motion.fadeIn;
     }
 
     @Override
     public int getMotionFadeOut(String name, int n) {
-        return (!existMotionFadeOut(name, n)) ? 1000 : json.get(MOTION_GROUPS).get(name).get(n).get(FADE_OUT).toInt(); // json.motion_group[name][n].fade_out
+        Motion motion = getMotion(name, n);
+        return motion == null ? DEFAULT_FADE : motion.fadeOut;
     }
 
     @Override
     public String[] getMotionGroupNames() {
-        if (json.get(MOTION_GROUPS) == null)
+        if (motionGroups == null || motionGroups.isEmpty())
             return null;
-        Object[] keys = json.get(MOTION_GROUPS).getMap(null).keySet().toArray();
-
-        if (keys.length == 0)
-            return null;
-
-        String[] names = new String[keys.length];
-
-        for (int i = 0; i < names.length; i++) {
-            names[i] = (String) keys[i];
-        }
-        return names;
+        return motionGroups.keySet().toArray(new String[motionGroups.size()]);
     }
 
     // 表示位置
-    @SuppressWarnings("unchecked")
     @Override
     public boolean getLayout(Map<String, Float> layout) {
-        if (json.get(LAYOUT) == null)
+        if (this.layout == null)
             return false;
-
-        Map<String, Value> map = json.get(LAYOUT).getMap(null);
-        String[] keys = map.keySet().toArray(new String[map.size()]);
-
-        for (String key : keys) {
-            layout.put(key, json.get(LAYOUT).get(key).toFloat());
-        }
+        layout.putAll(this.layout);
         return true;
     }
 
     // 初期パラメータについて
     @Override
     public int getInitParamNum() {
-        if (json.get(INIT_PARAM) == null)
-            return 0;
-        return json.get(INIT_PARAM).getVector(null).size();
+        return initParamIds.size();
     }
 
     @Override
     public float getInitParamValue(int n) {
-        return json.get(INIT_PARAM).get(n).get(VALUE).toFloat();
+        return initParamValues.get(n);
     }
 
     @Override
     public String getInitParamID(int n) {
-        return json.get(INIT_PARAM).get(n).get(ID).toString();
+        return initParamIds.get(n);
     }
 
     // 初期パーツ表示について
     @Override
     public int getInitPartsVisibleNum() {
-        if (json.get(INIT_PARTS_VISIBLE) == null)
-            return 0;
-        return json.get(INIT_PARTS_VISIBLE).getVector(null).size();
+        return initPartsVisibleIds.size();
     }
 
     @Override
     public float getInitPartsVisibleValue(int n) {
-        return json.get(INIT_PARTS_VISIBLE).get(n).get(VALUE).toFloat();
+        return initPartsVisibleValues.get(n);
     }
 
     @Override
     public String getInitPartsVisibleID(int n) {
-        return json.get(INIT_PARTS_VISIBLE).get(n).get(ID).toString();
+        return initPartsVisibleIds.get(n);
     }
 
     @Override
     public int getExpressionNum() {
-        if (json.get(EXPRESSIONS) == null)
-            return 0;
-        return json.get(EXPRESSIONS).getVector(null).size();
+        return expressions.size();
     }
 
     @Override
     public String getExpressionFile(int n) {
-        return json.get(EXPRESSIONS).get(n).get(FILE).toString();
+        return expressions.get(n)[1];
     }
 
     @Override
     public String getExpressionName(int n) {
-        return json.get(EXPRESSIONS).get(n).get(NAME).toString();
+        return expressions.get(n)[0];
     }
 
     @Override
     public String[] getTextureFiles() {
-        String[] ret = new String[getTextureNum()];
-        for (int i = 0; i < ret.length; i++) {
-            ret[i] = getTextureFile(i);
-        }
-        return ret;
+        return textureFiles.toArray(new String[textureFiles.size()]);
     }
 
     @Override
@@ -257,20 +380,15 @@ public final class ModelSettingJson implements ModelSetting {
         return ret;
     }
 
-    @SuppressWarnings("unchecked")
     public String[] getSoundPaths() {
-        if (json.get(MOTION_GROUPS) == null)
+        if (motionGroups == null)
             return null;
 
         List<String> ret = new ArrayList<>();
-        Map<String, Value> map = json.get(MOTION_GROUPS).getMap(null);
-        for (Map.Entry<String, Value> e : map.entrySet()) {
-            List<Value> motions = e.getValue().getVector(null);
-
-            for (Value motion : motions) {
-                Value soundPath = motion.get(SOUND);
-                if (soundPath != null) {
-                    ret.add(soundPath.toString());
+        for (ArrayList<Motion> motions : motionGroups.values()) {
+            for (Motion motion : motions) {
+                if (motion.sound != null) {
+                    ret.add(motion.sound);
                 }
             }
         }
@@ -0,0 +1,280 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+ */
+package jp.live2d.utils.android;
+
+import android.util.Log;
+import jp.live2d.ALive2DModel;
+import jp.live2d.framework.L2DParamEncoder;
+import jp.live2d.framework.L2DParamTable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/*
+ * モデルのパラメータを複数の表示側（ParamSubscriber）へ配信する。
+ *
+ * GLスレッドはpublish()でエンコードしてキューに積むだけで、ソケットへの書き込みは送信スレッドで行う。
+ * 送信スレッドは受信側ごとのキューにコピーし、書き込みは受信側ごとのスレッドで行う。
+ * 1つの受信側の書き込みが止まっても、他の受信側には届け続ける。
+ * 書き込みが追いつかずにキューが溢れた受信側は、差分が抜けるので次のキーフレームまで送らない。
+ * フレームは 長さ(2byte) + L2DParamEncoderのフレーム でTCPに流す。
+ * 新しい受信側が接続したとき、受信側からREQUEST_KEYFRAMEが届いたときは次のフレームをキーフレームにする。
+ */
+public final class ParamBroadcaster {
+    private static final String TAG = "ParamBroadcaster";
+    private static final int FRAME_BUFFER_NUM = 4; // 送信待ちにできるフレーム数
+    static final int REQUEST_KEYFRAME = 1; // 受信側から送る。表示するモデルを変えたときなど
+
+    private final int port;
+    private final float epsilon;
+    private final int keyframeIntervalMSec;
+    private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ArrayBlockingQueue<byte[]> freeBuffers = new ArrayBlockingQueue<>(FRAME_BUFFER_NUM);
+    private final ArrayBlockingQueue<byte[]> sendQueue = new ArrayBlockingQueue<>(FRAME_BUFFER_NUM);
+    private ServerSocket serverSocket;
+    private Thread acceptThread;
+    private Thread sendThread;
+    private volatile boolean running = false;
+    private volatile boolean keyframeRequested = false;
+    private L2DParamEncoder encoder;
+    private ALive2DModel encoderModel; // エンコーダを作成したモデル
+
+    /*
+     * @param port 待ち受けるポート。ローカルの接続のみ受け付ける
+     * @param epsilon 範囲に対する割合。これより小さい変化は送らない
+     * @param keyframeIntervalMSec キーフレームを送る間隔
+     */
+    public ParamBroadcaster(int port, float epsilon, int keyframeIntervalMSec) {
+        this.port = port;
+        this.epsilon = epsilon;
+        this.keyframeIntervalMSec = keyframeIntervalMSec;
+    }
+
+    /*
+     * 待ち受けを開始する
+     */
+    public final void start() {
+        if (running)
+            return;
+        try {
+            serverSocket = new ServerSocket();
+            serverSocket.setReuseAddress(true); // 作り直したときに、前の接続が残っていても待ち受けられるように
+            serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), FRAME_BUFFER_NUM);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to listen: " + port, e);
+            return;
+        }
+        running = true;
+
+        acceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop();
+            }
+        }, TAG + "-accept");
+        sendThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sendLoop();
+            }
+        }, TAG + "-send");
+        acceptThread.start();
+        sendThread.start();
+    }
+
+    /*
+     * 待ち受けを終了して、すべての受信側を切断する
+     */
+    public final void stop() {
+        running = false;
+        try {
+            if (serverSocket != null)
+                serverSocket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (sendThread != null)
+            sendThread.interrupt();
+        for (Subscriber s : subscribers) {
+            s.close();
+        }
+        subscribers.clear();
+    }
+
+    public final int getSubscriberNum() {
+        return subscribers.size();
+    }
+
+    /*
+     * モデルの現在のパラメータを配信する。LAppModel.update()の後にGLスレッドから呼ぶ。
+     * 受信側がいないとき、送信が詰まっているときは何もしない。
+     * @param model
+     * @param timeMSec
+     */
+    public final void publish(ALive2DModel model, long timeMSec) {
+        if (!running || subscribers.isEmpty())
+            return;
+
+        if (encoderModel != model) {
+            encoder = new L2DParamEncoder(L2DParamTable.create(model), epsilon, keyframeIntervalMSec);
+            encoderModel = model;
+            freeBuffers.clear();
+            for (int i = 0; i < FRAME_BUFFER_NUM; i++) {
+                freeBuffers.offer(new byte[2 + encoder.getMaxFrameSize()]);
+            }
+        }
+
+        // 空きが無い場合はこのフレームは送らない。エンコーダの状態は変えないので次の差分に含まれる
+        byte[] buf = freeBuffers.poll();
+        if (buf == null)
+            return;
+        if (buf.length < 2 + encoder.getMaxFrameSize())
+            return; // 別モデルのバッファ。破棄する
+
+        if (keyframeRequested) {
+            keyframeRequested = false;
+            encoder.requestKeyframe();
+        }
+
+        int len = encoder.encode(model, timeMSec, buf, 2);
+        buf[0] = (byte) (len >>> 8);
+        buf[1] = (byte) len;
+        sendQueue.offer(buf);
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket s = serverSocket.accept();
+                s.setTcpNoDelay(true);
+                Subscriber subscriber = new Subscriber(s);
+                subscribers.add(subscriber);
+                keyframeRequested = true; // 途中参加のためにキーフレームを送る
+                subscriber.start();
+                Log.i(TAG, "Subscriber connected: " + s.getRemoteSocketAddress());
+            } catch (IOException e) {
+                if (running)
+                    Log.w(TAG, "Accept failed.", e);
+            }
+        }
+    }
+
+    private void sendLoop() {
+        while (running) {
+            byte[] buf;
+            try {
+                buf = sendQueue.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            int len = 2 + (((buf[0] & 0xFF) << 8) | (buf[1] & 0xFF));
+            for (Subscriber s : subscribers) {
+                s.offer(buf, len);
+            }
+            freeBuffers.offer(buf);
+        }
+    }
+
+    /*
+     * 受信側ごとの書き込み。
+     * offer()は送信スレッド、書き込みは受信側ごとのスレッドで行う。
+     */
+    private final class Subscriber implements Runnable {
+        private final Socket socket;
+        private final ArrayBlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(FRAME_BUFFER_NUM);
+        private final ArrayBlockingQueue<byte[]> free = new ArrayBlockingQueue<>(FRAME_BUFFER_NUM);
+        private final Thread thread;
+        private boolean waitingKeyframe = false; // 送信スレッドのみ
+
+        Subscriber(Socket socket) {
+            this.socket = socket;
+            for (int i = 0; i < FRAME_BUFFER_NUM; i++) {
+                free.offer(new byte[0]); // 最初のoffer()でフレームの大きさに合わせる
+            }
+            thread = new Thread(this, TAG + "-" + socket.getPort());
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        /*
+         * フレームをこの受信側のキューにコピーする。書き込みを待たない
+         * @param frame
+         * @param len 長さを含めた大きさ
+         */
+        void offer(byte[] frame, int len) {
+            boolean key = frame[2] == L2DParamEncoder.TYPE_KEY;
+            if (waitingKeyframe && !key)
+                return;
+            byte[] buf = free.poll();
+            if (buf == null) {
+                // 書き込みが追いついていない。差分が抜けるので、キーフレームから送り直す
+                if (!waitingKeyframe)
+                    Log.w(TAG, "Subscriber stalled: " + socket.getRemoteSocketAddress());
+                waitingKeyframe = true;
+                keyframeRequested = true;
+                return;
+            }
+            if (buf.length < len)
+                buf = new byte[frame.length]; // モデルが変わったときだけ
+            System.arraycopy(frame, 0, buf, 0, len);
+            waitingKeyframe = false;
+            queue.offer(buf);
+        }
+
+        @Override
+        public void run() {
+            try {
+                OutputStream out = socket.getOutputStream();
+                while (running) {
+                    byte[] buf = queue.take();
+                    readRequests();
+                    out.write(buf, 0, 2 + (((buf[0] & 0xFF) << 8) | (buf[1] & 0xFF)));
+                    out.flush();
+                    free.offer(buf);
+                }
+            } catch (IOException | InterruptedException e) {
+                // 切断された、または終了した
+            } finally {
+                subscribers.remove(this);
+                close();
+            }
+        }
+
+        /*
+         * 受信側からの要求を読む。書き込みを止めないように、届いている分だけ読む
+         * @throws IOException
+         */
+        private void readRequests() throws IOException {
+            InputStream in = socket.getInputStream();
+            while (in.available() > 0) {
+                int request = in.read();
+                if (request < 0)
+                    throw new IOException("Closed"); // 切断された
+                if (request == REQUEST_KEYFRAME)
+                    keyframeRequested = true;
+            }
+        }
+
+        void close() {
+            thread.interrupt();
+            try {
+                socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
\ No newline at end of file
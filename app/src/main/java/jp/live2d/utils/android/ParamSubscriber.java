@@ -0,0 +1,183 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+ */
+package jp.live2d.utils.android;
+
+import android.util.Log;
+import jp.live2d.ALive2DModel;
+import jp.live2d.framework.IParamSource;
+import jp.live2d.framework.L2DParamDecoder;
+import jp.live2d.framework.L2DParamJitterBuffer;
+import jp.live2d.framework.L2DParamTable;
+import jp.live2d.util.UtSystem;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+
+/*
+ * ParamBroadcasterからパラメータを受け取る表示側。
+ *
+ * 受信スレッドでフレームを復元し、GLスレッドはapplyTo()で最新の値をモデルに設定するだけ。
+ * モーションや物理演算の計算は行わない。
+ * 再生の遅延を指定した場合は、L2DParamJitterBufferを通して届く間隔のばらつきを吸収する。
+ *
+ * 復元には表示するモデルのパラメータ定義を使うので、表示するモデルが変わったら作り直し、
+ * 送信側にキーフレームを要求する（ParamBroadcaster.REQUEST_KEYFRAME）。次のキーフレームを待たずに表示できる。
+ * 送信側と別のモデルの場合は、キーフレームのハッシュが一致しないので表示しない。
+ */
+public final class ParamSubscriber implements IParamSource {
+    private static final String TAG = "ParamSubscriber";
+    private static final int MAX_FRAME_SIZE = 0xFFFF;
+    private static final int JITTER_BUFFER_SIZE = 32; // 溜めておくフレーム数
+
+    private final String host;
+    private final int port;
+    private final int delayMSec;
+    private final int maxExtrapolationMSec;
+    private final Object lock = new Object();
+    private L2DParamDecoder decoder; // lockで保護
+    private L2DParamJitterBuffer jitterBuffer; // lockで保護
+    private ALive2DModel decoderModel;         // decoderを作成したモデル。lockで保護
+    private boolean mismatchLogged = false;
+    private volatile Socket socket;
+    private volatile boolean keyframeRequested = false; // 受信スレッドから送る
+    private Thread receiveThread;
+    private volatile boolean running = false;
+
+    public ParamSubscriber(String host, int port) {
+        this(host, port, 0, 0);
+    }
+
+    /*
+     * @param host
+     * @param port
+     * @param delayMSec 再生の遅延。0のときはジッタバッファを使わず最新の値を表示する
+     * @param maxExtrapolationMSec フレームが途切れたときに外挿する最大時間
+     */
+    public ParamSubscriber(String host, int port, int delayMSec, int maxExtrapolationMSec) {
+        this.host = host;
+        this.port = port;
+        this.delayMSec = delayMSec;
+        this.maxExtrapolationMSec = maxExtrapolationMSec;
+    }
+
+    /*
+     * 接続して受信を開始する
+     */
+    public final void start() {
+        if (running)
+            return;
+        running = true;
+        receiveThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                receiveLoop();
+            }
+        }, TAG);
+        receiveThread.start();
+    }
+
+    public final void stop() {
+        running = false;
+        try {
+            if (socket != null)
+                socket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /*
+     * 受信した最新の値をモデルに設定する。GLスレッドから呼ぶ。
+     * @param model
+     * @return キーフレームをまだ受け取っていない場合はfalse
+     */
+    @Override
+    public final boolean applyTo(ALive2DModel model) {
+        L2DParamJitterBuffer buffer;
+        synchronized (lock) {
+            if (decoder == null || decoderModel != model) {
+                // 表示するモデルのパラメータ定義で復元する。送信側と同じモデルであること
+                L2DParamTable table = L2DParamTable.create(model);
+                decoder = new L2DParamDecoder(table);
+                decoderModel = model;
+                jitterBuffer = null;
+                if (delayMSec > 0)
+                    jitterBuffer = new L2DParamJitterBuffer(table, JITTER_BUFFER_SIZE, delayMSec, maxExtrapolationMSec);
+                mismatchLogged = false;
+                keyframeRequested = true; // ソケットへの書き込みは受信スレッドで行う
+                return false;
+            }
+            if (decoder.isMismatched()) {
+                if (!mismatchLogged)
+                    Log.w(TAG, "Parameter table mismatch. The sender shows a different model.");
+                mismatchLogged = true;
+                return false;
+            }
+            if (jitterBuffer == null) {
+                if (!decoder.isSynced())
+                    return false;
+                decoder.applyTo(model);
+                return true;
+            }
+            buffer = jitterBuffer;
+        }
+        return buffer.applyTo(model); // ジッタバッファは自身で排他する
+    }
+
+    /*
+     * 要求されていれば、送信側に次のフレームをキーフレームにするよう要求する。受信スレッドから呼ぶ
+     * @param out
+     * @throws IOException
+     */
+    private void sendKeyframeRequest(OutputStream out) throws IOException {
+        if (!keyframeRequested)
+            return;
+        keyframeRequested = false;
+        out.write(ParamBroadcaster.REQUEST_KEYFRAME);
+        out.flush();
+    }
+
+    private void receiveLoop() {
+        byte[] buf = new byte[MAX_FRAME_SIZE];
+        try {
+            Socket s = new Socket(host, port);
+            s.setTcpNoDelay(true);
+            socket = s;
+            DataInputStream in = new DataInputStream(s.getInputStream());
+            OutputStream out = s.getOutputStream();
+            keyframeRequested = false; // 接続すると送信側はキーフレームを送る
+
+            while (running) {
+                sendKeyframeRequest(out);
+                int len = in.readUnsignedShort();
+                if (len > buf.length)
+                    throw new IOException("Frame too large: " + len);
+                in.readFully(buf, 0, len);
+                synchronized (lock) {
+                    if (decoder != null && decoder.decode(buf, 0, len) && jitterBuffer != null)
+                        jitterBuffer.push(decoder, UtSystem.getTimeMSec());
+                }
+            }
+        } catch (IOException e) {
+            if (running)
+                Log.w(TAG, "Disconnected: " + host + ":" + port, e);
+        } catch (RuntimeException e) {
+            // 受信スレッドで落ちるとアプリが終了するので、切断して表示だけ止める
+            Log.w(TAG, "Broken stream: " + host + ":" + port, e);
+        } finally {
+            running = false;
+            try {
+                if (socket != null)
+                    socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
\ No newline at end of file
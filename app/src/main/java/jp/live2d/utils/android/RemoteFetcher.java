@@ -0,0 +1,198 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+*/
+package jp.live2d.utils.android;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/*
+ * HTTPでサーバーのファイルの一部を取得する。
+ *
+ * Rangeヘッダで必要な範囲だけ要求する。バンドルの中の1つのファイルを、バンドル全体を取得せずに読める。
+ * サーバーが範囲の指定に対応していない場合（200が返る場合）は、先頭から読み飛ばす。
+ * 大きいものはchunkBytesずつ要求してファイルに追記するので、途中で切れても次回は続きから取得できる。
+ *
+ * Contextを使わないので、端末が無くてもローカルのHTTPサーバーに対して動かせる。複数のスレッドから呼べる。
+ */
+public final class RemoteFetcher {
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    private final String baseUrl;
+    private final int timeoutMsec;
+    private final int chunkBytes;
+
+    /*
+     * @param baseUrl ファイルのパスの前に付けるURL。最後の/は省略できる
+     * @param timeoutMsec 接続と読み込みのタイムアウト
+     * @param chunkBytes 1回の要求で取得する大きさ
+     */
+    public RemoteFetcher(String baseUrl, int timeoutMsec, int chunkBytes) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        this.timeoutMsec = timeoutMsec;
+        this.chunkBytes = chunkBytes;
+    }
+
+    /*
+     * ファイル全体を取得する
+     * @param path
+     * @return
+     * @throws IOException 無い場合はFileNotFoundException
+     */
+    public final byte[] fetch(String path) throws IOException {
+        HttpURLConnection conn = open(path);
+        try {
+            checkStatus(conn, path);
+            InputStream in = conn.getInputStream();
+            try {
+                return FileManager.readAll(in);
+            } finally {
+                in.close();
+            }
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    /*
+     * ファイルの一部を取得する
+     * @param path
+     * @param offset
+     * @param length
+     * @return
+     * @throws IOException
+     */
+    public final byte[] fetchRange(String path, long offset, int length) throws IOException {
+        byte[] buf = new byte[length];
+        if (length == 0)
+            return buf;
+        HttpURLConnection conn = openRange(path, offset, length);
+        try {
+            InputStream in = conn.getInputStream();
+            try {
+                skipToRange(conn, in, path, offset);
+                readFully(in, buf, 0, length);
+            } finally {
+                in.close();
+            }
+        } finally {
+            conn.disconnect();
+        }
+        return buf;
+    }
+
+    /*
+     * ファイルの一部をfileに取得する。fileが既にある場合は、その続きから取得する。
+     * chunkBytesずつ要求して追記するので、途中で失敗しても取得済みの分は残る。
+     * @param path
+     * @param offset
+     * @param length
+     * @param file 取得中のファイル
+     * @throws IOException
+     */
+    public final void fetchRangeToFile(String path, long offset, long length, File file) throws IOException {
+        long done = file.length();
+        if (done > length) {
+            file.delete(); // 範囲が変わった
+            done = 0;
+        }
+        byte[] buf = new byte[READ_BUFFER_SIZE];
+        while (done < length) {
+            int n = (int) Math.min(chunkBytes, length - done);
+            HttpURLConnection conn = openRange(path, offset + done, n);
+            try {
+                InputStream in = conn.getInputStream();
+                try {
+                    skipToRange(conn, in, path, offset + done);
+                    FileOutputStream out = new FileOutputStream(file, true);
+                    try {
+                        int remain = n;
+                        while (remain > 0) {
+                            int len = in.read(buf, 0, Math.min(buf.length, remain));
+                            if (len < 0)
+                                throw new EOFException(path);
+                            out.write(buf, 0, len);
+                            remain -= len;
+                            done += len;
+                        }
+                    } finally {
+                        out.close();
+                    }
+                } finally {
+                    in.close();
+                }
+            } finally {
+                conn.disconnect();
+            }
+        }
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        conn.setConnectTimeout(timeoutMsec);
+        conn.setReadTimeout(timeoutMsec);
+        conn.setRequestProperty("Accept-Encoding", "identity"); // 範囲は圧縮前の位置
+        return conn;
+    }
+
+    private HttpURLConnection openRange(String path, long offset, long length) throws IOException {
+        HttpURLConnection conn = open(path);
+        conn.setRequestProperty("Range", "bytes=" + offset + "-" + (offset + length - 1));
+        try {
+            checkStatus(conn, path);
+        } catch (IOException e) {
+            conn.disconnect();
+            throw e;
+        }
+        return conn;
+    }
+
+    private static void checkStatus(HttpURLConnection conn, String path) throws IOException {
+        int code = conn.getResponseCode();
+        if (code == HttpURLConnection.HTTP_NOT_FOUND)
+            throw new FileNotFoundException(path);
+        if (code != HttpURLConnection.HTTP_OK && code != HttpURLConnection.HTTP_PARTIAL)
+            throw new IOException("HTTP " + code + ": " + path);
+    }
+
+    /*
+     * 範囲の先頭まで進める。206の場合はContent-Rangeの先頭を確かめ、200の場合は読み飛ばす
+     */
+    private static void skipToRange(HttpURLConnection conn, InputStream in, String path, long offset) throws IOException {
+        if (conn.getResponseCode() == HttpURLConnection.HTTP_PARTIAL) {
+            String range = conn.getHeaderField("Content-Range"); // bytes 開始-終了/全体
+            if (range == null || !range.startsWith("bytes " + offset + "-"))
+                throw new IOException("Unexpected range: " + range + " " + path);
+            return;
+        }
+        long remain = offset;
+        while (remain > 0) {
+            long n = in.skip(remain);
+            if (n <= 0) {
+                if (in.read() < 0)
+                    throw new EOFException(path);
+                n = 1;
+            }
+            remain -= n;
+        }
+    }
+
+    private static void readFully(InputStream in, byte[] buf, int offset, int length) throws IOException {
+        while (length > 0) {
+            int n = in.read(buf, offset, length);
+            if (n < 0)
+                throw new EOFException();
+            offset += n;
+            length -= n;
+        }
+    }
+}
\ No newline at end of file
@@ -30,7 +30,20 @@ public final class SimpleImage {
     private int texture;
 
     public SimpleImage(GL10 gl, InputStream in) {
-        texture = LoadUtil.loadTexture(gl, in, true);
+        this(LoadUtil.loadTexture(gl, in, true));
+    }
+
+    /*
+     * 他のスレッドで展開した画像から作成する。GLスレッドでは転送だけ行う
+     * @param gl
+     * @param data 転送後に解放される
+     */
+    public SimpleImage(GL10 gl, TextureData data) {
+        this(LoadUtil.loadTexture(gl, data));
+    }
+
+    private SimpleImage(int texture) {
+        this.texture = texture;
 
         // 初期設定
         this.uvLeft = 0;
@@ -11,20 +11,47 @@ import android.content.res.AssetFileDescriptor;
 import android.media.AudioAttributes;
 import android.media.AudioManager;
 import android.media.SoundPool;
+import jp.live2d.framework.L2DAssetStore;
+import jp.live2d.framework.L2DLoadProfiler;
 
+import java.io.FileDescriptor;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class SoundManager {
+    // getState()
+    public static final int SOUND_NONE = 0;    // 登録していない、または読み込みに失敗した
+    public static final int SOUND_LOADING = 1; // SoundPoolが読み込み中
+    public static final int SOUND_READY = 2;   // 再生できる
     private static final int maxStreams = 1;
     private static final AudioAttributes audioAttributes = new AudioAttributes.Builder().setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION).setLegacyStreamType(AudioManager.STREAM_MUSIC).setUsage(AudioAttributes.USAGE_GAME).build();
-    private static SoundPool soundPool;
-    private static Map<String, Integer> soundList;
+    private static volatile SoundPool soundPool = null; // init()の前、release()の後はnull
+    private static final Map<String, Integer> soundList = new ConcurrentHashMap<>(); // 音声の登録用スレッドから登録する
+    // 内容が同じ音声は1つだけ読み込み、モデル間で共有する
+    private static L2DAssetStore<Integer> sharedSounds;
+    private static final Map<String, Long> soundHashes = new ConcurrentHashMap<>(); // 共有している音声のパスとハッシュ
+    private static final Map<Integer, Boolean> loadedSounds = new ConcurrentHashMap<>(); // 読み込みが終わった音声のID。失敗したものはfalse。通知はメインスレッドから
 
-    public static void init() {
+    /*
+     * SoundPoolを作成する。どのスレッドからでも呼べる。登録（load()）より前に呼ぶ
+     */
+    public static synchronized void init() {
         soundPool = new SoundPool.Builder().setMaxStreams(maxStreams).setAudioAttributes(audioAttributes).build();
-        soundList = new HashMap<>();
+        soundPool.setOnLoadCompleteListener(new SoundPool.OnLoadCompleteListener() {
+            @Override
+            public void onLoadComplete(SoundPool pool, int sampleId, int status) {
+                loadedSounds.put(sampleId, status == 0);
+            }
+        });
+        sharedSounds = new L2DAssetStore<>(new L2DAssetStore.Releaser<Integer>() {
+            @Override
+            public void release(Integer soundID) {
+                soundPool.unload(soundID);
+                loadedSounds.remove(soundID);
+            }
+        });
     }
 
     public static void load(Context applicationContext, String path) {
@@ -33,6 +60,7 @@ public final class SoundManager {
 
         try {
             AssetFileDescriptor assetFileDescriptorArticle = applicationContext.getAssets().openFd(path);
+            L2DLoadProfiler.countBytes(assetFileDescriptorArticle.getLength());
             int soundID = soundPool.load(assetFileDescriptorArticle, 1);
             soundList.put(path, soundID);
         } catch (IOException e) {
@@ -41,14 +69,96 @@ public final class SoundManager {
         }
     }
 
-    public static void play(String name) {
-        if (!soundList.containsKey(name))
+    /*
+     * ファイル記述子の一部から読み込む。（ModelBundleなど）
+     * @param path 再生時に指定する名前
+     * @param fd
+     * @param offset
+     * @param length
+     */
+    public static void load(String path, FileDescriptor fd, long offset, long length) {
+        if (soundList.containsKey(path))
+            return;
+        L2DLoadProfiler.countBytes(length);
+        soundList.put(path, soundPool.load(fd, offset, length, 1));
+    }
+
+    /*
+     * ファイル記述子の一部から読み込み、内容のハッシュで共有する。
+     * 同じ内容の音声が読み込み済みの場合は、そのIDを使う。
+     * 使わなくなったらunload()を呼ぶ。
+     * @param path 再生時に指定する名前
+     * @param hash 内容のハッシュ。0の場合は共有しない
+     * @param fd
+     * @param offset
+     * @param length
+     */
+    public static synchronized void load(String path, long hash, FileDescriptor fd, long offset, long length) {
+        if (hash == 0) {
+            load(path, fd, offset, length);
             return;
-        soundPool.play(soundList.get(name), 1f, 1f, 1, 0, 1);
+        }
+        Integer soundID = sharedSounds.acquire(hash);
+        if (soundID == null) {
+            L2DLoadProfiler.countBytes(length);
+            soundID = sharedSounds.put(hash, soundPool.load(fd, offset, length, 1));
+        }
+        soundList.put(path, soundID);
+        soundHashes.put(path, hash);
+    }
+
+    /*
+     * load()で共有した音声の参照を減らす。参照が無くなったら解放する。
+     * 共有していない音声はそのまま残す。
+     * @param path
+     */
+    public static synchronized void unload(String path) {
+        Long hash = soundHashes.get(path);
+        if (hash == null)
+            return;
+        sharedSounds.release(hash);
+        if (sharedSounds.contains(hash))
+            return;
+        // 同じ内容の別のパスも外す
+        Iterator<Map.Entry<String, Long>> it = soundHashes.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Long> e = it.next();
+            if (e.getValue().longValue() == hash) {
+                soundList.remove(e.getKey());
+                it.remove();
+            }
+        }
+    }
+
+    /*
+     * 音声の読み込みの状態
+     * @param name
+     * @return SOUND_NONE、SOUND_LOADING、SOUND_READY
+     */
+    public static int getState(String name) {
+        Integer soundID = soundList.get(name);
+        if (soundID == null)
+            return SOUND_NONE;
+        Boolean loaded = loadedSounds.get(soundID);
+        if (loaded == null)
+            return SOUND_LOADING;
+        return loaded ? SOUND_READY : SOUND_NONE;
+    }
+
+    public static void play(String name) {
+        SoundPool pool = soundPool;
+        Integer soundID = soundList.get(name);
+        if (pool == null || soundID == null)
+            return; // 初期化前か未登録
+        pool.play(soundID, 1f, 1f, 1, 0, 1);
     }
 
-    public static void release() {
+    public static synchronized void release() {
         soundList.clear();
-        soundPool.release();
+        soundHashes.clear();
+        loadedSounds.clear();
+        if (soundPool != null)
+            soundPool.release();
+        soundPool = null;
     }
 }
\ No newline at end of file
@@ -0,0 +1,243 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+*/
+package jp.live2d.utils.android;
+
+import android.content.Context;
+import android.util.Log;
+import com.live2d.live2dsimple.LAppDefine;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.zip.CRC32;
+
+/*
+ * 展開したテクスチャのキャッシュ。
+ *
+ * 初回の読み込みで作成したミップマップ（乗算済みRGBA）をキャッシュディレクトリに保存し、
+ * 次回からはメモリにマップしてそのまま転送する。PNGの展開とミップマップの作成を省ける。
+ *
+ * ファイル名は アセットのパス、PNGのCRC32、形式のバージョン から作る。
+ * ヘッダに元のパスと中身のCRC32を持ち、読み込み時に一致しなければ破棄する。
+ * 合計がmaxBytesを超えたら、最後に使った時刻が古いものから削除する。
+ *
+ * 複数の展開用スレッドから呼べる。
+ */
+public final class TextureCache {
+    private static final String TAG = "TextureCache";
+    private static final String DIR = "textures";
+    private static final int MAGIC = 0x4C325443; // "L2TC"
+    private static final int FORMAT_VERSION = 1;  // 形式を変えたら上げる
+    private static final int HEADER_SIZE = 32;    // パスの前まで
+    private static final int CRC_BUFFER_SIZE = 64 * 1024;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final ThreadLocal<byte[]> crcBuffers = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[CRC_BUFFER_SIZE];
+        }
+    };
+
+    private final Context applicationContext;
+    private final long maxBytes;
+
+    /*
+     * @param applicationContext
+     * @param maxBytes キャッシュの合計の上限
+     */
+    public TextureCache(Context applicationContext, long maxBytes) {
+        this.applicationContext = applicationContext;
+        this.maxBytes = maxBytes;
+        new File(applicationContext.getCacheDir(), DIR).mkdirs();
+    }
+
+    /*
+     * キャッシュから読み込む。
+     * @param path アセットのパス
+     * @param sourceCrc PNGファイルのchecksum()
+     * @return 無い場合、壊れている場合はnull
+     */
+    public final TextureData load(String path, int sourceCrc) {
+        String name = getCacheName(path, sourceCrc);
+        if (!FileManager.isCacheExists(applicationContext, name))
+            return null;
+
+        try {
+            ByteBuffer buf = FileManager.mapCache(applicationContext, name);
+            buf.order(ByteOrder.BIG_ENDIAN);
+            TextureData data = parse(buf, path);
+            if (data == null) {
+                Log.w(TAG, "Broken cache: " + name);
+                delete(name);
+                return null;
+            }
+            touch(name); // 最後に使った時刻
+            return data;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /*
+     * ミップマップをキャッシュに保存する。
+     * 一時ファイルに書いてから名前を変えるので、途中で終了しても壊れたファイルは残らない。
+     * @param path アセットのパス
+     * @param sourceCrc PNGファイルのchecksum()
+     * @param data ミップマップ作成済み
+     */
+    public final void store(String path, int sourceCrc, TextureData data) {
+        if (!data.hasMipmap() || data.isCompressed())
+            return;
+        String name = getCacheName(path, sourceCrc);
+        ByteBuffer payload = data.getMipmap().duplicate();
+        payload.clear();
+        byte[] pathBytes = path.getBytes(UTF_8);
+        int pathSize = (pathBytes.length + 3) & ~3; // 中身を4byte境界にそろえる
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + pathSize);
+        header.putInt(MAGIC);
+        header.putInt(FORMAT_VERSION);
+        header.putInt(data.getWidth());
+        header.putInt(data.getHeight());
+        header.putInt(payload.remaining());
+        header.putInt(checksum(payload));
+        header.putInt(pathBytes.length);
+        header.putInt(0); // 予約
+        header.put(pathBytes);
+        header.clear();
+
+        File file = FileManager.getCacheFile(applicationContext, name);
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            FileOutputStream out = new FileOutputStream(tmp);
+            try {
+                FileChannel ch = out.getChannel();
+                while (header.hasRemaining())
+                    ch.write(header);
+                while (payload.hasRemaining())
+                    ch.write(payload);
+            } finally {
+                out.close();
+            }
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+                return;
+            }
+        } catch (IOException e) {
+            // 容量不足など。キャッシュなしで続ける
+            Log.w(TAG, "Failed to store: " + name, e);
+            tmp.delete();
+            return;
+        }
+        evict();
+    }
+
+    private TextureData parse(ByteBuffer buf, String path) {
+        if (buf.capacity() < HEADER_SIZE)
+            return null;
+        if (buf.getInt(0) != MAGIC || buf.getInt(4) != FORMAT_VERSION)
+            return null;
+        int width = buf.getInt(8);
+        int height = buf.getInt(12);
+        int payloadSize = buf.getInt(16);
+        int payloadCrc = buf.getInt(20);
+        int pathLength = buf.getInt(24);
+        int offset = HEADER_SIZE + ((pathLength + 3) & ~3);
+        if (width <= 0 || height <= 0 || pathLength < 0 || payloadSize != TextureData.getMipmapByteSize(width, height))
+            return null;
+        if ((long) offset + payloadSize != buf.capacity())
+            return null;
+
+        // ファイル名の衝突を防ぐため、元のパスを比べる
+        byte[] pathBytes = new byte[pathLength];
+        ByteBuffer p = buf.duplicate();
+        p.position(HEADER_SIZE);
+        p.get(pathBytes);
+        if (!path.equals(new String(pathBytes, UTF_8)))
+            return null;
+
+        ByteBuffer payload = buf.duplicate();
+        payload.position(offset);
+        payload = payload.slice();
+        if (checksum(payload) != payloadCrc)
+            return null;
+        return TextureData.fromMipmap(payload, width, height);
+    }
+
+    /*
+     * 合計が上限を超えていたら、古いものから削除する
+     */
+    private synchronized void evict() {
+        File[] files = new File(applicationContext.getCacheDir(), DIR).listFiles();
+        if (files == null)
+            return;
+        long total = 0;
+        for (File f : files) {
+            total += f.length();
+        }
+        if (total <= maxBytes)
+            return;
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long d = a.lastModified() - b.lastModified();
+                return d < 0 ? -1 : (d > 0 ? 1 : 0);
+            }
+        });
+        for (File f : files) {
+            if (total <= maxBytes)
+                break;
+            long size = f.length();
+            if (f.delete()) {
+                total -= size;
+                if (LAppDefine.DEBUG_LOG)
+                    Log.d(TAG, "Evict: " + f.getName());
+            }
+        }
+    }
+
+    private void touch(String name) {
+        FileManager.getCacheFile(applicationContext, name).setLastModified(System.currentTimeMillis());
+    }
+
+    private void delete(String name) {
+        FileManager.getCacheFile(applicationContext, name).delete();
+    }
+
+    private static String getCacheName(String path, int sourceCrc) {
+        return DIR + "/" + Integer.toHexString(path.hashCode()) + "_" + Integer.toHexString(sourceCrc) + ".v" + FORMAT_VERSION + ".tex";
+    }
+
+    /*
+     * バッファのCRC32。位置は変更しない。
+     * @param buf
+     * @return
+     */
+    public static int checksum(ByteBuffer buf) {
+        CRC32 crc = new CRC32();
+        ByteBuffer b = buf.duplicate();
+        if (b.hasArray()) {
+            crc.update(b.array(), b.arrayOffset() + b.position(), b.remaining());
+            return (int) crc.getValue();
+        }
+        byte[] chunk = crcBuffers.get();
+        while (b.hasRemaining()) {
+            int n = Math.min(chunk.length, b.remaining());
+            b.get(chunk, 0, n);
+            crc.update(chunk, 0, n);
+        }
+        return (int) crc.getValue();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,316 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+*/
+package jp.live2d.utils.android;
+
+import android.graphics.Bitmap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/*
+ * 転送前のテクスチャ。GLを使わずに作成し、LoadUtil.loadTexture()でGLスレッドから転送する。
+ *
+ * 展開した画像のままのものと、ミップマップをすべて作成済みのものがある。
+ * ミップマップは乗算済みのRGBAで、レベル0から順に隙間なく並べる。
+ * 各レベルの大きさは 幅、高さを半分（最小1）にしたもの。
+ *
+ * ビルド時に圧縮したテクスチャ（ETC2 RGBA8のKTXファイル）は、ファイルの内容をそのまま使う。
+ * 各レベルの前に大きさ（4byte）が入るので、レベルの位置は読み込み時に求めておく。
+ */
+public final class TextureData {
+    public static final int FORMAT_RGBA = 0;
+    public static final int FORMAT_ETC2_RGBA8 = 0x9278; // GL_COMPRESSED_RGBA8_ETC2_EAC
+    private static final byte[] KTX_IDENTIFIER = {
+            (byte) 0xAB, 'K', 'T', 'X', ' ', '1', '1', (byte) 0xBB, '\r', '\n', 0x1A, '\n'};
+    private static final int KTX_HEADER_SIZE = 64;
+
+    private Bitmap bitmap;     // ミップマップ作成前の画像
+    private ByteBuffer levels; // 作成済みのミップマップ
+    private final int width;
+    private final int height;
+    private final int format;
+    private final int[] levelOffsets; // 圧縮したもののレベルの位置。RGBAはnull
+
+    private TextureData(Bitmap bitmap, ByteBuffer levels, int width, int height) {
+        this(bitmap, levels, width, height, FORMAT_RGBA, null);
+    }
+
+    private TextureData(Bitmap bitmap, ByteBuffer levels, int width, int height, int format, int[] levelOffsets) {
+        this.bitmap = bitmap;
+        this.levels = levels;
+        this.width = width;
+        this.height = height;
+        this.format = format;
+        this.levelOffsets = levelOffsets;
+    }
+
+    /*
+     * 展開した画像から作成する。ミップマップは転送時に作成する。
+     * @param bitmap
+     * @return
+     */
+    public static TextureData fromBitmap(Bitmap bitmap) {
+        return new TextureData(bitmap, null, bitmap.getWidth(), bitmap.getHeight());
+    }
+
+    /*
+     * 作成済みのミップマップから作成する。
+     * @param levels getMipmapByteSize()の大きさ
+     * @param width
+     * @param height
+     * @return
+     */
+    public static TextureData fromMipmap(ByteBuffer levels, int width, int height) {
+        return new TextureData(null, levels, width, height);
+    }
+
+    /*
+     * 圧縮したテクスチャ（KTXファイル）から作成する。コピーしない。
+     * ETC2 RGBA8で、すべてのレベルがあるものだけ
+     * @param buf ファイルの内容
+     * @return
+     * @throws IOException 形式が違う場合
+     */
+    public static TextureData fromKtx(ByteBuffer buf) throws IOException {
+        ByteBuffer header = buf.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (header.remaining() < KTX_HEADER_SIZE)
+            throw new IOException("Not a KTX file.");
+        for (byte b : KTX_IDENTIFIER) {
+            if (header.get() != b)
+                throw new IOException("Not a KTX file.");
+        }
+        if (header.getInt() != 0x04030201)
+            throw new IOException("Unsupported KTX endianness.");
+        header.getInt(); // glType
+        header.getInt(); // glTypeSize
+        header.getInt(); // glFormat
+        int format = header.getInt();
+        header.getInt(); // glBaseInternalFormat
+        int width = header.getInt();
+        int height = header.getInt();
+        int depth = header.getInt();
+        int arrayNum = header.getInt();
+        int faceNum = header.getInt();
+        int levelNum = header.getInt();
+        int keyValueSize = header.getInt();
+        if (format != FORMAT_ETC2_RGBA8 || width <= 0 || height <= 0 || depth != 0 || arrayNum != 0 || faceNum != 1
+                || levelNum != getLevelNum(width, height) || keyValueSize < 0)
+            throw new IOException("Unsupported KTX format.");
+
+        int[] offsets = new int[levelNum];
+        int offset = buf.position() + KTX_HEADER_SIZE + keyValueSize;
+        int w = width;
+        int h = height;
+        for (int i = 0; i < levelNum; i++) {
+            if (offset + 4 > buf.limit() || header.getInt(offset) != getCompressedByteSize(w, h))
+                throw new IOException("Broken KTX file.");
+            offsets[i] = offset + 4;
+            offset += 4 + getCompressedByteSize(w, h);
+            w = Math.max(w / 2, 1);
+            h = Math.max(h / 2, 1);
+        }
+        if (offset > buf.limit())
+            throw new IOException("Broken KTX file.");
+        return new TextureData(null, buf, width, height, format, offsets);
+    }
+
+    /*
+     * 画像のミップマップをすべて作成する。GLを使わないので、読み込みスレッドから呼べる。
+     * @param bitmap 解放される
+     * @return
+     */
+    public static TextureData buildMipmap(Bitmap bitmap) {
+        if (bitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+            Bitmap src = bitmap;
+            bitmap = src.copy(Bitmap.Config.ARGB_8888, false);
+            src.recycle();
+        }
+        ByteBuffer levels = MipmapBuilder.build(bitmap);
+        TextureData data = fromMipmap(levels, bitmap.getWidth(), bitmap.getHeight());
+        bitmap.recycle();
+        return data;
+    }
+
+    public final int getWidth() {
+        return width;
+    }
+
+    public final int getHeight() {
+        return height;
+    }
+
+    public final boolean hasMipmap() {
+        return levels != null;
+    }
+
+    /*
+     * 圧縮したテクスチャか。glCompressedTexImage2D()で転送する
+     * @return
+     */
+    public final boolean isCompressed() {
+        return format != FORMAT_RGBA;
+    }
+
+    /*
+     * GLの形式
+     * @return FORMAT_RGBA、FORMAT_ETC2_RGBA8
+     */
+    public final int getFormat() {
+        return format;
+    }
+
+    public final Bitmap getBitmap() {
+        return bitmap;
+    }
+
+    /*
+     * すべてのレベルをまとめたバッファ
+     * @return
+     */
+    public final ByteBuffer getMipmap() {
+        return levels;
+    }
+
+    public final int getLevelNum() {
+        return getLevelNum(width, height);
+    }
+
+    /*
+     * レベルの画素を取得する。
+     * @param level
+     * @return 位置と範囲をそのレベルに合わせたバッファ
+     */
+    public final ByteBuffer getLevel(int level) {
+        int offset = 0;
+        int w = width;
+        int h = height;
+        for (int i = 0; i < level; i++) {
+            offset += w * h * 4;
+            w = Math.max(w / 2, 1);
+            h = Math.max(h / 2, 1);
+        }
+        ByteBuffer ret = levels.duplicate();
+        if (levelOffsets != null) {
+            ret.limit(levelOffsets[level] + getCompressedByteSize(w, h));
+            ret.position(levelOffsets[level]);
+            return ret;
+        }
+        ret.position(offset);
+        ret.limit(offset + w * h * 4);
+        return ret;
+    }
+
+    /*
+     * 幅と高さがmaxSize以下になる最初のレベル。転送するときに、これより上のレベルは使わない
+     * @param maxSize 0は制限しない
+     * @return
+     */
+    public final int getBaseLevel(int maxSize) {
+        int level = 0;
+        int w = width;
+        int h = height;
+        while (maxSize > 0 && (w > maxSize || h > maxSize) && (w > 1 || h > 1)) {
+            w = Math.max(w / 2, 1);
+            h = Math.max(h / 2, 1);
+            level++;
+        }
+        return level;
+    }
+
+    /*
+     * getBaseLevel()から後ろを転送したときの大きさ
+     * @param maxSize
+     * @return
+     */
+    public final int getUploadByteSize(int maxSize) {
+        int level = getBaseLevel(maxSize);
+        int w = Math.max(width >> level, 1);
+        int h = Math.max(height >> level, 1);
+        if (isCompressed()) {
+            int size = 0;
+            for (; level < getLevelNum(); level++) {
+                size += getCompressedByteSize(w, h);
+                w = Math.max(w / 2, 1);
+                h = Math.max(h / 2, 1);
+            }
+            return size;
+        }
+        return getMipmapByteSize(w, h);
+    }
+
+    /*
+     * 縮小したテクスチャ。幅と高さがsize以上の範囲で最も小さいレベルから後ろを、そのまま使う。
+     * ミップマップ作成済みのものだけ。コピーしない
+     * @param size
+     * @return
+     */
+    public final TextureData getPreview(int size) {
+        int offset = 0;
+        int level = 0;
+        int w = width;
+        int h = height;
+        while (w / 2 >= size && h / 2 >= size) {
+            offset += w * h * 4;
+            level++;
+            w /= 2;
+            h /= 2;
+        }
+        if (levelOffsets != null)
+            return new TextureData(null, levels, w, h, format, Arrays.copyOfRange(levelOffsets, level, levelOffsets.length));
+        ByteBuffer ret = levels.duplicate();
+        ret.position(offset);
+        return fromMipmap(ret.slice(), w, h);
+    }
+
+    /*
+     * 転送後に呼ぶ
+     */
+    public final void release() {
+        if (bitmap != null)
+            bitmap.recycle();
+        bitmap = null;
+        levels = null;
+    }
+
+    public static int getLevelNum(int width, int height) {
+        int n = 1;
+        while (width > 1 || height > 1) {
+            width = Math.max(width / 2, 1);
+            height = Math.max(height / 2, 1);
+            n++;
+        }
+        return n;
+    }
+
+    /*
+     * ETC2 RGBA8のレベルの大きさ。4x4画素ごとに16byte
+     * @param width
+     * @param height
+     * @return
+     */
+    public static int getCompressedByteSize(int width, int height) {
+        return ((width + 3) / 4) * ((height + 3) / 4) * 16;
+    }
+
+    /*
+     * ミップマップをすべて並べたときの大きさ
+     * @param width
+     * @param height
+     * @return
+     */
+    public static int getMipmapByteSize(int width, int height) {
+        int size = width * height * 4;
+        while (width > 1 || height > 1) {
+            width = Math.max(width / 2, 1);
+            height = Math.max(height / 2, 1);
+            size += width * height * 4;
+        }
+        return size;
+    }
+}
\ No newline at end of file
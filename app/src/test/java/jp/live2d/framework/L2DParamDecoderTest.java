@@ -0,0 +1,120 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+*/
+package jp.live2d.framework;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * 壊れたフレームを受け取っても例外にならず、次のキーフレームまで値を使わないことを確かめる。
+ */
+public class L2DParamDecoderTest {
+    private L2DParamTable table;
+    private L2DParamDecoder decoder;
+
+    @Before
+    public void setUp() {
+        table = L2DParamTable.create(
+                new String[]{"PARAM_ANGLE_X", "PARAM_EYE_L_OPEN", "PARAM_BODY_ANGLE_Z"},
+                new float[]{-30, 0, -10},
+                new float[]{30, 1, 10});
+        decoder = new L2DParamDecoder(table);
+    }
+
+    @Test
+    public void rejectsTruncatedFrames() {
+        byte[] key = keyframe(3, new int[]{0, 1, 2}, new int[]{100, 200, 300});
+        for (int len = 0; len < key.length; len++) {
+            assertFalse("length " + len, decoder.decode(key, 0, len));
+            assertFalse(decoder.isSynced());
+        }
+        assertTrue(decoder.decode(key, 0, key.length));
+        assertEquals(table.dequantize(2, 300), decoder.getValue(2), 0);
+
+        assertFalse(decoder.decode(key, key.length - 2, 4)); // 配列の外
+    }
+
+    @Test
+    public void rejectsOverflowingVarInt() {
+        // 5byteを超えるvarint
+        byte[] frame = {L2DParamEncoder.TYPE_KEY, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01, 0, 0, 0, 0};
+        assertFalse(decoder.decode(frame, 0, frame.length));
+    }
+
+    @Test
+    public void rejectsOutOfRangeIndexAndWaitsForKeyframe() {
+        byte[] key = keyframe(3, new int[]{0, 1, 2}, new int[]{100, 200, 300});
+        assertTrue(decoder.decode(key, 0, key.length));
+
+        // 符号なしでは大きいが、intでは負になる番号
+        byte[] frame = new byte[32];
+        int pos = header(frame, L2DParamEncoder.TYPE_DELTA, 1);
+        pos = L2DParamEncoder.writeVarInt(frame, pos, 1);
+        pos = L2DParamEncoder.writeVarInt(frame, pos, 0xFFFFFFF0);
+        pos = L2DParamEncoder.writeVarInt(frame, pos, 2);
+        assertFalse(decoder.decode(frame, 0, pos));
+        assertFalse(decoder.isSynced());
+
+        // 個数がテーブルより多い
+        assertTrue(decoder.decode(key, 0, key.length));
+        pos = header(frame, L2DParamEncoder.TYPE_DELTA, 1);
+        pos = L2DParamEncoder.writeVarInt(frame, pos, 1000);
+        assertFalse(decoder.decode(frame, 0, pos));
+        assertFalse(decoder.isSynced());
+
+        // 差分は次のキーフレームまで使わない
+        pos = header(frame, L2DParamEncoder.TYPE_DELTA, 1);
+        pos = L2DParamEncoder.writeVarInt(frame, pos, 0);
+        assertFalse(decoder.decode(frame, 0, pos));
+        assertTrue(decoder.decode(key, 0, key.length));
+    }
+
+    @Test
+    public void rejectsUnknownType() {
+        byte[] key = keyframe(3, new int[]{0, 1, 2}, new int[]{100, 200, 300});
+        assertTrue(decoder.decode(key, 0, key.length));
+        key[0] = 7;
+        assertFalse(decoder.decode(key, 0, key.length));
+    }
+
+    private byte[] keyframe(int count, int[] indices, int[] values) {
+        byte[] frame = new byte[64];
+        int pos = header(frame, L2DParamEncoder.TYPE_KEY, count);
+        int last = -1;
+        for (int i = 0; i < count; i++) {
+            pos = L2DParamEncoder.writeVarInt(frame, pos, indices[i] - last - 1);
+            pos = L2DParamEncoder.writeVarInt(frame, pos, values[i]);
+            last = indices[i];
+        }
+        byte[] ret = new byte[pos];
+        System.arraycopy(frame, 0, ret, 0, pos);
+        return ret;
+    }
+
+    /*
+     * type seq timeMSec [tableHash] まで書き、キーフレームの場合は続けてcountも書く
+     */
+    private int header(byte[] frame, int type, int count) {
+        int pos = 0;
+        frame[pos++] = (byte) type;
+        pos = L2DParamEncoder.writeVarInt(frame, pos, 1);
+        pos = L2DParamEncoder.writeVarInt(frame, pos, 1000);
+        if (type == L2DParamEncoder.TYPE_KEY) {
+            int hash = table.getHash();
+            frame[pos++] = (byte) (hash >>> 24);
+            frame[pos++] = (byte) (hash >>> 16);
+            frame[pos++] = (byte) (hash >>> 8);
+            frame[pos++] = (byte) hash;
+            pos = L2DParamEncoder.writeVarInt(frame, pos, count);
+        }
+        return pos;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,271 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+*/
+package jp.live2d.framework;
+
+import jp.live2d.ALive2DModel;
+import jp.live2d.graphics.DrawParam;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * L2DParamEncoderでエンコードしたフレームを、遅延のばらつき・順番の入れ替わり・欠落をつけて
+ * L2DParamJitterBufferに入れ、再生される値と遅延の見積もりを確かめる。
+ * 値は時刻に比例して変化させるので、補間・外挿が正しければ送信時の値と一致する。
+ */
+public class L2DParamJitterBufferTest {
+    private static final int FRAME_MSEC = 30;
+    private static final int LATENCY_MSEC = 50;
+    private static final int JITTER_MSEC = 60;
+    private static final int DELAY_MSEC = 100;
+    private static final int MAX_EXTRAPOLATION_MSEC = 100;
+    private static final long START_MSEC = 10000;
+    private static final long DAY_MSEC = 24 * 60 * 60 * 1000L;
+
+    private L2DParamTable table;
+    private L2DParamEncoder encoder;
+    private L2DParamDecoder decoder;
+    private L2DParamJitterBuffer buffer;
+    private FakeModel model;
+    private byte[] frame;
+
+    @Before
+    public void setUp() {
+        table = L2DParamTable.create(
+                new String[]{"PARAM_ANGLE_X", "PARAM_EYE_L_OPEN", "PARAM_BODY_ANGLE_Z"},
+                new float[]{-30, 0, -10},
+                new float[]{30, 1, 10});
+        encoder = new L2DParamEncoder(table, 0, 1000);
+        decoder = new L2DParamDecoder(table);
+        buffer = new L2DParamJitterBuffer(table, 16, DELAY_MSEC, MAX_EXTRAPOLATION_MSEC);
+        model = new FakeModel(table.size());
+        frame = new byte[encoder.getMaxFrameSize()];
+    }
+
+    @Test
+    public void interpolatesBetweenFrames() {
+        for (int i = 0; i < 16; i++) { // バッファの容量分
+            long t = START_MSEC + i * FRAME_MSEC;
+            sendAndPush(t, t + LATENCY_MSEC);
+        }
+        assertEquals(LATENCY_MSEC, buffer.getLatencyMSec(), 0);
+
+        float[] out = new float[table.size()];
+        for (long render = START_MSEC; render <= START_MSEC + 15 * FRAME_MSEC; render += 5) {
+            assertTrue(buffer.sample(render + LATENCY_MSEC + DELAY_MSEC, out));
+            assertValues(render, out);
+        }
+    }
+
+    @Test
+    public void absorbsJitterReorderAndDrops() {
+        Random random = new Random(1);
+        ArrayList<Arrival> arrivals = new ArrayList<>();
+        int dropped = 0;
+        for (int i = 0; i < 100; i++) {
+            long t = START_MSEC + i * FRAME_MSEC;
+            float[] values = send(t);
+            if (i > 0 && random.nextInt(8) == 0) {
+                dropped++;
+                continue;
+            }
+            arrivals.add(new Arrival(t, t + LATENCY_MSEC + random.nextInt(JITTER_MSEC + 1), values));
+        }
+        Collections.sort(arrivals, new Comparator<Arrival>() {
+            @Override
+            public int compare(Arrival a, Arrival b) {
+                return Long.compare(a.localTime, b.localTime);
+            }
+        });
+        int reordered = 0;
+        for (int i = 1; i < arrivals.size(); i++) {
+            if (arrivals.get(i).senderTime < arrivals.get(i - 1).senderTime)
+                reordered++;
+        }
+        assertTrue(dropped > 0);
+        assertTrue(reordered > 0);
+
+        float[] out = new float[table.size()];
+        int next = 0;
+        long lastSender = START_MSEC + 99 * FRAME_MSEC;
+        for (long local = START_MSEC + LATENCY_MSEC; local < lastSender + LATENCY_MSEC + DELAY_MSEC; local += 5) {
+            while (next < arrivals.size() && arrivals.get(next).localTime <= local) {
+                Arrival a = arrivals.get(next++);
+                buffer.push(a.senderTime, a.values, a.localTime);
+            }
+            if (!buffer.sample(local, out))
+                continue;
+            double render = local - buffer.getLatencyMSec() - DELAY_MSEC;
+            if (render < START_MSEC)
+                continue; // 最初のフレームより前は最初の値のまま
+            assertValues(render, out);
+        }
+
+        // 早く届いたものに合わせる。遅れて届いたものにはゆっくりしか追従しない
+        double latency = buffer.getLatencyMSec();
+        assertTrue("latency " + latency, latency >= LATENCY_MSEC && latency < LATENCY_MSEC + 10);
+    }
+
+    @Test
+    public void extrapolatesUpToLimitAndClamps() {
+        // PARAM_ANGLE_X は 0.01/ms、PARAM_EYE_L_OPEN は 0.005/ms で増えている途中で止まる
+        long t0 = START_MSEC;
+        long t1 = START_MSEC + FRAME_MSEC;
+        buffer.push(t0, new float[]{27.7f, 0.75f, 0}, t0 + LATENCY_MSEC);
+        buffer.push(t1, new float[]{28f, 0.9f, 0}, t1 + LATENCY_MSEC);
+
+        float[] out = new float[table.size()];
+        assertTrue(buffer.sample(t1 + LATENCY_MSEC + DELAY_MSEC + 50, out));
+        assertEquals(28.5f, out[0], 0.001f);
+        assertEquals(1f, out[1], 0); // 1.15 は範囲外
+
+        // 外挿は MAX_EXTRAPOLATION_MSEC で止まる
+        assertTrue(buffer.sample(t1 + LATENCY_MSEC + DELAY_MSEC + 10000, out));
+        assertEquals(29f, out[0], 0.001f);
+        assertEquals(1f, out[1], 0);
+    }
+
+    @Test
+    public void dropsLateFrameAndResetsOnRestart() {
+        float[] out = new float[table.size()];
+        for (int i = 0; i < 4; i++) {
+            long t = START_MSEC + i * FRAME_MSEC;
+            buffer.push(t, new float[]{i, 0, 0}, t + LATENCY_MSEC);
+        }
+
+        // 溜めている範囲の古いフレームは捨てる
+        buffer.push(START_MSEC + 45, new float[]{-20, 0, 0}, START_MSEC + 4 * FRAME_MSEC + LATENCY_MSEC);
+        assertTrue(buffer.sample(START_MSEC + 45 + LATENCY_MSEC + DELAY_MSEC, out));
+        assertEquals(1.5f, out[0], 0.001f);
+
+        // それより古い場合は送信側がやり直したとみなす
+        buffer.push(0, new float[]{-5, 0, 0}, START_MSEC + 200);
+        assertEquals(START_MSEC + 200, buffer.getLatencyMSec(), 0);
+        assertTrue(buffer.sample(START_MSEC + 500, out));
+        assertEquals(-5f, out[0], 0);
+    }
+
+    @Test
+    public void keepsPrecisionAfterLongUptime() {
+        // 起動から何日も経った時刻。floatで計算すると数十msずれる
+        long senderStart = 7 * DAY_MSEC;
+        long localStart = 10 * DAY_MSEC + 123;
+        for (int i = 0; i < 16; i++) {
+            buffer.push(senderStart + i * FRAME_MSEC, valuesAt(START_MSEC + i * FRAME_MSEC), localStart + i * FRAME_MSEC + LATENCY_MSEC);
+        }
+        assertEquals(localStart - senderStart + LATENCY_MSEC, buffer.getLatencyMSec(), 0);
+
+        float[] out = new float[table.size()];
+        for (long d = 0; d <= 15 * FRAME_MSEC; d += 5) {
+            assertTrue(buffer.sample(localStart + d + LATENCY_MSEC + DELAY_MSEC, out));
+            assertValues(START_MSEC + d, out);
+        }
+    }
+
+    @Test
+    public void rejectsKeyframeOfDifferentTable() {
+        L2DParamTable other = L2DParamTable.create(
+                new String[]{"PARAM_ANGLE_X", "PARAM_EYE_L_OPEN", "PARAM_BODY_ANGLE_Z"},
+                new float[]{-30, 0, -10},
+                new float[]{30, 1, 20});
+        L2DParamDecoder otherDecoder = new L2DParamDecoder(other);
+
+        int len = encoder.encode(model, START_MSEC, frame, 0);
+        assertFalse(otherDecoder.decode(frame, 0, len));
+        assertTrue(otherDecoder.isMismatched());
+        assertFalse(otherDecoder.isSynced());
+
+        buffer.push(otherDecoder, START_MSEC);
+        assertFalse(buffer.sample(START_MSEC, new float[table.size()]));
+    }
+
+    /*
+     * 送信側の時刻tの値
+     */
+    private static float[] valuesAt(double t) {
+        float s = (float) (t - START_MSEC);
+        return new float[]{-30 + s * 0.02f, s / 4000, 5};
+    }
+
+    private float[] send(long t) {
+        float[] v = valuesAt(t);
+        for (int n = 0; n < v.length; n++) {
+            model.setParamFloat(n, v[n]);
+        }
+        int len = encoder.encode(model, t, frame, 0);
+        assertTrue(decoder.decode(frame, 0, len));
+        float[] ret = new float[table.size()];
+        decoder.getValues(ret);
+        return ret;
+    }
+
+    private void sendAndPush(long t, long localTime) {
+        send(t);
+        buffer.push(decoder, localTime);
+    }
+
+    private void assertValues(double senderTime, float[] actual) {
+        float[] expected = valuesAt(senderTime);
+        for (int n = 0; n < expected.length; n++) {
+            // 量子化の誤差は範囲の1/65535
+            float tolerance = (table.getMaxValue(n) - table.getMinValue(n)) / 65535 * 2 + 0.0005f;
+            assertEquals(table.getID(n) + " at " + senderTime, expected[n], actual[n], tolerance);
+        }
+    }
+
+    private static final class Arrival {
+        final long senderTime;
+        final long localTime;
+        final float[] values;
+
+        Arrival(long senderTime, long localTime, float[] values) {
+            this.senderTime = senderTime;
+            this.localTime = localTime;
+            this.values = values;
+        }
+    }
+
+    private static final class FakeModel extends ALive2DModel {
+        private final float[] values;
+
+        FakeModel(int num) {
+            values = new float[num];
+        }
+
+        @Override
+        public float getParamFloat(int index) {
+            return values[index];
+        }
+
+        @Override
+        public void setParamFloat(int index, float value) {
+            values[index] = value;
+        }
+
+        @Override
+        public void deleteTextures() {
+        }
+
+        @Override
+        public void draw() {
+        }
+
+        @Override
+        public DrawParam getDrawParam() {
+            return null;
+        }
+    }
+}
\ No newline at end of file
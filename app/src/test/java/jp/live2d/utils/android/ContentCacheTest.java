@@ -0,0 +1,148 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+*/
+package jp.live2d.utils.android;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/*
+ * ハッシュの確認と、上限を超えたときの削除の順番を確かめる。
+ */
+public class ContentCacheTest {
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("ContentCacheTest", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void putAndMap() throws IOException {
+        ContentCache cache = new ContentCache(dir, 1024 * 1024);
+        byte[] data = data(1, 1000);
+        long hash = hash(data);
+        assertFalse(cache.contains(hash));
+        cache.put(hash, data);
+        assertTrue(cache.contains(hash));
+        assertArrayEquals(data, toBytes(cache.map(hash)));
+        assertFalse(cache.getPartFile(hash).exists());
+    }
+
+    @Test
+    public void hashMismatchRemovesPartFile() throws IOException {
+        ContentCache cache = new ContentCache(dir, 1024 * 1024);
+        long hash = hash(data(1, 1000));
+        write(cache.getPartFile(hash), data(2, 1000));
+        try {
+            cache.commit(hash);
+            fail("committed");
+        } catch (IOException e) {
+            // ハッシュが違う
+        }
+        assertFalse(cache.getPartFile(hash).exists());
+        assertFalse(cache.contains(hash));
+
+        try {
+            cache.put(hash, data(3, 1000));
+            fail("committed");
+        } catch (IOException e) {
+            // ハッシュが違う
+        }
+        assertFalse(cache.contains(hash));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws IOException {
+        ContentCache cache = new ContentCache(dir, 2500);
+        long now = System.currentTimeMillis();
+        byte[] a = data(1, 1000);
+        byte[] b = data(2, 1000);
+        byte[] c = data(3, 1000);
+        cache.put(hash(a), a);
+        cache.get(hash(a)).setLastModified(now - 30000);
+        cache.put(hash(b), b);
+        cache.get(hash(b)).setLastModified(now - 20000);
+
+        // aを使ったので、最後に使ったのが最も古いのはb
+        assertNotNull(cache.map(hash(a)));
+        cache.put(hash(c), c);
+        assertTrue(cache.contains(hash(a)));
+        assertFalse(cache.contains(hash(b)));
+        assertTrue(cache.contains(hash(c)));
+    }
+
+    @Test
+    public void evictionKeepsPartFiles() throws IOException {
+        ContentCache cache = new ContentCache(dir, 2500);
+        long now = System.currentTimeMillis();
+        byte[] a = data(1, 1000);
+        byte[] b = data(2, 1000);
+        File part = cache.getPartFile(hash(b));
+        write(part, Arrays.copyOf(b, 800)); // 取得中
+        part.setLastModified(now - 60000);
+        cache.put(hash(a), a);
+        cache.get(hash(a)).setLastModified(now - 30000);
+
+        // 名前を付けたものも同じく古いものから削除する
+        cache.putNamed("live2d/haru.l2db", data(3, 1000));
+        assertTrue(part.exists());
+        assertFalse(cache.contains(hash(a)));
+        assertArrayEquals(data(3, 1000), toBytes(cache.getNamed("live2d/haru.l2db")));
+    }
+
+    private static byte[] data(int seed, int length) {
+        byte[] ret = new byte[length];
+        new java.util.Random(seed).nextBytes(ret);
+        return ret;
+    }
+
+    private static long hash(byte[] data) {
+        return ContentCache.contentHash(ByteBuffer.wrap(data));
+    }
+
+    private static byte[] toBytes(ByteBuffer buf) {
+        byte[] ret = new byte[buf.remaining()];
+        buf.duplicate().get(ret);
+        return ret;
+    }
+
+    private static void write(File file, byte[] data) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+    }
+}
\ No newline at end of file
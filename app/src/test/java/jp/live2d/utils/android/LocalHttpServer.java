@@ -0,0 +1,131 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+*/
+package jp.live2d.utils.android;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * テスト用のHTTPサーバー。1つのファイルだけを返す。
+ * 単体テストはandroid.jarに対してコンパイルするので、JDKのHTTPサーバーの代わりにServerSocketで作る。
+ *
+ * Rangeヘッダに対応するかどうか、途中で接続を切るかどうかを切り替えられる。
+ * 受け取った要求のRangeヘッダを記録する。
+ */
+final class LocalHttpServer {
+    private final String path;
+    private final ServerSocket server;
+    private final Thread thread;
+    private final List<String> ranges = Collections.synchronizedList(new ArrayList<String>());
+
+    volatile byte[] content;
+    volatile boolean rangeSupported = true;
+    volatile int dropAfter = -1; // 次の応答をこのバイト数で切る。1回だけ
+
+    /*
+     * @param path 返すファイルのパス。先頭の/は付けない
+     * @param content
+     * @throws IOException
+     */
+    LocalHttpServer(String path, byte[] content) throws IOException {
+        this.path = "/" + path;
+        this.content = content;
+        server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!server.isClosed()) {
+                    try {
+                        Socket s = server.accept();
+                        try {
+                            serve(s);
+                        } finally {
+                            s.close();
+                        }
+                    } catch (IOException e) {
+                        // 閉じた
+                    }
+                }
+            }
+        }, "LocalHttpServer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getLocalPort() + "/";
+    }
+
+    /*
+     * 受け取った要求のRangeヘッダ。無い場合はnull
+     * @return
+     */
+    List<String> getRanges() {
+        synchronized (ranges) {
+            return new ArrayList<>(ranges);
+        }
+    }
+
+    void close() throws IOException {
+        server.close();
+    }
+
+    private void serve(Socket s) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), "ISO-8859-1"));
+        String requestLine = in.readLine();
+        if (requestLine == null)
+            return;
+        String range = null;
+        for (String line = in.readLine(); line != null && !line.isEmpty(); line = in.readLine()) {
+            if (line.regionMatches(true, 0, "Range:", 0, 6))
+                range = line.substring(6).trim();
+        }
+        ranges.add(range);
+
+        OutputStream out = s.getOutputStream();
+        String[] request = requestLine.split(" ");
+        if (request.length < 2 || !request[1].equals(path)) {
+            out.write("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\nConnection: close\r\n\r\n".getBytes("ISO-8859-1"));
+            out.flush();
+            return;
+        }
+
+        byte[] data = content;
+        int start = 0;
+        int end = data.length - 1;
+        StringBuilder header = new StringBuilder();
+        if (range != null && rangeSupported) {
+            String[] se = range.substring("bytes=".length()).split("-");
+            start = Integer.parseInt(se[0]);
+            end = Math.min(Integer.parseInt(se[1]), data.length - 1);
+            header.append("HTTP/1.1 206 Partial Content\r\n");
+            header.append("Content-Range: bytes ").append(start).append('-').append(end).append('/').append(data.length).append("\r\n");
+        } else {
+            header.append("HTTP/1.1 200 OK\r\n");
+        }
+        int length = end - start + 1;
+        header.append("Content-Length: ").append(length).append("\r\n");
+        header.append("Connection: close\r\n\r\n");
+        out.write(header.toString().getBytes("ISO-8859-1"));
+
+        int drop = dropAfter;
+        if (drop >= 0 && drop < length) {
+            dropAfter = -1;
+            length = drop; // Content-Lengthより前で切る
+        }
+        out.write(data, start, length);
+        out.flush();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,109 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+*/
+package jp.live2d.utils.android;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/*
+ * 保存したものを読み込めること、壊れたものはIOExceptionになることを確かめる。
+ */
+public class ModelSettingCompiledTest {
+    private static final String JSON = "{"
+            + "\"name\":\"test\",\"model\":\"test.moc\","
+            + "\"textures\":[\"test.1024/texture_00.png\"],"
+            + "\"expressions\":[{\"name\":\"F00\",\"file\":\"expressions/F00.exp.json\"}],"
+            + "\"hit_areas\":[{\"name\":\"head\",\"id\":\"D_REF.HEAD\"}],"
+            + "\"layout\":{\"center_x\":0,\"width\":2},"
+            + "\"motions\":{"
+            + "\"idle\":[{\"file\":\"motions/idle_00.mtn\"},{\"file\":\"motions/idle_01.mtn\",\"fade_in\":500}],"
+            + "\"tap_body\":[{\"file\":\"motions/tap_00.mtn\",\"sound\":\"sounds/tap_00.mp3\"}]}"
+            + "}";
+
+    private ModelSettingCompiled setting;
+    private byte[] data;
+
+    @Before
+    public void setUp() throws IOException {
+        setting = ModelSettingCompiled.compile(new ModelSettingJson(ByteBuffer.wrap(JSON.getBytes("UTF-8"))));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        setting.write(new DataOutputStream(out));
+        data = out.toByteArray();
+    }
+
+    @Test
+    public void readsWhatWasWritten() throws IOException {
+        ModelSettingCompiled read = read(data, data.length);
+        assertEquals("test.moc", read.getModelFile());
+        assertArrayEquals(setting.getTextureFiles(), read.getTextureFiles());
+        assertEquals(2, read.getMotionNum("idle"));
+        assertEquals(500, read.getMotionFadeIn("idle", 1));
+        assertEquals("sounds/tap_00.mp3", read.getMotionSound("tap_body", 0));
+        assertEquals("D_REF.HEAD", read.getHitAreaID(0));
+    }
+
+    @Test
+    public void rejectsBrokenLength() {
+        // 最初の配列（テクスチャ）の長さ。MAGIC、VERSION、文字列4つの後
+        int pos = 8;
+        for (int i = 0; i < 4; i++) {
+            pos += data[pos] == 0 ? 1 : 3 + (((data[pos + 1] & 0xFF) << 8) | (data[pos + 2] & 0xFF));
+        }
+        for (int len : new int[]{-2, Integer.MIN_VALUE, Integer.MAX_VALUE}) {
+            byte[] d = data.clone();
+            d[pos] = (byte) (len >>> 24);
+            d[pos + 1] = (byte) (len >>> 16);
+            d[pos + 2] = (byte) (len >>> 8);
+            d[pos + 3] = (byte) len;
+            assertBroken(d, d.length);
+        }
+    }
+
+    @Test
+    public void rejectsRandomCorruption() {
+        Random random = new Random(1);
+        for (int i = 0; i < 20000; i++) {
+            byte[] d = data.clone();
+            int len = i % 3 == 0 ? random.nextInt(d.length) : d.length;
+            int num = 1 + random.nextInt(4);
+            for (int n = 0; n < num; n++) {
+                d[8 + random.nextInt(d.length - 8)] = (byte) random.nextInt(256);
+            }
+            try {
+                read(d, len);
+            } catch (IOException e) {
+                // 壊れていると分かった
+            }
+            // IOException以外の例外は失敗
+        }
+    }
+
+    private static ModelSettingCompiled read(byte[] d, int len) throws IOException {
+        return ModelSettingCompiled.read(new DataInputStream(new ByteArrayInputStream(d, 0, len)));
+    }
+
+    private static void assertBroken(byte[] d, int len) {
+        try {
+            read(d, len);
+            fail("read");
+        } catch (IOException e) {
+            // 壊れている
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,190 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+*/
+package jp.live2d.utils.android;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/*
+ * ローカルのHTTPサーバーに対して、範囲の取得、続きからの取得、キャッシュへの保存を確かめる。
+ */
+public class RemoteFetcherTest {
+    private static final String PATH = "live2d/test.l2db";
+    private static final int CHUNK_BYTES = 64 * 1024;
+    private static final int OFFSET = 12345;
+    private static final int LENGTH = 150000;
+
+    private byte[] content;
+    private LocalHttpServer server;
+    private RemoteFetcher fetcher;
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        content = new byte[200000];
+        new Random(1).nextBytes(content);
+        server = new LocalHttpServer(PATH, content);
+        fetcher = new RemoteFetcher(server.getBaseUrl(), 5000, CHUNK_BYTES);
+        dir = File.createTempFile("RemoteFetcherTest", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void fetchRange() throws IOException {
+        assertArrayEquals(range(1000, 5000), fetcher.fetchRange(PATH, 1000, 5000));
+        assertEquals("bytes=1000-5999", server.getRanges().get(0));
+    }
+
+    @Test
+    public void fetchRangeFromServerIgnoringRange() throws IOException {
+        server.rangeSupported = false; // 200で全体が返る
+        assertArrayEquals(range(1000, 5000), fetcher.fetchRange(PATH, 1000, 5000));
+        assertArrayEquals(content, fetcher.fetch(PATH));
+    }
+
+    @Test
+    public void fetchRangeToFileInChunks() throws IOException {
+        File part = new File(dir, "a.part");
+        fetcher.fetchRangeToFile(PATH, OFFSET, LENGTH, part);
+        assertArrayEquals(range(OFFSET, LENGTH), read(part));
+        assertEquals(3, server.getRanges().size()); // 64KB, 64KB, 残り
+    }
+
+    @Test
+    public void fetchRangeToFileFromServerIgnoringRange() throws IOException {
+        server.rangeSupported = false;
+        File part = new File(dir, "a.part");
+        fetcher.fetchRangeToFile(PATH, OFFSET, LENGTH, part);
+        assertArrayEquals(range(OFFSET, LENGTH), read(part));
+    }
+
+    @Test
+    public void resumesFromPartFile() throws IOException {
+        File part = new File(dir, "a.part");
+        write(part, range(OFFSET, 40000));
+        fetcher.fetchRangeToFile(PATH, OFFSET, LENGTH, part);
+        assertArrayEquals(range(OFFSET, LENGTH), read(part));
+
+        List<String> ranges = server.getRanges();
+        assertEquals(2, ranges.size());
+        assertEquals("bytes=" + (OFFSET + 40000) + "-" + (OFFSET + 40000 + CHUNK_BYTES - 1), ranges.get(0));
+    }
+
+    @Test
+    public void resumesAfterDroppedConnection() throws IOException {
+        File part = new File(dir, "a.part");
+        server.dropAfter = 30000;
+        try {
+            fetcher.fetchRangeToFile(PATH, OFFSET, LENGTH, part);
+            fail("not dropped");
+        } catch (IOException e) {
+            // 途中で切れた
+        }
+        long done = part.length();
+        assertTrue("kept " + done, done > 0 && done < LENGTH);
+
+        fetcher.fetchRangeToFile(PATH, OFFSET, LENGTH, part);
+        assertArrayEquals(range(OFFSET, LENGTH), read(part));
+    }
+
+    @Test
+    public void restartsWhenPartFileIsLongerThanRange() throws IOException {
+        File part = new File(dir, "a.part");
+        byte[] longer = new byte[LENGTH + 10];
+        Arrays.fill(longer, (byte) 7);
+        write(part, longer);
+
+        fetcher.fetchRangeToFile(PATH, OFFSET, LENGTH, part);
+        assertArrayEquals(range(OFFSET, LENGTH), read(part));
+        assertEquals("bytes=" + OFFSET + "-" + (OFFSET + CHUNK_BYTES - 1), server.getRanges().get(0));
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void notFound() throws IOException {
+        fetcher.fetch("live2d/none.l2db");
+    }
+
+    @Test
+    public void changedContentIsNotCached() throws IOException {
+        ContentCache cache = new ContentCache(dir, 1024 * 1024);
+        long hash = ContentCache.contentHash(ByteBuffer.wrap(range(OFFSET, LENGTH)));
+
+        // サーバーの内容が目次と違う。取得したものは保存せずに削除する
+        byte[] changed = content.clone();
+        changed[OFFSET + 100] ^= 1;
+        server.content = changed;
+        fetcher.fetchRangeToFile(PATH, OFFSET, LENGTH, cache.getPartFile(hash));
+        try {
+            cache.commit(hash);
+            fail("committed");
+        } catch (IOException e) {
+            // ハッシュが違う
+        }
+        assertFalse(cache.getPartFile(hash).exists());
+        assertFalse(cache.contains(hash));
+        assertNull(cache.map(hash));
+
+        // 直ったら最初から取得し直せる
+        server.content = content;
+        fetcher.fetchRangeToFile(PATH, OFFSET, LENGTH, cache.getPartFile(hash));
+        cache.commit(hash);
+        assertEquals(hash, ContentCache.contentHash(cache.map(hash)));
+    }
+
+    private byte[] range(int offset, int length) {
+        return Arrays.copyOfRange(content, offset, offset + length);
+    }
+
+    private static byte[] read(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            return FileManager.readAll(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void write(File file, byte[] data) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+    }
+}
\ No newline at end of file
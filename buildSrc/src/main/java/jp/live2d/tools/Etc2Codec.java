@@ -0,0 +1,823 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+*/
+package jp.live2d.tools;
+
+/*
+ * ETC2 RGBA8（GL_COMPRESSED_RGBA8_ETC2_EAC）のエンコーダとデコーダ。
+ *
+ * ビルド時にモデルのテクスチャを圧縮する（live2d-bundle.gradleのcompressLive2DTextures）。
+ * デコーダはGPUを使わずに、エンコーダの出力が正しく読めることを確認するためのもの（Etc2CodecTest）。
+ * encode()はブロックごとに選んだ結果の誤差を返すので、decode()した画像の誤差と一致すれば、
+ * ビットの配置を含めて正しく書けている。
+ *
+ * 4x4画素のブロックごとに16バイト。前半8バイトがアルファ（EAC）、後半8バイトがRGB（ETC2）。どちらもビッグエンディアン。
+ * ブロック内の画素の番号は x * 4 + y（列の順）。
+ * 画素は乗算済みのARGBのintで扱う。画像の端のブロックで外にはみ出す画素は誤差に含めない。
+ *
+ * 品質
+ *  QUALITY_FAST    ETC1互換の個別、差分モードだけ。基準色は平均
+ *  QUALITY_NORMAL  平面モードを加え、基準色を明るさの方向に調整する
+ *  QUALITY_HIGH    T、Hモードを加え、基準色をチャンネルごとに調整する
+ */
+public final class Etc2Codec {
+    public static final int QUALITY_FAST = 0;
+    public static final int QUALITY_NORMAL = 1;
+    public static final int QUALITY_HIGH = 2;
+    public static final int GL_COMPRESSED_RGBA8_ETC2_EAC = 0x9278;
+    public static final int BLOCK_BYTES = 16;
+
+    // 個別、差分モードの明るさの変化。画素の番号 0:+[0] 1:+[1] 2:-[0] 3:-[1]
+    private static final int[][] ETC1_MODIFIERS = {
+            {2, 8}, {5, 17}, {9, 29}, {13, 42}, {18, 60}, {24, 80}, {33, 106}, {47, 183}};
+    // T、Hモードの距離
+    private static final int[] TH_DISTANCES = {3, 6, 11, 16, 23, 32, 41, 64};
+    // アルファの変化
+    private static final int[][] EAC_MODIFIERS = {
+            {-3, -6, -9, -15, 2, 5, 8, 14},
+            {-3, -7, -10, -13, 2, 6, 9, 12},
+            {-2, -5, -8, -13, 1, 4, 7, 12},
+            {-2, -4, -6, -13, 1, 3, 5, 12},
+            {-3, -6, -8, -12, 2, 5, 7, 11},
+            {-3, -7, -9, -11, 2, 6, 8, 10},
+            {-4, -7, -8, -11, 3, 6, 7, 10},
+            {-3, -5, -8, -11, 2, 4, 7, 10},
+            {-2, -6, -8, -10, 1, 5, 7, 9},
+            {-2, -5, -8, -10, 1, 4, 7, 9},
+            {-2, -4, -8, -10, 1, 3, 7, 9},
+            {-2, -5, -7, -10, 1, 4, 6, 9},
+            {-3, -4, -7, -10, 2, 3, 6, 9},
+            {-1, -2, -3, -10, 0, 1, 2, 9},
+            {-4, -6, -8, -9, 3, 5, 7, 8},
+            {-3, -5, -7, -9, 2, 4, 6, 8}};
+    private static final int LEFT_HALF = 0x00FF; // x < 2 の画素
+    private static final int TOP_HALF = 0x3333;  // y < 2 の画素
+
+    private final int quality;
+    // 圧縮中のブロック
+    private final int[] r = new int[16];
+    private final int[] g = new int[16];
+    private final int[] b = new int[16];
+    private final int[] a = new int[16];
+    private int mask; // 画像の中にある画素
+    private long bestBits;
+    private long bestError;
+    // 作業領域
+    private final int[] indices = new int[16];
+    private final int[] subIndices = new int[16];
+    private final int[] color0 = new int[3];
+    private final int[] color1 = new int[3];
+    private final int[] table = new int[1];
+
+    private Etc2Codec(int quality) {
+        this.quality = quality;
+    }
+
+    /*
+     * 圧縮後の大きさ
+     * @param width
+     * @param height
+     * @return
+     */
+    public static int getByteSize(int width, int height) {
+        return ((width + 3) / 4) * ((height + 3) / 4) * BLOCK_BYTES;
+    }
+
+    /*
+     * 画像を圧縮する
+     * @param argb 乗算済みのARGB
+     * @param width
+     * @param height
+     * @param quality QUALITY_NORMALなど
+     * @param out getByteSize()の大きさ
+     * @return 誤差の2乗和（RGBAの4チャンネル）
+     */
+    public static long encode(int[] argb, int width, int height, int quality, byte[] out) {
+        Etc2Codec codec = new Etc2Codec(quality);
+        long error = 0;
+        int offset = 0;
+        for (int by = 0; by < height; by += 4) {
+            for (int bx = 0; bx < width; bx += 4) {
+                codec.load(argb, width, height, bx, by);
+                error += codec.encodeAlpha(out, offset);
+                error += codec.encodeRgb(out, offset + 8);
+                offset += BLOCK_BYTES;
+            }
+        }
+        return error;
+    }
+
+    /*
+     * 圧縮した画像を展開する
+     * @param in
+     * @param width
+     * @param height
+     * @param argb width * heightの大きさ
+     */
+    public static void decode(byte[] in, int width, int height, int[] argb) {
+        int[] block = new int[16];
+        int offset = 0;
+        for (int by = 0; by < height; by += 4) {
+            for (int bx = 0; bx < width; bx += 4) {
+                decodeBlock(readLong(in, offset), readLong(in, offset + 8), block);
+                for (int i = 0; i < 16; i++) {
+                    int x = bx + i / 4;
+                    int y = by + i % 4;
+                    if (x < width && y < height)
+                        argb[y * width + x] = block[i];
+                }
+                offset += BLOCK_BYTES;
+            }
+        }
+    }
+
+    /*
+     * 1ブロックを展開する
+     * @param alpha アルファの8バイト
+     * @param rgb RGBの8バイト
+     * @param out 16画素のARGB。番号は x * 4 + y
+     */
+    public static void decodeBlock(long alpha, long rgb, int[] out) {
+        int base = (int) (alpha >>> 56) & 0xFF;
+        int multiplier = (int) (alpha >>> 52) & 0xF;
+        int[] modifiers = EAC_MODIFIERS[(int) (alpha >>> 48) & 0xF];
+        for (int i = 0; i < 16; i++) {
+            int index = (int) (alpha >>> (45 - i * 3)) & 7;
+            out[i] = clamp(base + modifiers[index] * multiplier) << 24;
+        }
+
+        int[] paint = new int[4];
+        if ((rgb & (1L << 33)) == 0) {
+            // 個別モード
+            int r0 = expand4(bits(rgb, 60, 4)), r1 = expand4(bits(rgb, 56, 4));
+            int g0 = expand4(bits(rgb, 52, 4)), g1 = expand4(bits(rgb, 48, 4));
+            int b0 = expand4(bits(rgb, 44, 4)), b1 = expand4(bits(rgb, 40, 4));
+            decodeEtc1(rgb, r0, g0, b0, r1, g1, b1, out);
+            return;
+        }
+        int rBase = bits(rgb, 59, 5), rDelta = signed3(bits(rgb, 56, 3));
+        int gBase = bits(rgb, 51, 5), gDelta = signed3(bits(rgb, 48, 3));
+        int bBase = bits(rgb, 43, 5), bDelta = signed3(bits(rgb, 40, 3));
+        if (rBase + rDelta < 0 || rBase + rDelta > 31) {
+            // Tモード
+            int c1 = rgb4((bits(rgb, 59, 2) << 2) | bits(rgb, 56, 2), bits(rgb, 52, 4), bits(rgb, 48, 4));
+            int c2 = rgb4(bits(rgb, 44, 4), bits(rgb, 40, 4), bits(rgb, 36, 4));
+            int d = TH_DISTANCES[(bits(rgb, 34, 2) << 1) | bits(rgb, 32, 1)];
+            paint[0] = c1;
+            paint[1] = addRgb(c2, d);
+            paint[2] = c2;
+            paint[3] = addRgb(c2, -d);
+            decodePaint(rgb, paint, out);
+        } else if (gBase + gDelta < 0 || gBase + gDelta > 31) {
+            // Hモード
+            int r1 = bits(rgb, 59, 4);
+            int g1 = (bits(rgb, 56, 3) << 1) | bits(rgb, 52, 1);
+            int b1 = (bits(rgb, 51, 1) << 3) | bits(rgb, 47, 3);
+            int r2 = bits(rgb, 43, 4), g2 = bits(rgb, 39, 4), b2 = bits(rgb, 35, 4);
+            int order = ((r1 << 8) | (g1 << 4) | b1) >= ((r2 << 8) | (g2 << 4) | b2) ? 1 : 0;
+            int d = TH_DISTANCES[(bits(rgb, 34, 1) << 2) | (bits(rgb, 32, 1) << 1) | order];
+            int c1 = rgb4(r1, g1, b1);
+            int c2 = rgb4(r2, g2, b2);
+            paint[0] = addRgb(c1, d);
+            paint[1] = addRgb(c1, -d);
+            paint[2] = addRgb(c2, d);
+            paint[3] = addRgb(c2, -d);
+            decodePaint(rgb, paint, out);
+        } else if (bBase + bDelta < 0 || bBase + bDelta > 31) {
+            // 平面モード
+            int ro = expand6(bits(rgb, 57, 6));
+            int go = expand7((bits(rgb, 56, 1) << 6) | bits(rgb, 49, 6));
+            int bo = expand6((bits(rgb, 48, 1) << 5) | (bits(rgb, 43, 2) << 3) | bits(rgb, 39, 3));
+            int rh = expand6((bits(rgb, 34, 5) << 1) | bits(rgb, 32, 1));
+            int gh = expand7(bits(rgb, 25, 7));
+            int bh = expand6(bits(rgb, 19, 6));
+            int rv = expand6(bits(rgb, 13, 6));
+            int gv = expand7(bits(rgb, 6, 7));
+            int bv = expand6(bits(rgb, 0, 6));
+            for (int i = 0; i < 16; i++) {
+                int x = i / 4;
+                int y = i % 4;
+                out[i] |= (planar(ro, rh, rv, x, y) << 16) | (planar(go, gh, gv, x, y) << 8) | planar(bo, bh, bv, x, y);
+            }
+        } else {
+            // 差分モード
+            decodeEtc1(rgb, expand5(rBase), expand5(gBase), expand5(bBase),
+                    expand5(rBase + rDelta), expand5(gBase + gDelta), expand5(bBase + bDelta), out);
+        }
+    }
+
+    private static void decodeEtc1(long rgb, int r0, int g0, int b0, int r1, int g1, int b1, int[] out) {
+        boolean flip = (rgb & (1L << 32)) != 0;
+        int[] t0 = ETC1_MODIFIERS[bits(rgb, 37, 3)];
+        int[] t1 = ETC1_MODIFIERS[bits(rgb, 34, 3)];
+        int half = flip ? TOP_HALF : LEFT_HALF;
+        for (int i = 0; i < 16; i++) {
+            boolean first = ((half >> i) & 1) != 0;
+            int m = modifier(first ? t0 : t1, pixelIndex(rgb, i));
+            if (first)
+                out[i] |= (clamp(r0 + m) << 16) | (clamp(g0 + m) << 8) | clamp(b0 + m);
+            else
+                out[i] |= (clamp(r1 + m) << 16) | (clamp(g1 + m) << 8) | clamp(b1 + m);
+        }
+    }
+
+    private static void decodePaint(long rgb, int[] paint, int[] out) {
+        for (int i = 0; i < 16; i++) {
+            out[i] |= paint[pixelIndex(rgb, i)];
+        }
+    }
+
+    /*
+     * 誤差の2乗和
+     * @param a ARGB
+     * @param b ARGB
+     * @param n
+     * @return
+     */
+    public static long squaredError(int[] a, int[] b, int n) {
+        long error = 0;
+        for (int i = 0; i < n; i++) {
+            for (int shift = 0; shift < 32; shift += 8) {
+                int d = ((a[i] >>> shift) & 0xFF) - ((b[i] >>> shift) & 0xFF);
+                error += d * d;
+            }
+        }
+        return error;
+    }
+
+    /*
+     * PSNR（dB）。RGBAの4チャンネルの平均
+     * @param squaredError
+     * @param pixelNum
+     * @return 誤差が無い場合はInfinity
+     */
+    public static double psnr(long squaredError, int pixelNum) {
+        if (squaredError == 0)
+            return Double.POSITIVE_INFINITY;
+        double mse = (double) squaredError / (pixelNum * 4.0);
+        return 10 * Math.log10(255.0 * 255.0 / mse);
+    }
+
+    //---------------------------------------------------------------
+    // 圧縮
+    //---------------------------------------------------------------
+    private void load(int[] argb, int width, int height, int bx, int by) {
+        mask = 0;
+        for (int i = 0; i < 16; i++) {
+            int x = bx + i / 4;
+            int y = by + i % 4;
+            if (x < width && y < height)
+                mask |= 1 << i;
+            int c = argb[Math.min(y, height - 1) * width + Math.min(x, width - 1)]; // はみ出す画素は端を繰り返す
+            a[i] = c >>> 24;
+            r[i] = (c >> 16) & 0xFF;
+            g[i] = (c >> 8) & 0xFF;
+            b[i] = c & 0xFF;
+        }
+    }
+
+    /*
+     * アルファを圧縮する。テーブルごとに、最小と最大を覆う倍率と基準値の周辺を調べる
+     * @return 誤差
+     */
+    private long encodeAlpha(byte[] out, int offset) {
+        int min = 255;
+        int max = 0;
+        for (int i = 0; i < 16; i++) {
+            if (((mask >> i) & 1) == 0)
+                continue;
+            min = Math.min(min, a[i]);
+            max = Math.max(max, a[i]);
+        }
+        if (min >= max) {
+            // 一定。倍率0で基準値だけ使う
+            writeLong(out, offset, (long) Math.max(min, 0) << 56);
+            return 0;
+        }
+
+        long best = Long.MAX_VALUE;
+        long bestAlpha = 0;
+        int range = quality >= QUALITY_HIGH ? 2 : 1;
+        for (int t = 0; t < 16 && best > 0; t++) {
+            int[] modifiers = EAC_MODIFIERS[t];
+            int low = modifiers[3];
+            int high = modifiers[7];
+            int m0 = (max - min) / (high - low);
+            for (int m = Math.max(m0 - range + 1, 1); m <= Math.min(m0 + range, 15); m++) {
+                int base0 = Math.round(min - low * m + ((max - min) - (high - low) * m) / 2f);
+                for (int base = base0 - range; base <= base0 + range; base++) {
+                    if (base < 0 || base > 255)
+                        continue;
+                    long error = 0;
+                    long bits = 0;
+                    for (int i = 0; i < 16 && error < best; i++) {
+                        int bestIndex = 0;
+                        int bestD = Integer.MAX_VALUE;
+                        for (int k = 0; k < 8; k++) {
+                            int d = clamp(base + modifiers[k] * m) - a[i];
+                            if (d * d < bestD) {
+                                bestD = d * d;
+                                bestIndex = k;
+                            }
+                        }
+                        if (((mask >> i) & 1) != 0)
+                            error += bestD;
+                        bits |= (long) bestIndex << (45 - i * 3);
+                    }
+                    if (error < best) {
+                        best = error;
+                        bestAlpha = ((long) base << 56) | ((long) m << 52) | ((long) t << 48) | bits;
+                    }
+                }
+            }
+        }
+        writeLong(out, offset, bestAlpha);
+        return best;
+    }
+
+    /*
+     * RGBを圧縮する。品質に応じたモードをすべて試し、誤差が最小のものを使う
+     * @return 誤差
+     */
+    private long encodeRgb(byte[] out, int offset) {
+        bestError = Long.MAX_VALUE;
+        bestBits = 0;
+        for (int flip = 0; flip < 2; flip++) {
+            encodeIndividual(flip);
+            encodeDifferential(flip);
+        }
+        if (quality >= QUALITY_NORMAL)
+            encodePlanar();
+        if (quality >= QUALITY_HIGH)
+            encodeTH();
+        writeLong(out, offset, bestBits);
+        return bestError;
+    }
+
+    private void encodeIndividual(int flip) {
+        int half0 = flip == 0 ? LEFT_HALF : TOP_HALF;
+        int half1 = ~half0 & 0xFFFF;
+        long error = searchSubblock(half0, 4, null, color0, table, indices);
+        int t0 = table[0];
+        error += searchSubblock(half1, 4, null, color1, table, indices);
+        int t1 = table[0];
+        if (error >= bestError)
+            return;
+        long bits = ((long) color0[0] << 60) | ((long) color1[0] << 56) | ((long) color0[1] << 52) | ((long) color1[1] << 48)
+                | ((long) color0[2] << 44) | ((long) color1[2] << 40) | ((long) t0 << 37) | ((long) t1 << 34)
+                | ((long) flip << 32) | packIndices(indices);
+        setBest(bits, error);
+    }
+
+    private void encodeDifferential(int flip) {
+        int half0 = flip == 0 ? LEFT_HALF : TOP_HALF;
+        int half1 = ~half0 & 0xFFFF;
+        long error = searchSubblock(half0, 5, null, color0, table, indices);
+        int t0 = table[0];
+        error += searchSubblock(half1, 5, color0, color1, table, indices); // 差が-4から3の範囲
+        int t1 = table[0];
+        if (error >= bestError)
+            return;
+        long bits = ((long) color0[0] << 59) | ((long) ((color1[0] - color0[0]) & 7) << 56)
+                | ((long) color0[1] << 51) | ((long) ((color1[1] - color0[1]) & 7) << 48)
+                | ((long) color0[2] << 43) | ((long) ((color1[2] - color0[2]) & 7) << 40)
+                | ((long) t0 << 37) | ((long) t1 << 34) | (1L << 33) | ((long) flip << 32) | packIndices(indices);
+        setBest(bits, error);
+    }
+
+    /*
+     * 副ブロックの基準色とテーブルを選ぶ
+     * @param half 副ブロックの画素
+     * @param bitNum 基準色のビット数。4か5
+     * @param base 差分モードの2つ目の場合は1つ目の基準色。差が-4から3の範囲のものだけ使う
+     * @param color 選んだ基準色（量子化したもの）
+     * @param tableOut 選んだテーブル
+     * @param indicesOut 副ブロックの画素の番号
+     * @return 誤差
+     */
+    private long searchSubblock(int half, int bitNum, int[] base, int[] color, int[] tableOut, int[] indicesOut) {
+        int max = (1 << bitNum) - 1;
+        int[] q = new int[3];
+        float[] sum = new float[3];
+        int num = 0;
+        for (int i = 0; i < 16; i++) {
+            if (((half >> i) & 1) == 0 || ((mask >> i) & 1) == 0)
+                continue;
+            sum[0] += r[i];
+            sum[1] += g[i];
+            sum[2] += b[i];
+            num++;
+        }
+        for (int c = 0; c < 3; c++) {
+            q[c] = num == 0 ? 0 : Math.round(sum[c] / num * max / 255f);
+        }
+
+        long best = Long.MAX_VALUE;
+        int[] candidate = new int[3];
+        int range = quality >= QUALITY_NORMAL ? 1 : 0;
+        for (int dr = -range; dr <= range; dr++) {
+            for (int dg = -range; dg <= range; dg++) {
+                for (int db = -range; db <= range; db++) {
+                    if (quality < QUALITY_HIGH && (dr != dg || dg != db))
+                        continue; // 明るさの方向だけ
+                    candidate[0] = q[0] + dr;
+                    candidate[1] = q[1] + dg;
+                    candidate[2] = q[2] + db;
+                    for (int c = 0; c < 3; c++) {
+                        int lo = base == null ? 0 : Math.max(base[c] - 4, 0);
+                        int hi = base == null ? max : Math.min(base[c] + 3, max);
+                        candidate[c] = Math.max(lo, Math.min(hi, candidate[c]));
+                    }
+                    int cr = bitNum == 4 ? expand4(candidate[0]) : expand5(candidate[0]);
+                    int cg = bitNum == 4 ? expand4(candidate[1]) : expand5(candidate[1]);
+                    int cb = bitNum == 4 ? expand4(candidate[2]) : expand5(candidate[2]);
+                    for (int t = 0; t < 8; t++) {
+                        long error = 0;
+                        for (int i = 0; i < 16 && error < best; i++) {
+                            if (((half >> i) & 1) == 0)
+                                continue;
+                            int bestIndex = 0;
+                            long bestD = Long.MAX_VALUE;
+                            for (int k = 0; k < 4; k++) {
+                                int m = modifier(ETC1_MODIFIERS[t], k);
+                                long d = distance(clamp(cr + m), clamp(cg + m), clamp(cb + m), i);
+                                if (d < bestD) {
+                                    bestD = d;
+                                    bestIndex = k;
+                                }
+                            }
+                            subIndices[i] = bestIndex;
+                            if (((mask >> i) & 1) != 0)
+                                error += bestD;
+                        }
+                        if (error < best) {
+                            best = error;
+                            System.arraycopy(candidate, 0, color, 0, 3);
+                            tableOut[0] = t;
+                            for (int i = 0; i < 16; i++) {
+                                if (((half >> i) & 1) != 0)
+                                    indicesOut[i] = subIndices[i];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /*
+     * 平面モード。チャンネルごとに最小2乗法で平面を求め、量子化した値の周辺を調べる
+     */
+    private void encodePlanar() {
+        int[][] channels = {r, g, b};
+        int[] bitNums = {6, 7, 6};
+        int[][] params = new int[3][3]; // O H V
+        long error = 0;
+        for (int c = 0; c < 3; c++) {
+            int[] v = channels[c];
+            float mean = 0;
+            float sx = 0;
+            float sy = 0;
+            int num = 0;
+            for (int i = 0; i < 16; i++) {
+                if (((mask >> i) & 1) == 0)
+                    continue;
+                mean += v[i];
+                num++;
+            }
+            mean /= num;
+            float xx = 0;
+            float yy = 0;
+            float cx = 0;
+            float cy = 0;
+            for (int i = 0; i < 16; i++) {
+                if (((mask >> i) & 1) == 0)
+                    continue;
+                cx += i / 4;
+                cy += i % 4;
+            }
+            cx /= num;
+            cy /= num;
+            for (int i = 0; i < 16; i++) {
+                if (((mask >> i) & 1) == 0)
+                    continue;
+                float dx = i / 4 - cx;
+                float dy = i % 4 - cy;
+                sx += dx * (v[i] - mean);
+                sy += dy * (v[i] - mean);
+                xx += dx * dx;
+                yy += dy * dy;
+            }
+            float gx = xx == 0 ? 0 : sx / xx;
+            float gy = yy == 0 ? 0 : sy / yy;
+            float o = mean - gx * cx - gy * cy;
+            int max = (1 << bitNums[c]) - 1;
+            int qo = quantize(o, max);
+            int qh = quantize(o + 4 * gx, max); // 外挿なので範囲外になることがある
+            int qv = quantize(o + 4 * gy, max);
+
+            long best = Long.MAX_VALUE;
+            for (int io = qo - 1; io <= qo + 1; io++) {
+                for (int ih = qh - 1; ih <= qh + 1; ih++) {
+                    for (int iv = qv - 1; iv <= qv + 1; iv++) {
+                        if (io < 0 || io > max || ih < 0 || ih > max || iv < 0 || iv > max)
+                            continue;
+                        int eo = bitNums[c] == 6 ? expand6(io) : expand7(io);
+                        int eh = bitNums[c] == 6 ? expand6(ih) : expand7(ih);
+                        int ev = bitNums[c] == 6 ? expand6(iv) : expand7(iv);
+                        long e = 0;
+                        for (int i = 0; i < 16 && e < best; i++) {
+                            if (((mask >> i) & 1) == 0)
+                                continue;
+                            int d = planar(eo, eh, ev, i / 4, i % 4) - v[i];
+                            e += d * d;
+                        }
+                        if (e < best) {
+                            best = e;
+                            params[c][0] = io;
+                            params[c][1] = ih;
+                            params[c][2] = iv;
+                        }
+                    }
+                }
+            }
+            error += best;
+        }
+        if (error >= bestError)
+            return;
+
+        int ro = params[0][0], rh = params[0][1], rv = params[0][2];
+        int go = params[1][0], gh = params[1][1], gv = params[1][2];
+        int bo = params[2][0], bh = params[2][1], bv = params[2][2];
+        long bits = ((long) ro << 57) | ((long) (go >> 6) << 56) | ((long) (go & 0x3F) << 49)
+                | ((long) (bo >> 5) << 48) | ((long) ((bo >> 3) & 3) << 43) | ((long) (bo & 7) << 39)
+                | ((long) (rh >> 1) << 34) | (1L << 33) | ((long) (rh & 1) << 32)
+                | ((long) gh << 25) | ((long) bh << 19) | ((long) rv << 13) | ((long) gv << 6) | bv;
+        bits = keepInRange(bits, 63, 59, 56); // Rは範囲内
+        bits = keepInRange(bits, 55, 51, 48); // Gは範囲内
+        bits = forceOverflow(bits, 47, 42, 43, 40); // Bをはみ出させる
+        setBest(bits, error);
+    }
+
+    /*
+     * T、Hモード。画素を明るさで2つに分けて平均を2色にする
+     */
+    private void encodeTH() {
+        // 2つのグループに分ける（k-means）
+        int first = -1;
+        int lo = -1;
+        int hi = -1;
+        for (int i = 0; i < 16; i++) {
+            if (((mask >> i) & 1) == 0)
+                continue;
+            if (first < 0)
+                first = i;
+            int l = r[i] * 2 + g[i] * 4 + b[i];
+            if (lo < 0 || l < r[lo] * 2 + g[lo] * 4 + b[lo])
+                lo = i;
+            if (hi < 0 || l > r[hi] * 2 + g[hi] * 4 + b[hi])
+                hi = i;
+        }
+        float[] c0 = {r[lo], g[lo], b[lo]};
+        float[] c1 = {r[hi], g[hi], b[hi]};
+        int groups = 0; // グループ1の画素
+        for (int iter = 0; iter < 4; iter++) {
+            groups = 0;
+            float[] s0 = new float[3];
+            float[] s1 = new float[3];
+            int n0 = 0;
+            int n1 = 0;
+            for (int i = 0; i < 16; i++) {
+                if (((mask >> i) & 1) == 0)
+                    continue;
+                float d0 = sq(r[i] - c0[0]) + sq(g[i] - c0[1]) + sq(b[i] - c0[2]);
+                float d1 = sq(r[i] - c1[0]) + sq(g[i] - c1[1]) + sq(b[i] - c1[2]);
+                if (d1 < d0) {
+                    groups |= 1 << i;
+                    s1[0] += r[i];
+                    s1[1] += g[i];
+                    s1[2] += b[i];
+                    n1++;
+                } else {
+                    s0[0] += r[i];
+                    s0[1] += g[i];
+                    s0[2] += b[i];
+                    n0++;
+                }
+            }
+            if (n0 == 0 || n1 == 0)
+                return; // 1色。他のモードで十分
+            for (int c = 0; c < 3; c++) {
+                c0[c] = s0[c] / n0;
+                c1[c] = s1[c] / n1;
+            }
+        }
+        int[] q0 = {Math.round(c0[0] * 15 / 255f), Math.round(c0[1] * 15 / 255f), Math.round(c0[2] * 15 / 255f)};
+        int[] q1 = {Math.round(c1[0] * 15 / 255f), Math.round(c1[1] * 15 / 255f), Math.round(c1[2] * 15 / 255f)};
+
+        // Hモード。距離の番号の最下位ビットは2色の順番で表す
+        int v0 = (q0[0] << 8) | (q0[1] << 4) | q0[2];
+        int v1 = (q1[0] << 8) | (q1[1] << 4) | q1[2];
+        for (int d = 0; d < 8; d++) {
+            int[] h0 = q0;
+            int[] h1 = q1;
+            if (v0 == v1 && (d & 1) == 0)
+                continue; // 同じ色では1になる
+            if ((v0 >= v1 ? 1 : 0) != (d & 1)) {
+                h0 = q1;
+                h1 = q0;
+            }
+            int e0 = rgb4(h0[0], h0[1], h0[2]);
+            int e1 = rgb4(h1[0], h1[1], h1[2]);
+            int dist = TH_DISTANCES[d];
+            long error = paintError(addRgb(e0, dist), addRgb(e0, -dist), addRgb(e1, dist), addRgb(e1, -dist));
+            if (error >= bestError)
+                continue;
+            long bits = ((long) h0[0] << 59) | ((long) (h0[1] >> 1) << 56) | ((long) (h0[1] & 1) << 52)
+                    | ((long) (h0[2] >> 3) << 51) | ((long) (h0[2] & 7) << 47)
+                    | ((long) h1[0] << 43) | ((long) h1[1] << 39) | ((long) h1[2] << 35)
+                    | ((long) (d >> 2) << 34) | (1L << 33) | ((long) ((d >> 1) & 1) << 32) | packIndices(indices);
+            bits = keepInRange(bits, 63, 59, 56); // Rは範囲内
+            bits = forceOverflow(bits, 55, 50, 51, 48); // Gをはみ出させる
+            setBest(bits, error);
+        }
+
+        // Tモード。どちらの色を1色の方にするかも試す
+        for (int swap = 0; swap < 2; swap++) {
+            int[] t0 = swap == 0 ? q0 : q1;
+            int[] t1 = swap == 0 ? q1 : q0;
+            int e0 = rgb4(t0[0], t0[1], t0[2]);
+            int e1 = rgb4(t1[0], t1[1], t1[2]);
+            for (int d = 0; d < 8; d++) {
+                int dist = TH_DISTANCES[d];
+                long error = paintError(e0, addRgb(e1, dist), e1, addRgb(e1, -dist));
+                if (error >= bestError)
+                    continue;
+                long bits = ((long) (t0[0] >> 2) << 59) | ((long) (t0[0] & 3) << 56) | ((long) t0[1] << 52) | ((long) t0[2] << 48)
+                        | ((long) t1[0] << 44) | ((long) t1[1] << 40) | ((long) t1[2] << 36)
+                        | ((long) (d >> 1) << 34) | (1L << 33) | ((long) (d & 1) << 32) | packIndices(indices);
+                bits = forceOverflow(bits, 63, 58, 59, 56); // Rをはみ出させる
+                setBest(bits, error);
+            }
+        }
+    }
+
+    /*
+     * 4色から画素ごとに最も近いものを選ぶ。番号はindicesに入れる
+     * @return 誤差
+     */
+    private long paintError(int p0, int p1, int p2, int p3) {
+        int[] paint = {p0, p1, p2, p3};
+        long error = 0;
+        for (int i = 0; i < 16; i++) {
+            long bestD = Long.MAX_VALUE;
+            for (int k = 0; k < 4; k++) {
+                long d = distance((paint[k] >> 16) & 0xFF, (paint[k] >> 8) & 0xFF, paint[k] & 0xFF, i);
+                if (d < bestD) {
+                    bestD = d;
+                    indices[i] = k;
+                }
+            }
+            if (((mask >> i) & 1) != 0)
+                error += bestD;
+        }
+        return error;
+    }
+
+    private long distance(int cr, int cg, int cb, int i) {
+        int dr = cr - r[i];
+        int dg = cg - g[i];
+        int db = cb - b[i];
+        return dr * dr + dg * dg + db * db;
+    }
+
+    private void setBest(long bits, long error) {
+        if (error < bestError) {
+            bestError = error;
+            bestBits = bits;
+        }
+    }
+
+    /*
+     * 5ビットの基準値と3ビットの差の和が0から31に収まるように、使っていない最上位ビットを決める
+     * @param bits
+     * @param free 使っていないビット（基準値の最上位）
+     * @param baseLow 基準値の最下位ビット
+     * @param deltaLow 差の最下位ビット
+     * @return
+     */
+    private static long keepInRange(long bits, int free, int baseLow, int deltaLow) {
+        bits &= ~(1L << free);
+        int base = bits(bits, baseLow, 5);
+        int delta = signed3(bits(bits, deltaLow, 3));
+        if (base + delta < 0)
+            bits |= 1L << free; // 16を足す
+        return bits;
+    }
+
+    /*
+     * 5ビットの基準値と3ビットの差の和が0から31をはみ出すように、使っていないビットを決める。
+     * 基準値の上位3ビットと差の符号ビットが使っていないビットで、残りの基準値の下位2ビットと差の下位2ビットの和で決まる。
+     * @param bits
+     * @param freeHigh 基準値の上位3ビットの最上位
+     * @param freeSign 差の符号ビット
+     * @param baseLow 基準値の最下位ビット
+     * @param deltaLow 差の最下位ビット
+     * @return
+     */
+    private static long forceOverflow(long bits, int freeHigh, int freeSign, int baseLow, int deltaLow) {
+        bits &= ~(7L << (freeHigh - 2)) & ~(1L << freeSign);
+        int sum = bits(bits, baseLow, 2) + bits(bits, deltaLow, 2);
+        if (sum >= 4)
+            bits |= 7L << (freeHigh - 2); // 28以上 + 正の差 > 31
+        else
+            bits |= 1L << freeSign; // 3以下 + 負の差 < 0
+        return bits;
+    }
+
+    private static long packIndices(int[] indices) {
+        long bits = 0;
+        for (int i = 0; i < 16; i++) {
+            bits |= ((long) (indices[i] >> 1) << (16 + i)) | ((long) (indices[i] & 1) << i);
+        }
+        return bits;
+    }
+
+    //---------------------------------------------------------------
+    // 共通
+    //---------------------------------------------------------------
+    private static int pixelIndex(long rgb, int i) {
+        return (int) (((rgb >>> (16 + i)) & 1) << 1 | ((rgb >>> i) & 1));
+    }
+
+    private static int modifier(int[] table, int index) {
+        return (index & 2) == 0 ? table[index & 1] : -table[index & 1];
+    }
+
+    private static int planar(int o, int h, int v, int x, int y) {
+        return clamp((x * (h - o) + y * (v - o) + 4 * o + 2) >> 2);
+    }
+
+    private static int rgb4(int r, int g, int b) {
+        return (expand4(r) << 16) | (expand4(g) << 8) | expand4(b);
+    }
+
+    private static int addRgb(int rgb, int d) {
+        return (clamp(((rgb >> 16) & 0xFF) + d) << 16) | (clamp(((rgb >> 8) & 0xFF) + d) << 8) | clamp((rgb & 0xFF) + d);
+    }
+
+    private static int bits(long v, int low, int num) {
+        return (int) ((v >>> low) & ((1L << num) - 1));
+    }
+
+    private static int signed3(int v) {
+        return (v & 4) != 0 ? v - 8 : v;
+    }
+
+    private static int expand4(int c) {
+        return (c << 4) | c;
+    }
+
+    private static int expand5(int c) {
+        return (c << 3) | (c >> 2);
+    }
+
+    private static int expand6(int c) {
+        return (c << 2) | (c >> 4);
+    }
+
+    private static int expand7(int c) {
+        return (c << 1) | (c >> 6);
+    }
+
+    private static int quantize(float v, int max) {
+        return Math.max(0, Math.min(max, Math.round(v * max / 255f)));
+    }
+
+    private static int clamp(int v) {
+        return v < 0 ? 0 : v > 255 ? 255 : v;
+    }
+
+    private static float sq(float v) {
+        return v * v;
+    }
+
+    private static long readLong(byte[] in, int offset) {
+        long v = 0;
+        for (int i = 0; i < 8; i++) {
+            v = (v << 8) | (in[offset + i] & 0xFF);
+        }
+        return v;
+    }
+
+    private static void writeLong(byte[] out, int offset, long v) {
+        for (int i = 7; i >= 0; i--) {
+            out[offset + i] = (byte) v;
+            v >>>= 8;
+        }
+    }
+}
\ No newline at end of file
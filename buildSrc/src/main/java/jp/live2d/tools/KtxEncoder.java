@@ -0,0 +1,158 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+*/
+package jp.live2d.tools;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/*
+ * 画像をETC2 RGBA8で圧縮してKTX（バージョン1）にする。
+ *
+ * 実行時のミップマップ（jp.live2d.utils.android.MipmapBuilder）と同じく、乗算済みのRGBAを2x2の平均で縮小し、
+ * すべてのレベルを圧縮して格納する。実行時はTextureData.fromKtx()で読み、そのまま転送する。
+ *
+ * 各レベルのPSNRはエンコーダが返した誤差から求める。展開し直した誤差と一致することはテストで確かめる。
+ *
+ * 形式（リトルエンディアン）
+ *  ヘッダ      識別子(12) 0x04030201 glType(0) glTypeSize(1) glFormat(0) glInternalFormat(0x9278)
+ *              glBaseInternalFormat(GL_RGBA) 幅 高さ 奥行(0) 配列数(0) 面数(1) レベル数 追加データの大きさ(0)
+ *  レベル      大きさ(4) 圧縮したブロック
+ */
+public final class KtxEncoder {
+    public static final String EXTENSION = ".ktx";
+    private static final byte[] IDENTIFIER = {
+            (byte) 0xAB, 'K', 'T', 'X', ' ', '1', '1', (byte) 0xBB, '\r', '\n', 0x1A, '\n'};
+    private static final int HEADER_SIZE = 64;
+    private static final int GL_RGBA = 0x1908;
+
+    private final int quality;
+    private double psnr = 0;
+    private double minPsnr = 0;
+
+    /*
+     * @param quality Etc2Codec.QUALITY_NORMALなど
+     */
+    public KtxEncoder(int quality) {
+        this.quality = quality;
+    }
+
+    /*
+     * 画像を圧縮する
+     * @param image
+     * @return KTXファイルの内容
+     */
+    public final byte[] encode(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = premultiply(image.getRGB(0, 0, width, height, null, 0, width));
+
+        int levelNum = 1;
+        int size = 0;
+        for (int w = width, h = height; ; w = Math.max(w / 2, 1), h = Math.max(h / 2, 1)) {
+            size += 4 + Etc2Codec.getByteSize(w, h);
+            if (w == 1 && h == 1)
+                break;
+            levelNum++;
+        }
+        ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + size).order(ByteOrder.LITTLE_ENDIAN);
+        out.put(IDENTIFIER);
+        out.putInt(0x04030201);
+        out.putInt(0);         // glType
+        out.putInt(1);         // glTypeSize
+        out.putInt(0);         // glFormat
+        out.putInt(Etc2Codec.GL_COMPRESSED_RGBA8_ETC2_EAC);
+        out.putInt(GL_RGBA);   // glBaseInternalFormat
+        out.putInt(width);
+        out.putInt(height);
+        out.putInt(0);         // 奥行
+        out.putInt(0);         // 配列数
+        out.putInt(1);         // 面数
+        out.putInt(levelNum);
+        out.putInt(0);         // 追加データ
+
+        minPsnr = Double.POSITIVE_INFINITY;
+        int w = width;
+        int h = height;
+        for (int level = 0; level < levelNum; level++) {
+            byte[] blocks = new byte[Etc2Codec.getByteSize(w, h)];
+            long error = Etc2Codec.encode(pixels, w, h, quality, blocks);
+            double p = Etc2Codec.psnr(error, w * h);
+            if (level == 0)
+                psnr = p;
+            minPsnr = Math.min(minPsnr, p);
+
+            out.putInt(blocks.length);
+            out.put(blocks);
+            if (w == 1 && h == 1)
+                break;
+            int nw = Math.max(w / 2, 1);
+            int nh = Math.max(h / 2, 1);
+            downsample(pixels, w, h, nw, nh);
+            w = nw;
+            h = nh;
+        }
+        return out.array();
+    }
+
+    /*
+     * 直前のencode()のレベル0のPSNR（dB）
+     * @return
+     */
+    public final double getPsnr() {
+        return psnr;
+    }
+
+    /*
+     * 直前のencode()のすべてのレベルで最も低いPSNR（dB）
+     * @return
+     */
+    public final double getMinPsnr() {
+        return minPsnr;
+    }
+
+    /*
+     * AndroidのBitmapFactoryと同じく乗算済みにする
+     */
+    private static int[] premultiply(int[] argb) {
+        for (int i = 0; i < argb.length; i++) {
+            int c = argb[i];
+            int a = c >>> 24;
+            if (a == 255)
+                continue;
+            argb[i] = (a << 24) | (mul(c >> 16, a) << 16) | (mul(c >> 8, a) << 8) | mul(c, a);
+        }
+        return argb;
+    }
+
+    private static int mul(int c, int a) {
+        int prod = (c & 0xFF) * a + 128;
+        return (prod + (prod >> 8)) >> 8;
+    }
+
+    /*
+     * MipmapBuilder.downsample()と同じ縮小
+     */
+    private static void downsample(int[] pixels, int width, int height, int w, int h) {
+        for (int y = 0; y < h; y++) {
+            int row0 = 2 * y * width;
+            int row1 = Math.min(2 * y + 1, height - 1) * width;
+            for (int x = 0; x < w; x++) {
+                int x0 = 2 * x;
+                int x1 = Math.min(2 * x + 1, width - 1);
+                int p0 = pixels[row0 + x0];
+                int p1 = pixels[row0 + x1];
+                int p2 = pixels[row1 + x0];
+                int p3 = pixels[row1 + x1];
+
+                int lo = (p0 & 0x00FF00FF) + (p1 & 0x00FF00FF) + (p2 & 0x00FF00FF) + (p3 & 0x00FF00FF) + 0x00020002;
+                int hi = ((p0 >>> 8) & 0x00FF00FF) + ((p1 >>> 8) & 0x00FF00FF) + ((p2 >>> 8) & 0x00FF00FF) + ((p3 >>> 8) & 0x00FF00FF) + 0x00020002;
+                pixels[y * w + x] = ((lo >>> 2) & 0x00FF00FF) | (((hi >>> 2) & 0x00FF00FF) << 8);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,173 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+*/
+package jp.live2d.tools;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * 圧縮して展開し直した画像の誤差が、encode()の返す誤差と一致することで、ビットの配置を確かめる。
+ * デコーダ自体は仕様どおりに組み立てたブロックで確かめる。
+ */
+public class Etc2CodecTest {
+    private static final int[] QUALITIES = {Etc2Codec.QUALITY_FAST, Etc2Codec.QUALITY_NORMAL, Etc2Codec.QUALITY_HIGH};
+
+    @Test
+    public void roundTripErrorMatchesEncoder() {
+        // 端のブロックが画像からはみ出す大きさを含める
+        int[][] sizes = {{64, 64}, {13, 7}, {1, 1}, {6, 30}};
+        for (int[] size : sizes) {
+            int w = size[0];
+            int h = size[1];
+            int[][] images = {gradient(w, h), noise(w, h, 1), checker(w, h), alphaRamp(w, h)};
+            for (int[] image : images) {
+                for (int quality : QUALITIES) {
+                    byte[] blocks = new byte[Etc2Codec.getByteSize(w, h)];
+                    long error = Etc2Codec.encode(image, w, h, quality, blocks);
+                    int[] decoded = new int[w * h];
+                    Etc2Codec.decode(blocks, w, h, decoded);
+                    assertEquals(w + "x" + h + " quality " + quality, error, Etc2Codec.squaredError(image, decoded, w * h));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void psnrOfSmoothImages() {
+        int w = 64;
+        int h = 64;
+        assertTrue(psnr(gradient(w, h), w, h, Etc2Codec.QUALITY_FAST) > 38);
+        assertTrue(psnr(gradient(w, h), w, h, Etc2Codec.QUALITY_NORMAL) > 48); // 平面モード
+        assertTrue(psnr(alphaRamp(w, h), w, h, Etc2Codec.QUALITY_NORMAL) > 48);
+
+        // 2色だけのブロックは誤差なく表せる
+        assertEquals(Double.POSITIVE_INFINITY, psnr(checker(w, h), w, h, Etc2Codec.QUALITY_FAST), 0);
+    }
+
+    @Test
+    public void higherQualityIsNotWorse() {
+        int w = 64;
+        int h = 64;
+        int[][] images = {gradient(w, h), noise(w, h, 2), alphaRamp(w, h)};
+        for (int[] image : images) {
+            double fast = psnr(image, w, h, Etc2Codec.QUALITY_FAST);
+            double normal = psnr(image, w, h, Etc2Codec.QUALITY_NORMAL);
+            double high = psnr(image, w, h, Etc2Codec.QUALITY_HIGH);
+            assertTrue(fast + " " + normal, normal >= fast);
+            assertTrue(normal + " " + high, high >= normal);
+        }
+    }
+
+    @Test
+    public void alphaIsKept() {
+        int w = 16;
+        int h = 16;
+        int[] image = new int[w * h];
+        for (int i = 0; i < image.length; i++) {
+            int x = i % w;
+            // 左は透明、右は不透明、間は半透明
+            image[i] = x < 4 ? 0 : x >= 12 ? 0xFF336699 : 0x80194C33;
+        }
+        for (int quality : QUALITIES) {
+            byte[] blocks = new byte[Etc2Codec.getByteSize(w, h)];
+            Etc2Codec.encode(image, w, h, quality, blocks);
+            int[] decoded = new int[w * h];
+            Etc2Codec.decode(blocks, w, h, decoded);
+            for (int i = 0; i < image.length; i++) {
+                int expected = image[i] >>> 24;
+                int actual = decoded[i] >>> 24;
+                if (expected == 0 || expected == 255)
+                    assertEquals("alpha at " + i, expected, actual); // 透明と不透明は誤差なし
+                else
+                    assertTrue("alpha at " + i, Math.abs(expected - actual) <= 1);
+            }
+            // 完全に透明な画素の色は乗算済みなので0
+            assertEquals(0, decoded[0]);
+        }
+    }
+
+    @Test
+    public void decodeBlockFollowsSpec() {
+        // アルファ: 基準128、倍率1、テーブル0。画素0は番号3（-15）、他は番号4（+2）
+        long alpha = (128L << 56) | (1L << 52);
+        for (int i = 0; i < 16; i++) {
+            alpha |= (long) (i == 0 ? 3 : 4) << (45 - i * 3);
+        }
+        // RGB: 個別モード、左右に分割。左は(8,4,2)、右は(0,15,15)の4bit、テーブル0（2、8）
+        // 画素0は番号3（-8）、他は番号0（+2）
+        long rgb = (8L << 60) | (0L << 56) | (4L << 52) | (15L << 48) | (2L << 44) | (15L << 40);
+        rgb |= 1L << 16; // 画素0の上位ビット
+        rgb |= 1L;       // 画素0の下位ビット
+
+        int[] out = new int[16];
+        Etc2Codec.decodeBlock(alpha, rgb, out);
+        assertEquals(argb(113, 128, 60, 26), out[0]);
+        for (int i = 1; i < 16; i++) {
+            int x = i / 4;
+            if (x < 2)
+                assertEquals("pixel " + i, argb(130, 138, 70, 36), out[i]);
+            else
+                assertEquals("pixel " + i, argb(130, 2, 255, 255), out[i]);
+        }
+    }
+
+    private static double psnr(int[] image, int w, int h, int quality) {
+        byte[] blocks = new byte[Etc2Codec.getByteSize(w, h)];
+        return Etc2Codec.psnr(Etc2Codec.encode(image, w, h, quality, blocks), w * h);
+    }
+
+    private static int argb(int a, int r, int g, int b) {
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    private static int[] gradient(int w, int h) {
+        int[] ret = new int[w * h];
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                ret[y * w + x] = argb(255, x * 255 / Math.max(w - 1, 1), y * 255 / Math.max(h - 1, 1), (x + y) * 2 & 0xFF);
+            }
+        }
+        return ret;
+    }
+
+    private static int[] noise(int w, int h, long seed) {
+        Random random = new Random(seed);
+        int[] ret = new int[w * h];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        return ret;
+    }
+
+    private static int[] checker(int w, int h) {
+        int[] ret = new int[w * h];
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                ret[y * w + x] = (x / 4 + y / 4) % 2 == 0 ? 0xFFFFFFFF : 0xFF202020;
+            }
+        }
+        return ret;
+    }
+
+    /*
+     * 横方向に透明から不透明になる乗算済みの画像
+     */
+    private static int[] alphaRamp(int w, int h) {
+        int[] ret = new int[w * h];
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                int a = x * 255 / Math.max(w - 1, 1);
+                ret[y * w + x] = argb(a, 200 * a / 255, 100 * a / 255, 50 * a / 255);
+            }
+        }
+        return ret;
+    }
+}
\ No newline at end of file
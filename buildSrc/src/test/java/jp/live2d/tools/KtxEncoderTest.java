@@ -0,0 +1,120 @@
+/*
+   You can modify and use this source freely
+   only for the development of application related Live2D.
+
+   (c) Live2D Inc. All rights reserved.
+*/
+package jp.live2d.tools;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * KTXのヘッダとレベルの並び、乗算済みにした内容を確かめる。
+ */
+public class KtxEncoderTest {
+    private static final byte[] IDENTIFIER = {
+            (byte) 0xAB, 'K', 'T', 'X', ' ', '1', '1', (byte) 0xBB, '\r', '\n', 0x1A, '\n'};
+    private static final int HEADER_SIZE = 64;
+    private static final int GL_RGBA = 0x1908;
+
+    @Test
+    public void headerLayout() {
+        byte[] ktx = new KtxEncoder(Etc2Codec.QUALITY_FAST).encode(opaqueImage(20, 6));
+        ByteBuffer buf = ByteBuffer.wrap(ktx).order(ByteOrder.LITTLE_ENDIAN);
+
+        assertArrayEquals(IDENTIFIER, Arrays.copyOf(ktx, IDENTIFIER.length));
+        buf.position(IDENTIFIER.length);
+        assertEquals(0x04030201, buf.getInt()); // リトルエンディアン
+        assertEquals(0, buf.getInt());          // glType
+        assertEquals(1, buf.getInt());          // glTypeSize
+        assertEquals(0, buf.getInt());          // glFormat
+        assertEquals(Etc2Codec.GL_COMPRESSED_RGBA8_ETC2_EAC, buf.getInt());
+        assertEquals(GL_RGBA, buf.getInt());
+        assertEquals(20, buf.getInt());
+        assertEquals(6, buf.getInt());
+        assertEquals(0, buf.getInt());          // 奥行
+        assertEquals(0, buf.getInt());          // 配列数
+        assertEquals(1, buf.getInt());          // 面数
+        assertEquals(5, buf.getInt());          // 20x6 10x3 5x1 2x1 1x1
+        assertEquals(0, buf.getInt());          // 追加データ
+        assertEquals(HEADER_SIZE, buf.position());
+
+        int[][] levels = {{20, 6}, {10, 3}, {5, 1}, {2, 1}, {1, 1}};
+        for (int[] level : levels) {
+            int size = buf.getInt();
+            assertEquals(Etc2Codec.getByteSize(level[0], level[1]), size);
+            buf.position(buf.position() + size);
+        }
+        assertEquals(ktx.length, buf.position());
+    }
+
+    @Test
+    public void psnrMatchesDecodedLevel() {
+        BufferedImage image = opaqueImage(32, 32);
+        KtxEncoder encoder = new KtxEncoder(Etc2Codec.QUALITY_NORMAL);
+        byte[] ktx = encoder.encode(image);
+
+        int[] src = image.getRGB(0, 0, 32, 32, null, 0, 32);
+        int[] decoded = decodeLevel0(ktx, 32, 32);
+        double psnr = Etc2Codec.psnr(Etc2Codec.squaredError(src, decoded, src.length), src.length);
+        assertEquals(psnr, encoder.getPsnr(), 1e-9);
+        assertTrue(encoder.getPsnr() > 40);
+        assertTrue(encoder.getMinPsnr() <= encoder.getPsnr());
+    }
+
+    @Test
+    public void premultipliesAlpha() {
+        // 透明な画素の色は捨て、半透明の画素はAndroidのBitmapFactoryと同じく乗算済みにする
+        BufferedImage image = new BufferedImage(8, 8, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                image.setRGB(x, y, x < 4 ? 0x00FF0000 : 0x80FF8040);
+            }
+        }
+        byte[] ktx = new KtxEncoder(Etc2Codec.QUALITY_HIGH).encode(image);
+        int[] decoded = decodeLevel0(ktx, 8, 8);
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                int c = decoded[y * 8 + x];
+                if (x < 4) {
+                    assertEquals(0, c);
+                } else {
+                    assertEquals(0x80, c >>> 24);
+                    assertClose(0x80, (c >> 16) & 0xFF);
+                    assertClose(0x40, (c >> 8) & 0xFF);
+                    assertClose(0x20, c & 0xFF);
+                }
+            }
+        }
+    }
+
+    private static void assertClose(int expected, int actual) {
+        assertTrue(expected + " " + actual, Math.abs(expected - actual) <= 4);
+    }
+
+    private static int[] decodeLevel0(byte[] ktx, int w, int h) {
+        int size = ByteBuffer.wrap(ktx, HEADER_SIZE, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        int[] decoded = new int[w * h];
+        Etc2Codec.decode(Arrays.copyOfRange(ktx, HEADER_SIZE + 4, HEADER_SIZE + 4 + size), w, h, decoded);
+        return decoded;
+    }
+
+    private static BufferedImage opaqueImage(int w, int h) {
+        BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                image.setRGB(x, y, 0xFF000000 | (x * 255 / w) << 16 | (y * 255 / h) << 8 | 0x40);
+            }
+        }
+        return image;
+    }
+}
\ No newline at end of file